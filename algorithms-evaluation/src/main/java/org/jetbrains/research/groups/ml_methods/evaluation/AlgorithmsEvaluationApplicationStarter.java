@@ -58,7 +58,7 @@ public class AlgorithmsEvaluationApplicationStarter implements ApplicationStarte
             Path pathToSaveResults = Paths.get(args[3]);
             List<Algorithm> algorithmsToEvaluate;
             if (algorithmsNames.get(0).equals("")) {
-                algorithmsToEvaluate = AlgorithmsRepository.getAvailableAlgorithms();
+                algorithmsToEvaluate = AlgorithmsRepository.getDefaultAlgorithms();
             } else {
                 algorithmsToEvaluate = algorithmsNames.stream()
                         .map(algorithmName -> AlgorithmsRepository.getAlgorithmByName(algorithmName)
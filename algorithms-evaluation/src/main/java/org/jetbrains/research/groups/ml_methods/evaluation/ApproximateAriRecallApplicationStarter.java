@@ -0,0 +1,116 @@
+package org.jetbrains.research.groups.ml_methods.evaluation;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.application.ex.ApplicationEx;
+import com.intellij.openapi.project.Project;
+import com.sixrr.metrics.profile.MetricsProfile;
+import com.sixrr.metrics.utils.ProjectUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.ARI;
+import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmResult;
+import org.jetbrains.research.groups.ml_methods.algorithm.ApproximateARI;
+import org.jetbrains.research.groups.ml_methods.algorithm.RefactoringExecutionContext;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
+import org.jetbrains.research.groups.ml_methods.refactoring.MoveToClassRefactoring;
+import org.jetbrains.research.groups.ml_methods.utils.MetricsProfilesUtil;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares suggestions of {@link ApproximateARI} with given sketch sizes and numbers of bands
+ * with suggestions of exact {@link ARI} on one project. For every configuration it prints time,
+ * recall (part of exact suggestions which were found), precision (part of approximate suggestions
+ * which are exact ones) and mean absolute difference of accuracy of common suggestions.
+ */
+public class ApproximateAriRecallApplicationStarter implements ApplicationStarter {
+    private static final ApplicationEx APPLICATION = (ApplicationEx) ApplicationManager.getApplication();
+    private static final int NUMBER_OF_ARGUMENTS = 3;
+
+    private static void printUsage() {
+        System.out.println("Usage: approximate-ari-recall <path to project> <sketch size:bands count,...>");
+    }
+
+    @Override
+    public String getCommandName() {
+        return "approximate-ari-recall";
+    }
+
+    @Override
+    public void premain(String[] args) {
+    }
+
+    public void main(String[] args) {
+        try {
+            if (args.length != NUMBER_OF_ARGUMENTS) {
+                printUsage();
+                return;
+            }
+
+            final Project project = ProjectUtils.loadProjectWithAllDependencies(Paths.get(args[1]));
+            if (project == null) {
+                throw new IllegalArgumentException("Cannot open project. Check that path is correct.");
+            }
+            final List<ApproximateARI> configurations = new ArrayList<>();
+            for (String configuration : args[2].split(",")) {
+                final String[] parameters = configuration.split(":");
+                configurations.add(new ApproximateARI(Integer.parseInt(parameters[0]), Integer.parseInt(parameters[1])));
+            }
+
+            final ARI exact = new ARI();
+            final AnalysisScope scope = new AnalysisScope(project);
+            final MetricsProfile profile =
+                    MetricsProfilesUtil.createProfile("evaluation_profile", exact.requiredMetrics());
+            final RefactoringExecutionContext context = new RefactoringExecutionContext(project, scope, profile,
+                    Collections.singletonList(exact), false, null);
+            context.executeSynchronously();
+
+            final AlgorithmResult exactResult = context.getAlgorithmResults().get(0);
+            final Map<MoveToClassRefactoring, Double> expected = accuracies(exactResult);
+            System.out.println("sketch\tbands\ttime (ms)\tfound\trecall\tprecision\taccuracy error");
+            System.out.println("exact\t-\t" + exactResult.getExecutionTime() + "\t" + expected.size() + "\t1.000\t1.000\t0.000");
+            final ForkJoinPool workers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            for (ApproximateARI approximate : configurations) {
+                final AttributesStorage attributes =
+                        context.getAttributesProvider().getAttributes(approximate.requiredMetrics());
+                final AlgorithmResult result = approximate.execute(attributes, workers, false);
+                final Map<MoveToClassRefactoring, Double> found = accuracies(result);
+
+                int common = 0;
+                double accuracyError = 0;
+                for (Map.Entry<MoveToClassRefactoring, Double> entry : found.entrySet()) {
+                    final Double expectedAccuracy = expected.get(entry.getKey());
+                    if (expectedAccuracy != null) {
+                        common++;
+                        accuracyError += Math.abs(expectedAccuracy - entry.getValue());
+                    }
+                }
+
+                System.out.println(approximate.getSketchSize() + "\t" + approximate.getBandsCount()
+                        + "\t" + result.getExecutionTime() + "\t" + found.size()
+                        + "\t" + String.format("%.3f", expected.isEmpty() ? 1 : (double) common / expected.size())
+                        + "\t" + String.format("%.3f", found.isEmpty() ? 1 : (double) common / found.size())
+                        + "\t" + String.format("%.3f", common == 0 ? 0 : accuracyError / common));
+            }
+            workers.shutdownNow();
+        } catch (Throwable throwable) {
+            System.out.println(throwable.getClass().getSimpleName() + ": " + throwable.getMessage());
+            throwable.printStackTrace();
+        } finally {
+            APPLICATION.exit(true, true);
+        }
+    }
+
+    private static @NotNull Map<MoveToClassRefactoring, Double> accuracies(final @NotNull AlgorithmResult result) {
+        final Map<MoveToClassRefactoring, Double> accuracies = new HashMap<>();
+        for (CalculatedRefactoring refactoring : result.getRefactorings()) {
+            accuracies.put(refactoring.getRefactoring(), refactoring.getAccuracy());
+        }
+
+        return accuracies;
+    }
+}
@@ -0,0 +1,146 @@
+package org.jetbrains.research.groups.ml_methods.evaluation;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.application.ex.ApplicationEx;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.sixrr.metrics.utils.ProjectUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.CodeEntity;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitySearcher;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.PropertiesGraph;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Measures how time of {@link EntitySearcher} scales with the number of threads PSI is walked in.
+ * Sequential search is compared with parallel search on 1 to N threads, result of every parallel
+ * search is checked to be the same as result of sequential one.
+ */
+public class EntitySearchBenchmarkApplicationStarter implements ApplicationStarter {
+    private static final ApplicationEx APPLICATION = (ApplicationEx) ApplicationManager.getApplication();
+    private static final int NUMBER_OF_ARGUMENTS = 4;
+
+    private static void printUsage() {
+        System.out.println("Usage: entity-search-benchmark <path to project> <max number of threads> <number of repetitions>");
+    }
+
+    @Override
+    public String getCommandName() {
+        return "entity-search-benchmark";
+    }
+
+    @Override
+    public void premain(String[] args) {
+    }
+
+    public void main(String[] args) {
+        try {
+            if (args.length != NUMBER_OF_ARGUMENTS) {
+                printUsage();
+                return;
+            }
+
+            final Project project = ProjectUtils.loadProjectWithAllDependencies(Paths.get(args[1]));
+            if (project == null) {
+                throw new IllegalArgumentException("Cannot open project. Check that path is correct.");
+            }
+            final int maxThreads = Integer.parseInt(args[2]);
+            final int repetitions = Integer.parseInt(args[3]);
+            final AnalysisScope scope = new AnalysisScope(project);
+
+            final EntitiesStorage expected = APPLICATION.runReadAction(
+                (Computable<EntitiesStorage>) () -> EntitySearcher.analyze(scope)
+            );
+            System.out.println("Classes: " + expected.getClasses().size()
+                    + ", methods: " + expected.getMethods().size()
+                    + ", fields: " + expected.getFields().size()
+                    + ", properties: " + expected.getPropertiesGraph().getEdgesCount());
+
+            final long sequentialTime = measure(repetitions, expected, () -> APPLICATION.runReadAction(
+                (Computable<EntitiesStorage>) () -> EntitySearcher.analyze(scope)
+            ));
+            System.out.println("threads\ttime (ms)\tspeedup");
+            System.out.println("seq\t" + sequentialTime + "\t1.00");
+            for (int threads = 1; threads <= maxThreads; threads++) {
+                final int parallelism = threads;
+                final long time = measure(repetitions, expected,
+                        () -> EntitySearcher.analyzeInParallel(scope, null, parallelism));
+                System.out.println(threads + "\t" + time + "\t" + String.format("%.2f", (double) sequentialTime / time));
+            }
+        } catch (Throwable throwable) {
+            System.out.println(throwable.getClass().getSimpleName() + ": " + throwable.getMessage());
+            throwable.printStackTrace();
+        } finally {
+            APPLICATION.exit(true, true);
+        }
+    }
+
+    /**
+     * Returns median time of search in milliseconds.
+     */
+    private static long measure(
+        final int repetitions,
+        final @NotNull EntitiesStorage expected,
+        final @NotNull Supplier<EntitiesStorage> search
+    ) {
+        final long[] times = new long[repetitions];
+        for (int i = 0; i < repetitions; i++) {
+            final long start = System.nanoTime();
+            final EntitiesStorage result = search.get();
+            times[i] = (System.nanoTime() - start) / 1_000_000;
+            if (!sameEntities(expected, result)) {
+                throw new IllegalStateException("Result of search differs from the sequential one");
+            }
+        }
+
+        Arrays.sort(times);
+        return times[repetitions / 2];
+    }
+
+    private static boolean sameEntities(final @NotNull EntitiesStorage first, final @NotNull EntitiesStorage second) {
+        if (!first.getClasses().equals(second.getClasses())
+                || !first.getMethods().equals(second.getMethods())
+                || !first.getFields().equals(second.getFields())) {
+            return false;
+        }
+
+        final PropertiesGraph firstGraph = first.getPropertiesGraph();
+        final PropertiesGraph secondGraph = second.getPropertiesGraph();
+        if (firstGraph.getEntitiesCount() != secondGraph.getEntitiesCount()) {
+            return false;
+        }
+
+        for (int id = 0; id < firstGraph.getEntitiesCount(); id++) {
+            final CodeEntity entity = firstGraph.getEntity(id);
+            final int otherId = secondGraph.getId(entity);
+            if (otherId == -1 || !row(firstGraph, id).equals(row(secondGraph, otherId))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns properties of entity with given id mapped to their weights. Each property is a pair
+     * of entity and flag which is {@code true} for override methods.
+     */
+    private static @NotNull Map<List<Object>, Integer> row(final @NotNull PropertiesGraph graph, final int id) {
+        final int entitiesCount = graph.getEntitiesCount();
+        final Map<List<Object>, Integer> row = new HashMap<>();
+        for (int i = graph.rowStart(id); i < graph.rowEnd(id); i++) {
+            final int target = graph.getTargets()[i];
+            final boolean override = target >= entitiesCount;
+            final CodeEntity property = graph.getEntity(override ? target - entitiesCount : target);
+            row.put(Arrays.asList(property, override), graph.getWeights()[i]);
+        }
+
+        return row;
+    }
+}
@@ -0,0 +1,205 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import com.intellij.psi.PsiClass;
+import com.sixrr.metrics.MetricCategory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ClassAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributesVisitor;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.FeaturesMatrix;
+import org.jetbrains.research.groups.ml_methods.algorithm.distance.DistanceCalculator;
+import org.jetbrains.research.groups.ml_methods.algorithm.distance.RelevanceBasedDistanceCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scan of ARI over candidate classes of every unit done with single-pair
+ * {@link DistanceCalculator#distance} and with batched {@link DistanceCalculator#distances}.
+ * Input imitates {@code AttributesStorage} of a project: units have a few relevant classes, mostly
+ * their own one, candidates of a unit are classes that share a property with it.
+ * <p>
+ * Benchmark is placed in this package because {@link RelevantProperties} can only be filled from
+ * here. Entities are not backed by real PSI.
+ * <p>
+ * Run with {@code gradlew :core:jmh -PjmhArgs=DistanceCalculatorBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DistanceCalculatorBenchmark {
+    private static final int UNITS_PER_CLASS = 20;
+
+    private static final int PROPERTIES_PER_UNIT = 5;
+
+    private static final int FEATURES_COUNT = 2;
+
+    private static final @NotNull DistanceCalculator distanceCalculator = RelevanceBasedDistanceCalculator.getInstance();
+
+    @Param({"1000", "10000"})
+    public int classesCount;
+
+    private List<ClassAttributes> classes;
+
+    private List<ElementAttributes> units;
+
+    private int[][] candidates;
+
+    private double[] distances;
+
+    @Setup(Level.Trial)
+    public void generateInput() {
+        final Random random = new Random(239);
+        final List<ClassEntity> classEntities = new ArrayList<>();
+        for (int i = 0; i < classesCount; i++) {
+            final ClassEntity classEntity = new ClassEntity(fakePsiClass());
+            classEntity.getRelevantProperties().addClass(classEntity);
+            classEntities.add(classEntity);
+        }
+
+        final int unitsCount = classesCount * UNITS_PER_CLASS;
+        final List<CodeEntity> unitEntities = new ArrayList<>();
+        for (int i = 0; i < unitsCount; i++) {
+            final CodeEntity unit = new FakeEntity();
+            final RelevantProperties properties = unit.getRelevantProperties();
+            properties.addClass(classEntities.get(i / UNITS_PER_CLASS), 1 + random.nextInt(3));
+            for (int j = 1; j < PROPERTIES_PER_UNIT; j++) {
+                properties.addClass(classEntities.get(random.nextInt(classesCount)), 1 + random.nextInt(3));
+            }
+            unitEntities.add(unit);
+        }
+
+        final PropertiesGraph graph = PropertiesGraph.build(classEntities, unitEntities);
+        final int rowsCount = classesCount + unitsCount;
+        final double[] values = new double[rowsCount * FEATURES_COUNT];
+        final int[] offsets = new int[rowsCount + 1];
+        for (int row = 0; row < rowsCount; row++) {
+            offsets[row + 1] = offsets[row] + FEATURES_COUNT;
+            for (int feature = 0; feature < FEATURES_COUNT; feature++) {
+                values[offsets[row] + feature] = random.nextInt(20);
+            }
+        }
+        final FeaturesMatrix matrix = new FeaturesMatrix(values, offsets);
+
+        classes = new ArrayList<>();
+        final int[] classIds = new int[classesCount];
+        for (int i = 0; i < classesCount; i++) {
+            classes.add(new ClassAttributes(classEntities.get(i), matrix, i));
+            classIds[i] = i;
+        }
+
+        final InvertedPropertiesIndex index = InvertedPropertiesIndex.build(graph, classIds);
+        units = new ArrayList<>();
+        candidates = new int[unitsCount][];
+        int maxCandidates = 0;
+        for (int i = 0; i < unitsCount; i++) {
+            units.add(new FakeAttributes(unitEntities.get(i), matrix, classesCount + i));
+            candidates[i] = index.candidates(classesCount + i);
+            maxCandidates = Math.max(maxCandidates, candidates[i].length);
+        }
+        distances = new double[maxCandidates];
+    }
+
+    @Benchmark
+    public double singlePair() {
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < units.size(); i++) {
+            final ElementAttributes unit = units.get(i);
+            for (int candidate : candidates[i]) {
+                result = Math.min(result, distanceCalculator.distance(unit, classes.get(candidate)));
+            }
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public double batched() {
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < units.size(); i++) {
+            distanceCalculator.distances(units.get(i), classes, candidates[i], distances);
+            for (int j = 0; j < candidates[i].length; j++) {
+                result = Math.min(result, distances[j]);
+            }
+        }
+
+        return result;
+    }
+
+    private static @NotNull PsiClass fakePsiClass() {
+        return (PsiClass) Proxy.newProxyInstance(
+            PsiClass.class.getClassLoader(),
+            new Class<?>[] {PsiClass.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "FakePsiClass";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        );
+    }
+
+    private static class FakeEntity extends CodeEntity {
+        @Override
+        public @NotNull String getIdentifier() {
+            return "unit" + System.identityHashCode(this);
+        }
+
+        @Override
+        public boolean isMovable() {
+            return true;
+        }
+
+        @Override
+        public <R> R accept(@NotNull CodeEntityVisitor<R> visitor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public @NotNull MetricCategory getMetricCategory() {
+            return MetricCategory.Method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    private static class FakeAttributes extends ElementAttributes {
+        private final @NotNull CodeEntity entity;
+
+        FakeAttributes(final @NotNull CodeEntity entity, final @NotNull FeaturesMatrix matrix, final int row) {
+            super(matrix, row);
+            this.entity = entity;
+        }
+
+        @Override
+        public @NotNull CodeEntity getOriginalEntity() {
+            return entity;
+        }
+
+        @Override
+        public <R> R accept(final @NotNull ElementAttributesVisitor<R> visitor) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
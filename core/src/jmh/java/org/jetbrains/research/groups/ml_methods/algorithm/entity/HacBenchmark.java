@@ -0,0 +1,140 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import com.intellij.core.CoreApplicationEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.metricModel.MetricsRunImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmResult;
+import org.jetbrains.research.groups.ml_methods.algorithm.HAC;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.NoRequestedMetricException;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full runs of {@link HAC#execute} on generated {@link AttributesStorage}. Input imitates
+ * a project: methods are grouped into classes and each method has a few relevant properties,
+ * mostly methods of its own group and the class of the group. Benchmark uses only public API of
+ * {@link HAC}, so the same benchmark can be run against its earlier implementations.
+ * <p>
+ * Entities are backed by fake PSI, whose methods return names, empty arrays and other fakes, in a
+ * minimal application environment. All methods are declared in one class, so that communities
+ * never suggest to move them and no refactorings, which need real PSI, are created. So the
+ * benchmark measures clustering only.
+ * <p>
+ * Benchmark is placed in this package because {@link RelevantProperties} can only be filled from
+ * here.
+ * <p>
+ * Run with {@code gradlew :core:jmh -PjmhArgs=HacBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+@State(Scope.Benchmark)
+public class HacBenchmark {
+    private static final int METHODS_PER_CLASS = 10;
+
+    private static final int PROPERTIES_PER_METHOD = 6;
+
+    @Param({"10000", "50000", "100000"})
+    public int entitiesCount;
+
+    private Disposable environment;
+
+    private AttributesStorage attributes;
+
+    private ExecutorService service;
+
+    @Setup(Level.Trial)
+    public void generateInput() throws NoRequestedMetricException {
+        environment = Disposer.newDisposable();
+        new CoreApplicationEnvironment(environment);
+
+        final Random random = new Random(239);
+        final int groupsCount = entitiesCount / METHODS_PER_CLASS;
+        final List<ClassEntity> classes = new ArrayList<>();
+        final ClassEntity declaringClass = new ClassEntity(fakePsi(PsiClass.class, "Declaring"));
+        classes.add(declaringClass);
+        for (int i = 0; i < groupsCount; i++) {
+            classes.add(new ClassEntity(fakePsi(PsiClass.class, "Group" + i)));
+        }
+
+        final List<MethodEntity> methods = new ArrayList<>();
+        for (int i = 0; i < entitiesCount; i++) {
+            methods.add(new MethodEntity(fakePsi(PsiMethod.class, "method" + i), declaringClass));
+        }
+
+        for (int i = 0; i < entitiesCount; i++) {
+            final int group = i / METHODS_PER_CLASS;
+            final RelevantProperties properties = methods.get(i).getRelevantProperties();
+            properties.addClass(classes.get(1 + group));
+            properties.addNotOverrideMethod(methods.get(i));
+            for (int j = 2; j < PROPERTIES_PER_METHOD; j++) {
+                final int propertyGroup = random.nextInt(4) == 0 ? random.nextInt(groupsCount) : group;
+                final int method = propertyGroup * METHODS_PER_CLASS + random.nextInt(METHODS_PER_CLASS);
+                properties.addNotOverrideMethod(methods.get(method));
+            }
+        }
+
+        attributes = new AttributesStorage(
+            new EntitiesStorage(classes, methods, Collections.emptyList(), 0),
+            Collections.emptyList(),
+            new MetricsRunImpl()
+        );
+        service = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose() {
+        service.shutdownNow();
+        Disposer.dispose(environment);
+    }
+
+    @Benchmark
+    public AlgorithmResult hac() {
+        return new HAC().execute(attributes, service, false);
+    }
+
+    private static <T> @NotNull T fakePsi(final @NotNull Class<T> psiClass, final @NotNull String name) {
+        return psiClass.cast(Proxy.newProxyInstance(
+            psiClass.getClassLoader(),
+            new Class<?>[] {psiClass},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        final Class<?> type = method.getReturnType();
+                        if (type == String.class) {
+                            return name;
+                        } else if (type == boolean.class) {
+                            return false;
+                        } else if (type == int.class) {
+                            return 0;
+                        } else if (type.isArray()) {
+                            return Array.newInstance(type.getComponentType(), 0);
+                        } else if (type.isInterface()) {
+                            return fakePsi(type, name);
+                        }
+                        return null;
+                }
+            }
+        ));
+    }
+}
@@ -6,10 +6,14 @@ import com.sixrr.stockmetrics.classMetrics.NumAttributesAddedMetric;
 import com.sixrr.stockmetrics.classMetrics.NumMethodsClassMetric;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.*;
-import org.jetbrains.research.groups.ml_methods.algorithm.distance.DistanceCalculator;
 import org.jetbrains.research.groups.ml_methods.algorithm.distance.RelevanceBasedDistanceCalculator;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.InvertedPropertiesIndex;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.InvertedPropertiesIndex.SharedCandidates;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.PropertiesGraph;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
 import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveFieldRefactoring;
@@ -20,15 +24,31 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ARI extends AbstractAlgorithm {
     private static final Logger LOGGER = Logging.getLogger(ARI.class);
     private static final double ACCURACY = 1;
 
-    private static final @NotNull DistanceCalculator distanceCalculator = RelevanceBasedDistanceCalculator.getInstance();
+    private static final @NotNull RelevanceBasedDistanceCalculator distanceCalculator =
+            RelevanceBasedDistanceCalculator.getInstance();
+
+    private final boolean pruneCandidates;
 
     public ARI() {
+        this(true);
+    }
+
+    /**
+     * Creates algorithm.
+     *
+     * @param pruneCandidates whether candidate classes whose distance can't affect the result
+     *                        must be skipped without full evaluation (see {@link #scorePruned}).
+     *                        Results are the same in both modes.
+     */
+    public ARI(boolean pruneCandidates) {
         super(AlgorithmType.ARI, true);
+        this.pruneCandidates = pruneCandidates;
     }
 
     @Override
@@ -37,7 +57,13 @@ public class ARI extends AbstractAlgorithm {
             private final List<ClassInnerEntityAttributes> units = new ArrayList<>();
             private final List<ClassAttributes> classAttributes = new ArrayList<>();
             private final AtomicInteger progressCount = new AtomicInteger();
+            private final AtomicInteger scoredUnits = new AtomicInteger();
+            private final AtomicLong scoredCandidates = new AtomicLong();
+            private final AtomicInteger maxCandidates = new AtomicInteger();
+            private final AtomicLong prunedCandidates = new AtomicLong();
             private ExecutionContext context;
+            private InvertedPropertiesIndex classesIndex;
+            private ThreadLocal<double[]> distancesBuffers;
 
             @NotNull
             @Override
@@ -51,8 +77,61 @@ public class ARI extends AbstractAlgorithm {
                     units.addAll(attributes.getFieldsAttributes());
                 }
                 progressCount.set(0);
+                scoredUnits.set(0);
+                scoredCandidates.set(0);
+                maxCandidates.set(0);
+                prunedCandidates.set(0);
                 this.context = context;
-                return context.runParallel(units, ArrayList<CalculatedRefactoring>::new, this::findRefactoring, AlgorithmsUtil::combineLists);
+                distancesBuffers = ThreadLocal.withInitial(() -> new double[classAttributes.size()]);
+                try (Instrumentation.Timer ignored = context.startPhase("init")) {
+                    classesIndex = buildClassesIndex(attributes.getPropertiesGraph());
+                }
+                final List<CalculatedRefactoring> refactorings =
+                        context.runParallelBalanced(units, ArrayList<CalculatedRefactoring>::new, this::findRefactoring, AlgorithmsUtil::combineLists);
+                reportCandidatesStatistics();
+                return refactorings;
+            }
+
+            private InvertedPropertiesIndex buildClassesIndex(PropertiesGraph graph) {
+                final int[] classIds = new int[classAttributes.size()];
+                for (int i = 0; i < classIds.length; i++) {
+                    classIds[i] = classAttributes.get(i).getRelevantProperties().getGraphId();
+                    if (classIds[i] == -1) {
+                        LOGGER.warn("Properties of " + classAttributes.get(i).getOriginalEntity().getIdentifier() +
+                                " are not frozen, all classes will be scored");
+                        return null;
+                    }
+                }
+                return InvertedPropertiesIndex.build(graph, classIds);
+            }
+
+            /**
+             * Returns positions of classes which must be scored for a given unit in increasing
+             * order. Distance to a class that shares no properties with the unit is infinite and
+             * such class never becomes a target or affects the gap, so only classes found through
+             * the index are returned.
+             */
+            private int[] candidateClasses(ClassInnerEntityAttributes entity) {
+                final int entityId = entity.getRelevantProperties().getGraphId();
+                if (classesIndex == null || entityId == -1) {
+                    final int[] all = new int[classAttributes.size()];
+                    Arrays.setAll(all, i -> i);
+                    return all;
+                }
+                return classesIndex.candidates(entityId);
+            }
+
+            private void reportCandidatesStatistics() {
+                final int unitsCount = scoredUnits.get();
+                final long candidatesCount = scoredCandidates.get();
+                final long exhaustiveCount = (long) unitsCount * classAttributes.size();
+                context.reportStatistic("Candidate classes per unit (mean)",
+                        unitsCount == 0 ? 0 : (double) candidatesCount / unitsCount);
+                context.reportStatistic("Candidate classes per unit (max)", maxCandidates.get());
+                context.reportStatistic("Distance calculations skipped", (exhaustiveCount - candidatesCount) + " of " + exhaustiveCount);
+                if (pruneCandidates) {
+                    context.reportStatistic("Full evaluations skipped by bounds", prunedCandidates.get() + " of " + candidatesCount);
+                }
             }
 
             private List<CalculatedRefactoring> findRefactoring(ClassInnerEntityAttributes entity, List<CalculatedRefactoring> accumulator) {
@@ -61,64 +140,171 @@ public class ARI extends AbstractAlgorithm {
                 if (!entity.getOriginalEntity().isMovable() || classAttributes.size() < 2) {
                     return accumulator;
                 }
-                double minDistance = Double.POSITIVE_INFINITY;
-                double difference = Double.POSITIVE_INFINITY;
-                ClassAttributes targetClassAttributes = null;
-                for (final ClassAttributes classAttributes : classAttributes) {
-
-                    final double distance = distanceCalculator.distance(entity, classAttributes);
-                    if (distance < minDistance) {
-                        difference = minDistance - distance;
-                        minDistance = distance;
-                        targetClassAttributes = classAttributes;
-                    } else if (distance - minDistance < difference) {
-                        difference = distance - minDistance;
-                    }
+                final int entityId = entity.getRelevantProperties().getGraphId();
+                final CalculatedRefactoring refactoring;
+                final int candidatesCount;
+                if (pruneCandidates && classesIndex != null && entityId != -1) {
+                    final SharedCandidates candidates = classesIndex.candidatesWithSharedCounts(entityId);
+                    candidatesCount = candidates.getPositions().length;
+                    refactoring = scorePruned(entity, classAttributes, candidates, prunedCandidates);
+                } else {
+                    final int[] candidates = candidateClasses(entity);
+                    candidatesCount = candidates.length;
+                    refactoring = score(entity, classAttributes, candidates, distancesBuffers.get());
                 }
-
-                if (targetClassAttributes == null) {
-                    LOGGER.warn("targetClass is null for " + entity.getOriginalEntity().getIdentifier());
-                    return accumulator;
-                }
-
-                if (!targetClassAttributes.equals(entity.getContainingClassAttributes())) {
-                    double accuracy = AlgorithmsUtil.getGapBasedAccuracyRating(minDistance, difference) * ACCURACY;
-                    PsiClass targetClass = targetClassAttributes.getOriginalClass().getPsiClass();
-
-                    accumulator.add(entity.accept(new ElementAttributesVisitor<CalculatedRefactoring>() {
-                        @Override
-                        public CalculatedRefactoring visit(final @NotNull ClassAttributes classAttributes) {
-                            throw new IllegalArgumentException("Entity is a class");
-                        }
-
-                        @Override
-                        public CalculatedRefactoring visit(final @NotNull MethodAttributes methodAttributes) {
-                            return new CalculatedRefactoring(
-                                new MoveMethodRefactoring(
-                                    methodAttributes.getOriginalMethod().getPsiMethod(),
-                                    targetClass
-                                ),
-                                accuracy
-                            );
-                        }
-
-                        @Override
-                        public CalculatedRefactoring visit(final @NotNull FieldAttributes fieldAttributes) {
-                            return new CalculatedRefactoring(
-                                new MoveFieldRefactoring(
-                                    fieldAttributes.getOriginalField().getPsiField(),
-                                    targetClass
-                                ),
-                                accuracy
-                            );
-                        }
-                    }));
+                scoredUnits.incrementAndGet();
+                scoredCandidates.addAndGet(candidatesCount);
+                maxCandidates.accumulateAndGet(candidatesCount, Math::max);
+                if (refactoring != null) {
+                    accumulator.add(refactoring);
                 }
                 return accumulator;
             }
         };
     }
 
+    /**
+     * Scores given candidate classes for a unit and suggests to move it to the closest one.
+     *
+     * @param entity unit to find refactoring for.
+     * @param classAttributes all classes.
+     * @param candidates positions of classes in {@code classAttributes} that must be scored in
+     *                   increasing order.
+     * @param distances buffer for distances to candidates, at least as long as {@code candidates}.
+     *                  Its content is overwritten, so one buffer can be reused for all units.
+     * @return suggested refactoring or {@code null} if the unit should stay where it is.
+     */
+    static @Nullable CalculatedRefactoring score(
+        final @NotNull ClassInnerEntityAttributes entity,
+        final @NotNull List<ClassAttributes> classAttributes,
+        final @NotNull int[] candidates,
+        final @NotNull double[] distances
+    ) {
+        double minDistance = Double.POSITIVE_INFINITY;
+        double difference = Double.POSITIVE_INFINITY;
+        ClassAttributes targetClassAttributes = null;
+        distanceCalculator.distances(entity, classAttributes, candidates, distances);
+        for (int i = 0; i < candidates.length; i++) {
+            final double distance = distances[i];
+            if (distance < minDistance) {
+                difference = minDistance - distance;
+                minDistance = distance;
+                targetClassAttributes = classAttributes.get(candidates[i]);
+            } else if (distance - minDistance < difference) {
+                difference = distance - minDistance;
+            }
+        }
+
+        if (targetClassAttributes == null) {
+            LOGGER.warn("targetClass is null for " + entity.getOriginalEntity().getIdentifier());
+            return null;
+        }
+
+        return suggest(entity, targetClassAttributes, minDistance, difference);
+    }
+
+    /**
+     * Does the same as {@link #score} but visits candidate classes in order of decreasing number of
+     * shared properties and skips classes whose {@link RelevanceBasedDistanceCalculator#lowerBound}
+     * is greater than the second least distance found so far. Such classes can become neither
+     * target nor runner-up, so the closest class, the least distance and the gap to the runner-up
+     * are exactly the same as computed by {@link #score}. Ties are broken in favour of class with
+     * the least position, as in {@link #score}.
+     *
+     * @param skippedEvaluations counter which is increased by the number of skipped classes.
+     */
+    static @Nullable CalculatedRefactoring scorePruned(
+        final @NotNull ClassInnerEntityAttributes entity,
+        final @NotNull List<ClassAttributes> classAttributes,
+        final @NotNull SharedCandidates candidates,
+        final @NotNull AtomicLong skippedEvaluations
+    ) {
+        final int[] positions = candidates.getPositions();
+        final int[] sharedCounts = candidates.getSharedCounts();
+        final long[] order = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            order[i] = ((long) (Integer.MAX_VALUE - sharedCounts[i]) << 32) | i;
+        }
+        Arrays.sort(order);
+
+        double minDistance = Double.POSITIVE_INFINITY;
+        double secondDistance = Double.POSITIVE_INFINITY;
+        int target = -1;
+        int skipped = 0;
+        for (long key : order) {
+            final int i = (int) key;
+            final ClassAttributes candidateAttributes = classAttributes.get(positions[i]);
+            if (secondDistance != Double.POSITIVE_INFINITY
+                    && distanceCalculator.lowerBound(entity, candidateAttributes, sharedCounts[i]) > secondDistance) {
+                skipped++;
+                continue;
+            }
+
+            final double distance = distanceCalculator.distance(entity, candidateAttributes);
+            if (distance < minDistance) {
+                secondDistance = minDistance;
+                minDistance = distance;
+                target = positions[i];
+            } else if (distance == minDistance && distance != Double.POSITIVE_INFINITY) {
+                secondDistance = distance;
+                target = Math.min(target, positions[i]);
+            } else if (distance < secondDistance) {
+                secondDistance = distance;
+            }
+        }
+        skippedEvaluations.addAndGet(skipped);
+
+        if (target == -1) {
+            LOGGER.warn("targetClass is null for " + entity.getOriginalEntity().getIdentifier());
+            return null;
+        }
+
+        return suggest(entity, classAttributes.get(target), minDistance, secondDistance - minDistance);
+    }
+
+    private static @Nullable CalculatedRefactoring suggest(
+        final @NotNull ClassInnerEntityAttributes entity,
+        final @NotNull ClassAttributes targetClassAttributes,
+        final double minDistance,
+        final double difference
+    ) {
+        if (targetClassAttributes.equals(entity.getContainingClassAttributes())) {
+            return null;
+        }
+
+        final double accuracy = AlgorithmsUtil.getGapBasedAccuracyRating(minDistance, difference) * ACCURACY;
+        final PsiClass targetClass = targetClassAttributes.getOriginalClass().getPsiClass();
+
+        return entity.accept(new ElementAttributesVisitor<CalculatedRefactoring>() {
+            @Override
+            public CalculatedRefactoring visit(final @NotNull ClassAttributes classAttributes) {
+                throw new IllegalArgumentException("Entity is a class");
+            }
+
+            @Override
+            public CalculatedRefactoring visit(final @NotNull MethodAttributes methodAttributes) {
+                return new CalculatedRefactoring(
+                    new MoveMethodRefactoring(
+                        methodAttributes.getOriginalMethod().getPsiMethod(),
+                        targetClass
+                    ),
+                    accuracy
+                );
+            }
+
+            @Override
+            public CalculatedRefactoring visit(final @NotNull FieldAttributes fieldAttributes) {
+                return new CalculatedRefactoring(
+                    new MoveFieldRefactoring(
+                        fieldAttributes.getOriginalField().getPsiField(),
+                        targetClass
+                    ),
+                    accuracy
+                );
+            }
+        });
+    }
+
     @Override
     public @NotNull List<Metric> requiredMetrics() {
         return Arrays.asList(new NumMethodsClassMetric(), new NumAttributesAddedMetric());
@@ -9,15 +9,17 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
 import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Supplier;
@@ -69,7 +71,8 @@ public abstract class AbstractAlgorithm implements Algorithm {
     public @NotNull AlgorithmResult execute(
         final @NotNull AttributesStorage attributes,
         final @Nullable ExecutorService service,
-        final boolean enableFieldRefactorings
+        final boolean enableFieldRefactorings,
+        final @NotNull Instrumentation instrumentation
     ) {
         LOGGER.info(algorithmType + " started");
         final long startTime = System.currentTimeMillis();
@@ -88,12 +91,20 @@ public abstract class AbstractAlgorithm implements Algorithm {
         final ExecutionContext context = new ExecutionContext(
             enableParallelExecution ? requireNonNull(service) : null,
             indicator,
-            attributes
+            attributes,
+            instrumentation
         );
 
         final List<CalculatedRefactoring> refactorings;
         try {
-            refactorings = setUpExecutor().execute(context, enableFieldRefactorings);
+            final Executor executor;
+            try (Instrumentation.Timer ignored = context.startPhase("setUp")) {
+                executor = setUpExecutor();
+            }
+            try (Instrumentation.Timer ignored = context.startPhase("execute")) {
+                refactorings = executor.execute(context, enableFieldRefactorings);
+            }
+            context.addItems("execute", refactorings.size());
         } catch (ProcessCanceledException e) {
             throw e;
         } catch (Exception e) {
@@ -104,7 +115,9 @@ public abstract class AbstractAlgorithm implements Algorithm {
         final long time = System.currentTimeMillis() - startTime;
         indicator.popState();
 
-        final AlgorithmResult result = new AlgorithmResult(refactorings, algorithmType, time, context.usedThreads);
+        final AlgorithmResult result =
+            new AlgorithmResult(refactorings, algorithmType, time, context.usedThreads, context.statistics,
+                    context.getWorkersBusyTime());
 
         LOGGER.info(algorithmType + " successfully finished");
         LOGGER.info(result.getReport());
@@ -143,24 +156,44 @@ public abstract class AbstractAlgorithm implements Algorithm {
      * services as parallel execution, progress report, etc.
      */
     protected final class ExecutionContext {
+        /**
+         * Number of blocks per thread values are split into by {@link #runParallelBalanced}. More
+         * blocks give better balance of skewed work at the cost of more accumulators to combine.
+         */
+        private static final int BLOCKS_PER_THREAD = 16;
+
+        /**
+         * Phase which accumulates processing of values in all parallel parts of execution. Its
+         * time is summed over worker threads.
+         */
+        private static final String PARALLEL_PHASE = "parallel";
+
         private final ExecutorService service;
 
         private final ProgressIndicator indicator;
 
         private final AttributesStorage attributes;
 
+        private final Instrumentation instrumentation;
+
         private final int preferredThreadsCount;
 
         private int usedThreads = 1; // default thread
 
+        private final Map<String, String> statistics = new LinkedHashMap<>();
+
+        private final Map<String, LongAdder> busyTime = new ConcurrentHashMap<>();
+
         private ExecutionContext(
             final ExecutorService service,
             final ProgressIndicator indicator,
-            final @NotNull AttributesStorage attributes
+            final @NotNull AttributesStorage attributes,
+            final @NotNull Instrumentation instrumentation
         ) {
             this.service = service;
             this.indicator = indicator;
             this.attributes = attributes;
+            this.instrumentation = instrumentation;
 
             preferredThreadsCount = Runtime.getRuntime().availableProcessors();
         }
@@ -180,6 +213,37 @@ public abstract class AbstractAlgorithm implements Algorithm {
             indicator.setFraction(progress);
         }
 
+        /**
+         * Starts measurement of a phase of this execution, e.g. initialization or main loop of
+         * algorithm. Name of phase is prefixed with name of algorithm. Returned timer must be
+         * closed in the same thread.
+         */
+        public @NotNull Instrumentation.Timer startPhase(final @NotNull String phase) {
+            return instrumentation.start(phaseName(phase));
+        }
+
+        /**
+         * Adds a given number of items processed in a phase of this execution.
+         */
+        public void addItems(final @NotNull String phase, final long items) {
+            instrumentation.addItems(phaseName(phase), items);
+        }
+
+        private @NotNull String phaseName(final @NotNull String phase) {
+            return getDescriptionString() + "." + phase;
+        }
+
+        /**
+         * Adds an algorithm specific statistic of this execution to {@link AlgorithmResult}. Later
+         * report with the same description overrides previous one.
+         *
+         * @param description human readable description of a value.
+         * @param value value of statistic.
+         */
+        public synchronized void reportStatistic(@NotNull String description, @NotNull Object value) {
+            statistics.put(description, String.valueOf(value));
+        }
+
         public final <A, V> A runParallel(
             List<V> values,
             Supplier<A> accumulatorFactory,
@@ -207,6 +271,75 @@ public abstract class AbstractAlgorithm implements Algorithm {
                     .orElseGet(accumulatorFactory);
         }
 
+        /**
+         * Does the same as {@link #runParallel} but balances work between threads when cost of
+         * processing of different values is very different. Values are recursively split in
+         * halves down to blocks of about {@code values.size() / (threads * }{@value #BLOCKS_PER_THREAD}{@code )}
+         * values, halves are processed as {@link ForkJoinTask}s, so idle threads steal work from
+         * busy ones. Accumulators of blocks are combined in order of values and the way values are
+         * split doesn't depend on scheduling, so result is deterministic. Tasks are executed in
+         * the service of this context if it is a {@link ForkJoinPool}, otherwise in a temporary
+         * pool.
+         */
+        public final <A, V> A runParallelBalanced(
+            List<V> values,
+            Supplier<A> accumulatorFactory,
+            BiFunction<V, A, A> processor,
+            BinaryOperator<A> combiner
+        ) {
+            if (service == null) {
+                throw new UnsupportedOperationException("Parallel execution is disabled");
+            }
+
+            if (values.isEmpty()) {
+                return accumulatorFactory.get();
+            }
+
+            final ForkJoinPool pool =
+                    service instanceof ForkJoinPool ? (ForkJoinPool) service : new ForkJoinPool(preferredThreadsCount);
+            try {
+                final int parallelism = pool.getParallelism();
+                final int blockSize = Math.max(1, values.size() / (parallelism * BLOCKS_PER_THREAD));
+                reportAdditionalThreadsUsed(Math.min(parallelism, (values.size() - 1) / blockSize + 1));
+                return getResult(pool.submit(
+                    new SplittingTask<>(values, 0, values.size(), blockSize, accumulatorFactory, processor, combiner)
+                ));
+            } finally {
+                if (pool != service) {
+                    pool.shutdownNow();
+                }
+            }
+        }
+
+        /**
+         * Returns time each worker thread spent on processing of values in parallel parts of this
+         * execution in milliseconds.
+         */
+        private @NotNull Map<String, Long> getWorkersBusyTime() {
+            final Map<String, Long> result = new TreeMap<>();
+            busyTime.forEach((worker, time) -> result.put(worker, TimeUnit.NANOSECONDS.toMillis(time.sum())));
+            return result;
+        }
+
+        private <A, V> A accumulate(
+            List<V> values,
+            Supplier<A> accumulatorFactory,
+            BiFunction<V, A, A> processor
+        ) {
+            final long startTime = System.nanoTime();
+            try (Instrumentation.Timer ignored = startPhase(PARALLEL_PHASE)) {
+                A accumulator = accumulatorFactory.get();
+                for (V value : values) {
+                    accumulator = processor.apply(value, accumulator);
+                }
+                addItems(PARALLEL_PHASE, values.size());
+                return accumulator;
+            } finally {
+                busyTime.computeIfAbsent(Thread.currentThread().getName(), it -> new LongAdder())
+                        .add(System.nanoTime() - startTime);
+            }
+        }
+
         private void reportAdditionalThreadsUsed(int count) {
             usedThreads = Math.max(usedThreads, 1 + count);
         }
@@ -252,11 +385,50 @@ public abstract class AbstractAlgorithm implements Algorithm {
             }
 
             public A call() {
-                A accumulator = accumulatorFactory.get();
-                for (V value : values) {
-                    accumulator = processor.apply(value, accumulator);
+                return accumulate(values, accumulatorFactory, processor);
+            }
+        }
+
+        private class SplittingTask<A, V> extends RecursiveTask<A> {
+            private final List<V> values;
+            private final int begin;
+            private final int end;
+            private final int blockSize;
+            private final Supplier<A> accumulatorFactory;
+            private final BiFunction<V, A, A> processor;
+            private final BinaryOperator<A> combiner;
+
+            private SplittingTask(
+                List<V> values,
+                int begin,
+                int end,
+                int blockSize,
+                Supplier<A> accumulatorFactory,
+                BiFunction<V, A, A> processor,
+                BinaryOperator<A> combiner
+            ) {
+                this.values = values;
+                this.begin = begin;
+                this.end = end;
+                this.blockSize = blockSize;
+                this.accumulatorFactory = accumulatorFactory;
+                this.processor = processor;
+                this.combiner = combiner;
+            }
+
+            @Override
+            protected A compute() {
+                if (end - begin <= blockSize) {
+                    return accumulate(values.subList(begin, end), accumulatorFactory, processor);
                 }
-                return accumulator;
+
+                final int middle = (begin + end) >>> 1;
+                final SplittingTask<A, V> right =
+                        new SplittingTask<>(values, middle, end, blockSize, accumulatorFactory, processor, combiner);
+                right.fork();
+                final A left =
+                        new SplittingTask<>(values, begin, middle, blockSize, accumulatorFactory, processor, combiner).compute();
+                return combiner.apply(left, right.join());
             }
         }
     }
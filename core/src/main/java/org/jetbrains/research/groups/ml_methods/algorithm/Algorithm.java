@@ -4,6 +4,7 @@ import com.sixrr.metrics.Metric;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -27,10 +28,24 @@ public interface Algorithm {
      *                                            "move field" refactoring.
      * @return result of algorithm execution which contains suggested refactorings.
      */
-    @NotNull AlgorithmResult execute(
+    default @NotNull AlgorithmResult execute(
         @NotNull AttributesStorage attributes,
         @Nullable ExecutorService service,
         boolean enableFieldRefactorings
+    ) {
+        return execute(attributes, service, enableFieldRefactorings, new Instrumentation());
+    }
+
+    /**
+     * Does the same as {@link #execute(AttributesStorage, ExecutorService, boolean)} but also
+     * records timings of phases of execution in a given {@link Instrumentation}. Names of phases
+     * start with {@link #getDescriptionString()}.
+     */
+    @NotNull AlgorithmResult execute(
+        @NotNull AttributesStorage attributes,
+        @Nullable ExecutorService service,
+        boolean enableFieldRefactorings,
+        @NotNull Instrumentation instrumentation
     );
 
     /**
@@ -6,7 +6,9 @@ import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.A
 import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class AlgorithmResult {
     private final List<CalculatedRefactoring> refactorings;
@@ -14,14 +16,29 @@ public class AlgorithmResult {
     private final long executionTime;
     private final int threadUsed;
     private final Exception exception;
+    private final Map<String, String> statistics;
+    private final Map<String, Long> workersBusyTime;
 
     AlgorithmResult(@NotNull List<CalculatedRefactoring> refactorings, AlgorithmType algorithmType, long executionTime,
                     int threadUsed) {
+        this(refactorings, algorithmType, executionTime, threadUsed, Collections.emptyMap());
+    }
+
+    AlgorithmResult(@NotNull List<CalculatedRefactoring> refactorings, AlgorithmType algorithmType, long executionTime,
+                    int threadUsed, @NotNull Map<String, String> statistics) {
+        this(refactorings, algorithmType, executionTime, threadUsed, statistics, Collections.emptyMap());
+    }
+
+    AlgorithmResult(@NotNull List<CalculatedRefactoring> refactorings, AlgorithmType algorithmType, long executionTime,
+                    int threadUsed, @NotNull Map<String, String> statistics,
+                    @NotNull Map<String, Long> workersBusyTime) {
         this.refactorings = refactorings;
         this.algorithmType = algorithmType;
         this.executionTime = executionTime;
         this.threadUsed = threadUsed;
         this.exception = null;
+        this.statistics = new LinkedHashMap<>(statistics);
+        this.workersBusyTime = new LinkedHashMap<>(workersBusyTime);
     }
 
     AlgorithmResult(AlgorithmType algorithmType, @NotNull Exception exception) {
@@ -30,6 +47,8 @@ public class AlgorithmResult {
         this.executionTime = 0;
         this.threadUsed = 0;
         this.exception = exception;
+        this.statistics = Collections.emptyMap();
+        this.workersBusyTime = Collections.emptyMap();
     }
 
     public List<CalculatedRefactoring> getRefactorings() {
@@ -53,14 +72,40 @@ public class AlgorithmResult {
         return exception;
     }
 
+    /**
+     * Returns algorithm specific statistics of execution (e.g. how much work was pruned) as
+     * descriptions mapped to values in order they were reported.
+     */
+    public @NotNull Map<String, String> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Returns time in milliseconds each worker thread spent on processing in parallel parts of
+     * algorithm. Large difference between workers means that work was not balanced well.
+     */
+    public @NotNull Map<String, Long> getWorkersBusyTime() {
+        return Collections.unmodifiableMap(workersBusyTime);
+    }
+
     public boolean isSuccess() {
         return exception == null;
     }
 
     public String getReport() {
-        return "Results of " + algorithmType + " running" + System.lineSeparator() +
-                "  Found " + refactorings.size() + " refactorings" + System.lineSeparator() +
-                "  Execution time: " + executionTime + System.lineSeparator() +
-                "  Threads used: " + threadUsed;
+        final StringBuilder report = new StringBuilder();
+        report.append("Results of ").append(algorithmType).append(" running").append(System.lineSeparator())
+                .append("  Found ").append(refactorings.size()).append(" refactorings").append(System.lineSeparator())
+                .append("  Execution time: ").append(executionTime).append(System.lineSeparator())
+                .append("  Threads used: ").append(threadUsed);
+        if (!workersBusyTime.isEmpty()) {
+            report.append(System.lineSeparator()).append("  Busy time of workers (ms): ")
+                    .append(workersBusyTime.values());
+        }
+        for (Map.Entry<String, String> statistic : statistics.entrySet()) {
+            report.append(System.lineSeparator())
+                    .append("  ").append(statistic.getKey()).append(": ").append(statistic.getValue());
+        }
+        return report.toString();
     }
 }
@@ -3,26 +3,49 @@ package org.jetbrains.research.groups.ml_methods.algorithm;
 import org.jetbrains.annotations.Contract;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class AlgorithmsRepository {
     private static final List<Algorithm> ALGORITHMS = Arrays.asList(
             new ARI(),
+            new ApproximateARI(),
             new CCDA(),
-            new HAC()
+            new CCDA(true),
+            new HAC(),
+            new NNChainHAC()
     );
 
+    private static final Set<AlgorithmType> DEFAULT_TYPES =
+            EnumSet.of(AlgorithmType.ARI, AlgorithmType.CCDA, AlgorithmType.HAC);
+
+    private static final List<Algorithm> DEFAULT_ALGORITHMS = ALGORITHMS.stream()
+            .filter(algorithm -> DEFAULT_TYPES.contains(algorithm.getAlgorithmType()))
+            .collect(Collectors.toList());
+
     public static Optional<Algorithm> getAlgorithmByName(String algorithmName) {
         return ALGORITHMS.stream().filter(algorithm -> algorithm.getDescriptionString().equals(algorithmName)).findAny();
     }
 
     public enum AlgorithmType {
-        ARI, CCDA, HAC
+        ARI, ARI_LSH, CCDA, CCDA_LOUVAIN, HAC, HAC_NN_CHAIN
     }
 
     @Contract(pure = true)
     public static List<Algorithm> getAvailableAlgorithms() {
         return ALGORITHMS;
     }
+
+    /**
+     * Returns algorithms that are run when user hasn't chosen any: {@link ARI}, {@link CCDA} and
+     * {@link HAC}. Their variants ({@link ApproximateARI}, {@link CCDA} with multiple moves,
+     * {@link NNChainHAC}) solve the same problems, so they are run only on request.
+     */
+    @Contract(pure = true)
+    public static List<Algorithm> getDefaultAlgorithms() {
+        return DEFAULT_ALGORITHMS;
+    }
 }
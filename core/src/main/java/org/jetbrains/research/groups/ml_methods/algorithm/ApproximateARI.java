@@ -0,0 +1,154 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import com.sixrr.metrics.Metric;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ClassAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ClassInnerEntityAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.distance.RelevanceBasedDistanceCalculator;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.MinHashIndex;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
+import org.jetbrains.research.groups.ml_methods.logging.Logging;
+import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
+import org.jetbrains.research.groups.ml_methods.utils.AlgorithmsUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate version of {@link ARI}. Candidate classes of a unit are not all classes which share
+ * a property with it but only classes retrieved from {@link MinHashIndex}, i.e. classes whose
+ * properties are similar to properties of the unit with high probability. Retrieved candidates
+ * are scored with exact {@link RelevanceBasedDistanceCalculator} the same way {@link ARI} does.
+ * So suggestions can only be lost (if the best class is not retrieved) or get a different
+ * accuracy (if the runner-up is not retrieved).
+ */
+public class ApproximateARI extends AbstractAlgorithm {
+    private static final Logger LOGGER = Logging.getLogger(ApproximateARI.class);
+
+    public static final int DEFAULT_SKETCH_SIZE = 128;
+
+    public static final int DEFAULT_BANDS_COUNT = 64;
+
+    private final int sketchSize;
+
+    private final int bandsCount;
+
+    public ApproximateARI() {
+        this(DEFAULT_SKETCH_SIZE, DEFAULT_BANDS_COUNT);
+    }
+
+    /**
+     * Creates algorithm.
+     *
+     * @param sketchSize number of elements in MinHash sketch of properties.
+     * @param bandsCount number of LSH bands sketch is split into, must divide {@code sketchSize}.
+     *                   More bands give better recall but more candidates to score.
+     */
+    public ApproximateARI(int sketchSize, int bandsCount) {
+        super(AlgorithmType.ARI_LSH, true);
+        if (sketchSize <= 0 || bandsCount <= 0 || sketchSize % bandsCount != 0) {
+            throw new IllegalArgumentException(
+                "Sketch size " + sketchSize + " can't be split into " + bandsCount + " bands"
+            );
+        }
+        this.sketchSize = sketchSize;
+        this.bandsCount = bandsCount;
+    }
+
+    public int getSketchSize() {
+        return sketchSize;
+    }
+
+    public int getBandsCount() {
+        return bandsCount;
+    }
+
+    @Override
+    public @NotNull List<Metric> requiredMetrics() {
+        return new ARI().requiredMetrics();
+    }
+
+    @Override
+    protected @NotNull Executor setUpExecutor() {
+        return new Executor() {
+            private final List<ClassInnerEntityAttributes> units = new ArrayList<>();
+            private final List<ClassAttributes> classAttributes = new ArrayList<>();
+            private final AtomicInteger progressCount = new AtomicInteger();
+            private final AtomicInteger unitsWithoutCandidates = new AtomicInteger();
+            private final AtomicLong scoredCandidates = new AtomicLong();
+            private ExecutionContext context;
+            private MinHashIndex classesIndex;
+            private ThreadLocal<double[]> distancesBuffers;
+
+            @Override
+            public @NotNull List<CalculatedRefactoring> execute(
+                final @NotNull ExecutionContext context,
+                final boolean enableFieldRefactorings
+            ) throws Exception {
+                final AttributesStorage attributes = context.getAttributesStorage();
+                classAttributes.addAll(attributes.getClassesAttributes());
+                units.addAll(attributes.getMethodsAttributes());
+                if (enableFieldRefactorings) {
+                    units.addAll(attributes.getFieldsAttributes());
+                }
+                this.context = context;
+                distancesBuffers = ThreadLocal.withInitial(() -> new double[classAttributes.size()]);
+
+                final int[] classIds = new int[classAttributes.size()];
+                for (int i = 0; i < classIds.length; i++) {
+                    classIds[i] = classAttributes.get(i).getRelevantProperties().getGraphId();
+                    if (classIds[i] == -1) {
+                        throw new IllegalStateException("Properties of " +
+                                classAttributes.get(i).getOriginalEntity().getIdentifier() + " are not frozen");
+                    }
+                }
+
+                final long startTime = System.currentTimeMillis();
+                LOGGER.info("Building MinHash index of " + classIds.length + " classes");
+                try (Instrumentation.Timer ignored = context.startPhase("init")) {
+                    classesIndex = MinHashIndex.build(attributes.getPropertiesGraph(), classIds, sketchSize, bandsCount);
+                }
+                context.reportStatistic("MinHash index build time (ms)", System.currentTimeMillis() - startTime);
+                context.reportStatistic("Sketch size", sketchSize);
+                context.reportStatistic("Bands", bandsCount);
+
+                final List<CalculatedRefactoring> refactorings =
+                        context.runParallelBalanced(units, ArrayList<CalculatedRefactoring>::new, this::findRefactoring, AlgorithmsUtil::combineLists);
+                context.reportStatistic("Candidate classes per unit (mean)",
+                        units.isEmpty() ? 0 : (double) scoredCandidates.get() / units.size());
+                context.reportStatistic("Units without candidates", unitsWithoutCandidates.get());
+                return refactorings;
+            }
+
+            private List<CalculatedRefactoring> findRefactoring(
+                final @NotNull ClassInnerEntityAttributes entity,
+                final @NotNull List<CalculatedRefactoring> accumulator
+            ) {
+                context.reportProgress((double) progressCount.incrementAndGet() / units.size());
+                context.checkCanceled();
+                if (!entity.getOriginalEntity().isMovable() || classAttributes.size() < 2) {
+                    return accumulator;
+                }
+
+                final int entityId = entity.getRelevantProperties().getGraphId();
+                final int[] candidates = entityId == -1 ? new int[0] : classesIndex.candidates(entityId);
+                scoredCandidates.addAndGet(candidates.length);
+                if (candidates.length == 0) {
+                    unitsWithoutCandidates.incrementAndGet();
+                    return accumulator;
+                }
+
+                final CalculatedRefactoring refactoring = ARI.score(entity, classAttributes, candidates, distancesBuffers.get());
+                if (refactoring != null) {
+                    accumulator.add(refactoring);
+                }
+                return accumulator;
+            }
+        };
+    }
+}
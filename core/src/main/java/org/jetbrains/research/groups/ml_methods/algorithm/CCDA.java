@@ -10,6 +10,7 @@ import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesS
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ClassAttributes;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ClassInnerEntityAttributes;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.*;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
 import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveFieldRefactoring;
@@ -25,9 +26,25 @@ public class CCDA extends AbstractAlgorithm {
     private static final Logger LOGGER = Logging.getLogger(CCDA.class);
     private static final double ACCURACY = 1;
 
+    private final boolean multipleMoves;
+
     public CCDA() {
-        super(AlgorithmType.CCDA, true);
+        this(false);
+    }
 
+    /**
+     * Creates algorithm.
+     *
+     * @param multipleMoves {@code false} if only the best move should be applied on each
+     *                      iteration, {@code true} if every iteration should apply as many
+     *                      non-conflicting moves with positive quality delta as possible
+     *                      (Louvain-style). The latter mode is registered as a separate
+     *                      {@link AlgorithmType} so that the final quality reported by both modes
+     *                      can be compared.
+     */
+    public CCDA(boolean multipleMoves) {
+        super(multipleMoves ? AlgorithmType.CCDA_LOUVAIN : AlgorithmType.CCDA, true);
+        this.multipleMoves = multipleMoves;
     }
 
     @Override
@@ -37,60 +54,110 @@ public class CCDA extends AbstractAlgorithm {
 
     @Override
     protected @NotNull AbstractAlgorithm.Executor setUpExecutor() {
-        return new Executor();
+        return new Executor(multipleMoves);
     }
 
     private static class Executor implements AbstractAlgorithm.Executor {
         private final Map<CodeEntity, Integer> communityIds = new HashMap<>();
-        private final Map<CodeEntity, Integer> entityCommunities = new HashMap<>();
         private final List<ClassEntity> idCommunity = new ArrayList<>();
-        private final List<Integer> aCoefficients = new ArrayList<>();
         private final List<ClassInnerEntity> nodes = new ArrayList<>();
+        private final List<Integer> nodeIds = new ArrayList<>();
         private final Map<ClassInnerEntity, Set<ClassInnerEntity>> graph = new HashMap<>();
+        private final boolean multipleMoves;
         private ExecutionContext context;
 
+        /** Community of each node. Communities are numbered from {@code 1}. */
+        private int[] nodeCommunities;
+
+        /** Number of edge ends in each community, edges inside community are counted once. */
+        private int[] aCoefficients;
+
+        private int[] adjacencyOffsets;
+        private int[] adjacency;
+
+        /**
+         * Communities of neighbors of each node and numbers of neighbors in them. Entries of a node
+         * occupy the beginning of its range of indices of {@link #adjacency}, their number is stored in
+         * {@link #neighborCommunitiesCount}. Entries are updated on every move.
+         */
+        private int[] neighborCommunities;
+        private int[] neighborCounts;
+        private int[] neighborCommunitiesCount;
+
         private double quality;
         private double edges;
         private static final double eps = 5e-4;
 
+        private Executor(boolean multipleMoves) {
+            this.multipleMoves = multipleMoves;
+        }
+
         @Override
         public @NotNull List<CalculatedRefactoring> execute(
             final @NotNull ExecutionContext context,
             final boolean enableFieldRefactorings
         ) throws Exception {
             this.context = context;
-            init();
+            try (Instrumentation.Timer ignored = context.startPhase("init")) {
+                init();
+            }
             final Map<ClassInnerEntity, ClassEntity> refactorings = new HashMap<>();
             context.checkCanceled();
             quality = calculateQualityIndex();
+            final double initialQuality = quality;
             double progress = 0;
+            int iterations = 0;
+            int moves = 0;
             while (true) {
-                final Holder optimum = context.runParallel(nodes, Holder::new, this::attempt, this::max);
-                if (optimum.delta <= eps) {
+                final List<Move> applicable;
+                if (multipleMoves) {
+                    applicable = selectNonConflicting(
+                        context.runParallel(nodeIds, Candidates::new, this::collectCandidate, Candidates::combine).moves
+                    );
+                } else {
+                    final Holder optimum = context.runParallel(nodeIds, Holder::new, this::attempt, this::max);
+                    applicable = optimum.delta <= eps
+                        ? Collections.emptyList()
+                        : Collections.singletonList(new Move(optimum.node, optimum.community, optimum.delta));
+                }
+                if (applicable.isEmpty()) {
                     break;
                 }
-                refactorings.put(optimum.targetEntity, idCommunity.get(optimum.community - 1));
-                move(optimum.targetEntity, optimum.community, false);
-                communityIds.put(optimum.targetEntity, optimum.community);
-                entityCommunities.put(optimum.targetEntity, optimum.community);
-                progress = Math.max(progress, eps / optimum.delta);
+
+                for (Move move : applicable) {
+                    refactorings.put(nodes.get(move.node), idCommunity.get(move.community - 1));
+                    move(move.node, move.community);
+                }
+                iterations++;
+                moves += applicable.size();
+                final double delta = applicable.get(0).delta;
+                progress = Math.max(progress, eps / delta);
                 context.reportProgress(0.1 + 0.9 * progress);
-                LOGGER.info("Finish iteration. Current quality is " + quality + " (delta is " + optimum.delta + ")");
+                LOGGER.info("Finish iteration. Current quality is " + quality + " (delta is " + delta
+                        + ", moves applied: " + applicable.size() + ")");
                 context.checkCanceled();
             }
 
-            final Map<Integer, List<CodeEntity>> entities = entityCommunities.entrySet().stream()
-                    .collect(Collectors.groupingBy(Map.Entry::getValue))
-                    .entrySet()
-                    .stream()
-                    .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().stream().map(Map.Entry::getKey).collect(Collectors.toList())));
+            context.reportStatistic("Iterations", iterations);
+            context.reportStatistic("Moves applied", moves);
+            context.reportStatistic("Quality (initial)", initialQuality);
+            context.reportStatistic("Quality (final)", quality);
+
+            final Map<Integer, List<CodeEntity>> entities = new HashMap<>();
+            for (int i = 1; i <= idCommunity.size(); ++i) {
+                final List<CodeEntity> members = new ArrayList<>();
+                members.add(idCommunity.get(i - 1));
+                entities.put(i, members);
+            }
+            for (int node = 0; node < nodes.size(); node++) {
+                entities.get(nodeCommunities[node]).add(nodes.get(node));
+            }
 
             final Map<Integer, Map.Entry<ClassEntity, Long>> dominants = entities.entrySet().stream()
                     .collect(Collectors.toMap(
                             Map.Entry::getKey,
                             e -> AlgorithmsUtil.getDominantClass(e.getValue()))
                     );
-
             return refactorings.entrySet().stream()
                     .map(entry -> {
                         int id = communityIds.get(entry.getValue());
@@ -135,22 +202,24 @@ public class CCDA extends AbstractAlgorithm {
             final AttributesStorage entities = context.getAttributesStorage();
             LOGGER.info("Init CCDA");
             communityIds.clear();
-            entityCommunities.clear();
             idCommunity.clear();
             nodes.clear();
-            aCoefficients.clear();
+            nodeIds.clear();
             quality = 0.0;
             entities.getClassesAttributes().stream().map(ClassAttributes::getOriginalClass)
                     .peek(entity -> communityIds.put(entity, communityIds.size() + 1))
-                    .peek(entity -> entityCommunities.put(entity, communityIds.get(entity)))
                     .forEach(idCommunity::add);
             Stream.of(entities.getFieldsAttributes(), entities.getMethodsAttributes())
                     .flatMap(List::stream).map(ClassInnerEntityAttributes::getClassInnerEntity)
                     .filter(entity -> communityIds.containsKey(entity.getContainingClass()))
                     .peek(entity -> communityIds.put(entity, communityIds.get(entity.getContainingClass())))
-                    .peek(entity -> entityCommunities.put(entity, communityIds.get(entity.getContainingClass())))
                     .forEach(nodes::add);
-            aCoefficients.addAll(Collections.nCopies(idCommunity.size() + 1, 0));
+            nodeCommunities = new int[nodes.size()];
+            for (int node = 0; node < nodes.size(); node++) {
+                nodeIds.add(node);
+                nodeCommunities[node] = communityIds.get(nodes.get(node));
+            }
+            aCoefficients = new int[idCommunity.size() + 1];
             buildGraph();
         }
 
@@ -174,6 +243,73 @@ public class CCDA extends AbstractAlgorithm {
                 iteration++;
                 context.reportProgress((0.1 * iteration) / nodes.size());
             }
+
+            final Map<ClassInnerEntity, Integer> nodeIndices = new HashMap<>();
+            for (int node = 0; node < nodes.size(); node++) {
+                nodeIndices.put(nodes.get(node), node);
+            }
+            adjacencyOffsets = new int[nodes.size() + 1];
+            for (int node = 0; node < nodes.size(); node++) {
+                adjacencyOffsets[node + 1] = adjacencyOffsets[node] + graph.get(nodes.get(node)).size();
+            }
+            adjacency = new int[adjacencyOffsets[nodes.size()]];
+            for (int node = 0; node < nodes.size(); node++) {
+                int pointer = adjacencyOffsets[node];
+                for (ClassInnerEntity neighbor : graph.get(nodes.get(node))) {
+                    adjacency[pointer++] = nodeIndices.get(neighbor);
+                }
+            }
+            graph.clear();
+
+            neighborCommunities = new int[adjacency.length];
+            neighborCounts = new int[adjacency.length];
+            neighborCommunitiesCount = new int[nodes.size()];
+            for (int node = 0; node < nodes.size(); node++) {
+                for (int i = adjacencyOffsets[node]; i < adjacencyOffsets[node + 1]; i++) {
+                    addNeighbor(node, nodeCommunities[adjacency[i]]);
+                }
+            }
+        }
+
+        private void addNeighbor(int node, int community) {
+            final int start = adjacencyOffsets[node];
+            final int end = start + neighborCommunitiesCount[node];
+            for (int i = start; i < end; i++) {
+                if (neighborCommunities[i] == community) {
+                    neighborCounts[i]++;
+                    return;
+                }
+            }
+            neighborCommunities[end] = community;
+            neighborCounts[end] = 1;
+            neighborCommunitiesCount[node]++;
+        }
+
+        private void removeNeighbor(int node, int community) {
+            final int start = adjacencyOffsets[node];
+            final int last = start + neighborCommunitiesCount[node] - 1;
+            for (int i = start; i <= last; i++) {
+                if (neighborCommunities[i] == community) {
+                    if (--neighborCounts[i] == 0) {
+                        neighborCommunities[i] = neighborCommunities[last];
+                        neighborCounts[i] = neighborCounts[last];
+                        neighborCommunitiesCount[node]--;
+                    }
+                    return;
+                }
+            }
+            throw new IllegalStateException("Node has no neighbors in community " + community);
+        }
+
+        private int countNeighbors(int node, int community) {
+            final int start = adjacencyOffsets[node];
+            final int end = start + neighborCommunitiesCount[node];
+            for (int i = start; i < end; i++) {
+                if (neighborCommunities[i] == community) {
+                    return neighborCounts[i];
+                }
+            }
+            return 0;
         }
 
         private void addNode(ClassInnerEntity entityName, ClassInnerEntity entity, Collection<ClassInnerEntity> neighbors) {
@@ -185,111 +321,181 @@ public class CCDA extends AbstractAlgorithm {
                     .add(entity);
         }
 
-        private Holder attempt(ClassInnerEntity entity, Holder optimum) {
-            final int currentCommunityID = communityIds.get(entity);
+        private Holder attempt(Integer node, Holder optimum) {
+            final int currentCommunityID = nodeCommunities[node];
+            optimum.countNeighbors(node);
             for (int i = 1; i <= idCommunity.size(); ++i) {
                 if (i == currentCommunityID) {
                     continue;
                 }
-                final double delta = move(entity, i, true);
+                final double delta = delta(
+                    node,
+                    i,
+                    optimum.neighborsInCommunity[currentCommunityID],
+                    optimum.neighborsInCommunity[i]
+                );
                 if (delta >= optimum.delta) {
                     optimum.delta = delta;
-                    optimum.targetEntity = entity;
+                    optimum.node = node;
                     optimum.community = i;
                 }
             }
+            optimum.clearNeighbors(node);
             context.checkCanceled();
             return optimum;
         }
 
         private class Holder {
             private double delta = 0;
-            private ClassInnerEntity targetEntity;
+            private int node = -1;
             private int community = -1;
+
+            /** Number of neighbors of a node being processed in each community. */
+            private final int[] neighborsInCommunity = new int[idCommunity.size() + 1];
+
+            private void countNeighbors(int node) {
+                final int start = adjacencyOffsets[node];
+                for (int i = start; i < start + neighborCommunitiesCount[node]; i++) {
+                    neighborsInCommunity[neighborCommunities[i]] = neighborCounts[i];
+                }
+            }
+
+            private void clearNeighbors(int node) {
+                final int start = adjacencyOffsets[node];
+                for (int i = start; i < start + neighborCommunitiesCount[node]; i++) {
+                    neighborsInCommunity[neighborCommunities[i]] = 0;
+                }
+            }
         }
 
         private Holder max(Holder first, Holder second) {
             return first.delta >= second.delta ? first : second;
         }
 
-        private double move(ClassInnerEntity ent, int to, boolean rollback) {
-            final int from = communityIds.get(ent);
-            double dq = 0.0;
-            dq += Math.pow(aCoefficients.get(from) * 1.0 / edges, 2.0);
-            dq += Math.pow(aCoefficients.get(to) * 1.0 / edges, 2.0);
+        /**
+         * Finds the best move of a node the same way as {@link #attempt} does and keeps it if it
+         * improves quality.
+         */
+        private Candidates collectCandidate(Integer node, Candidates candidates) {
+            final Holder optimum = candidates.holder;
+            optimum.delta = 0;
+            attempt(node, optimum);
+            if (optimum.delta > eps) {
+                candidates.moves.add(new Move(optimum.node, optimum.community, optimum.delta));
+            }
+            return candidates;
+        }
 
-            int aFrom = 0;
-            int aTo = 0;
-            int de = 0;
+        private class Candidates {
+            private final Holder holder = new Holder();
+            private final List<Move> moves = new ArrayList<>();
 
-            for (ClassInnerEntity neighbor : graph.get(ent)) {
-                if (communityIds.get(neighbor) == from) {
-                    de--;
-                } else {
-                    aFrom++;
-                }
+            private Candidates combine(Candidates other) {
+                moves.addAll(other.moves);
+                return this;
+            }
+        }
 
-                if (communityIds.get(neighbor) == to) {
-                    de++;
-                } else {
-                    aTo++;
+        /**
+         * Greedily selects moves with the largest deltas such that no two selected moves touch
+         * adjacent nodes or the same community. Delta of a move depends only on coefficients of
+         * its source and target communities and on communities of neighbors of the moved node,
+         * so selected moves don't affect each other and deltas of them are simply summed up.
+         */
+        private List<Move> selectNonConflicting(List<Move> candidates) {
+            candidates.sort(Comparator.comparingDouble((Move move) -> -move.delta).thenComparingInt(move -> move.node));
+            final boolean[] lockedNodes = new boolean[nodes.size()];
+            final boolean[] lockedCommunities = new boolean[idCommunity.size() + 1];
+            final List<Move> selected = new ArrayList<>();
+            for (Move move : candidates) {
+                final int from = nodeCommunities[move.node];
+                if (lockedNodes[move.node] || lockedCommunities[from] || lockedCommunities[move.community]) {
+                    continue;
                 }
+                selected.add(move);
+                lockedNodes[move.node] = true;
+                for (int i = adjacencyOffsets[move.node]; i < adjacencyOffsets[move.node + 1]; i++) {
+                    lockedNodes[adjacency[i]] = true;
+                }
+                lockedCommunities[from] = true;
+                lockedCommunities[move.community] = true;
             }
+            return selected;
+        }
 
-            aFrom = aCoefficients.get(from) - aFrom;
-            aTo = aCoefficients.get(to) + aTo;
+        private static class Move {
+            private final int node;
+            private final int community;
+            private final double delta;
 
-            if (!rollback) {
-                aCoefficients.set(from, aFrom);
-                aCoefficients.set(to, aTo);
+            private Move(int node, int community, double delta) {
+                this.node = node;
+                this.community = community;
+                this.delta = delta;
             }
+        }
 
+        /**
+         * Returns change of quality if a given node is moved to a given community.
+         *
+         * @param inFrom number of neighbors of the node in its current community.
+         * @param inTo number of neighbors of the node in target community.
+         */
+        private double delta(int node, int to, int inFrom, int inTo) {
+            final int from = nodeCommunities[node];
+            final int degree = adjacencyOffsets[node + 1] - adjacencyOffsets[node];
+            final int aFrom = aCoefficients[from] - (degree - inFrom);
+            final int aTo = aCoefficients[to] + (degree - inTo);
+            final int de = inTo - inFrom;
+
+            double dq = 0.0;
+            dq += Math.pow(aCoefficients[from] * 1.0 / edges, 2.0);
+            dq += Math.pow(aCoefficients[to] * 1.0 / edges, 2.0);
             dq += (double) de * 1.0 / edges;
             dq -= Math.pow((double) aFrom * 1.0 / edges, 2.0);
             dq -= Math.pow((double) aTo * 1.0 / edges, 2.0);
+            return dq;
+        }
 
-            if (!rollback) {
-                quality += dq;
+        private void move(int node, int to) {
+            final int from = nodeCommunities[node];
+            final int degree = adjacencyOffsets[node + 1] - adjacencyOffsets[node];
+            final int inFrom = countNeighbors(node, from);
+            final int inTo = countNeighbors(node, to);
+
+            quality += delta(node, to, inFrom, inTo);
+            aCoefficients[from] -= degree - inFrom;
+            aCoefficients[to] += degree - inTo;
+            nodeCommunities[node] = to;
+            for (int i = adjacencyOffsets[node]; i < adjacencyOffsets[node + 1]; i++) {
+                removeNeighbor(adjacency[i], from);
+                addNeighbor(adjacency[i], to);
             }
-
-            return dq;
         }
 
         private double calculateQualityIndex() {
             double qualityIndex = 0.0;
 
-            edges = 0.0;
-            for (ClassInnerEntity node : graph.keySet()) {
-                edges += (double) graph.get(node).size();
-            }
-            edges /= 2.0;
-
-            for (int i = 1; i <= idCommunity.size(); ++i) {
-                final ClassEntity community = idCommunity.get(i - 1);
-                int e = 0;
-                int a = 0;
-
-                for (ClassInnerEntity node : graph.keySet()) {
-                    if (!communityIds.containsKey(node)) {
-                        LOGGER.warn("ERROR: unknown community: " + node);
-                    }
-
-                    if (!communityIds.get(node).equals(communityIds.get(community))) {
-                        continue;
-                    }
-                    for (ClassInnerEntity neighbor : graph.get(node)) {
-                        if (communityIds.get(neighbor).equals(communityIds.get(community))) {
-                            e++;
-                        } else {
-                            a++;
-                        }
+            edges = (double) adjacency.length / 2.0;
+
+            final int[] e = new int[idCommunity.size() + 1];
+            final int[] a = new int[idCommunity.size() + 1];
+            for (int node = 0; node < nodes.size(); node++) {
+                final int community = nodeCommunities[node];
+                for (int i = adjacencyOffsets[node]; i < adjacencyOffsets[node + 1]; i++) {
+                    if (nodeCommunities[adjacency[i]] == community) {
+                        e[community]++;
+                    } else {
+                        a[community]++;
                     }
                 }
+            }
 
-                e /= 2;
-                a += e;
-                qualityIndex += ((double) e * 1.0 / edges) - Math.pow((double) a * 1.0 / edges, 2.0);
-                aCoefficients.set(i, a);
+            for (int i = 1; i <= idCommunity.size(); ++i) {
+                e[i] /= 2;
+                a[i] += e[i];
+                qualityIndex += ((double) e[i] * 1.0 / edges) - Math.pow((double) a[i] * 1.0 / edges, 2.0);
+                aCoefficients[i] = a[i];
             }
 
             return qualityIndex;
@@ -6,20 +6,24 @@ import com.sixrr.stockmetrics.classMetrics.NumAttributesAddedMetric;
 import com.sixrr.stockmetrics.classMetrics.NumMethodsClassMetric;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.*;
 import org.jetbrains.research.groups.ml_methods.algorithm.distance.DistanceCalculator;
 import org.jetbrains.research.groups.ml_methods.algorithm.distance.RelevanceBasedDistanceCalculator;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.InvertedPropertiesIndex;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.PropertiesGraph;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
 import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveFieldRefactoring;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveMethodRefactoring;
 import org.jetbrains.research.groups.ml_methods.utils.AlgorithmsUtil;
+import org.jetbrains.research.groups.ml_methods.utils.IndexedPairHeap;
 
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import static org.jetbrains.research.groups.ml_methods.utils.AlgorithmsUtil.getDensityBasedAccuracyRating;
@@ -30,8 +34,24 @@ public class HAC extends AbstractAlgorithm {
 
     private static final @NotNull DistanceCalculator distanceCalculator = RelevanceBasedDistanceCalculator.getInstance();
 
+    private final boolean sparseInitialization;
+
     public HAC() {
+        this(true);
+    }
+
+    /**
+     * Creates algorithm.
+     *
+     * @param sparseInitialization {@code true} if initial pairs of communities should be
+     *                             generated only from entities that share at least one relevant
+     *                             property, {@code false} if all pairs should be scanned. Both
+     *                             modes produce the same result since distance between entities
+     *                             without common properties is infinite.
+     */
+    public HAC(boolean sparseInitialization) {
         super(AlgorithmType.HAC, true);
+        this.sparseInitialization = sparseInitialization;
     }
 
     @Override
@@ -41,101 +61,125 @@ public class HAC extends AbstractAlgorithm {
 
     @Override
     protected @NotNull Executor setUpExecutor() {
-        return new HACExecutor();
+        return new HACExecutor(sparseInitialization);
+    }
+
+    /**
+     * Suggests to move every entity of a community to the class that dominates this community.
+     */
+    static void addRefactorings(
+            final int communityId,
+            final @NotNull List<ElementAttributes> entities,
+            final boolean enableFieldRefactorings,
+            final @NotNull List<CalculatedRefactoring> refactorings
+    ) {
+        final int entitiesCount = entities.size();
+        if (entitiesCount == 0) {
+            return;
+        }
+        final Entry<ClassAttributes, Long> dominantClass = AlgorithmsUtil.getDominantClassForAttributes(entities);
+        final ClassAttributes classAttributes = dominantClass.getKey();
+
+        LOGGER.info("Generate class name for community (id = " + communityId +"): " + classAttributes.getOriginalClass().getIdentifier());
+        for (ElementAttributes entity : entities) {
+            if (!(entity instanceof ClassInnerEntityAttributes)) {
+                continue;
+            }
+
+            ClassInnerEntityAttributes attributes = (ClassInnerEntityAttributes) entity;
+
+            if (!attributes.getContainingClassAttributes().equals(classAttributes)) {
+                double accuracy = getDensityBasedAccuracyRating(dominantClass.getValue(), entitiesCount) * ACCURACY;
+                PsiClass targetClass = classAttributes.getOriginalClass().getPsiClass();
+
+                attributes.accept(new ElementAttributesVisitor<Void>() {
+                    @Override
+                    public Void visit(@NotNull ClassAttributes classAttributes) {
+                        throw new IllegalStateException("Unexpected ClassAttributes");
+                    }
+
+                    @Override
+                    public Void visit(@NotNull MethodAttributes methodAttributes) {
+                        refactorings.add(new CalculatedRefactoring(
+                            new MoveMethodRefactoring(
+                                methodAttributes.getOriginalMethod().getPsiMethod(),
+                                targetClass
+                            ),
+                            accuracy
+                        ));
+
+                        return null;
+                    }
+
+                    @Override
+                    public Void visit(@NotNull FieldAttributes fieldAttributes) {
+                        if (enableFieldRefactorings) {
+                            refactorings.add(new CalculatedRefactoring(
+                                new MoveFieldRefactoring(
+                                    fieldAttributes.getOriginalField().getPsiField(),
+                                    targetClass
+                                ),
+                                accuracy
+                            ));
+                        }
+
+                        return null;
+                    }
+                });
+            }
+        }
     }
 
     private static class HACExecutor implements Executor {
-        private final SortedSet<Triple> heap = new TreeSet<>();
-        private final Map<Long, Triple> triples = new HashMap<>();
         private final Set<Community> communities = new HashSet<>();
+        private final List<Community> communitiesById = new ArrayList<>();
+        private IndexedPairHeap heap = new IndexedPairHeap(0);
         private final AtomicInteger progressCounter = new AtomicInteger();
+        private final AtomicLong evaluatedPairs = new AtomicLong();
+        private final boolean sparseInitialization;
         private ExecutionContext context;
         private int idGenerator = 0;
+        private List<Community> orderedCommunities;
+        private int[] communityRanks;
+        private InvertedPropertiesIndex communitiesIndex;
+
+        private HACExecutor(boolean sparseInitialization) {
+            this.sparseInitialization = sparseInitialization;
+        }
 
         @Override
         public @NotNull List<CalculatedRefactoring> execute(
                 final @NotNull ExecutionContext context,
                 final boolean enableFieldRefactorings
         ) throws Exception {
-            init(context);
+            try (Instrumentation.Timer ignored = context.startPhase("init")) {
+                init(context);
+            }
             final int initialCommunitiesCount = communities.size();
             while (!heap.isEmpty()) {
-                final Triple minTriple = heap.first();
-                invalidateTriple(minTriple);
-                final Community first = minTriple.first;
-                final Community second = minTriple.second;
+                final Community first = communitiesById.get(heap.peekFirst());
+                final Community second = communitiesById.get(heap.peekSecond());
+                heap.poll();
                 mergeCommunities(first, second);
                 context.reportProgress(1 - 0.1 * communities.size() / initialCommunitiesCount);
                 context.checkCanceled();
             }
 
+            context.reportStatistic("Communities", communities.size());
             final List<CalculatedRefactoring> refactorings = new ArrayList<>();
             for (Community community : communities) {
-                final int entitiesCount = community.entities.size();
-                if (entitiesCount == 0) {
-                    continue;
-                }
-                final Entry<ClassAttributes, Long> dominantClass = AlgorithmsUtil.getDominantClassForAttributes(community.entities);
-                final ClassAttributes classAttributes = dominantClass.getKey();
-
-                LOGGER.info("Generate class name for community (id = " + community.id +"): " + classAttributes.getOriginalClass().getIdentifier());
-                for (ElementAttributes entity : community.entities) {
-                    if (!(entity instanceof ClassInnerEntityAttributes)) {
-                        continue;
-                    }
-
-                    ClassInnerEntityAttributes attributes = (ClassInnerEntityAttributes) entity;
-
-                    if (!attributes.getContainingClassAttributes().equals(classAttributes)) {
-                        double accuracy = getDensityBasedAccuracyRating(dominantClass.getValue(), entitiesCount) * ACCURACY;
-                        PsiClass targetClass = classAttributes.getOriginalClass().getPsiClass();
-
-                        attributes.accept(new ElementAttributesVisitor<Void>() {
-                            @Override
-                            public Void visit(@NotNull ClassAttributes classAttributes) {
-                                throw new IllegalStateException("Unexpected ClassAttributes");
-                            }
-
-                            @Override
-                            public Void visit(@NotNull MethodAttributes methodAttributes) {
-                                refactorings.add(new CalculatedRefactoring(
-                                    new MoveMethodRefactoring(
-                                        methodAttributes.getOriginalMethod().getPsiMethod(),
-                                        targetClass
-                                    ),
-                                    accuracy
-                                ));
-
-                                return null;
-                            }
-
-                            @Override
-                            public Void visit(@NotNull FieldAttributes fieldAttributes) {
-                                if (enableFieldRefactorings) {
-                                    refactorings.add(new CalculatedRefactoring(
-                                        new MoveFieldRefactoring(
-                                            fieldAttributes.getOriginalField().getPsiField(),
-                                            targetClass
-                                        ),
-                                        accuracy
-                                    ));
-                                }
-
-                                return null;
-                            }
-                        });
-                    }
-                }
+                addRefactorings(community.id, community.entities, enableFieldRefactorings, refactorings);
             }
-            Triple.clearPool();
+            heap = new IndexedPairHeap(0);
+            communitiesById.clear();
             return refactorings;
         }
 
         private void init(ExecutionContext context) {
             LOGGER.info("Init HAC");
             this.context = context;
-            heap.clear();
             communities.clear();
+            communitiesById.clear();
             idGenerator = 0;
             progressCounter.set(0);
             final AttributesStorage entities = context.getAttributesStorage();
@@ -145,23 +189,86 @@ public class HAC extends AbstractAlgorithm {
                     .forEach(communities::add);
             final List<Community> communitiesAsList = new ArrayList<>(communities);
             Collections.shuffle(communitiesAsList);
-            final List<Triple> toInsert =
-                    context.runParallel(communitiesAsList, ArrayList::new, this::findTriples, AlgorithmsUtil::combineLists);
+            evaluatedPairs.set(0);
+            final List<Triple> toInsert;
+            if (sparseInitialization && buildCommunitiesIndex(entities.getPropertiesGraph())) {
+                toInsert = context.runParallelBalanced(communitiesAsList, ArrayList::new, this::findTriplesSparse, AlgorithmsUtil::combineLists);
+            } else {
+                toInsert = context.runParallelBalanced(communitiesAsList, ArrayList::new, this::findTriples, AlgorithmsUtil::combineLists);
+            }
+            orderedCommunities = null;
+            communityRanks = null;
+            communitiesIndex = null;
+            heap = new IndexedPairHeap(toInsert.size());
             toInsert.forEach(this::insertTriple);
+            final long allPairs = (long) communities.size() * (communities.size() - 1) / 2;
+            context.reportStatistic("Initial pairs pruned", (allPairs - evaluatedPairs.get()) + " of " + allPairs);
             LOGGER.info("Built heap (" + heap.size() + " triples)");
         }
 
+        /**
+         * Builds inverted index over properties of singleton communities. Communities are
+         * numbered in the iteration order of {@link #communities}, so that sparse initialization
+         * orients every pair exactly as the full scan does.
+         *
+         * @return {@code false} if index can't be built and full scan must be used instead.
+         */
+        private boolean buildCommunitiesIndex(PropertiesGraph graph) {
+            orderedCommunities = new ArrayList<>(communities);
+            communityRanks = new int[idGenerator];
+            final int[] entityIds = new int[orderedCommunities.size()];
+            for (int rank = 0; rank < entityIds.length; rank++) {
+                final Community community = orderedCommunities.get(rank);
+                communityRanks[community.id] = rank;
+                entityIds[rank] = community.entities.get(0).getRelevantProperties().getGraphId();
+                if (entityIds[rank] == -1) {
+                    LOGGER.warn("Properties are not frozen, full scan of pairs will be used");
+                    return false;
+                }
+            }
+            communitiesIndex = InvertedPropertiesIndex.build(graph, entityIds);
+            return true;
+        }
+
         private List<Triple> findTriples(Community community, List<Triple> accumulator) {
             final ElementAttributes representative = community.entities.get(0);
+            long evaluated = 0;
             for (Community another : communities) {
                 if (another == community) {
                     break;
                 }
+                evaluated++;
                 final double distance = distanceCalculator.distance(representative, another.entities.get(0));
                 if (distance < 1) {
                     accumulator.add(new Triple(distance, community, another));
                 }
             }
+            evaluatedPairs.addAndGet(evaluated);
+            context.reportProgress(0.9 * (double) progressCounter.incrementAndGet() / communities.size());
+            context.checkCanceled();
+            return accumulator;
+        }
+
+        /**
+         * Does the same as {@link #findTriples} but considers only earlier communities that share
+         * at least one relevant property with a given one.
+         */
+        private List<Triple> findTriplesSparse(Community community, List<Triple> accumulator) {
+            final ElementAttributes representative = community.entities.get(0);
+            final int rank = communityRanks[community.id];
+            long evaluated = 0;
+            for (int candidate : communitiesIndex.candidates(representative.getRelevantProperties().getGraphId())) {
+                if (candidate >= rank) {
+                    break;
+                }
+                evaluated++;
+                final Community another = orderedCommunities.get(candidate);
+                final double distance = distanceCalculator.distance(representative, another.entities.get(0));
+                if (distance < 1) {
+                    accumulator.add(new Triple(distance, community, another));
+                }
+            }
+            evaluatedPairs.addAndGet(evaluated);
             context.reportProgress(0.9 * (double) progressCounter.incrementAndGet() / communities.size());
             context.checkCanceled();
             return accumulator;
@@ -180,25 +287,21 @@ public class HAC extends AbstractAlgorithm {
             final Community newCommunity = new Community(merged);
             communities.remove(first);
             communities.remove(second);
+            communitiesById.set(first.id, null);
+            communitiesById.set(second.id, null);
 
             for (Community community : communities) {
                 final long fromFirstID = getTripleID(first, community);
                 final long fromSecondID = getTripleID(second, community);
-                final Triple fromFirst = triples.get(fromFirstID);
-                final Triple fromSecond = triples.get(fromSecondID);
-                final double newDistance = Math.max(getDistance(fromFirst), getDistance(fromSecond));
-                invalidateTriple(fromFirst);
-                invalidateTriple(fromSecond);
+                final double fromFirst = removeTriple(fromFirstID);
+                final double fromSecond = removeTriple(fromSecondID);
+                final double newDistance = Math.max(fromFirst, fromSecond);
                 insertTripleIfNecessary(newDistance, newCommunity, community);
             }
             communities.add(newCommunity);
             return newCommunity;
         }
 
-        private double getDistance(@Nullable Triple triple) {
-            return triple == null? Double.POSITIVE_INFINITY : triple.distance;
-        }
-
         private long getTripleID(Community first, Community second) {
             if (second.id > first.id) {
                 return getTripleID(second, first);
@@ -207,26 +310,27 @@ public class HAC extends AbstractAlgorithm {
         }
 
         private void insertTriple(@NotNull Triple triple) {
-            triples.put(getTripleID(triple.first, triple.second), triple);
-            heap.add(triple);
+            heap.put(getTripleID(triple.first, triple.second), triple.distance, triple.first.id, triple.second.id);
         }
 
-        private void insertTripleIfNecessary(double distance, Community first, Community second) {
-            if (distance > 1.0) {
-                return;
+        /**
+         * Removes pair with a given id from heap.
+         *
+         * @return distance of removed pair or infinity if there was no such pair.
+         */
+        private double removeTriple(long tripleID) {
+            final double distance = heap.getDistance(tripleID);
+            if (distance != Double.POSITIVE_INFINITY) {
+                heap.remove(tripleID);
             }
-            final Triple triple = Triple.createTriple(distance, first, second);
-            insertTriple(triple);
+            return distance;
         }
 
-        private void invalidateTriple(@Nullable Triple triple) {
-            if (triple == null) {
+        private void insertTripleIfNecessary(double distance, Community first, Community second) {
+            if (distance > 1.0) {
                 return;
             }
-            final long tripleID = getTripleID(triple.first, triple.second);
-            triples.remove(tripleID);
-            heap.remove(triple);
-            triple.release();
+            heap.put(getTripleID(first, second), distance, first.id, second.id);
         }
 
         private Community singletonCommunity(ElementAttributes element) {
@@ -242,6 +346,7 @@ public class HAC extends AbstractAlgorithm {
             Community(List<ElementAttributes> entities) {
                 this.entities = entities;
                 id = idGenerator++;
+                communitiesById.add(this);
             }
 
             @Override
@@ -260,51 +365,20 @@ public class HAC extends AbstractAlgorithm {
             }
         }
 
-        private static class Triple implements Comparable<Triple> {
-            private static final Queue<Triple> triplesPoll = new ArrayDeque<>();
-
-            private double distance;
-            private Community first;
-            private Community second;
+        /**
+         * A pair of communities along with distance between them found during initialization.
+         * Afterwards pairs are stored in {@link IndexedPairHeap} as primitives.
+         */
+        private static class Triple {
+            private final double distance;
+            private final Community first;
+            private final Community second;
 
             Triple(double distance, Community first, Community second) {
                 this.distance = distance;
                 this.first = first;
                 this.second = second;
             }
-
-            static Triple createTriple(double distance, Community first, Community second) {
-                if (triplesPoll.isEmpty()) {
-                    return new Triple(distance, first, second);
-                }
-                final Triple triple = triplesPoll.poll();
-                triple.distance = distance;
-                triple.first = first;
-                triple.second = second;
-                return triple;
-            }
-
-            static void clearPool() {
-                triplesPoll.clear();
-            }
-
-            void release() {
-                triplesPoll.add(this);
-            }
-
-            @Override
-            public int compareTo(@NotNull Triple other) {
-                if (other == this) {
-                    return 0;
-                }
-                if (distance != other.distance) {
-                    return Double.compare(distance, other.distance);
-                }
-                if (first != other.first) {
-                    return first.compareTo(other.first);
-                }
-                return second.compareTo(other.second);
-            }
         }
     }
 }
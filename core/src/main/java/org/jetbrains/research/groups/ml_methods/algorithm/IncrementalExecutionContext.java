@@ -0,0 +1,458 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.metricModel.MetricsExecutionContextImpl;
+import com.sixrr.metrics.metricModel.MetricsRunImpl;
+import com.sixrr.metrics.profile.MetricsProfile;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ClassAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ClassInnerEntityAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.NoRequestedMetricException;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.*;
+import org.jetbrains.research.groups.ml_methods.logging.Logging;
+import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps suggestions of {@link ARI} for a project up to date while its files are being changed.
+ * The first {@link #update} runs the whole analysis. Every next update walks PSI only of changed
+ * files and of files which refer to them (see {@link EntitiesCache}), in parallel non-blocking read
+ * actions unless it's called from event dispatch thread (see
+ * {@link EntitySearcher#analyzeInParallel}). Then it calculates metrics only for these files and
+ * scores again only units which could get another target class:
+ * <ul>
+ *     <li>units which are dirty, i.e. declared in walked files, have other
+ *     {@link RelevantProperties} than before or are property neighbours of such entities;</li>
+ *     <li>units which share a property with a dirty class before or after the change.</li>
+ * </ul>
+ * Suggestions for all other units are kept from the previous update. Cache of entities is saved
+ * after every successful update, so that the next analysis of the project starts from it. Other
+ * algorithms can be run on the updated attributes with {@link #execute}.
+ */
+public class IncrementalExecutionContext {
+    private static final Logger LOGGER = Logging.getLogger(IncrementalExecutionContext.class);
+
+    private final @NotNull Project project;
+
+    private final @NotNull AnalysisScope scope;
+
+    private final @NotNull MetricsProfile profile;
+
+    private final boolean enableFieldRefactorings;
+
+    private final boolean suggestRefactorings;
+
+    private final @NotNull List<Metric> metrics = new ARI().requiredMetrics();
+
+    private final @NotNull EntitiesCache entitiesCache;
+
+    /** Urls of files walked by searches whose results weren't applied yet (e.g. were canceled). */
+    private final @NotNull Set<String> walkedUrls = new HashSet<>();
+
+    private @Nullable AttributesStorage attributes;
+
+    private @NotNull List<ClassInnerEntityAttributes> units = Collections.emptyList();
+
+    private @Nullable InvertedPropertiesIndex unitsIndex;
+
+    private @NotNull Map<CodeEntity, Long> fingerprints = Collections.emptyMap();
+
+    private @NotNull Map<CodeEntity, CalculatedRefactoring> refactorings = Collections.emptyMap();
+
+    private int rescoredUnits = 0;
+
+    /**
+     * Creates context which keeps suggestions of {@link ARI} up to date.
+     *
+     * @param project current project.
+     * @param scope a scope which contains all files that should be analyzed.
+     * @param profile a profile of metrics that contains metrics required by {@link ARI}.
+     * @param enableFieldRefactorings {@code True} if field refactoring is available.
+     */
+    public IncrementalExecutionContext(
+        final @NotNull Project project,
+        final @NotNull AnalysisScope scope,
+        final @NotNull MetricsProfile profile,
+        final boolean enableFieldRefactorings
+    ) {
+        this(project, scope, profile, enableFieldRefactorings, true);
+    }
+
+    /**
+     * Creates context.
+     *
+     * @param project current project.
+     * @param scope a scope which contains all files that should be analyzed.
+     * @param profile a profile of metrics that contains metrics required by {@link ARI}.
+     * @param enableFieldRefactorings {@code True} if field refactoring is available.
+     * @param suggestRefactorings {@code False} if only attributes should be kept up to date for
+     *                            other algorithms (see {@link #execute}) and {@link ARI} isn't
+     *                            needed.
+     */
+    public IncrementalExecutionContext(
+        final @NotNull Project project,
+        final @NotNull AnalysisScope scope,
+        final @NotNull MetricsProfile profile,
+        final boolean enableFieldRefactorings,
+        final boolean suggestRefactorings
+    ) {
+        this.project = project;
+        this.scope = scope;
+        this.profile = profile;
+        this.enableFieldRefactorings = enableFieldRefactorings;
+        this.suggestRefactorings = suggestRefactorings;
+        entitiesCache = EntitiesCache.load(project);
+    }
+
+    /**
+     * Brings suggestions in line with the current state of files. Changed files are found by
+     * content, so it's safe to call this method after any number of changes. If calculation is
+     * canceled then suggestions stay unchanged and the next call takes into account all changes
+     * made since the last successful update. If it's called from a background thread, it must be
+     * called without read access.
+     */
+    public synchronized void update(final @NotNull ProgressIndicator indicator) {
+        indicator.setText("Updating refactorings");
+        if (attributes != null) {
+            try {
+                analyze(indicator, true);
+                return;
+            } catch (NoRequestedMetricException e) {
+                LOGGER.info("Features can't be updated incrementally (" + e.getMessage() + "), project will be analyzed again");
+            }
+        }
+
+        try {
+            analyze(indicator, false);
+        } catch (NoRequestedMetricException e) {
+            LOGGER.error("Error during attributes creation for incremental ARI: " + e.getMessage());
+        }
+    }
+
+    /** Returns current suggestions in order of units. */
+    public synchronized @NotNull List<CalculatedRefactoring> getRefactorings() {
+        final List<CalculatedRefactoring> result = new ArrayList<>();
+        for (ClassInnerEntityAttributes unit : units) {
+            final CalculatedRefactoring refactoring = refactorings.get(unit.getOriginalEntity());
+            if (refactoring != null) {
+                result.add(refactoring);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs given algorithms on attributes of the last successful update, so that they don't
+     * search entities and calculate metrics of the whole project again. Algorithms must require
+     * the same metrics as {@link ARI}. Algorithms are run one by one under a given indicator, so
+     * canceling it stops them.
+     *
+     * @return results of algorithms in the same order or an empty list if there was no successful
+     *         update yet.
+     */
+    public @NotNull List<AlgorithmResult> execute(
+        final @NotNull List<Algorithm> algorithms,
+        final @NotNull ProgressIndicator indicator
+    ) {
+        final AttributesStorage currentAttributes;
+        synchronized (this) {
+            currentAttributes = attributes;
+        }
+        if (currentAttributes == null) {
+            return Collections.emptyList();
+        }
+
+        final List<AlgorithmResult> results = new ArrayList<>();
+        final ExecutorService workers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (Algorithm algorithm : algorithms) {
+                indicator.checkCanceled();
+                ProgressManager.getInstance().executeProcessUnderProgress(
+                    () -> results.add(algorithm.execute(currentAttributes, workers, enableFieldRefactorings)),
+                    indicator
+                );
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return results;
+    }
+
+    /** Returns number of units which were scored during the last update. */
+    public synchronized int getRescoredUnitsCount() {
+        return rescoredUnits;
+    }
+
+    private void analyze(
+        final @NotNull ProgressIndicator indicator,
+        final boolean incremental
+    ) throws NoRequestedMetricException {
+        final EntitiesStorage entities;
+        if (ApplicationManager.getApplication().isDispatchThread()) {
+            entities = ApplicationManager.getApplication()
+                    .runReadAction((Computable<EntitiesStorage>) () -> EntitySearcher.analyze(scope, entitiesCache));
+        } else {
+            entities = EntitySearcher.analyzeInParallel(scope, entitiesCache, Runtime.getRuntime().availableProcessors());
+        }
+        walkedUrls.addAll(entitiesCache.getWalkedUrls());
+        indicator.checkCanceled();
+
+        final List<CodeEntity> walkedEntities = ApplicationManager.getApplication()
+                .runReadAction((Computable<List<CodeEntity>>) () -> declaredIn(entities, walkedUrls));
+        final MetricsRunImpl metricsRun = new MetricsRunImpl();
+        final Set<String> changedIdentifiers = new HashSet<>();
+        if (incremental) {
+            walkedEntities.forEach(entity -> changedIdentifiers.add(entity.getIdentifier()));
+            final List<VirtualFile> files = findFiles(walkedUrls);
+            if (!files.isEmpty()) {
+                new MetricsExecutionContextImpl(project, new AnalysisScope(project, files)).calculateMetrics(profile, metricsRun);
+            }
+        } else {
+            new MetricsExecutionContextImpl(project, scope).calculateMetrics(profile, metricsRun);
+        }
+        indicator.checkCanceled();
+
+        final AttributesStorage newAttributes = new AttributesStorage(
+            entities,
+            metrics,
+            metricsRun,
+            incremental ? attributes : null,
+            changedIdentifiers
+        );
+        if (suggestRefactorings) {
+            rescore(indicator, newAttributes, walkedEntities, incremental);
+        }
+
+        LOGGER.info("Walked " + walkedUrls.size() + " files");
+        attributes = newAttributes;
+        walkedUrls.clear();
+        entitiesCache.save();
+    }
+
+    /**
+     * Scores units of new attributes which could get another target class since the previous
+     * update and keeps suggestions for all other units.
+     */
+    private void rescore(
+        final @NotNull ProgressIndicator indicator,
+        final @NotNull AttributesStorage newAttributes,
+        final @NotNull List<CodeEntity> walkedEntities,
+        final boolean incremental
+    ) {
+        final PropertiesGraph graph = newAttributes.getPropertiesGraph();
+        final Map<CodeEntity, Long> newFingerprints = fingerprints(graph);
+        final List<ClassInnerEntityAttributes> newUnits = new ArrayList<>(newAttributes.getMethodsAttributes());
+        if (enableFieldRefactorings) {
+            newUnits.addAll(newAttributes.getFieldsAttributes());
+        }
+        final List<ClassAttributes> classes = newAttributes.getClassesAttributes();
+        final InvertedPropertiesIndex classesIndex = InvertedPropertiesIndex.build(graph, graphIds(classes));
+        final InvertedPropertiesIndex newUnitsIndex = InvertedPropertiesIndex.build(graph, graphIds(newUnits));
+
+        final boolean[] affected = new boolean[newUnits.size()];
+        if (incremental) {
+            final boolean[] changed = new boolean[graph.getEntitiesCount()];
+            walkedEntities.forEach(entity -> changed[graph.getId(entity)] = true);
+            newFingerprints.forEach((entity, fingerprint) -> {
+                if (!fingerprint.equals(fingerprints.get(entity))) {
+                    changed[graph.getId(entity)] = true;
+                }
+            });
+            markAffected(graph, changed, classes, newUnits, newUnitsIndex, affected);
+        } else {
+            Arrays.fill(affected, true);
+        }
+
+        final Map<CodeEntity, CalculatedRefactoring> newRefactorings = new HashMap<>();
+        final double[] distances = new double[classes.size()];
+        int scored = 0;
+        for (int i = 0; i < newUnits.size(); i++) {
+            final ClassInnerEntityAttributes unit = newUnits.get(i);
+            final CalculatedRefactoring refactoring;
+            if (!affected[i]) {
+                refactoring = refactorings.get(unit.getOriginalEntity());
+            } else if (unit.getOriginalEntity().isMovable() && classes.size() >= 2) {
+                indicator.checkCanceled();
+                scored++;
+                final int[] candidates = classesIndex.candidates(graph.getId(unit.getOriginalEntity()));
+                refactoring = ARI.score(unit, classes, candidates, distances);
+            } else {
+                refactoring = null;
+            }
+
+            if (refactoring != null) {
+                newRefactorings.put(unit.getOriginalEntity(), refactoring);
+            }
+        }
+
+        LOGGER.info("Scored " + scored + " of " + newUnits.size() + " units");
+        units = newUnits;
+        unitsIndex = newUnitsIndex;
+        fingerprints = newFingerprints;
+        refactorings = newRefactorings;
+        rescoredUnits = scored;
+    }
+
+    /**
+     * Marks units which must be scored again after entities marked as changed got another
+     * properties or features.
+     */
+    private void markAffected(
+        final @NotNull PropertiesGraph graph,
+        final @NotNull boolean[] changed,
+        final @NotNull List<ClassAttributes> classes,
+        final @NotNull List<ClassInnerEntityAttributes> newUnits,
+        final @NotNull InvertedPropertiesIndex newUnitsIndex,
+        final @NotNull boolean[] affected
+    ) {
+        final int entitiesCount = graph.getEntitiesCount();
+        final int[] targets = graph.getTargets();
+        final boolean[] dirty = Arrays.copyOf(changed, entitiesCount);
+        for (int entity = 0; entity < entitiesCount; entity++) {
+            for (int i = graph.rowStart(entity); i < graph.rowEnd(entity); i++) {
+                final int property = targets[i] < entitiesCount ? targets[i] : targets[i] - entitiesCount;
+                if (changed[entity]) {
+                    dirty[property] = true;
+                }
+                if (changed[property]) {
+                    dirty[entity] = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < newUnits.size(); i++) {
+            affected[i] = dirty[graph.getId(newUnits.get(i).getOriginalEntity())];
+        }
+
+        for (int i = 0; i < classes.size(); i++) {
+            final int classId = graph.getId(classes.get(i).getOriginalEntity());
+            if (dirty[classId]) {
+                for (int unit : newUnitsIndex.candidates(classId)) {
+                    affected[unit] = true;
+                }
+            }
+        }
+
+        if (attributes == null || unitsIndex == null) {
+            return;
+        }
+
+        // units that shared a property with a class before it was changed or removed
+        final Map<CodeEntity, Integer> positions = new HashMap<>();
+        for (int i = 0; i < newUnits.size(); i++) {
+            positions.put(newUnits.get(i).getOriginalEntity(), i);
+        }
+        final PropertiesGraph previousGraph = attributes.getPropertiesGraph();
+        for (ClassAttributes previousClass : attributes.getClassesAttributes()) {
+            final CodeEntity entity = previousClass.getOriginalEntity();
+            final int id = graph.getId(entity);
+            if (id != -1 && !dirty[id]) {
+                continue;
+            }
+            for (int unit : unitsIndex.candidates(previousGraph.getId(entity))) {
+                final Integer position = positions.get(units.get(unit).getOriginalEntity());
+                if (position != null) {
+                    affected[position] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes hash of {@link RelevantProperties} of every entity found by search. Hash doesn't
+     * depend on ids of entities, so it can be compared with hash of properties of the same entity
+     * computed after another search.
+     */
+    private static @NotNull Map<CodeEntity, Long> fingerprints(final @NotNull PropertiesGraph graph) {
+        final int entitiesCount = graph.getEntitiesCount();
+        final int[] targets = graph.getTargets();
+        final int[] weights = graph.getWeights();
+        final Map<CodeEntity, Long> fingerprints = new HashMap<>();
+        for (int entity = 0; entity < entitiesCount; entity++) {
+            long fingerprint = 0;
+            for (int i = graph.rowStart(entity); i < graph.rowEnd(entity); i++) {
+                final boolean override = targets[i] >= entitiesCount;
+                final CodeEntity property = graph.getEntity(override ? targets[i] - entitiesCount : targets[i]);
+                long hash = 31L * property.hashCode() + weights[i];
+                hash = 31L * hash + (override ? 1 : 0);
+                fingerprint += hash * 0x9E3779B97F4A7C15L ^ (hash >>> 29);
+            }
+            fingerprints.put(graph.getEntity(entity), fingerprint);
+        }
+
+        return fingerprints;
+    }
+
+    private static @NotNull int[] graphIds(final @NotNull List<? extends ElementAttributes> attributes) {
+        final int[] ids = new int[attributes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = attributes.get(i).getRelevantProperties().getGraphId();
+        }
+
+        return ids;
+    }
+
+    private static @NotNull List<CodeEntity> declaredIn(
+        final @NotNull EntitiesStorage entities,
+        final @NotNull Set<String> urls
+    ) {
+        final List<CodeEntity> result = new ArrayList<>();
+        for (List<? extends CodeEntity> list : Arrays.asList(entities.getClasses(), entities.getMethods(), entities.getFields())) {
+            for (CodeEntity entity : list) {
+                final PsiFile file = entity.accept(new CodeEntityVisitor<PsiElement>() {
+                    @Override
+                    public PsiElement visit(final @NotNull ClassEntity classEntity) {
+                        return classEntity.getPsiClass();
+                    }
+
+                    @Override
+                    public PsiElement visit(final @NotNull MethodEntity methodEntity) {
+                        return methodEntity.getPsiMethod();
+                    }
+
+                    @Override
+                    public PsiElement visit(final @NotNull FieldEntity fieldEntity) {
+                        return fieldEntity.getPsiField();
+                    }
+                }).getContainingFile();
+                final VirtualFile virtualFile = file == null ? null : file.getVirtualFile();
+                if (virtualFile == null || urls.contains(virtualFile.getUrl())) {
+                    result.add(entity);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static @NotNull List<VirtualFile> findFiles(final @NotNull Set<String> urls) {
+        final List<VirtualFile> files = new ArrayList<>();
+        for (String url : urls) {
+            final VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(url);
+            if (file != null && file.isValid()) {
+                files.add(file);
+            }
+        }
+
+        return files;
+    }
+}
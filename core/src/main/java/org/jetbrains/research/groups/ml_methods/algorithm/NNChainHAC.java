@@ -0,0 +1,275 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.stockmetrics.classMetrics.NumAttributesAddedMetric;
+import com.sixrr.stockmetrics.classMetrics.NumMethodsClassMetric;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.distance.DistanceCalculator;
+import org.jetbrains.research.groups.ml_methods.algorithm.distance.RelevanceBasedDistanceCalculator;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.InvertedPropertiesIndex;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
+import org.jetbrains.research.groups.ml_methods.logging.Logging;
+import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Complete-linkage clustering of {@link HAC} computed with the nearest-neighbour-chain
+ * algorithm. Distance between two entities is the one used by {@link HAC}: entities at distance
+ * {@code 1} or more are never merged directly, so their distance is considered infinite. Distance
+ * between two communities is the maximum distance between their members.
+ * <p>
+ * Complete linkage is reducible: distance from any community to a union of two communities is
+ * not less than distance to the closer of them. For reducible linkage a pair of reciprocal
+ * nearest neighbours can be merged right away, which gives the same dendrogram as merging the
+ * globally closest pair on every step. Unlike {@link HAC} this algorithm stores neither pairs of
+ * communities nor distances between them, so it needs memory linear in the number of entities.
+ * Distances between communities are recomputed from their members on demand instead.
+ * <p>
+ * The price of linear memory is time. Distance between communities of sizes {@code a} and
+ * {@code b} costs up to {@code a * b} distances between entities (fewer if it exceeds distance to
+ * the nearest community found so far), and every step of the chain evaluates distances to all
+ * communities that share a property with the top one. So the number of distance calculations
+ * is {@code O(n^2)} only while communities stay small and is {@code O(n^3)} in the worst case,
+ * when communities grow large. Number of calculations is reported as a statistic.
+ */
+public class NNChainHAC extends AbstractAlgorithm {
+    private static final Logger LOGGER = Logging.getLogger(NNChainHAC.class);
+
+    private static final @NotNull DistanceCalculator distanceCalculator = RelevanceBasedDistanceCalculator.getInstance();
+
+    public NNChainHAC() {
+        super(AlgorithmType.HAC_NN_CHAIN, true);
+    }
+
+    @Override
+    public @NotNull List<Metric> requiredMetrics() {
+        return Arrays.asList(new NumMethodsClassMetric(), new NumAttributesAddedMetric());
+    }
+
+    @Override
+    protected @NotNull Executor setUpExecutor() {
+        return new NNChainExecutor();
+    }
+
+    private static class NNChainExecutor implements Executor {
+        private List<ElementAttributes> entities;
+        private int[] graphIds;
+        private InvertedPropertiesIndex index;
+
+        /** Members of communities by id, {@code null} for communities that were merged. */
+        private int[][] members;
+
+        /** {@code true} for communities that don't have any community at finite distance. */
+        private boolean[] closed;
+
+        private int[] communityOf;
+        private int communitiesCount;
+
+        private int[] visited;
+        private int visitMark;
+
+        private long evaluatedDistances;
+        private int nearestCommunity;
+        private double nearestDistance;
+
+        @Override
+        public @NotNull List<CalculatedRefactoring> execute(
+                final @NotNull ExecutionContext context,
+                final boolean enableFieldRefactorings
+        ) throws Exception {
+            try (Instrumentation.Timer ignored = context.startPhase("init")) {
+                init(context);
+            }
+            final int entitiesCount = entities.size();
+            final int[] chain = new int[entitiesCount];
+            final double[] neighbourDistances = new double[entitiesCount];
+            int chainSize = 0;
+            int nextStart = 0;
+            int merges = 0;
+
+            while (true) {
+                if (chainSize == 0) {
+                    while (nextStart < communitiesCount && (members[nextStart] == null || closed[nextStart])) {
+                        nextStart++;
+                    }
+                    if (nextStart == communitiesCount) {
+                        break;
+                    }
+                    chain[chainSize] = nextStart;
+                    neighbourDistances[chainSize] = Double.NEGATIVE_INFINITY;
+                    chainSize++;
+                }
+
+                final int top = chain[chainSize - 1];
+                final int previous = chainSize > 1 ? chain[chainSize - 2] : -1;
+                findNearest(top, previous);
+                if (nearestCommunity == -1) {
+                    // distance to a union is not less than distance to its parts, so it stays alone
+                    closed[top] = true;
+                    chainSize--;
+                    continue;
+                }
+
+                if (nearestDistance < neighbourDistances[chainSize - 1]) {
+                    throw new IllegalStateException("Linkage is not reducible: nearest neighbour of community "
+                            + top + " got closer after merge (" + nearestDistance + " < "
+                            + neighbourDistances[chainSize - 1] + ")");
+                }
+                neighbourDistances[chainSize - 1] = nearestDistance;
+
+                if (nearestCommunity == previous) {
+                    merge(top, previous);
+                    chainSize -= 2;
+                    merges++;
+                    context.reportProgress((double) merges / entitiesCount);
+                    context.checkCanceled();
+                } else {
+                    chain[chainSize] = nearestCommunity;
+                    neighbourDistances[chainSize] = Double.NEGATIVE_INFINITY;
+                    chainSize++;
+                }
+            }
+
+            final List<CalculatedRefactoring> refactorings = new ArrayList<>();
+            int finalCommunitiesCount = 0;
+            for (int community = 0; community < communitiesCount; community++) {
+                if (members[community] == null) {
+                    continue;
+                }
+                finalCommunitiesCount++;
+                final List<ElementAttributes> communityEntities = Arrays.stream(members[community])
+                        .mapToObj(entities::get)
+                        .collect(Collectors.toList());
+                HAC.addRefactorings(community, communityEntities, enableFieldRefactorings, refactorings);
+            }
+
+            context.reportStatistic("Communities", finalCommunitiesCount);
+            context.reportStatistic("Merges", merges);
+            context.reportStatistic("Distance calculations", evaluatedDistances);
+            entities = null;
+            index = null;
+            members = null;
+            return refactorings;
+        }
+
+        private void init(ExecutionContext context) {
+            LOGGER.info("Init HAC (nearest-neighbour chain)");
+            final AttributesStorage storage = context.getAttributesStorage();
+            entities = Stream.of(storage.getMethodsAttributes(), storage.getFieldsAttributes())
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+            final int entitiesCount = entities.size();
+            members = new int[2 * entitiesCount][];
+            closed = new boolean[2 * entitiesCount];
+            communityOf = new int[entitiesCount];
+            visited = new int[2 * entitiesCount];
+            visitMark = 0;
+            evaluatedDistances = 0;
+            for (int i = 0; i < entitiesCount; i++) {
+                members[i] = new int[] {i};
+                communityOf[i] = i;
+            }
+            communitiesCount = entitiesCount;
+
+            graphIds = new int[entitiesCount];
+            index = null;
+            for (int i = 0; i < entitiesCount; i++) {
+                graphIds[i] = entities.get(i).getRelevantProperties().getGraphId();
+                if (graphIds[i] == -1) {
+                    LOGGER.warn("Properties are not frozen, all communities will be scanned");
+                    return;
+                }
+            }
+            index = InvertedPropertiesIndex.build(storage.getPropertiesGraph(), graphIds);
+        }
+
+        /**
+         * Finds community which is the closest to a given one. Ties are broken in favour of
+         * preferred community and then in favour of community with the least id.
+         * Result is stored in {@link #nearestCommunity} ({@code -1} if there is no community at
+         * finite distance) and {@link #nearestDistance}.
+         */
+        private void findNearest(int community, int preferred) {
+            nearestCommunity = -1;
+            nearestDistance = Double.POSITIVE_INFINITY;
+            visitMark++;
+            visited[community] = visitMark;
+            if (index == null) {
+                for (int entity = 0; entity < entities.size(); entity++) {
+                    considerNeighbour(community, communityOf[entity], preferred);
+                }
+                return;
+            }
+
+            // every member of a community at finite distance shares a property with every member of this one
+            final int representative = members[community][0];
+            for (int entity : index.candidates(graphIds[representative])) {
+                considerNeighbour(community, communityOf[entity], preferred);
+            }
+        }
+
+        private void considerNeighbour(int community, int another, int preferred) {
+            if (visited[another] == visitMark || closed[another]) {
+                return;
+            }
+            visited[another] = visitMark;
+
+            final double distance = distance(community, another, nearestDistance);
+            if (distance == Double.POSITIVE_INFINITY || distance > nearestDistance) {
+                return;
+            }
+            if (distance == nearestDistance
+                    && (nearestCommunity == preferred || (another != preferred && another > nearestCommunity))) {
+                return;
+            }
+            nearestCommunity = another;
+            nearestDistance = distance;
+        }
+
+        /**
+         * Returns complete-linkage distance between two communities. It is computed from all
+         * pairs of their members, which takes time proportional to the product of their sizes.
+         * Computation stops as soon as distance is known to exceed a given bound, any value
+         * greater than bound is returned then.
+         */
+        private double distance(int first, int second, double bound) {
+            double result = Double.NEGATIVE_INFINITY;
+            for (int from : members[first]) {
+                for (int to : members[second]) {
+                    evaluatedDistances++;
+                    final double distance = distanceCalculator.distance(entities.get(from), entities.get(to));
+                    if (distance >= 1) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    result = Math.max(result, distance);
+                    if (result > bound) {
+                        return result;
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        private void merge(int first, int second) {
+            final int[] merged = new int[members[first].length + members[second].length];
+            System.arraycopy(members[first], 0, merged, 0, members[first].length);
+            System.arraycopy(members[second], 0, merged, members[first].length, members[second].length);
+
+            final int community = communitiesCount++;
+            members[community] = merged;
+            members[first] = null;
+            members[second] = null;
+            for (int entity : merged) {
+                communityOf[entity] = community;
+            }
+        }
+    }
+}
@@ -3,8 +3,11 @@ package org.jetbrains.research.groups.ml_methods.algorithm;
 import com.intellij.analysis.AnalysisScope;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
 import com.sixrr.metrics.metricModel.MetricsExecutionContextImpl;
@@ -16,20 +19,24 @@ import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorageProvider;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.NoRequestedMetricException;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesStorage;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitySearcher;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
-import static org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.getAvailableAlgorithms;
+import static org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.getDefaultAlgorithms;
 
 /**
  * Stores all information that might be needed for refactoring suggestions calculation. Can be
@@ -38,6 +45,11 @@ import static org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepos
 public class RefactoringExecutionContext {
     private static final Logger LOGGER = Logging.getLogger(RefactoringExecutionContext.class);
 
+    private static final String METRICS_PHASE = "metrics";
+    private static final String ENTITIES_PHASE = "entities";
+    private static final String ATTRIBUTES_PHASE = "attributes";
+    private static final String RESULTS_PHASE = "results";
+
     @NotNull
     private final MetricsRunImpl metricsRun = new MetricsRunImpl();
     private final Project project;
@@ -45,12 +57,12 @@ public class RefactoringExecutionContext {
     @NotNull
     private final MetricsProfile profile;
     private EntitiesStorage entitiesStorage;
+    private AttributesStorageProvider attributesProvider;
     private final MetricsExecutionContextImpl metricsExecutionContext;
     @Nullable
     private final Consumer<RefactoringExecutionContext> continuation;
-    @NotNull
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
-    private final List<AlgorithmResult> algorithmsResults = new ArrayList<>();
+    private final List<AlgorithmResult> algorithmsResults = new CopyOnWriteArrayList<>();
+    private final Instrumentation instrumentation = new Instrumentation();
     @NotNull
     private final Collection<Algorithm> requestedAlgorithms;
     private final boolean enableFieldRefactoring;
@@ -58,7 +70,7 @@ public class RefactoringExecutionContext {
     public RefactoringExecutionContext(@NotNull Project project, @NotNull AnalysisScope scope,
                                        @NotNull MetricsProfile profile,
                                        @Nullable Consumer<RefactoringExecutionContext> continuation) {
-        this(project, scope, profile, getAvailableAlgorithms(), true, continuation);
+        this(project, scope, profile, getDefaultAlgorithms(), true, continuation);
     }
 
     /**
@@ -104,39 +116,128 @@ public class RefactoringExecutionContext {
 
     /** Executes all calculations synchronously. */
     public void executeSynchronously() {
-        execute(new EmptyProgressIndicator());
+        executeSynchronously(new EmptyProgressIndicator());
+    }
+
+    /**
+     * Executes all calculations synchronously under a given indicator, e.g. of a background task
+     * it is called from, so that canceling the indicator stops calculations.
+     */
+    public void executeSynchronously(final @NotNull ProgressIndicator indicator) {
+        execute(indicator);
         onFinish();
     }
 
     private void execute(ProgressIndicator indicator) {
-        metricsExecutionContext.calculateMetrics(profile, metricsRun);
+        try (Instrumentation.Timer ignored = instrumentation.start(METRICS_PHASE)) {
+            metricsExecutionContext.calculateMetrics(profile, metricsRun);
+        }
         metricsRun.setProfileName(profile.getName());
         metricsRun.setContext(scope);
         metricsRun.setTimestamp(new TimeStamp());
-        entitiesStorage = ApplicationManager.getApplication()
-                .runReadAction((Computable<EntitiesStorage>) () -> EntitySearcher.analyze(scope));
-        for (Algorithm algorithm : requestedAlgorithms) {
-            calculate(algorithm);
+        try (Instrumentation.Timer ignored = instrumentation.start(ENTITIES_PHASE)) {
+            final EntitiesCache entitiesCache = EntitiesCache.load(project);
+            if (ApplicationManager.getApplication().isDispatchThread()) {
+                entitiesStorage = ApplicationManager.getApplication()
+                        .runReadAction((Computable<EntitiesStorage>) () -> EntitySearcher.analyze(scope, entitiesCache));
+            } else {
+                entitiesStorage = EntitySearcher.analyzeInParallel(scope, entitiesCache,
+                        Runtime.getRuntime().availableProcessors(), instrumentation);
+            }
+            entitiesCache.save();
         }
+        instrumentation.addItems(ENTITIES_PHASE, getClassCount() + getMethodsCount() + getFieldsCount());
+        attributesProvider = new AttributesStorageProvider(entitiesStorage, metricsRun);
+        calculateAll(indicator);
         indicator.setText("Finish refactorings search...");
+        LOGGER.info("Phases of refactorings search: " + instrumentation.toJson());
+    }
+
+    /**
+     * Runs all requested algorithms at the same time. Every algorithm is driven by its own thread
+     * and gets its own {@link ProgressIndicator} whose fraction is an equal part of a given
+     * indicator. Parallel parts of all algorithms share one {@link ForkJoinPool} of worker threads,
+     * so total number of busy threads is bounded. Results are stored in order of requested algorithms.
+     */
+    private void calculateAll(final @NotNull ProgressIndicator indicator) {
+        final List<Algorithm> algorithms = new ArrayList<>(requestedAlgorithms);
+        if (algorithms.isEmpty()) {
+            return;
+        }
+
+        final int threadsCount = Runtime.getRuntime().availableProcessors();
+        final ExecutorService workers = new ForkJoinPool(threadsCount);
+        final ExecutorService drivers = Executors.newFixedThreadPool(Math.min(algorithms.size(), threadsCount));
+        final AtomicLongArray fractions = new AtomicLongArray(algorithms.size());
+        indicator.setText("Running " + algorithms.stream()
+                .map(Algorithm::getDescriptionString)
+                .collect(Collectors.joining(", ")) + "...");
+        indicator.setFraction(0);
+        final AlgorithmResult[] results = new AlgorithmResult[algorithms.size()];
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < algorithms.size(); i++) {
+                final int index = i;
+                final Algorithm algorithm = algorithms.get(i);
+                final ProgressIndicator algorithmIndicator =
+                    new AlgorithmProgressIndicator(indicator, fractions, index);
+                futures.add(drivers.submit(() -> ProgressManager.getInstance().runProcess(() -> {
+                    try {
+                        results[index] = calculate(algorithm, workers);
+                    } catch (ProcessCanceledException e) {
+                        LOGGER.info(algorithm.getDescriptionString() + " is canceled");
+                    }
+                }, algorithmIndicator)));
+            }
+
+            waitFor(futures);
+        } finally {
+            workers.shutdownNow();
+            drivers.shutdownNow();
+        }
+
+        for (AlgorithmResult result : results) {
+            if (result != null) {
+                algorithmsResults.add(result);
+            }
+        }
+        indicator.checkCanceled();
     }
 
+    /**
+     * Waits for all algorithms to finish. If waiting thread is interrupted, algorithms are
+     * canceled, interrupted status is restored and {@link ProcessCanceledException} is thrown.
+     */
+    private static void waitFor(final @NotNull List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                futures.forEach(it -> it.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                LOGGER.error("Algorithm execution failed", e);
+            }
+        }
+    }
 
     private void onFinish() {
         if (continuation != null) {
-            continuation.accept(this);
+            try (Instrumentation.Timer ignored = instrumentation.start(RESULTS_PHASE)) {
+                continuation.accept(this);
+            }
         }
     }
 
-    private void calculate(Algorithm algorithm) {
+    private @Nullable AlgorithmResult calculate(
+        final @NotNull Algorithm algorithm,
+        final @NotNull ExecutorService workers
+    ) {
         AttributesStorage attributes;
 
-        try {
-            attributes = new AttributesStorage(
-                    entitiesStorage,
-                    algorithm.requiredMetrics(),
-                    metricsRun
-            );
+        try (Instrumentation.Timer ignored = instrumentation.start(ATTRIBUTES_PHASE)) {
+            attributes = attributesProvider.getAttributes(algorithm.requiredMetrics());
         } catch (NoRequestedMetricException e) {
             LOGGER.error(
                 "Error during attributes creation for '" + algorithm.getDescriptionString() +
@@ -144,13 +245,10 @@ public class RefactoringExecutionContext {
                 "is aborted"
             );
 
-            return;
+            return null;
         }
 
-        final AlgorithmResult result =
-            algorithm.execute(attributes, executorService, enableFieldRefactoring);
-
-        algorithmsResults.add(result);
+        return algorithm.execute(attributes, workers, enableFieldRefactoring, instrumentation);
     }
 
     public List<AlgorithmResult> getAlgorithmResults() {
@@ -167,6 +265,22 @@ public class RefactoringExecutionContext {
         return entitiesStorage;
     }
 
+    /**
+     * Returns provider of attributes which were shared between algorithms of this context.
+     * Attributes for other algorithms that request the same metrics can be taken from it.
+     */
+    public AttributesStorageProvider getAttributesProvider() {
+        return attributesProvider;
+    }
+
+    /**
+     * Returns timings and counters of phases of this refactorings search. Phases of algorithms
+     * are named after algorithms.
+     */
+    public @NotNull Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
     public @NotNull MetricsRun getMetricsRun() {
         return metricsRun;
     }
@@ -195,4 +309,51 @@ public class RefactoringExecutionContext {
     public MetricsProfile getProfile() {
         return profile;
     }
-}
\ No newline at end of file
+
+    /**
+     * Progress of one of algorithms that run at the same time. Its fraction is mapped to an equal
+     * part of a parent progress. It is canceled when parent is canceled. Fractions of all
+     * algorithms are stored as bits of doubles in an {@link AtomicLongArray}, so algorithms don't
+     * wait for each other to report progress.
+     */
+    private static class AlgorithmProgressIndicator extends ProgressIndicatorBase {
+        private final @NotNull ProgressIndicator parent;
+
+        private final @NotNull AtomicLongArray fractions;
+
+        private final int index;
+
+        private AlgorithmProgressIndicator(
+            final @NotNull ProgressIndicator parent,
+            final @NotNull AtomicLongArray fractions,
+            final int index
+        ) {
+            this.parent = parent;
+            this.fractions = fractions;
+            this.index = index;
+        }
+
+        @Override
+        public void setFraction(final double fraction) {
+            super.setFraction(fraction);
+            fractions.set(index, Double.doubleToRawLongBits(fraction));
+            double total = 0;
+            for (int i = 0; i < fractions.length(); i++) {
+                total += Double.longBitsToDouble(fractions.get(i));
+            }
+            parent.setFraction(total / fractions.length());
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return super.isCanceled() || parent.isCanceled();
+        }
+
+        @Override
+        public void checkCanceled() {
+            if (isCanceled()) {
+                throw new ProcessCanceledException();
+            }
+        }
+    }
+}
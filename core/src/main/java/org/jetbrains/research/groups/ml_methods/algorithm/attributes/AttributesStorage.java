@@ -1,20 +1,24 @@
 package org.jetbrains.research.groups.ml_methods.algorithm.attributes;
 
 import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
 import com.sixrr.metrics.metricModel.MetricsResult;
 import com.sixrr.metrics.metricModel.MetricsRun;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.Algorithm;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.*;
 
 import java.util.*;
 
 /**
- * One object of this class must be created per {@link Algorithm} execution. This class stores all
- * relevant code entities (classes, methods, ...) along with their
+ * This class stores all relevant code entities (classes, methods, ...) along with their
  * {@link RelevantProperties} and features extracted
  * specially for one particular {@link Algorithm} from metrics this algorithm requested through
- * {@link Algorithm#requiredMetrics}.
+ * {@link Algorithm#requiredMetrics}. Features of all entities are stored in one
+ * {@link FeaturesMatrix}: classes, then methods, then fields (which have no features) in order of
+ * {@link EntitiesStorage}. Storage is immutable after creation, so one storage can be shared by
+ * several algorithms that request the same metrics (see {@link AttributesStorageProvider}).
  */
 public class AttributesStorage {
     private final @NotNull List<ClassAttributes> classesAttributes;
@@ -23,6 +27,10 @@ public class AttributesStorage {
 
     private final @NotNull List<FieldAttributes> fieldsAttributes;
 
+    private final @NotNull PropertiesGraph propertiesGraph;
+
+    private final @NotNull FeaturesMatrix featuresMatrix;
+
     /**
      * Creates storage for attributes.
      *
@@ -36,15 +44,59 @@ public class AttributesStorage {
         final @NotNull List<Metric> metrics,
         final @NotNull MetricsRun metricsRun
     ) throws NoRequestedMetricException {
-        Map<ClassEntity, ClassAttributes> attributesOfClass = new HashMap<>();
+        this(entities, metrics, metricsRun, null, Collections.emptySet());
+    }
+
+    /**
+     * Creates storage for attributes of entities after some files were changed. Features of an
+     * entity whose identifier is not in a given set of changed identifiers are copied from a
+     * previous storage, features of other entities are extracted from a given metrics run. So
+     * this run is only required to contain results for changed entities.
+     *
+     * @param entities entities attributes will be constructed from.
+     * @param metrics metrics that must be used to create features vectors.
+     * @param metricsRun result of metrics calculations for changed entities.
+     * @param previous storage created before files were changed with the same metrics or
+     *                 {@code null} if features of all entities must be extracted.
+     * @param changedIdentifiers identifiers of entities whose features could change.
+     * @throws NoRequestedMetricException if there are some missing metric calculation results.
+     */
+    public AttributesStorage(
+        final @NotNull EntitiesStorage entities,
+        final @NotNull List<Metric> metrics,
+        final @NotNull MetricsRun metricsRun,
+        final @Nullable AttributesStorage previous,
+        final @NotNull Set<String> changedIdentifiers
+    ) throws NoRequestedMetricException {
+        propertiesGraph = entities.getPropertiesGraph();
+        final List<CodeEntity> rows = new ArrayList<>();
+        rows.addAll(entities.getClasses());
+        rows.addAll(entities.getMethods());
+        final int featuredRowsCount = rows.size();
+        rows.addAll(entities.getFields());
+
+        final Map<MetricCategory, Integer> dimensions = new HashMap<>();
+        for (Metric metric : metrics) {
+            dimensions.merge(metric.getCategory(), 1, Integer::sum);
+        }
 
+        final int[] offsets = new int[rows.size() + 1];
+        for (int row = 0; row < rows.size(); row++) {
+            final int dimension = row < featuredRowsCount
+                ? dimensions.getOrDefault(rows.get(row).getMetricCategory(), 0)
+                : 0;
+            offsets[row + 1] = offsets[row] + dimension;
+        }
+        featuresMatrix = new FeaturesMatrix(new double[offsets[rows.size()]], offsets);
+
+        final boolean[] copied = copyFeatures(rows, featuredRowsCount, previous, changedIdentifiers);
+        extractFeatures(rows, featuredRowsCount, copied, metrics, metricsRun);
+
+        Map<ClassEntity, ClassAttributes> attributesOfClass = new HashMap<>();
+        int row = 0;
         classesAttributes = new ArrayList<>();
         for (ClassEntity classEntity : entities.getClasses()) {
-            ClassAttributes classAttributes = new ClassAttributes(
-                classEntity,
-                extractFeatures(classEntity, metrics, metricsRun)
-            );
-
+            ClassAttributes classAttributes = new ClassAttributes(classEntity, featuresMatrix, row++);
             classesAttributes.add(classAttributes);
             attributesOfClass.put(classEntity, classAttributes);
         }
@@ -54,7 +106,8 @@ public class AttributesStorage {
             methodsAttributes.add(
                 new MethodAttributes(
                     methodEntity,
-                    extractFeatures(methodEntity, metrics, metricsRun),
+                    featuresMatrix,
+                    row++,
                     attributesOfClass.get(methodEntity.getContainingClass())
                 )
             );
@@ -64,7 +117,8 @@ public class AttributesStorage {
         for (FieldEntity fieldEntity : entities.getFields()) {
             fieldsAttributes.add(new FieldAttributes(
                 fieldEntity,
-                new double[0],
+                featuresMatrix,
+                row++,
                 attributesOfClass.get(fieldEntity.getContainingClass())
             ));
         }
@@ -81,27 +135,95 @@ public class AttributesStorage {
         return Collections.unmodifiableList(fieldsAttributes);
     }
 
-    private @NotNull double[] extractFeatures(
-        final @NotNull CodeEntity entity,
-        final @NotNull List<Metric> metrics,
-        final @NotNull MetricsRun metricsRun
-    ) throws NoRequestedMetricException {
-        MetricsResult result = metricsRun.getResultsForCategory(entity.getMetricCategory());
+    /**
+     * Returns matrix with features of all entities of this storage. Row id of an entity is its
+     * {@link ElementAttributes#getFeaturesRow}.
+     */
+    public @NotNull FeaturesMatrix getFeaturesMatrix() {
+        return featuresMatrix;
+    }
+
+    /**
+     * Returns {@link PropertiesGraph} which contains frozen {@link RelevantProperties} of all
+     * entities of this storage.
+     */
+    public @NotNull PropertiesGraph getPropertiesGraph() {
+        return propertiesGraph;
+    }
+
+    /**
+     * Copies rows of features of entities that were not changed from a previous storage.
+     *
+     * @return flags of rows whose features were copied.
+     */
+    private @NotNull boolean[] copyFeatures(
+        final @NotNull List<CodeEntity> rows,
+        final int featuredRowsCount,
+        final @Nullable AttributesStorage previous,
+        final @NotNull Set<String> changedIdentifiers
+    ) {
+        final boolean[] copied = new boolean[featuredRowsCount];
+        if (previous == null) {
+            return copied;
+        }
+
+        final Map<String, Integer> previousRows = new HashMap<>();
+        previous.classesAttributes.forEach(it -> previousRows.put(key(it), it.getFeaturesRow()));
+        previous.methodsAttributes.forEach(it -> previousRows.put(key(it), it.getFeaturesRow()));
+        final FeaturesMatrix previousMatrix = previous.featuresMatrix;
+        for (int row = 0; row < featuredRowsCount; row++) {
+            final CodeEntity entity = rows.get(row);
+            final Integer previousRow = previousRows.get(key(entity));
+            if (previousRow == null
+                    || changedIdentifiers.contains(entity.getIdentifier())
+                    || previousMatrix.rowLength(previousRow) != featuresMatrix.rowLength(row)) {
+                continue;
+            }
+
+            System.arraycopy(
+                previousMatrix.getValues(), previousMatrix.rowStart(previousRow),
+                featuresMatrix.getValues(), featuresMatrix.rowStart(row),
+                featuresMatrix.rowLength(row)
+            );
+            copied[row] = true;
+        }
 
-        final int dimension =
-            (int) metrics.stream()
-                .filter(it -> it.getCategory().equals(entity.getMetricCategory()))
-                .count();
+        return copied;
+    }
 
-        double[] features = new double[dimension];
+    private static @NotNull String key(final @NotNull ElementAttributes attributes) {
+        return key(attributes.getOriginalEntity());
+    }
 
-        int pointer = 0;
+    private static @NotNull String key(final @NotNull CodeEntity entity) {
+        return entity.getMetricCategory() + ":" + entity.getIdentifier();
+    }
+
+    /**
+     * Fills rows of features that were not copied. Matrix is filled column by column, so that
+     * results of every metric are requested from {@link MetricsRun} only once.
+     */
+    private void extractFeatures(
+        final @NotNull List<CodeEntity> rows,
+        final int featuredRowsCount,
+        final @NotNull boolean[] copied,
+        final @NotNull List<Metric> metrics,
+        final @NotNull MetricsRun metricsRun
+    ) throws NoRequestedMetricException {
+        final double[] values = featuresMatrix.getValues();
+        final Map<MetricCategory, Integer> columns = new HashMap<>();
         for (Metric metric : metrics) {
-            if (metric.getCategory().equals(entity.getMetricCategory())) {
-                Double metricValue = result.getValueForMetric(metric, entity.getIdentifier());
-                if (metricValue != null) {
-                    features[pointer++] = metricValue;
-                } else {
+            final MetricCategory category = metric.getCategory();
+            final int column = columns.merge(category, 1, Integer::sum) - 1;
+            final MetricsResult result = metricsRun.getResultsForCategory(category);
+            for (int row = 0; row < featuredRowsCount; row++) {
+                final CodeEntity entity = rows.get(row);
+                if (copied[row] || !category.equals(entity.getMetricCategory())) {
+                    continue;
+                }
+
+                Double metricValue = result == null ? null : result.getValueForMetric(metric, entity.getIdentifier());
+                if (metricValue == null) {
                     throw new NoRequestedMetricException(
                         "Requested metric '" +
                         metric.getID() +
@@ -110,9 +232,9 @@ public class AttributesStorage {
                         "'"
                     );
                 }
+
+                values[featuresMatrix.rowStart(row) + column] = metricValue;
             }
         }
-
-        return features;
     }
 }
@@ -0,0 +1,143 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.attributes;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.metricModel.MetricsRun;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.Algorithm;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesStorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates {@link AttributesStorage}s for one {@link EntitiesStorage} and one {@link MetricsRun}
+ * and shares them between {@link Algorithm}s which request the same metrics. Attributes storage
+ * is never changed after creation, so one storage can be used by several algorithms at the same
+ * time.
+ * <p>
+ * Storages are keyed by the normalized list of metrics: identifiers of metrics grouped by
+ * category in order of {@link MetricCategory}. Metrics of different categories never share a
+ * column of {@link FeaturesMatrix}, so lists with the same key produce the same storage.
+ * Methods of this class can be called from several threads, a storage for a key is built only
+ * once.
+ */
+public class AttributesStorageProvider {
+    private final @NotNull EntitiesStorage entities;
+
+    private final @NotNull MetricsRun metricsRun;
+
+    private final @NotNull ConcurrentMap<List<String>, FutureTask<AttributesStorage>> storages =
+            new ConcurrentHashMap<>();
+
+    private final @NotNull AtomicInteger hits = new AtomicInteger();
+
+    private final @NotNull AtomicInteger misses = new AtomicInteger();
+
+    private final @NotNull AtomicLong buildTime = new AtomicLong();
+
+    public AttributesStorageProvider(
+        final @NotNull EntitiesStorage entities,
+        final @NotNull MetricsRun metricsRun
+    ) {
+        this.entities = entities;
+        this.metricsRun = metricsRun;
+    }
+
+    /**
+     * Returns attributes storage for given metrics. Storage is created on the first request with
+     * the same normalized list of metrics, later requests get the same object.
+     *
+     * @param metrics metrics that must be used to create features vectors.
+     * @throws NoRequestedMetricException if there are some missing metric calculation results.
+     */
+    public @NotNull AttributesStorage getAttributes(
+        final @NotNull List<Metric> metrics
+    ) throws NoRequestedMetricException {
+        final List<String> key = normalize(metrics);
+        final FutureTask<AttributesStorage> task = new FutureTask<>(() -> {
+            final long startTime = System.currentTimeMillis();
+            try {
+                return new AttributesStorage(entities, metrics, metricsRun);
+            } finally {
+                buildTime.addAndGet(System.currentTimeMillis() - startTime);
+            }
+        });
+
+        FutureTask<AttributesStorage> storage = storages.putIfAbsent(key, task);
+        if (storage == null) {
+            misses.incrementAndGet();
+            storage = task;
+            storage.run();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return await(storage);
+    }
+
+    /** Returns number of requests which were served with an already created storage. */
+    public int getHitsCount() {
+        return hits.get();
+    }
+
+    /** Returns number of requests which created a new storage. */
+    public int getMissesCount() {
+        return misses.get();
+    }
+
+    /** Returns total time spent on creation of storages in milliseconds. */
+    public long getBuildTime() {
+        return buildTime.get();
+    }
+
+    private static @NotNull List<String> normalize(final @NotNull List<Metric> metrics) {
+        final Map<MetricCategory, List<String>> byCategory = new EnumMap<>(MetricCategory.class);
+        for (Metric metric : metrics) {
+            byCategory.computeIfAbsent(metric.getCategory(), it -> new ArrayList<>()).add(metric.getID());
+        }
+
+        final List<String> key = new ArrayList<>();
+        byCategory.forEach((category, identifiers) -> {
+            key.add(category.name());
+            key.addAll(identifiers);
+        });
+        return key;
+    }
+
+    private static @NotNull AttributesStorage await(
+        final @NotNull FutureTask<AttributesStorage> storage
+    ) throws NoRequestedMetricException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return storage.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof NoRequestedMetricException) {
+                throw (NoRequestedMetricException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -15,6 +15,15 @@ public class ClassAttributes extends ElementAttributes {
         this.classEntity = classEntity;
     }
 
+    public ClassAttributes(
+        final @NotNull ClassEntity classEntity,
+        final @NotNull FeaturesMatrix featuresMatrix,
+        final int row
+    ) {
+        super(featuresMatrix, row);
+        this.classEntity = classEntity;
+    }
+
     @Override
     public @NotNull CodeEntity getOriginalEntity() {
         return classEntity;
@@ -14,6 +14,15 @@ public abstract class ClassInnerEntityAttributes extends ElementAttributes {
         this.containingClassAttributes = containingClassAttributes;
     }
 
+    public ClassInnerEntityAttributes(
+        final @NotNull FeaturesMatrix featuresMatrix,
+        final int row,
+        final @NotNull ClassAttributes containingClassAttributes
+    ) {
+        super(featuresMatrix, row);
+        this.containingClassAttributes = containingClassAttributes;
+    }
+
     public @NotNull ClassAttributes getContainingClassAttributes() {
         return containingClassAttributes;
     }
@@ -6,25 +6,35 @@ import org.jetbrains.research.groups.ml_methods.algorithm.Algorithm;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.CodeEntity;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.RelevantProperties;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * Objects of this class contain useful information (attributes) for some {@link PsiElement}.
- * Namely they store array of {@code double} values which represents extracted features and
+ * Namely they store a row of {@link FeaturesMatrix} which represents extracted features and
  * {@link RelevantProperties}. Array of features contains not all available metrics but just some
- * part of them that is required for a particular {@link Algorithm}. It is supposed that for every
- * run of any {@link Algorithm} for each relevant {@link PsiElement} there will be instantiated a
- * new fresh {@link ElementAttributes}.
+ * part of them that is required for a particular {@link Algorithm}.
+ * <p>
+ * Attributes are immutable after creation: neither features nor properties are ever changed.
+ * Storages created by {@link AttributesStorageProvider} are shared between all algorithms that
+ * request the same metrics, possibly running at the same time, so the same attributes object can
+ * be read concurrently by several algorithms. Algorithms must never write to arrays returned by
+ * {@link #getFeaturesMatrix} and must keep any per-run state outside of attributes.
  */
 public abstract class ElementAttributes {
-    /**
-     * Array of {@code double} values only to improve performance. It is not supposed to be changed.
-     */
-    private final @NotNull double[] features;
+    private final @NotNull FeaturesMatrix featuresMatrix;
+
+    private final int row;
 
     /** Initializes attributes. */
     public ElementAttributes(final @NotNull double[] features) {
-        this.features = features;
+        this(FeaturesMatrix.ofRow(features), 0);
+    }
+
+    /** Initializes attributes whose features are stored in a given row of a matrix. */
+    public ElementAttributes(final @NotNull FeaturesMatrix featuresMatrix, final int row) {
+        this.featuresMatrix = featuresMatrix;
+        this.row = row;
     }
 
     /**
@@ -33,10 +43,37 @@ public abstract class ElementAttributes {
     public abstract @NotNull CodeEntity getOriginalEntity();
 
     /**
-     * Returns array of features. ATTENTION: this array is not supposed to be changed directly.
+     * Returns copy of features. Use {@link #getFeaturesMatrix} and {@link #getFeaturesOffset} in
+     * performance critical code instead.
      */
     public @NotNull double[] getRawFeatures() {
-        return features;
+        final int offset = getFeaturesOffset();
+        return Arrays.copyOfRange(featuresMatrix.getValues(), offset, offset + getFeaturesCount());
+    }
+
+    /**
+     * Returns matrix features of this element are stored in.
+     */
+    public @NotNull FeaturesMatrix getFeaturesMatrix() {
+        return featuresMatrix;
+    }
+
+    /**
+     * Returns row id of this element in its {@link FeaturesMatrix}.
+     */
+    public int getFeaturesRow() {
+        return row;
+    }
+
+    /**
+     * Returns offset of first feature of this element in {@link FeaturesMatrix#getValues}.
+     */
+    public int getFeaturesOffset() {
+        return featuresMatrix.rowStart(row);
+    }
+
+    public int getFeaturesCount() {
+        return featuresMatrix.rowLength(row);
     }
 
     /**
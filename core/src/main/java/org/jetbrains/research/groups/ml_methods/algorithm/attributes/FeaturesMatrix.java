@@ -0,0 +1,67 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.attributes;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Features of all entities of one {@link AttributesStorage} stored in one contiguous array.
+ * Every entity gets a dense {@code int} row id, features of an entity occupy a row of the matrix
+ * in row-major layout. Rows may have different lengths (classes and methods are measured with
+ * different metrics), so a row is addressed by offsets: features of row {@code i} are stored in
+ * {@code getValues()[rowStart(i)]} .. {@code getValues()[rowEnd(i) - 1]}.
+ * <p>
+ * Such layout allows {@link org.jetbrains.research.groups.ml_methods.algorithm.distance.DistanceCalculator}
+ * to run tight loops over one primitive array and doesn't need an array object per entity.
+ */
+public class FeaturesMatrix {
+    private final @NotNull double[] values;
+
+    private final @NotNull int[] offsets;
+
+    /**
+     * Creates matrix from given values and offsets of rows.
+     *
+     * @param values features of all rows one after another.
+     * @param offsets offsets of rows in {@code values} followed by the length of {@code values}.
+     */
+    public FeaturesMatrix(final @NotNull double[] values, final @NotNull int[] offsets) {
+        this.values = values;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Creates matrix which consists of one row with given features.
+     */
+    public static @NotNull FeaturesMatrix ofRow(final @NotNull double[] features) {
+        return new FeaturesMatrix(features, new int[] {0, features.length});
+    }
+
+    public int getRowsCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns array with features of all rows. ATTENTION: this array is not supposed to be changed
+     * directly.
+     */
+    public @NotNull double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns offset of first feature of a given row.
+     */
+    public int rowStart(final int row) {
+        return offsets[row];
+    }
+
+    /**
+     * Returns offset which follows last feature of a given row.
+     */
+    public int rowEnd(final int row) {
+        return offsets[row + 1];
+    }
+
+    public int rowLength(final int row) {
+        return offsets[row + 1] - offsets[row];
+    }
+}
@@ -17,6 +17,16 @@ public class FieldAttributes extends ClassInnerEntityAttributes {
         this.fieldEntity = fieldEntity;
     }
 
+    public FieldAttributes(
+        final @NotNull FieldEntity fieldEntity,
+        final @NotNull FeaturesMatrix featuresMatrix,
+        final int row,
+        final @NotNull ClassAttributes containingClassAttributes
+    ) {
+        super(featuresMatrix, row, containingClassAttributes);
+        this.fieldEntity = fieldEntity;
+    }
+
     @Override
     public @NotNull CodeEntity getOriginalEntity() {
         return fieldEntity;
@@ -17,6 +17,16 @@ public class MethodAttributes extends ClassInnerEntityAttributes {
         this.methodEntity = methodEntity;
     }
 
+    public MethodAttributes(
+        final @NotNull MethodEntity methodEntity,
+        final @NotNull FeaturesMatrix featuresMatrix,
+        final int row,
+        final @NotNull ClassAttributes containingClassAttributes
+    ) {
+        super(featuresMatrix, row, containingClassAttributes);
+        this.methodEntity = methodEntity;
+    }
+
     @Override
     public @NotNull CodeEntity getOriginalEntity() {
         return methodEntity;
@@ -3,9 +3,13 @@ package org.jetbrains.research.groups.ml_methods.algorithm.distance;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributes;
 
+import java.util.List;
+
 /**
  * An interface for a class that can calculate distance between to entities based on their
- * {@link ElementAttributes}.
+ * {@link ElementAttributes}. Features of attributes should be read from
+ * {@link ElementAttributes#getFeaturesMatrix} at {@link ElementAttributes#getFeaturesOffset}
+ * rather than copied with {@link ElementAttributes#getRawFeatures}.
  */
 public interface DistanceCalculator {
     /**
@@ -16,4 +20,48 @@ public interface DistanceCalculator {
      * @return real-valued distance.
      */
     double distance(@NotNull ElementAttributes from, @NotNull ElementAttributes to);
+
+    /**
+     * Calculates distances from one set of attributes to several others. Implementations are
+     * supposed to compute everything that depends only on {@code from} once per call.
+     *
+     * @param from left-hand side argument or initial point.
+     * @param targets list destination points are taken from.
+     * @param positions positions of destination points in {@code targets}.
+     * @param distances array to store results to, {@code distances[i]} is set to distance to
+     *                  {@code targets.get(positions[i])}. Must be at least as long as
+     *                  {@code positions}.
+     */
+    default void distances(
+        final @NotNull ElementAttributes from,
+        final @NotNull List<? extends ElementAttributes> targets,
+        final @NotNull int[] positions,
+        final @NotNull double[] distances
+    ) {
+        for (int i = 0; i < positions.length; i++) {
+            distances[i] = distance(from, targets.get(positions[i]));
+        }
+    }
+
+    /**
+     * Calculates distances from one set of attributes to a slice of a list.
+     *
+     * @param from left-hand side argument or initial point.
+     * @param targets list destination points are taken from.
+     * @param begin position of first destination point in {@code targets}.
+     * @param end position which follows last destination point in {@code targets}.
+     * @param distances array to store results to, {@code distances[i - begin]} is set to distance
+     *                  to {@code targets.get(i)}.
+     */
+    default void distances(
+        final @NotNull ElementAttributes from,
+        final @NotNull List<? extends ElementAttributes> targets,
+        final int begin,
+        final int end,
+        final @NotNull double[] distances
+    ) {
+        for (int i = begin; i < end; i++) {
+            distances[i - begin] = distance(from, targets.get(i));
+        }
+    }
 }
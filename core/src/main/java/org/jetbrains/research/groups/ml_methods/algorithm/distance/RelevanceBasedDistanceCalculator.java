@@ -1,12 +1,19 @@
 package org.jetbrains.research.groups.ml_methods.algorithm.distance;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributes;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.CodeEntity;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.PropertiesGraph;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.RelevantProperties;
+
+import java.util.List;
 
 /**
  * It's just a distance formula taken from old version of {@link CodeEntity}
- * class.
+ * class. Batched versions take class, features and properties row of source entity once and
+ * don't allocate anything per target. All versions compute exactly the same values as the old formula, including order
+ * in which squares of features are summed.
  */
 public class RelevanceBasedDistanceCalculator implements DistanceCalculator {
     private static final @NotNull RelevanceBasedDistanceCalculator INSTANCE =
@@ -24,35 +31,206 @@ public class RelevanceBasedDistanceCalculator implements DistanceCalculator {
         final @NotNull ElementAttributes from,
         final @NotNull ElementAttributes to
     ) {
-        double ans = 0.0;
-        double w = 0.0;
+        return new Source(from).distance(to);
+    }
+
+    @Override
+    public void distances(
+        final @NotNull ElementAttributes from,
+        final @NotNull List<? extends ElementAttributes> targets,
+        final @NotNull int[] positions,
+        final @NotNull double[] distances
+    ) {
+        final Source source = new Source(from);
+        for (int i = 0; i < positions.length; i++) {
+            distances[i] = source.distance(targets.get(positions[i]));
+        }
+    }
+
+    @Override
+    public void distances(
+        final @NotNull ElementAttributes from,
+        final @NotNull List<? extends ElementAttributes> targets,
+        final int begin,
+        final int end,
+        final @NotNull double[] distances
+    ) {
+        final Source source = new Source(from);
+        for (int i = begin; i < end; i++) {
+            distances[i - begin] = source.distance(targets.get(i));
+        }
+    }
+
+    /**
+     * Returns lower bound of {@link #distance} which is computed in constant time without
+     * intersecting properties of entities. Bound uses weighted sizes of properties, their maximum
+     * weights and norms of features. Computed in floating point, it never exceeds the computed
+     * distance. Returns {@code 0} if properties of entities are not frozen into the same graph.
+     *
+     * @param sharedProperties number of properties entities share (or any upper bound of it).
+     */
+    public double lowerBound(
+        final @NotNull ElementAttributes from,
+        final @NotNull ElementAttributes to,
+        final int sharedProperties
+    ) {
+        final RelevantProperties fromProperties = from.getRelevantProperties();
+        final RelevantProperties toProperties = to.getRelevantProperties();
+        final PropertiesGraph graph = fromProperties.getGraph();
+        if (graph == null || graph != toProperties.getGraph()) {
+            return 0;
+        }
+        if (sharedProperties == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        final int fromId = fromProperties.getGraphId();
+        final int toId = toProperties.getGraphId();
+        // every common property adds minimum of its weights to intersection and subtracts maximum from union
+        final long maxIntersection = Math.min(
+            Math.min(graph.totalWeight(fromId), graph.totalWeight(toId)),
+            (long) sharedProperties * Math.min(graph.maxWeight(fromId), graph.maxWeight(toId))
+        );
+        final long maxSubtracted = Math.min(
+            (long) graph.totalWeight(fromId) + graph.totalWeight(toId),
+            (long) sharedProperties * Math.max(graph.maxWeight(fromId), graph.maxWeight(toId))
+        );
+        final long minUnion = (long) graph.size(fromId) + graph.size(toId) - maxSubtracted;
+        if (minUnion <= 0) {
+            return 0;
+        }
 
-        if (from.getClass().equals(to.getClass())) {
-            for (int i = 0; i < to.getRawFeatures().length; i++) {
-                w += square(to.getRawFeatures()[i] + from.getRawFeatures()[i]);
+        final double w = from.getClass().equals(to.getClass()) ? 0 : sumOfSquares(from, to);
+        final double ans = (w == 0 ? 0 : 1.0 / (w + 1)) + (1 - maxIntersection / (1.0 * minUnion));
+        return ans <= 0 ? 0 : Math.sqrt(ans);
+    }
+
+    /**
+     * Values that depend only on source entity of distances, taken once for all targets.
+     */
+    private static final class Source {
+        private final @NotNull ElementAttributes from;
+
+        private final @NotNull Class<?> kind;
+
+        private final @NotNull double[] features;
+
+        private final int featuresOffset;
+
+        private final @NotNull RelevantProperties properties;
+
+        /**
+         * Graph properties of source are frozen into or {@code null}.
+         */
+        private final @Nullable PropertiesGraph graph;
+
+        private final int graphId;
+
+        private final int rowStart;
+
+        private final int rowEnd;
+
+        private Source(final @NotNull ElementAttributes from) {
+            this.from = from;
+            kind = from.getClass();
+            features = from.getFeaturesMatrix().getValues();
+            featuresOffset = from.getFeaturesOffset();
+            properties = from.getRelevantProperties();
+            graph = properties.getGraph();
+            graphId = graph == null ? -1 : properties.getGraphId();
+            rowStart = graph == null ? 0 : graph.rowStart(graphId);
+            rowEnd = graph == null ? 0 : graph.rowEnd(graphId);
+        }
+
+        private double distance(final @NotNull ElementAttributes to) {
+            final double w;
+            if (kind.equals(to.getClass())) {
+                w = sumOfSquares(
+                    to.getFeaturesMatrix().getValues(), to.getFeaturesOffset(),
+                    features, featuresOffset,
+                    to.getFeaturesCount()
+                );
+            } else {
+                w = sumOfSquares(from, to);
             }
-        } else {
-            for (double aVector : to.getRawFeatures()) {
-                w += square(aVector);
+
+            double ans = w == 0 ? 0 : 1.0 / (w + 1);
+            final RelevantProperties toProperties = to.getRelevantProperties();
+            int rpIntersect = 0;
+            int rpUnion;
+            if (graph != null && graph == toProperties.getGraph()) {
+                // one merge-join gives both intersection and union, the same as PropertiesGraph computes
+                final int[] targets = graph.getTargets();
+                final int[] weights = graph.getWeights();
+                final int toId = toProperties.getGraphId();
+                rpUnion = graph.size(graphId) + graph.size(toId);
+                int i = rowStart;
+                int j = graph.rowStart(toId);
+                final int toEnd = graph.rowEnd(toId);
+                while (i < rowEnd && j < toEnd) {
+                    if (targets[i] < targets[j]) {
+                        i++;
+                    } else if (targets[i] > targets[j]) {
+                        j++;
+                    } else {
+                        rpIntersect += Math.min(weights[i], weights[j]);
+                        rpUnion -= Math.max(weights[i], weights[j]);
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                rpIntersect = toProperties.sizeOfIntersection(properties);
+                if (rpIntersect == 0) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                rpUnion = properties.sizeOfUnion(toProperties);
             }
 
-            for (double aVector : from.getRawFeatures()) {
-                w += square(aVector);
+            if (rpIntersect == 0) {
+                return Double.POSITIVE_INFINITY;
             }
+            ans += (1 - rpIntersect / (1.0 * rpUnion));
+
+            return Math.sqrt(ans);
         }
+    }
 
-        ans += w == 0 ? 0 : 1.0 / (w + 1);
-        final int rpIntersect = to.getRelevantProperties().sizeOfIntersection(from.getRelevantProperties());
-        if (rpIntersect == 0) {
-            return Double.POSITIVE_INFINITY;
+    /**
+     * Returns sum of squares of features of two entities of different kinds. Squares of features
+     * of {@code to} and then of {@code from} are added one by one, so that the result is exactly
+     * the same as the one of the old formula.
+     */
+    private static double sumOfSquares(final @NotNull ElementAttributes from, final @NotNull ElementAttributes to) {
+        final double[] toFeatures = to.getFeaturesMatrix().getValues();
+        final double[] fromFeatures = from.getFeaturesMatrix().getValues();
+        double result = 0;
+        for (int i = to.getFeaturesOffset(); i < to.getFeaturesOffset() + to.getFeaturesCount(); i++) {
+            result += toFeatures[i] * toFeatures[i];
+        }
+        for (int i = from.getFeaturesOffset(); i < from.getFeaturesOffset() + from.getFeaturesCount(); i++) {
+            result += fromFeatures[i] * fromFeatures[i];
         }
-        ans += (1 - rpIntersect /
-                (1.0 * from.getRelevantProperties().sizeOfUnion(to.getRelevantProperties())));
 
-        return Math.sqrt(ans);
+        return result;
     }
 
-    private double square(double value) {
-        return value * value;
+    /**
+     * Returns sum of squares of element-wise sums of two rows of features.
+     */
+    private static double sumOfSquares(
+        final @NotNull double[] first,
+        final int firstOffset,
+        final @NotNull double[] second,
+        final int secondOffset,
+        final int length
+    ) {
+        double result = 0;
+        for (int i = 0; i < length; i++) {
+            final double sum = first[firstOffset + i] + second[secondOffset + i];
+            result += sum * sum;
+        }
+
+        return result;
     }
 }
@@ -0,0 +1,417 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.project.Project;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.research.groups.ml_methods.logging.Logging;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Persistent cache of {@link EntitySearcher} results. For every analyzed file it stores the
+ * contribution of this file: entities declared in it and all {@link RelevantProperties} edges
+ * that were added while its PSI was walked. Contributions are keyed by url of a file and hash of
+ * its content, so that next search walks PSI only of files that were changed (and of files that
+ * depend on them) and replays stored edges for all other files.
+ * <p>
+ * Entities are referenced by url of a file they are declared in, their kind and human readable
+ * name. Cache is stored in a compact binary format under the system directory of a project.
+ */
+public class EntitiesCache {
+    private static final Logger LOGGER = Logging.getLogger(EntitiesCache.class);
+
+    private static final int MAGIC = 0x41524543; // "AREC"
+
+    /** Must be changed whenever format or anything that affects stored edges is changed. */
+    private static final int VERSION = 1;
+
+    static final byte CLASS = 0;
+    static final byte METHOD = 1;
+    static final byte FIELD = 2;
+
+    static final byte CLASS_PROPERTY = 0;
+    static final byte FIELD_PROPERTY = 1;
+    static final byte NOT_OVERRIDE_METHOD_PROPERTY = 2;
+    static final byte OVERRIDE_METHOD_PROPERTY = 3;
+
+    private final @Nullable Path location;
+
+    private final @NotNull Map<String, FileContribution> contributions;
+
+    private int reusedFiles = 0;
+
+    private @NotNull Set<String> walkedUrls = Collections.emptySet();
+
+    private EntitiesCache(
+        final @Nullable Path location,
+        final @NotNull Map<String, FileContribution> contributions
+    ) {
+        this.location = location;
+        this.contributions = contributions;
+    }
+
+    /**
+     * Creates empty cache which is not backed by any file.
+     */
+    public static @NotNull EntitiesCache inMemory() {
+        return new EntitiesCache(null, new HashMap<>());
+    }
+
+    /**
+     * Loads cache of a given project from its system directory. Returns empty cache if there
+     * is no stored cache or it can't be read.
+     */
+    public static @NotNull EntitiesCache load(final @NotNull Project project) {
+        return load(Paths.get(
+            PathManager.getSystemPath(),
+            "architecture-reloaded",
+            project.getLocationHash(),
+            "entities.bin"
+        ));
+    }
+
+    /**
+     * Loads cache from a given file. Returns empty cache if there is no such file or it can't be
+     * read.
+     */
+    static @NotNull EntitiesCache load(final @NotNull Path location) {
+        if (!Files.isRegularFile(location)) {
+            return new EntitiesCache(location, new HashMap<>());
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(location)))) {
+            return new EntitiesCache(location, read(input));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read entities cache " + location + ": " + e.getMessage());
+            return new EntitiesCache(location, new HashMap<>());
+        }
+    }
+
+    /**
+     * Writes this cache to the system directory of a project it was loaded for. Does nothing
+     * for in-memory caches. Cache is written to a unique temporary file first, so that several
+     * caches of one project can be saved at the same time and the stored cache is replaced by
+     * a complete one.
+     */
+    public void save() {
+        if (location == null) {
+            return;
+        }
+
+        Path temporary = null;
+        try {
+            Files.createDirectories(location.getParent());
+            temporary = Files.createTempFile(location.getParent(), location.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                write(output);
+            }
+            Files.move(temporary, location, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write entities cache " + location + ": " + e.getMessage());
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /** Returns number of files whose contribution was taken from cache during last search. */
+    public int getReusedFilesCount() {
+        return reusedFiles;
+    }
+
+    /** Returns number of files whose PSI was walked during last search. */
+    public int getWalkedFilesCount() {
+        return walkedUrls.size();
+    }
+
+    /**
+     * Returns urls of files whose PSI was walked during last search. Only entities declared in
+     * these files could get different {@link RelevantProperties}.
+     */
+    public @NotNull Set<String> getWalkedUrls() {
+        return Collections.unmodifiableSet(walkedUrls);
+    }
+
+    @Nullable FileContribution get(final @NotNull String url) {
+        return contributions.get(url);
+    }
+
+    /** Returns names of all classes known to cache, i.e. found during previous search. */
+    @NotNull Set<String> getClassNames() {
+        final Set<String> classNames = new HashSet<>();
+        for (FileContribution contribution : contributions.values()) {
+            classNames.addAll(contribution.classNames);
+        }
+
+        return classNames;
+    }
+
+    @NotNull Set<String> getUrls() {
+        return Collections.unmodifiableSet(contributions.keySet());
+    }
+
+    /**
+     * Replaces content of this cache with contributions of the last search.
+     */
+    void update(
+        final @NotNull List<FileContribution> newContributions,
+        final int reusedFiles,
+        final @NotNull Set<String> walkedUrls
+    ) {
+        contributions.clear();
+        for (FileContribution contribution : newContributions) {
+            if (contribution.cacheable) {
+                contributions.put(contribution.url, contribution);
+            }
+        }
+
+        this.reusedFiles = reusedFiles;
+        this.walkedUrls = walkedUrls;
+    }
+
+    /**
+     * Computes 64-bit FNV-1a hash of a file content.
+     */
+    static long hash(final @NotNull CharSequence content) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < content.length(); i++) {
+            hash ^= content.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash ^ content.length();
+    }
+
+    private void write(final @NotNull DataOutputStream output) throws IOException {
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final Map<EntityKey, Integer> keys = new LinkedHashMap<>();
+        for (FileContribution contribution : contributions.values()) {
+            intern(contribution.url, strings);
+            contribution.classNames.forEach(name -> intern(name, strings));
+            contribution.declared.forEach(key -> intern(key, keys, strings));
+            for (PropertyEdge edge : contribution.edges) {
+                intern(edge.owner, keys, strings);
+                intern(edge.target, keys, strings);
+            }
+        }
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+
+        writeVarInt(output, strings.size());
+        for (String string : strings.keySet()) {
+            output.writeUTF(string);
+        }
+
+        writeVarInt(output, keys.size());
+        for (EntityKey key : keys.keySet()) {
+            writeVarInt(output, strings.get(key.url));
+            output.writeByte(key.kind);
+            writeVarInt(output, strings.get(key.name));
+        }
+
+        writeVarInt(output, contributions.size());
+        for (FileContribution contribution : contributions.values()) {
+            writeVarInt(output, strings.get(contribution.url));
+            output.writeLong(contribution.hash);
+
+            writeVarInt(output, contribution.classNames.size());
+            for (String name : contribution.classNames) {
+                writeVarInt(output, strings.get(name));
+            }
+
+            writeVarInt(output, contribution.declared.size());
+            for (EntityKey key : contribution.declared) {
+                writeVarInt(output, keys.get(key));
+            }
+
+            writeVarInt(output, contribution.edges.size());
+            for (PropertyEdge edge : contribution.edges) {
+                writeVarInt(output, keys.get(edge.owner));
+                output.writeByte(edge.type);
+                writeVarInt(output, keys.get(edge.target));
+                writeVarInt(output, edge.weight);
+            }
+        }
+    }
+
+    private static @NotNull Map<String, FileContribution> read(final @NotNull DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            LOGGER.info("Entities cache has unknown format and will be rebuilt");
+            return new HashMap<>();
+        }
+
+        final String[] strings = new String[readVarInt(input)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = input.readUTF();
+        }
+
+        final EntityKey[] keys = new EntityKey[readVarInt(input)];
+        for (int i = 0; i < keys.length; i++) {
+            final String url = strings[readVarInt(input)];
+            final byte kind = input.readByte();
+            keys[i] = new EntityKey(url, kind, strings[readVarInt(input)]);
+        }
+
+        final int contributionsCount = readVarInt(input);
+        final Map<String, FileContribution> contributions = new HashMap<>(2 * contributionsCount);
+        for (int i = 0; i < contributionsCount; i++) {
+            final String url = strings[readVarInt(input)];
+            final FileContribution contribution = new FileContribution(url, input.readLong());
+
+            final int classNamesCount = readVarInt(input);
+            for (int j = 0; j < classNamesCount; j++) {
+                contribution.classNames.add(strings[readVarInt(input)]);
+            }
+
+            final int declaredCount = readVarInt(input);
+            for (int j = 0; j < declaredCount; j++) {
+                contribution.declared.add(keys[readVarInt(input)]);
+            }
+
+            final int edgesCount = readVarInt(input);
+            for (int j = 0; j < edgesCount; j++) {
+                final EntityKey owner = keys[readVarInt(input)];
+                final byte type = input.readByte();
+                final EntityKey target = keys[readVarInt(input)];
+                contribution.edges.add(new PropertyEdge(owner, type, target, readVarInt(input)));
+            }
+
+            contributions.put(url, contribution);
+        }
+
+        return contributions;
+    }
+
+    private static void intern(final @NotNull String string, final @NotNull Map<String, Integer> strings) {
+        strings.putIfAbsent(string, strings.size());
+    }
+
+    private static void intern(
+        final @NotNull EntityKey key,
+        final @NotNull Map<EntityKey, Integer> keys,
+        final @NotNull Map<String, Integer> strings
+    ) {
+        intern(key.url, strings);
+        intern(key.name, strings);
+        keys.putIfAbsent(key, keys.size());
+    }
+
+    private static void writeVarInt(final @NotNull DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(final @NotNull DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte next = input.readByte();
+            value |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Reference to an entity that doesn't depend on PSI: url of a file where entity is declared,
+     * kind of entity and its human readable name.
+     */
+    static final class EntityKey {
+        final @NotNull String url;
+
+        final byte kind;
+
+        final @NotNull String name;
+
+        EntityKey(final @NotNull String url, final byte kind, final @NotNull String name) {
+            this.url = url;
+            this.kind = kind;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            EntityKey that = (EntityKey) o;
+            return kind == that.kind && url.equals(that.url) && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, kind, name);
+        }
+    }
+
+    /**
+     * Property with a given weight that was added to {@link RelevantProperties} of owner entity.
+     */
+    static final class PropertyEdge {
+        final @NotNull EntityKey owner;
+
+        final byte type;
+
+        final @NotNull EntityKey target;
+
+        final int weight;
+
+        PropertyEdge(final @NotNull EntityKey owner, final byte type, final @NotNull EntityKey target, final int weight) {
+            this.owner = owner;
+            this.type = type;
+            this.target = target;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Everything {@link EntitySearcher} has found in one file.
+     */
+    static final class FileContribution {
+        final @NotNull String url;
+
+        final long hash;
+
+        /** Names of all classes of this file, they define which classes belong to project. */
+        final @NotNull List<String> classNames = new ArrayList<>();
+
+        /** Entities accepted by {@link EntitySearcher} in order they were found. */
+        final @NotNull List<EntityKey> declared = new ArrayList<>();
+
+        final @NotNull List<PropertyEdge> edges = new ArrayList<>();
+
+        /** {@code false} if some entity of this file can't be referenced by {@link EntityKey}. */
+        boolean cacheable = true;
+
+        FileContribution(final @NotNull String url, final long hash) {
+            this.url = url;
+            this.hash = hash;
+        }
+
+        /** Returns urls of files which declare entities this contribution refers to. */
+        @NotNull Set<String> getDependencies() {
+            final Set<String> dependencies = new HashSet<>();
+            for (PropertyEdge edge : edges) {
+                dependencies.add(edge.owner.url);
+                dependencies.add(edge.target.url);
+            }
+
+            return dependencies;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.jetbrains.research.groups.ml_methods.algorithm.entity;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.research.groups.ml_methods.utils.SupersClosure;
 
 import java.util.Collections;
 import java.util.List;
@@ -18,21 +20,43 @@ public class EntitiesStorage {
 
     private final @NotNull List<FieldEntity> fields;
 
+    private final @NotNull PropertiesGraph propertiesGraph;
+
+    private final @Nullable SupersClosure supersClosure;
+
     private final long buildTime;
 
     /**
-     * Creates storage from actual entities.
+     * Creates storage from actual entities. {@link RelevantProperties} of given entities are
+     * frozen into a {@link PropertiesGraph}, so they must not be changed afterwards.
      */
     public EntitiesStorage(
         final @NotNull List<ClassEntity> classes,
         final @NotNull List<MethodEntity> methods,
         final @NotNull List<FieldEntity> fields,
         final long buildTime
+    ) {
+        this(classes, methods, fields, PropertiesGraph.build(classes, methods, fields), null, buildTime);
+    }
+
+    /**
+     * Creates storage from actual entities, already built {@link PropertiesGraph} of their
+     * {@link RelevantProperties} and {@link SupersClosure} filled during the search.
+     */
+    EntitiesStorage(
+        final @NotNull List<ClassEntity> classes,
+        final @NotNull List<MethodEntity> methods,
+        final @NotNull List<FieldEntity> fields,
+        final @NotNull PropertiesGraph propertiesGraph,
+        final @Nullable SupersClosure supersClosure,
+        final long buildTime
     ) {
         this.classes = classes;
         this.methods = methods;
         this.fields = fields;
 
+        this.propertiesGraph = propertiesGraph;
+        this.supersClosure = supersClosure;
         this.buildTime = buildTime;
     }
 
@@ -48,6 +72,22 @@ public class EntitiesStorage {
         return Collections.unmodifiableList(fields);
     }
 
+    /**
+     * Returns frozen representation of {@link RelevantProperties} of all entities in this storage
+     * with dense {@code int} ids of entities.
+     */
+    public @NotNull PropertiesGraph getPropertiesGraph() {
+        return propertiesGraph;
+    }
+
+    /**
+     * Returns closure of supers of classes and methods computed during the search of entities or
+     * {@code null} if storage wasn't created by a search.
+     */
+    public @Nullable SupersClosure getSupersClosure() {
+        return supersClosure;
+    }
+
     public long getBuildTime() {
         return buildTime;
     }
@@ -1,10 +1,21 @@
 package org.jetbrains.research.groups.ml_methods.algorithm.entity;
 
 import com.intellij.analysis.AnalysisScope;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.*;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.stubs.StubTree;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiUtil;
 import com.sixrr.metrics.metricModel.MetricsRun;
 import com.sixrr.metrics.utils.MethodUtils;
@@ -12,13 +23,22 @@ import org.apache.log4j.Logger;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache.EntityKey;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache.FileContribution;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache.PropertyEdge;
 import org.jetbrains.research.groups.ml_methods.algorithm.properties.finder_strategy.FinderStrategy;
 import org.jetbrains.research.groups.ml_methods.algorithm.properties.finder_strategy.NewStrategy;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
-import org.jetbrains.research.groups.ml_methods.utils.PSIUtil;
+import org.jetbrains.research.groups.ml_methods.utils.SupersClosure;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
+import static org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache.*;
 import static org.jetbrains.research.groups.ml_methods.utils.PSIUtil.getHumanReadableName;
 
 /**
@@ -29,7 +49,19 @@ public class EntitySearcher {
 
     private static final Logger LOGGER = Logging.getLogger(EntitySearcher.class);
 
-    private final Map<String, PsiClass> classForName = new HashMap<>();
+    /** Phase of {@link Instrumentation} in which files are walked to find entities. */
+    public static final String UNITS_PHASE = "entities.units";
+
+    /**
+     * Counter of {@link Instrumentation} of files whose entities were found in stub trees, other
+     * files of {@link #UNITS_PHASE} were walked through AST.
+     */
+    public static final String STUB_UNITS_COUNTER = UNITS_PHASE + ".stubs";
+
+    /** Phase of {@link Instrumentation} in which files are walked to find properties. */
+    public static final String PROPERTIES_PHASE = "entities.properties";
+
+    private final Set<String> classNames = new HashSet<>();
 
     final List<ClassEntity> classes = new ArrayList<>();
     final List<MethodEntity> methods = new ArrayList<>();
@@ -43,33 +75,80 @@ public class EntitySearcher {
     private final long startTime;
     private final FinderStrategy strategy;
     private final ProgressIndicator indicator;
+    private final @Nullable EntitiesCache cache;
+
+    /** Contribution of a file which PSI is being walked, {@code null} if cache isn't used. */
+    private @Nullable FileContribution contribution;
+    private final Map<CodeEntity, EntityKey> entityKeys = new IdentityHashMap<>();
+    private final Map<String, Map<EntityKey, PsiElement>> fileMembers = new HashMap<>();
+    private final AtomicInteger propertiesCalculated = new AtomicInteger();
+
+    /** Pool PSI of files is walked in, {@code null} if files are walked sequentially. */
+    private final @Nullable ForkJoinPool pool;
+    private final @NotNull Instrumentation instrumentation;
+    /** Supers of classes and methods shared by both passes and stored in the result. */
+    private final @NotNull SupersClosure supers;
+    /** Cache of properties pass, created when set of project classes is known. */
+    private @Nullable PropertiesResolveCache resolveCache;
+    private long modificationCount = -1;
 
     private ClassEntity getCodeEntity(final @NotNull PsiClass psiClass) {
         return classEntities.computeIfAbsent(psiClass, ClassEntity::new);
     }
 
     private MethodEntity getCodeEntity(final @NotNull PsiMethod psiMethod) {
-        return methodEntities.computeIfAbsent(psiMethod, psi -> new MethodEntity(psi, getCodeEntity(psi.getContainingClass())));
+        return methodEntities.computeIfAbsent(psiMethod, psi -> new MethodEntity(psi, getCodeEntity(psi.getContainingClass()), supers));
     }
 
     private FieldEntity getCodeEntity(final @NotNull PsiField psiField) {
         return fieldEntities.computeIfAbsent(psiField, psi -> new FieldEntity(psi, getCodeEntity(psi.getContainingClass())));
     }
 
+    private CodeEntity getCodeEntity(final @NotNull PsiElement element) {
+        if (element instanceof PsiClass) {
+            return getCodeEntity((PsiClass) element);
+        } else if (element instanceof PsiMethod) {
+            return getCodeEntity((PsiMethod) element);
+        } else if (element instanceof PsiField) {
+            return getCodeEntity((PsiField) element);
+        }
+
+        throw new IllegalArgumentException("Unexpected element: " + element);
+    }
+
     private void addCodeEntityFor(final @NotNull PsiClass psiClass) {
-        classes.add(getCodeEntity(psiClass));
+        classes.add(recordDeclared(getCodeEntity(psiClass)));
     }
 
     private void addCodeEntityFor(final @NotNull PsiMethod psiMethod) {
-        methods.add(getCodeEntity(psiMethod));
+        methods.add(recordDeclared(getCodeEntity(psiMethod)));
     }
 
     private void addCodeEntityFor(final @NotNull PsiField psiField) {
-        fields.add(getCodeEntity(psiField));
+        fields.add(recordDeclared(getCodeEntity(psiField)));
     }
 
-    private EntitySearcher(AnalysisScope scope) {
+    private void addCodeEntityFor(final @NotNull PsiElement element) {
+        if (element instanceof PsiClass) {
+            addCodeEntityFor((PsiClass) element);
+        } else if (element instanceof PsiMethod) {
+            addCodeEntityFor((PsiMethod) element);
+        } else {
+            addCodeEntityFor((PsiField) element);
+        }
+    }
+
+    private EntitySearcher(
+        AnalysisScope scope,
+        @Nullable EntitiesCache cache,
+        @Nullable ForkJoinPool pool,
+        @NotNull Instrumentation instrumentation
+    ) {
         this.scope = scope;
+        this.cache = cache;
+        this.pool = pool;
+        this.instrumentation = instrumentation;
+        supers = new SupersClosure(scope.getProject());
         strategy = NewStrategy.getInstance();
         startTime = System.currentTimeMillis();
         if (ProgressManager.getInstance().hasProgressIndicator()) {
@@ -87,67 +166,779 @@ public class EntitySearcher {
      * @return different sets of entities encapsulated in {@link EntitiesStorage}.
      */
     public static EntitiesStorage analyze(AnalysisScope scope) {
-        final EntitySearcher finder = new EntitySearcher(scope);
-        return finder.runCalculations();
+        return analyze(scope, null);
+    }
+
+    /**
+     * Does the same as {@link #analyze(AnalysisScope)} but walks PSI only of files that were
+     * changed since the previous search with a given cache and of files whose references could
+     * be resolved differently after these changes: files that refer to entities of changed files
+     * or of their supertypes and files that mention classes of changed files by simple name.
+     * Contributions of all other files are taken from cache. Afterwards cache contains
+     * contributions of all files of a given scope.
+     *
+     * @param scope a scope to search for entities in.
+     * @param cache cache with results of previous search or {@code null} if it shouldn't be used.
+     * @return different sets of entities encapsulated in {@link EntitiesStorage}.
+     */
+    public static EntitiesStorage analyze(AnalysisScope scope, @Nullable EntitiesCache cache) {
+        final EntitySearcher finder = new EntitySearcher(scope, cache, null, new Instrumentation());
+        return cache == null ? finder.runCalculations() : finder.runCachedCalculations(cache);
+    }
+
+    /**
+     * Does the same as {@link #analyze(AnalysisScope, EntitiesCache)} but walks PSI of different
+     * files in parallel. Each file is walked in a separate non-blocking read action, so that
+     * search doesn't delay write actions. Entities and properties found in a file are stored
+     * locally and then merged with results of other files in order of files, which gives exactly
+     * the same result as sequential search. If PSI is changed during the search, it is started
+     * again. This method must be called without read access.
+     *
+     * @param scope a scope to search for entities in.
+     * @param cache cache with results of previous search or {@code null} if it shouldn't be used.
+     * @param parallelism number of threads PSI is walked in.
+     * @return different sets of entities encapsulated in {@link EntitiesStorage}.
+     */
+    public static EntitiesStorage analyzeInParallel(
+        final AnalysisScope scope,
+        final @Nullable EntitiesCache cache,
+        final int parallelism
+    ) {
+        return analyzeInParallel(scope, cache, parallelism, new Instrumentation());
+    }
+
+    /**
+     * Does the same as {@link #analyzeInParallel(AnalysisScope, EntitiesCache, int)} and records
+     * timings of both passes over files as {@link #UNITS_PHASE} and {@link #PROPERTIES_PHASE}
+     * in a given {@link Instrumentation}.
+     */
+    public static EntitiesStorage analyzeInParallel(
+        final AnalysisScope scope,
+        final @Nullable EntitiesCache cache,
+        final int parallelism,
+        final @NotNull Instrumentation instrumentation
+    ) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            while (true) {
+                final EntitySearcher finder = new EntitySearcher(scope, cache, pool, instrumentation);
+                try {
+                    return cache == null ? finder.runCalculations() : finder.runCachedCalculations(cache);
+                } catch (PsiChangedException e) {
+                    LOGGER.info("PSI was changed during search, search is restarted");
+                    finder.indicator.popState();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
     }
 
     private EntitiesStorage runCalculations() {
         indicator.pushState();
         indicator.setText("Searching entities");
         indicator.setIndeterminate(true);
+        final List<PsiFile> files = inReadAction(this::collectFiles);
         LOGGER.info("Indexing entities...");
-        scope.accept(new UnitsFinder());
+        try (Instrumentation.Timer ignored = instrumentation.start(UNITS_PHASE)) {
+            final List<FileUnits> units = walkFiles(files, this::findUnits);
+            inReadAction(() -> {
+                units.forEach(this::registerUnits);
+                return null;
+            });
+        }
+        instrumentation.addItems(UNITS_PHASE, files.size());
         indicator.setIndeterminate(false);
         LOGGER.info("Calculating properties...");
         indicator.setText("Calculating properties");
-        scope.accept(new PropertiesCalculator());
+        try (Instrumentation.Timer ignored = instrumentation.start(PROPERTIES_PHASE)) {
+            resolveCache = new PropertiesResolveCache(classNames);
+            final List<List<PsiEdge>> edges = walkFiles(files, this::calculateProperties);
+            inReadAction(() -> {
+                edges.forEach(this::registerProperties);
+                return null;
+            });
+        }
+        reportResolveCache();
+        instrumentation.addItems(PROPERTIES_PHASE, files.size());
+        indicator.popState();
+        return prepareResult();
+    }
+
+    private EntitiesStorage runCachedCalculations(final @NotNull EntitiesCache cache) {
+        indicator.pushState();
+        indicator.setText("Searching entities");
+        final List<PsiFile> files = inReadAction(this::collectFiles);
+
+        LOGGER.info("Indexing entities...");
+        final List<FileContribution> contributions = new ArrayList<>();
+        final Set<String> changedUrls = new HashSet<>();
+        try (Instrumentation.Timer ignored = instrumentation.start(UNITS_PHASE)) {
+            final List<IndexedFile> indexedFiles = walkFiles(files, file -> {
+                final long hash = EntitiesCache.hash(file.getViewProvider().getContents());
+                final FileContribution cached = cachedContribution(file, cache);
+                return new IndexedFile(hash, cached != null && cached.hash == hash ? null : findUnits(file));
+            });
+            inReadAction(() -> {
+                for (int i = 0; i < files.size(); i++) {
+                    final PsiFile file = files.get(i);
+                    final IndexedFile indexedFile = indexedFiles.get(i);
+                    final FileContribution cached = cachedContribution(file, cache);
+                    if (indexedFile.units == null && cached != null && restoreUnits(cached)) {
+                        contributions.add(cached);
+                        continue;
+                    }
+
+                    final VirtualFile virtualFile = file.getVirtualFile();
+                    final String url = virtualFile == null ? file.getName() : virtualFile.getUrl();
+                    contribution = new FileContribution(url, indexedFile.hash);
+                    contribution.cacheable = virtualFile != null;
+                    registerUnits(indexedFile.units != null ? indexedFile.units : findUnits(file));
+                    contributions.add(contribution);
+                    changedUrls.add(contribution.url);
+                }
+                contribution = null;
+                return null;
+            });
+        }
+        instrumentation.addItems(UNITS_PHASE, files.size());
+
+        final Set<String> removedUrls = new HashSet<>(cache.getUrls());
+        contributions.forEach(c -> removedUrls.remove(c.url));
+        changedUrls.addAll(removedUrls);
+        final boolean projectClassesChanged = !classNames.equals(cache.getClassNames());
+        if (projectClassesChanged) {
+            LOGGER.info("Set of project classes was changed, all properties will be recalculated");
+        }
+
+        final Set<String> affectingUrls = new HashSet<>(changedUrls);
+        final Set<String> changedClassNames = new HashSet<>();
+        inReadAction(() -> {
+            for (int i = 0; i < files.size(); i++) {
+                if (changedUrls.contains(contributions.get(i).url)) {
+                    collectChangedClasses(files.get(i), affectingUrls, changedClassNames);
+                }
+            }
+            return null;
+        });
+
+        LOGGER.info("Calculating properties...");
+        indicator.setText("Calculating properties");
+        final Set<String> walkedUrls = new HashSet<>();
+        final int reusedFiles;
+        try (Instrumentation.Timer ignored = instrumentation.start(PROPERTIES_PHASE)) {
+            resolveCache = new PropertiesResolveCache(classNames);
+            final Set<PsiFile> dirtyFiles = new HashSet<>();
+            for (int i = 0; i < files.size(); i++) {
+                final FileContribution fileContribution = contributions.get(i);
+                if (projectClassesChanged
+                        || changedUrls.contains(fileContribution.url)
+                        || !Collections.disjoint(fileContribution.getDependencies(), affectingUrls)) {
+                    dirtyFiles.add(files.get(i));
+                }
+            }
+
+            final List<List<PsiEdge>> edges = walkFiles(files, file ->
+                dirtyFiles.contains(file) || mentionsAny(file.getViewProvider().getContents(), changedClassNames)
+                    ? calculateProperties(file)
+                    : null
+            );
+            reusedFiles = inReadAction(() -> {
+                int reused = 0;
+                for (int i = 0; i < files.size(); i++) {
+                    ProgressManager.checkCanceled();
+                    final FileContribution fileContribution = contributions.get(i);
+                    final List<PsiEdge> fileEdges = edges.get(i);
+                    if (fileEdges == null && replayEdges(fileContribution)) {
+                        reused++;
+                        continue;
+                    }
+
+                    walkedUrls.add(fileContribution.url);
+                    contribution = fileContribution;
+                    contribution.edges.clear();
+                    registerProperties(fileEdges != null ? fileEdges : calculateProperties(files.get(i)));
+                }
+                contribution = null;
+                return reused;
+            });
+        }
+        instrumentation.addItems(PROPERTIES_PHASE, walkedUrls.size());
+        reportResolveCache();
         indicator.popState();
+
+        LOGGER.info("Reused " + reusedFiles + " files from cache, walked " + walkedUrls.size() + " files");
+        cache.update(contributions, reusedFiles, walkedUrls);
         return prepareResult();
     }
 
+    /**
+     * Collects simple names of classes declared in a changed file and urls of files that declare
+     * their supertypes. References in unchanged files may be resolved differently after such a
+     * change, e.g. a call that was resolved to {@code C.foo} is resolved to {@code B.foo} once
+     * {@code B extends C} gets an override. So files that refer to entities of supertypes of
+     * changed classes or mention changed classes by simple name are walked again.
+     */
+    private void collectChangedClasses(
+        final @NotNull PsiFile file,
+        final @NotNull Set<String> affectingUrls,
+        final @NotNull Set<String> classNames
+    ) {
+        if (!(file instanceof PsiClassOwner)) {
+            return;
+        }
+
+        final Deque<PsiClass> classes = new ArrayDeque<>(Arrays.asList(((PsiClassOwner) file).getClasses()));
+        while (!classes.isEmpty()) {
+            final PsiClass aClass = classes.poll();
+            if (aClass.getName() != null) {
+                classNames.add(aClass.getName());
+            }
+            for (PsiClass superClass : supers.getAllSupers(aClass)) {
+                final PsiFile superFile = superClass.getContainingFile();
+                final VirtualFile virtualFile = superFile == null ? null : superFile.getVirtualFile();
+                if (virtualFile != null) {
+                    affectingUrls.add(virtualFile.getUrl());
+                }
+            }
+            classes.addAll(Arrays.asList(aClass.getInnerClasses()));
+        }
+    }
+
+    /**
+     * Checks whether a given text contains one of given names as a whole Java identifier.
+     */
+    static boolean mentionsAny(final @NotNull CharSequence text, final @NotNull Set<String> names) {
+        if (names.isEmpty()) {
+            return false;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean identifierPart = i < text.length() && Character.isJavaIdentifierPart(text.charAt(i));
+            if (identifierPart && start == -1) {
+                start = i;
+            } else if (!identifierPart && start != -1) {
+                if (names.contains(text.subSequence(start, i).toString())) {
+                    return true;
+                }
+                start = -1;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Registers entities declared in a file according to its cached contribution.
+     *
+     * @return {@code false} if some entity can't be found, nothing is registered then.
+     */
+    private boolean restoreUnits(final @NotNull FileContribution cached) {
+        final List<PsiElement> elements = new ArrayList<>();
+        for (EntityKey key : cached.declared) {
+            final PsiElement element = findElement(key);
+            if (element == null) {
+                return false;
+            }
+            elements.add(element);
+        }
+
+        classNames.addAll(cached.classNames);
+        elements.forEach(this::addCodeEntityFor);
+
+        return true;
+    }
+
+    /**
+     * Adds cached edges of a file to {@link RelevantProperties} of entities.
+     *
+     * @return {@code false} if some entity can't be found, nothing is added then.
+     */
+    private boolean replayEdges(final @NotNull FileContribution cached) {
+        final List<CodeEntity> owners = new ArrayList<>();
+        final List<CodeEntity> targets = new ArrayList<>();
+        for (PropertyEdge edge : cached.edges) {
+            final CodeEntity owner = findEntity(edge.owner);
+            final CodeEntity target = findEntity(edge.target);
+            if (owner == null || target == null) {
+                return false;
+            }
+            owners.add(owner);
+            targets.add(target);
+        }
+
+        for (int i = 0; i < owners.size(); i++) {
+            final PropertyEdge edge = cached.edges.get(i);
+            addProperty(owners.get(i), edge.type, targets.get(i), edge.weight);
+        }
+
+        return true;
+    }
+
+    private @Nullable CodeEntity findEntity(final @NotNull EntityKey key) {
+        final PsiElement element = findElement(key);
+        if (element instanceof PsiClass) {
+            return getCodeEntity((PsiClass) element);
+        } else if (element instanceof PsiMethod) {
+            return getCodeEntity((PsiMethod) element);
+        } else if (element instanceof PsiField) {
+            return getCodeEntity((PsiField) element);
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds element by its key among classes, methods and fields of file the key refers to. Only
+     * declarations are inspected, so this doesn't require to walk through the whole PSI.
+     */
+    private @Nullable PsiElement findElement(final @NotNull EntityKey key) {
+        return fileMembers.computeIfAbsent(key.url, this::collectMembers).get(key);
+    }
+
+    private @NotNull Map<EntityKey, PsiElement> collectMembers(final @NotNull String url) {
+        final VirtualFile virtualFile = VirtualFileManager.getInstance().findFileByUrl(url);
+        final PsiFile file = virtualFile == null ? null : PsiManager.getInstance(scope.getProject()).findFile(virtualFile);
+        if (!(file instanceof PsiClassOwner)) {
+            return Collections.emptyMap();
+        }
+
+        final Map<EntityKey, PsiElement> members = new HashMap<>();
+        final Set<EntityKey> ambiguous = new HashSet<>();
+        for (PsiClass aClass : ((PsiClassOwner) file).getClasses()) {
+            collectMembers(url, aClass, members, ambiguous);
+        }
+        ambiguous.forEach(members::remove);
+        return members;
+    }
+
+    private void collectMembers(
+        final @NotNull String url,
+        final @NotNull PsiClass aClass,
+        final @NotNull Map<EntityKey, PsiElement> members,
+        final @NotNull Set<EntityKey> ambiguous
+    ) {
+        putMember(url, CLASS, aClass, members, ambiguous);
+        for (PsiMethod method : aClass.getMethods()) {
+            putMember(url, METHOD, method, members, ambiguous);
+        }
+        for (PsiField field : aClass.getFields()) {
+            putMember(url, FIELD, field, members, ambiguous);
+        }
+        for (PsiClass innerClass : aClass.getInnerClasses()) {
+            collectMembers(url, innerClass, members, ambiguous);
+        }
+    }
+
+    private static void putMember(
+        final @NotNull String url,
+        final byte kind,
+        final @NotNull PsiElement element,
+        final @NotNull Map<EntityKey, PsiElement> members,
+        final @NotNull Set<EntityKey> ambiguous
+    ) {
+        final String name = getHumanReadableName(element);
+        if (name == null) {
+            return;
+        }
+
+        final EntityKey key = new EntityKey(url, kind, name);
+        if (members.put(key, element) != null) {
+            ambiguous.add(key);
+        }
+    }
+
+    private <T extends CodeEntity> T recordDeclared(final @NotNull T entity) {
+        if (contribution != null) {
+            final EntityKey key = keyOf(entity);
+            if (key == null) {
+                contribution.cacheable = false;
+            } else {
+                contribution.declared.add(key);
+            }
+        }
+
+        return entity;
+    }
+
+    /**
+     * Adds a property to {@link RelevantProperties} of a given entity. If PSI of some file is
+     * being walked, this edge is also recorded into its contribution.
+     */
+    private void addProperty(
+        final @NotNull CodeEntity owner,
+        final byte type,
+        final @NotNull CodeEntity property,
+        final int weight
+    ) {
+        final RelevantProperties properties = owner.getRelevantProperties();
+        switch (type) {
+            case CLASS_PROPERTY:
+                properties.addClass((ClassEntity) property, weight);
+                break;
+            case FIELD_PROPERTY:
+                properties.addField((FieldEntity) property, weight);
+                break;
+            case NOT_OVERRIDE_METHOD_PROPERTY:
+                properties.addNotOverrideMethod((MethodEntity) property, weight);
+                break;
+            case OVERRIDE_METHOD_PROPERTY:
+                properties.addOverrideMethod((MethodEntity) property, weight);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown property type: " + type);
+        }
+
+        if (contribution != null) {
+            final EntityKey ownerKey = keyOf(owner);
+            final EntityKey propertyKey = keyOf(property);
+            if (ownerKey == null || propertyKey == null) {
+                contribution.cacheable = false;
+            } else {
+                contribution.edges.add(new PropertyEdge(ownerKey, type, propertyKey, weight));
+            }
+        }
+    }
+
+    private @Nullable EntityKey keyOf(final @NotNull CodeEntity entity) {
+        if (entityKeys.containsKey(entity)) {
+            return entityKeys.get(entity);
+        }
+
+        final EntityKey key = entity.accept(new CodeEntityVisitor<EntityKey>() {
+            @Override
+            public EntityKey visit(@NotNull ClassEntity classEntity) {
+                return keyOf(classEntity.getPsiClass(), CLASS);
+            }
+
+            @Override
+            public EntityKey visit(@NotNull MethodEntity methodEntity) {
+                return keyOf(methodEntity.getPsiMethod(), METHOD);
+            }
+
+            @Override
+            public EntityKey visit(@NotNull FieldEntity fieldEntity) {
+                return keyOf(fieldEntity.getPsiField(), FIELD);
+            }
+        });
+        entityKeys.put(entity, key);
+        return key;
+    }
+
+    private static @Nullable EntityKey keyOf(final @NotNull PsiElement element, final byte kind) {
+        final PsiFile file = element.getContainingFile();
+        final VirtualFile virtualFile = file == null ? null : file.getVirtualFile();
+        final String name = getHumanReadableName(element);
+        if (virtualFile == null || name == null) {
+            return null;
+        }
+
+        return new EntityKey(virtualFile.getUrl(), kind, name);
+    }
+
     private EntitiesStorage prepareResult() {
         LOGGER.info("Preparing results...");
 
         LOGGER.info("Generated " + classes.size() + " class entities");
         LOGGER.info("Generated " + methods.size() + " method entities");
         LOGGER.info("Generated " + fields.size() + " field entities");
-        return new EntitiesStorage(classes, methods, fields, System.currentTimeMillis() - startTime);
+        final PropertiesGraph graph = PropertiesGraph.build(classes, methods, fields);
+        LOGGER.info("Built properties graph (" + graph.getEntitiesCount() + " entities, " + graph.getEdgesCount() + " properties)");
+        return new EntitiesStorage(classes, methods, fields, graph, supers, System.currentTimeMillis() - startTime);
+    }
+
+    private Optional<CodeEntity> entityFor(PsiClass element) {
+        return Optional.ofNullable(classEntities.get(element));
+    }
+
+    private Optional<CodeEntity> entityFor(PsiMethod element) {
+        return Optional.ofNullable(methodEntities.get(element));
+    }
+
+    private Optional<CodeEntity> entityFor(PsiField element) {
+        return Optional.ofNullable(fieldEntities.get(element));
+    }
+
+    private Optional<CodeEntity> entityFor(PsiElement element) {
+        if (element instanceof PsiClass) {
+            return entityFor((PsiClass) element);
+        } else if (element instanceof PsiMethod) {
+            return entityFor((PsiMethod) element);
+        } else if (element instanceof PsiField) {
+            return entityFor((PsiField) element);
+        }
+
+        return Optional.empty();
+    }
+
+    private @NotNull List<PsiFile> collectFiles() {
+        modificationCount = PsiModificationTracker.SERVICE.getInstance(scope.getProject()).getModificationCount();
+        final List<PsiFile> files = new ArrayList<>();
+        scope.accept(new PsiElementVisitor() {
+            @Override
+            public void visitFile(PsiFile file) {
+                if (strategy.acceptFile(file)) {
+                    files.add(file);
+                }
+            }
+        });
+
+        return files;
+    }
+
+    private static @Nullable FileContribution cachedContribution(
+        final @NotNull PsiFile file,
+        final @NotNull EntitiesCache cache
+    ) {
+        final VirtualFile virtualFile = file.getVirtualFile();
+        return virtualFile == null ? null : cache.get(virtualFile.getUrl());
+    }
+
+    /**
+     * Applies a given function to every file. In parallel mode results are computed in advance
+     * by threads of the pool, each in a non-blocking read action which is restarted if a write
+     * action interrupts it. Otherwise each result is computed right when it is requested, so
+     * results must be requested in order of files.
+     */
+    private <R> @NotNull List<R> walkFiles(
+        final @NotNull List<PsiFile> files,
+        final @NotNull Function<PsiFile, R> function
+    ) {
+        if (pool == null) {
+            return new AbstractList<R>() {
+                @Override
+                public R get(int index) {
+                    return function.apply(files.get(index));
+                }
+
+                @Override
+                public int size() {
+                    return files.size();
+                }
+            };
+        }
+
+        final List<R> results = Collections.synchronizedList(new ArrayList<>(Collections.nCopies(files.size(), null)));
+        pool.submit(() -> IntStream.range(0, files.size()).parallel().forEach(i -> {
+            final PsiFile file = files.get(i);
+            results.set(i, inNonBlockingReadAction(() -> function.apply(file)));
+        })).join();
+        return results;
+    }
+
+    private <R> R inNonBlockingReadAction(final @NotNull Computable<R> computation) {
+        final Ref<R> result = Ref.create();
+        while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(
+            () -> result.set(computation.compute()),
+            new SensitiveProgressWrapper(indicator)
+        )) {
+            indicator.checkCanceled();
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+
+        return result.get();
+    }
+
+    /**
+     * Runs computation which changes state of this searcher. In parallel mode it is run in a
+     * read action, which fails if PSI was changed since files to search in were collected.
+     * Otherwise caller must already have read access.
+     */
+    private <T> T inReadAction(final @NotNull Computable<T> computation) {
+        if (pool == null) {
+            return computation.compute();
+        }
+
+        return ApplicationManager.getApplication().runReadAction((Computable<T>) () -> {
+            final long currentCount = PsiModificationTracker.SERVICE.getInstance(scope.getProject()).getModificationCount();
+            if (modificationCount != -1 && modificationCount != currentCount) {
+                throw new PsiChangedException();
+            }
+            return computation.compute();
+        });
+    }
+
+    /**
+     * Finds classes, methods and fields declared in a file. They are taken from stub tree of the
+     * file if it is available, so that AST of the file is not loaded. Otherwise (e.g. if AST is
+     * already loaded) PSI of the file is walked with {@link UnitsFinder}. Both ways give the same
+     * units in the same order.
+     */
+    private @NotNull FileUnits findUnits(final @NotNull PsiFile file) {
+        final FileUnits stubUnits = findUnitsInStubs(file);
+        if (stubUnits != null) {
+            instrumentation.addItems(STUB_UNITS_COUNTER, 1);
+            return stubUnits;
+        }
+
+        final FileUnits units = new FileUnits();
+        file.accept(new UnitsFinder(units));
+        return units;
+    }
+
+    /**
+     * Does the same as {@link UnitsFinder} but traverses stub tree of a file. Java stub tree
+     * contains every class (including anonymous, local classes and type parameters), method and
+     * field of a file in order of their declarations, so the same units are found as long as
+     * traversal descends into the same declarations as the visitor does.
+     *
+     * @return found units or {@code null} if file has no stub tree, e.g. because its AST is
+     *         loaded.
+     */
+    private @Nullable FileUnits findUnitsInStubs(final @NotNull PsiFile file) {
+        if (!(file instanceof PsiFileImpl) || !strategy.acceptFile(file)) {
+            return null;
+        }
+
+        final StubTree stubTree = ((PsiFileImpl) file).getStubTree();
+        if (stubTree == null) {
+            return null;
+        }
+
+        ProgressManager.checkCanceled();
+        LOGGER.info("Indexing " + file.getName() + " (stubs)");
+        final FileUnits units = new FileUnits();
+        collectUnits(stubTree.getRoot(), units);
+        return units;
     }
 
-    private Optional<RelevantProperties> propertiesFor(PsiClass element) {
-        CodeEntity entity = classEntities.get(element);
+    private void collectUnits(final @NotNull StubElement<?> stub, final @NotNull FileUnits units) {
+        for (StubElement<?> child : stub.getChildrenStubs()) {
+            final PsiElement element = child.getPsi();
+            if (element instanceof PsiClass) {
+                ProgressManager.checkCanceled();
+                final PsiClass aClass = (PsiClass) element;
+                units.classNames.add(getHumanReadableName(aClass));
+                if (!strategy.acceptClass(aClass)) {
+                    continue;
+                }
+                units.declared.add(aClass);
+            } else if (element instanceof PsiField) {
+                if (!strategy.acceptField((PsiField) element)) {
+                    continue;
+                }
+                ProgressManager.checkCanceled();
+                units.declared.add((PsiField) element);
+            } else if (element instanceof PsiMethod) {
+                if (!strategy.acceptMethod((PsiMethod) element)) {
+                    continue;
+                }
+                ProgressManager.checkCanceled();
+                units.declared.add((PsiMethod) element);
+            }
+
+            collectUnits(child, units);
+        }
+    }
+
+    private void registerUnits(final @NotNull FileUnits units) {
+        for (String name : units.classNames) {
+            classNames.add(name);
+            if (contribution != null) {
+                if (name == null) {
+                    contribution.cacheable = false;
+                } else {
+                    contribution.classNames.add(name);
+                }
+            }
+        }
+        units.declared.forEach(this::addCodeEntityFor);
+    }
 
-        if (entity == null) {
-            return Optional.empty();
+    /**
+     * Adds counters of {@link PropertiesResolveCache} of the properties pass to instrumentation
+     * as {@code entities.properties.cache.*} and releases the cache.
+     */
+    private void reportResolveCache() {
+        if (resolveCache == null) {
+            return;
         }
 
-        return Optional.of(entity.getRelevantProperties());
+        final Map<String, Long> counters = resolveCache.getCounters();
+        counters.forEach((name, value) -> instrumentation.addItems(PROPERTIES_PHASE + ".cache." + name, value));
+        LOGGER.info("Resolve cache of properties calculation: " + counters);
+        resolveCache = null;
     }
 
-    private Optional<RelevantProperties> propertiesFor(PsiMethod element) {
-        CodeEntity entity = methodEntities.get(element);
+    private @NotNull List<PsiEdge> calculateProperties(final @NotNull PsiFile file) {
+        final List<PsiEdge> edges = new ArrayList<>();
+        file.accept(new PropertiesCalculator(edges));
+        return edges;
+    }
 
-        if (entity == null) {
-            return Optional.empty();
+    private void registerProperties(final @NotNull List<PsiEdge> edges) {
+        for (PsiEdge edge : edges) {
+            final Optional<CodeEntity> owner = edge.ownerMustExist
+                    ? entityFor(edge.owner)
+                    : Optional.of(getCodeEntity(edge.owner));
+            owner.ifPresent(e -> addProperty(e, edge.type, getCodeEntity(edge.property), edge.weight));
         }
+    }
 
-        return Optional.of(entity.getRelevantProperties());
+    /** Names of classes and accepted declarations found in one file in order of PSI traversal. */
+    private static final class FileUnits {
+        private final List<String> classNames = new ArrayList<>();
+
+        private final List<PsiMember> declared = new ArrayList<>();
     }
 
-    private Optional<RelevantProperties> propertiesFor(PsiField element) {
-        CodeEntity entity = fieldEntities.get(element);
+    private static final class IndexedFile {
+        private final long hash;
+
+        /** {@code null} if file wasn't searched because its cached contribution can be used. */
+        private final @Nullable FileUnits units;
 
-        if (entity == null) {
-            return Optional.empty();
+        private IndexedFile(final long hash, final @Nullable FileUnits units) {
+            this.hash = hash;
+            this.units = units;
         }
+    }
+
+    /**
+     * Property found while PSI of a file was walked. It is added to {@link RelevantProperties}
+     * of owner when results of files are merged.
+     */
+    private static final class PsiEdge {
+        private final @NotNull PsiElement owner;
+
+        /** {@code true} if property must be added only if owner is already an entity. */
+        private final boolean ownerMustExist;
 
-        return Optional.of(entity.getRelevantProperties());
+        private final byte type;
+
+        private final @NotNull PsiElement property;
+
+        private final int weight;
+
+        private PsiEdge(
+            final @NotNull PsiElement owner,
+            final boolean ownerMustExist,
+            final byte type,
+            final @NotNull PsiElement property,
+            final int weight
+        ) {
+            this.owner = owner;
+            this.ownerMustExist = ownerMustExist;
+            this.type = type;
+            this.property = property;
+            this.weight = weight;
+        }
+    }
+
+    private static class PsiChangedException extends RuntimeException {
     }
 
     private class UnitsFinder extends JavaRecursiveElementVisitor {
+        private final FileUnits units;
+
+        private UnitsFinder(final @NotNull FileUnits units) {
+            this.units = units;
+        }
+
         @Override
         public void visitFile(PsiFile file) {
-            indicator.checkCanceled();
+            ProgressManager.checkCanceled();
             if (strategy.acceptFile(file)) {
                 LOGGER.info("Indexing " + file.getName());
                 super.visitFile(file);
@@ -156,13 +947,13 @@ public class EntitySearcher {
 
         @Override
         public void visitClass(PsiClass aClass) {
-            indicator.checkCanceled();
-            classForName.put(getHumanReadableName(aClass), aClass);
+            ProgressManager.checkCanceled();
+            units.classNames.add(getHumanReadableName(aClass));
             if (!strategy.acceptClass(aClass)) {
                 return;
             }
 
-            addCodeEntityFor(aClass);
+            units.declared.add(aClass);
             super.visitClass(aClass);
         }
 
@@ -171,9 +962,9 @@ public class EntitySearcher {
             if (!strategy.acceptField(field)) {
                 return;
             }
-            indicator.checkCanceled();
+            ProgressManager.checkCanceled();
 
-            addCodeEntityFor(field);
+            units.declared.add(field);
             super.visitField(field);
         }
 
@@ -182,21 +973,33 @@ public class EntitySearcher {
             if (!strategy.acceptMethod(method)) {
                 return;
             }
-            indicator.checkCanceled();
+            ProgressManager.checkCanceled();
 
-            addCodeEntityFor(method);
+            units.declared.add(method);
             super.visitMethod(method);
         }
     }
 
     private class PropertiesCalculator extends JavaRecursiveElementVisitor {
-        private int propertiesCalculated = 0;
+        private final List<PsiEdge> edges;
 
         private PsiMethod currentMethod;
 
+        private PropertiesCalculator(final @NotNull List<PsiEdge> edges) {
+            this.edges = edges;
+        }
+
+        private void addProperty(PsiElement owner, byte type, PsiElement property, int weight) {
+            edges.add(new PsiEdge(owner, false, type, property, weight));
+        }
+
+        private void addPropertyIfEntity(PsiElement owner, byte type, PsiElement property, int weight) {
+            edges.add(new PsiEdge(owner, true, type, property, weight));
+        }
+
         @Override
         public void visitFile(PsiFile file) {
-            indicator.checkCanceled();
+            ProgressManager.checkCanceled();
             if (strategy.acceptFile(file)) {
                 super.visitFile(file);
             }
@@ -204,29 +1007,23 @@ public class EntitySearcher {
 
         @Override
         public void visitClass(PsiClass aClass) {
-            indicator.checkCanceled();
-            final CodeEntity entity = getCodeEntity(aClass);
-            if (entity == null) {
-                super.visitClass(aClass);
-                return;
-            }
-            final RelevantProperties classProperties = entity.getRelevantProperties();
-            classProperties.addClass(getCodeEntity(aClass), strategy.getWeight(aClass, aClass));
+            ProgressManager.checkCanceled();
+            addProperty(aClass, CLASS_PROPERTY, aClass, strategy.getWeight(aClass, aClass));
             if (strategy.processSupers()) {
-                for (PsiClass superClass : PSIUtil.getAllSupers(aClass)) {
+                for (PsiClass superClass : supers.getAllSupers(aClass)) {
                     if (superClass.isInterface()) {
-                        classProperties.addClass(getCodeEntity(superClass), strategy.getWeight(aClass, superClass));
+                        addProperty(aClass, CLASS_PROPERTY, superClass, strategy.getWeight(aClass, superClass));
                     } else {
-                        propertiesFor(superClass).ifPresent(p -> p.addClass(getCodeEntity(aClass), strategy.getWeight(superClass, aClass)));
+                        addPropertyIfEntity(superClass, CLASS_PROPERTY, aClass, strategy.getWeight(superClass, aClass));
                     }
                 }
             }
             Arrays.stream(aClass.getMethods())
                     .filter(m -> isProperty(aClass, m))
-                    .forEach(m -> classProperties.addNotOverrideMethod(getCodeEntity(m), strategy.getWeight(aClass, m)));
+                    .forEach(m -> addProperty(aClass, NOT_OVERRIDE_METHOD_PROPERTY, m, strategy.getWeight(aClass, m)));
             Arrays.stream(aClass.getFields())
                     .filter(f -> isProperty(aClass, f))
-                    .forEach(f -> classProperties.addField(getCodeEntity(f), strategy.getWeight(aClass, f)));
+                    .forEach(f -> addProperty(aClass, FIELD_PROPERTY, f, strategy.getWeight(aClass, f)));
             reportPropertiesCalculated();
             super.visitClass(aClass);
         }
@@ -237,32 +1034,48 @@ public class EntitySearcher {
 
         @Contract("null -> false")
         private boolean isClassInProject(final @Nullable PsiClass aClass) {
-            return aClass != null && classForName.containsKey(getHumanReadableName(aClass));
+            if (resolveCache == null) {
+                return aClass != null && classNames.contains(getHumanReadableName(aClass));
+            }
+
+            return resolveCache.isProjectClass(aClass);
         }
 
-        @Override
-        public void visitMethod(PsiMethod method) {
-            indicator.checkCanceled();
-            final CodeEntity entity = getCodeEntity(method);
-            if (entity == null) {
-                super.visitMethod(method);
-                return;
+        private boolean isFieldOfProjectClass(final @NotNull PsiField field) {
+            if (resolveCache == null) {
+                return isClassInProject(field.getContainingClass());
+            }
+
+            return resolveCache.getField(field).isContainingClassInProject();
+        }
 
+        private @Nullable PsiClass projectTypeClass(final @NotNull PsiField field) {
+            if (resolveCache == null) {
+                final PsiClass fieldClass = PsiUtil.resolveClassInType(field.getType());
+                return isClassInProject(fieldClass) ? fieldClass : null;
             }
-            final RelevantProperties methodProperties = entity.getRelevantProperties();
-            methodProperties.addNotOverrideMethod(getCodeEntity(method), strategy.getWeight(method, method));
+
+            return resolveCache.getField(field).getProjectTypeClass();
+        }
+
+        @Override
+        public void visitMethod(PsiMethod method) {
+            ProgressManager.checkCanceled();
+            addProperty(method, NOT_OVERRIDE_METHOD_PROPERTY, method, strategy.getWeight(method, method));
             Optional.ofNullable(method.getContainingClass())
-                    .ifPresent(c -> methodProperties.addClass(getCodeEntity(c), strategy.getWeight(method, c)));
+                    .ifPresent(c -> addProperty(method, CLASS_PROPERTY, c, strategy.getWeight(method, c)));
             if (currentMethod == null) {
                 currentMethod = method;
             }
             if (strategy.processSupers()) {
-                PSIUtil.getAllSupers(method).stream()
-                        .map(EntitySearcher.this::getCodeEntity)
-                        .filter(Objects::nonNull)
-                        .forEach(superMethodBuilder -> superMethodBuilder
-                                .getRelevantProperties()
-                                .addOverrideMethod(getCodeEntity(method), strategy.getWeight(superMethodBuilder, method)));
+                // weight of a relation between super method entity and method is the default one
+                supers.getAllSupers(method)
+                        .forEach(superMethod -> addProperty(
+                                superMethod,
+                                OVERRIDE_METHOD_PROPERTY,
+                                method,
+                                strategy.getWeight((Object) superMethod, method)
+                        ));
             }
             reportPropertiesCalculated();
             super.visitMethod(method);
@@ -273,19 +1086,18 @@ public class EntitySearcher {
 
         @Override
         public void visitReferenceExpression(PsiReferenceExpression expression) {
-            indicator.checkCanceled();
-            PsiElement element = expression.resolve();
-            if (currentMethod != null && element instanceof PsiField
-                    && isClassInProject(((PsiField) element).getContainingClass()) && strategy.isRelation(expression)) {
+            ProgressManager.checkCanceled();
+            // references outside of methods never give properties, so they are not resolved
+            final PsiElement element = currentMethod != null ? expression.resolve() : null;
+            if (element instanceof PsiField && isFieldOfProjectClass((PsiField) element)
+                    && strategy.isRelation(expression)) {
                 final PsiField field = (PsiField) element;
-                propertiesFor(currentMethod)
-                        .ifPresent(p -> p.addField(getCodeEntity(field), strategy.getWeight(currentMethod, field)));
+                addPropertyIfEntity(currentMethod, FIELD_PROPERTY, field, strategy.getWeight(currentMethod, field));
 //                propertiesFor(field)
 //                        .ifPresent(p -> p.addNotOverrideMethod(currentMethod, strategy.getWeight(field, currentMethod)));
-                final PsiClass fieldClass = PsiUtil.resolveClassInType(field.getType());
-                if (isClassInProject(fieldClass)) {
-                    propertiesFor(currentMethod)
-                            .ifPresent(p -> p.addClass(getCodeEntity(fieldClass), strategy.getWeight(currentMethod, fieldClass)));
+                final PsiClass fieldClass = projectTypeClass(field);
+                if (fieldClass != null) {
+                    addPropertyIfEntity(currentMethod, CLASS_PROPERTY, fieldClass, strategy.getWeight(currentMethod, fieldClass));
                 }
             }
             super.visitReferenceExpression(expression);
@@ -293,20 +1105,14 @@ public class EntitySearcher {
 
         @Override
         public void visitField(PsiField field) {
-            indicator.checkCanceled();
-            final CodeEntity entity = getCodeEntity(field);
-            if (entity == null) {
-                super.visitField(field);
-                return;
-            }
-            RelevantProperties fieldProperties = entity.getRelevantProperties();
-            fieldProperties.addField(getCodeEntity(field), strategy.getWeight(field, field));
+            ProgressManager.checkCanceled();
+            addProperty(field, FIELD_PROPERTY, field, strategy.getWeight(field, field));
             final PsiClass containingClass = field.getContainingClass();
             if (containingClass != null) {
-                fieldProperties.addClass(getCodeEntity(containingClass), strategy.getWeight(field, containingClass));
-                final PsiClass fieldClass = PsiUtil.resolveClassInType(field.getType());
-                if (isClassInProject(fieldClass)) {
-                    getCodeEntity(containingClass).getRelevantProperties().addClass(getCodeEntity(fieldClass), strategy.getWeight(containingClass, fieldClass));
+                addProperty(field, CLASS_PROPERTY, containingClass, strategy.getWeight(field, containingClass));
+                final PsiClass fieldClass = projectTypeClass(field);
+                if (fieldClass != null) {
+                    addProperty(containingClass, CLASS_PROPERTY, fieldClass, strategy.getWeight(containingClass, fieldClass));
                 }
             }
             reportPropertiesCalculated();
@@ -315,24 +1121,21 @@ public class EntitySearcher {
 
         @Override
         public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-            indicator.checkCanceled();
-            final PsiMethod called = expression.resolveMethod();
+            ProgressManager.checkCanceled();
+            final PsiMethod called = currentMethod != null ? expression.resolveMethod() : null;
             final PsiClass usedClass = called != null ? called.getContainingClass() : null;
             if (currentMethod != null && called != null && isClassInProject(usedClass)
                     && strategy.isRelation(expression)) {
-                propertiesFor(currentMethod)
-                        .ifPresent(p -> {
-                            p.addNotOverrideMethod(getCodeEntity(called), strategy.getWeight(currentMethod, called));
-                            p.addClass(getCodeEntity(usedClass), strategy.getWeight(currentMethod, usedClass));
-                        });
+                addPropertyIfEntity(currentMethod, NOT_OVERRIDE_METHOD_PROPERTY, called, strategy.getWeight(currentMethod, called));
+                addPropertyIfEntity(currentMethod, CLASS_PROPERTY, usedClass, strategy.getWeight(currentMethod, usedClass));
             }
             super.visitMethodCallExpression(expression);
         }
 
         private void reportPropertiesCalculated() {
-            propertiesCalculated++;
+            final int calculated = propertiesCalculated.incrementAndGet();
             if (indicator != null) {
-                indicator.setFraction((double) propertiesCalculated / (classes.size() + methods.size() + fields.size()));
+                indicator.setFraction((double) calculated / (classes.size() + methods.size() + fields.size()));
             }
         }
     }
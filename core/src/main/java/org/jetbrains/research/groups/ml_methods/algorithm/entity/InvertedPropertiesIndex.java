@@ -0,0 +1,166 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index over rows of a {@link PropertiesGraph}. For a fixed list of entities (documents)
+ * it maps each property to positions (in that list) of entities whose {@link RelevantProperties}
+ * contain this property. Weighted intersection of properties of two entities is zero unless they
+ * share at least one property, therefore this index allows to find all entities which can have
+ * non-empty intersection with a given one without scanning the whole list.
+ */
+public class InvertedPropertiesIndex {
+    private final @NotNull PropertiesGraph graph;
+
+    private final @NotNull int[] offsets;
+
+    private final @NotNull int[] postings;
+
+    private final int documentsCount;
+
+    private InvertedPropertiesIndex(
+        final @NotNull PropertiesGraph graph,
+        final @NotNull int[] offsets,
+        final @NotNull int[] postings,
+        final int documentsCount
+    ) {
+        this.graph = graph;
+        this.offsets = offsets;
+        this.postings = postings;
+        this.documentsCount = documentsCount;
+    }
+
+    /**
+     * Builds index for given documents.
+     *
+     * @param graph graph which contains properties of documents.
+     * @param documents ids of documents in graph. Positions in this array are stored in the index.
+     * @return built index.
+     */
+    public static @NotNull InvertedPropertiesIndex build(
+        final @NotNull PropertiesGraph graph,
+        final @NotNull int[] documents
+    ) {
+        final int[] targets = graph.getTargets();
+        final int propertiesCount = 2 * graph.getEntitiesCount(); // override methods are shifted
+        final int[] offsets = new int[propertiesCount + 1];
+        for (int document : documents) {
+            for (int i = graph.rowStart(document); i < graph.rowEnd(document); i++) {
+                offsets[targets[i] + 1]++;
+            }
+        }
+
+        for (int i = 0; i < propertiesCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        final int[] postings = new int[offsets[propertiesCount]];
+        final int[] pointers = Arrays.copyOf(offsets, propertiesCount);
+        for (int position = 0; position < documents.length; position++) {
+            final int document = documents[position];
+            for (int i = graph.rowStart(document); i < graph.rowEnd(document); i++) {
+                postings[pointers[targets[i]]++] = position;
+            }
+        }
+
+        return new InvertedPropertiesIndex(graph, offsets, postings, documents.length);
+    }
+
+    /** Returns number of documents this index was built for. */
+    public int getDocumentsCount() {
+        return documentsCount;
+    }
+
+    /** Returns total number of (property, document) pairs stored in this index. */
+    public int getPostingsCount() {
+        return postings.length;
+    }
+
+    /**
+     * Returns sorted distinct positions of documents that share at least one property with entity
+     * with a given id in the graph.
+     */
+    public @NotNull int[] candidates(final int entityId) {
+        final int[] result = collectPostings(entityId);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * Returns the same documents as {@link #candidates} together with numbers of properties they
+     * share with entity with a given id.
+     */
+    public @NotNull SharedCandidates candidatesWithSharedCounts(final int entityId) {
+        final int[] postings = collectPostings(entityId);
+        final int[] positions = new int[postings.length];
+        final int[] sharedCounts = new int[postings.length];
+        int distinct = 0;
+        for (int i = 0; i < postings.length; i++) {
+            if (i == 0 || postings[i] != postings[i - 1]) {
+                positions[distinct++] = postings[i];
+            }
+            sharedCounts[distinct - 1]++;
+        }
+
+        return new SharedCandidates(Arrays.copyOf(positions, distinct), Arrays.copyOf(sharedCounts, distinct));
+    }
+
+    /**
+     * Returns sorted positions of documents that share properties with entity with a given id.
+     * Every position is repeated as many times as many properties are shared.
+     */
+    private @NotNull int[] collectPostings(final int entityId) {
+        final int[] targets = graph.getTargets();
+        int total = 0;
+        for (int i = graph.rowStart(entityId); i < graph.rowEnd(entityId); i++) {
+            total += offsets[targets[i] + 1] - offsets[targets[i]];
+        }
+
+        final int[] result = new int[total];
+        int pointer = 0;
+        for (int i = graph.rowStart(entityId); i < graph.rowEnd(entityId); i++) {
+            final int property = targets[i];
+            final int length = offsets[property + 1] - offsets[property];
+            System.arraycopy(postings, offsets[property], result, pointer, length);
+            pointer += length;
+        }
+
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Candidates found by {@link #candidatesWithSharedCounts}.
+     */
+    public static class SharedCandidates {
+        private final @NotNull int[] positions;
+
+        private final @NotNull int[] sharedCounts;
+
+        private SharedCandidates(final @NotNull int[] positions, final @NotNull int[] sharedCounts) {
+            this.positions = positions;
+            this.sharedCounts = sharedCounts;
+        }
+
+        /** Returns sorted distinct positions of documents. */
+        public @NotNull int[] getPositions() {
+            return positions;
+        }
+
+        /**
+         * Returns numbers of properties shared with documents, {@code getSharedCounts()[i]} is
+         * for document at {@code getPositions()[i]}.
+         */
+        public @NotNull int[] getSharedCounts() {
+            return sharedCounts;
+        }
+    }
+}
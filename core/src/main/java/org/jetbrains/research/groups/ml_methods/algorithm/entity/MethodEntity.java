@@ -6,7 +6,9 @@ import com.intellij.psi.PsiMethod;
 import com.sixrr.metrics.MetricCategory;
 import com.sixrr.metrics.utils.MethodUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.utils.PSIUtil;
+import org.jetbrains.research.groups.ml_methods.utils.SupersClosure;
 
 import java.util.Objects;
 
@@ -18,12 +20,26 @@ public class MethodEntity extends ClassInnerEntity {
     public MethodEntity(
         final @NotNull PsiMethod psiMethod,
         final @NotNull ClassEntity containingClass
+    ) {
+        this(psiMethod, containingClass, null);
+    }
+
+    /**
+     * Creates entity of a method.
+     *
+     * @param supers closure of super methods to check whether method is overriding with or
+     *               {@code null} if it should be checked directly.
+     */
+    public MethodEntity(
+        final @NotNull PsiMethod psiMethod,
+        final @NotNull ClassEntity containingClass,
+        final @Nullable SupersClosure supers
     ) {
         super(containingClass);
         this.psiMethod = psiMethod;
 
         isMovable = ApplicationManager.getApplication().runReadAction((Computable<Boolean>)
-                () ->  !PSIUtil.isOverriding(psiMethod) &&
+                () ->  !(supers == null ? PSIUtil.isOverriding(psiMethod) : supers.isOverriding(psiMethod)) &&
                 !MethodUtils.isAbstract(psiMethod) && !psiMethod.isConstructor());
     }
 
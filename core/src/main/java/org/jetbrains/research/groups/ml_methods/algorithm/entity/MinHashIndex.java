@@ -0,0 +1,195 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Locality-sensitive index over rows of a {@link PropertiesGraph}. Unlike
+ * {@link InvertedPropertiesIndex} it doesn't return all entities that share a property with a
+ * given one but only (with high probability) the ones which have high weighted Jaccard similarity
+ * of properties with it.
+ * <p>
+ * Every row is summarized with a weighted MinHash sketch built with improved consistent weighted
+ * sampling (ICWS): two rows get the same value of a sketch element with probability equal to
+ * weighted Jaccard similarity of their properties. Sketch is split into bands of equal size, a
+ * document becomes a candidate for an entity if all values of at least one band are the same.
+ * More bands of smaller size give more candidates and better recall at the cost of time.
+ */
+public class MinHashIndex {
+    private static final long EMPTY_SAMPLE = Long.MIN_VALUE;
+
+    private final @NotNull PropertiesGraph graph;
+
+    private final int sketchSize;
+
+    private final int bandsCount;
+
+    /**
+     * Keys of documents for each band in increasing order. Upper 32 bits of a key is a hash of
+     * band values, lower 32 bits is a position of document.
+     */
+    private final @NotNull long[][] bands;
+
+    private MinHashIndex(
+        final @NotNull PropertiesGraph graph,
+        final int sketchSize,
+        final int bandsCount,
+        final @NotNull long[][] bands
+    ) {
+        this.graph = graph;
+        this.sketchSize = sketchSize;
+        this.bandsCount = bandsCount;
+        this.bands = bands;
+    }
+
+    /**
+     * Builds index for given documents.
+     *
+     * @param graph graph which contains properties of documents.
+     * @param documents ids of documents in graph. Positions in this array are stored in the index.
+     * @param sketchSize number of elements in sketch of a row.
+     * @param bandsCount number of bands sketch is split into. Must divide {@code sketchSize}.
+     * @return built index.
+     */
+    public static @NotNull MinHashIndex build(
+        final @NotNull PropertiesGraph graph,
+        final @NotNull int[] documents,
+        final int sketchSize,
+        final int bandsCount
+    ) {
+        if (sketchSize <= 0 || bandsCount <= 0 || sketchSize % bandsCount != 0) {
+            throw new IllegalArgumentException(
+                "Sketch size " + sketchSize + " can't be split into " + bandsCount + " bands"
+            );
+        }
+
+        final int bandSize = sketchSize / bandsCount;
+        final long[][] bands = new long[bandsCount][documents.length];
+        final int[] sizes = new int[bandsCount];
+        final long[] sketch = new long[sketchSize];
+        for (int position = 0; position < documents.length; position++) {
+            if (!sketch(graph, documents[position], sketch)) {
+                continue;
+            }
+
+            for (int band = 0; band < bandsCount; band++) {
+                bands[band][sizes[band]++] = ((long) bandHash(sketch, band, bandSize) << 32) | position;
+            }
+        }
+
+        for (int band = 0; band < bandsCount; band++) {
+            bands[band] = Arrays.copyOf(bands[band], sizes[band]);
+            Arrays.sort(bands[band]);
+        }
+
+        return new MinHashIndex(graph, sketchSize, bandsCount, bands);
+    }
+
+    /**
+     * Returns sorted distinct positions of documents that have at least one band of sketch equal
+     * to the one of entity with a given id in the graph.
+     */
+    public @NotNull int[] candidates(final int entityId) {
+        final long[] sketch = new long[sketchSize];
+        if (!sketch(graph, entityId, sketch)) {
+            return new int[0];
+        }
+
+        final int bandSize = sketchSize / bandsCount;
+        int[] result = new int[16];
+        int size = 0;
+        for (int band = 0; band < bandsCount; band++) {
+            final long[] keys = bands[band];
+            final long hash = (long) bandHash(sketch, band, bandSize) << 32;
+            int index = Arrays.binarySearch(keys, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+
+            while (index < keys.length && (keys[index] & 0xFFFFFFFF00000000L) == hash) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, 2 * size);
+                }
+                result[size++] = (int) keys[index++];
+            }
+        }
+
+        Arrays.sort(result, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * Computes weighted MinHash sketch of properties of entity with a given id. Properties with
+     * zero weight affect neither intersection nor union, so they are ignored.
+     *
+     * @return {@code false} if entity has no properties with positive weight and there is no
+     *         sketch for it.
+     */
+    private static boolean sketch(
+        final @NotNull PropertiesGraph graph,
+        final int id,
+        final @NotNull long[] sketch
+    ) {
+        final int[] targets = graph.getTargets();
+        final int[] weights = graph.getWeights();
+        boolean empty = true;
+        for (int k = 0; k < sketch.length; k++) {
+            double minimum = Double.POSITIVE_INFINITY;
+            long sample = EMPTY_SAMPLE;
+            for (int i = graph.rowStart(id); i < graph.rowEnd(id); i++) {
+                if (weights[i] <= 0) {
+                    continue;
+                }
+
+                long state = mix(((long) k << 32) ^ targets[i]);
+                final double r = -Math.log(uniform(state = next(state)) * uniform(state = next(state)));
+                final double c = -Math.log(uniform(state = next(state)) * uniform(state = next(state)));
+                final double beta = uniform(next(state));
+                final double t = Math.floor(Math.log(weights[i]) / r + beta);
+                final double a = c / (Math.exp(r * (t - beta)) * Math.exp(r));
+                if (a < minimum) {
+                    minimum = a;
+                    sample = mix(((long) targets[i] << 32) ^ (long) t);
+                }
+            }
+
+            sketch[k] = sample;
+            empty &= sample == EMPTY_SAMPLE;
+        }
+
+        return !empty;
+    }
+
+    private static int bandHash(final @NotNull long[] sketch, final int band, final int bandSize) {
+        long hash = band;
+        for (int i = band * bandSize; i < (band + 1) * bandSize; i++) {
+            hash = mix(hash * 31 + sketch[i]);
+        }
+
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long next(final long state) {
+        return mix(state + 0x9E3779B97F4A7C15L);
+    }
+
+    /** Returns uniformly distributed value from {@code (0, 1)}. */
+    private static double uniform(final long value) {
+        return ((value >>> 11) + 0.5) * 0x1.0p-53;
+    }
+
+    /** Finalizer of SplitMix64 generator. */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
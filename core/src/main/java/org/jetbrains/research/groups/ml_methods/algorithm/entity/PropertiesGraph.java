@@ -0,0 +1,276 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Frozen representation of {@link RelevantProperties} of all entities found by
+ * {@link EntitySearcher}. Every entity gets a dense {@code int} id and properties of an entity
+ * are stored as one row of a graph in compressed sparse row (CSR) layout: sorted ids of related
+ * entities together with their weights. Such layout allows to compute weighted intersection and
+ * union of two sets of properties with a merge-join over primitive arrays without any boxing or
+ * hashing.
+ * <p>
+ * Properties that are override methods are stored with an id shifted by the number of entities,
+ * so that they never match the same method stored as a not override method. It keeps results of
+ * all operations equal to the ones computed over maps of {@link RelevantProperties}.
+ */
+public class PropertiesGraph {
+    private final @NotNull Map<CodeEntity, Integer> ids;
+
+    private final @NotNull CodeEntity[] entities;
+
+    private final @NotNull int[] offsets;
+
+    private final @NotNull int[] targets;
+
+    private final @NotNull int[] weights;
+
+    private final @NotNull int[] sizes;
+
+    private final @NotNull int[] totalWeights;
+
+    private final @NotNull int[] maxWeights;
+
+    private PropertiesGraph(
+        final @NotNull Map<CodeEntity, Integer> ids,
+        final @NotNull CodeEntity[] entities,
+        final @NotNull int[] offsets,
+        final @NotNull int[] targets,
+        final @NotNull int[] weights,
+        final @NotNull int[] sizes
+    ) {
+        this.ids = ids;
+        this.entities = entities;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.sizes = sizes;
+
+        totalWeights = new int[entities.length];
+        maxWeights = new int[entities.length];
+        for (int id = 0; id < entities.length; id++) {
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                totalWeights[id] += weights[i];
+                maxWeights[id] = Math.max(maxWeights[id], weights[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds graph for given entities. Ids are assigned in order of given lists, entities that
+     * are not in these lists but are referenced as properties get subsequent ids. After this call
+     * each {@link RelevantProperties} of numbered entities refers to its row in the built graph.
+     *
+     * @param roots lists of entities that must be numbered first.
+     */
+    @SafeVarargs
+    static @NotNull PropertiesGraph build(final @NotNull List<? extends CodeEntity>... roots) {
+        final Map<CodeEntity, Integer> ids = new HashMap<>();
+        final List<CodeEntity> entities = new ArrayList<>();
+        for (List<? extends CodeEntity> root : roots) {
+            for (CodeEntity entity : root) {
+                assignId(entity, ids, entities);
+            }
+        }
+
+        for (int i = 0; i < entities.size(); i++) {
+            final RelevantProperties properties = entities.get(i).getRelevantProperties();
+            properties.getClassesWithWeights().keySet().forEach(e -> assignId(e, ids, entities));
+            properties.getFieldsWithWeights().keySet().forEach(e -> assignId(e, ids, entities));
+            properties.getNotOverrideMethodsWithWeights().keySet().forEach(e -> assignId(e, ids, entities));
+            properties.getOverrideMethodsWithWeights().keySet().forEach(e -> assignId(e, ids, entities));
+        }
+
+        final int entitiesCount = entities.size();
+        final int[] offsets = new int[entitiesCount + 1];
+        final int[] sizes = new int[entitiesCount];
+        for (int i = 0; i < entitiesCount; i++) {
+            final RelevantProperties properties = entities.get(i).getRelevantProperties();
+            offsets[i + 1] = offsets[i] + properties.getClassesWithWeights().size()
+                    + properties.getFieldsWithWeights().size()
+                    + properties.getNotOverrideMethodsWithWeights().size()
+                    + properties.getOverrideMethodsWithWeights().size();
+            sizes[i] = properties.size();
+        }
+
+        final int[] targets = new int[offsets[entitiesCount]];
+        final int[] weights = new int[offsets[entitiesCount]];
+        for (int i = 0; i < entitiesCount; i++) {
+            final RelevantProperties properties = entities.get(i).getRelevantProperties();
+            final long[] row = new long[offsets[i + 1] - offsets[i]];
+            int pointer = 0;
+            pointer = fillRow(row, pointer, properties.getClassesWithWeights(), ids, 0);
+            pointer = fillRow(row, pointer, properties.getFieldsWithWeights(), ids, 0);
+            pointer = fillRow(row, pointer, properties.getNotOverrideMethodsWithWeights(), ids, 0);
+            fillRow(row, pointer, properties.getOverrideMethodsWithWeights(), ids, entitiesCount);
+            Arrays.sort(row);
+
+            for (int j = 0; j < row.length; j++) {
+                targets[offsets[i] + j] = (int) (row[j] >>> 32);
+                weights[offsets[i] + j] = (int) row[j];
+            }
+        }
+
+        final PropertiesGraph graph = new PropertiesGraph(
+            ids,
+            entities.toArray(new CodeEntity[0]),
+            offsets,
+            targets,
+            weights,
+            sizes
+        );
+
+        for (int i = 0; i < entitiesCount; i++) {
+            entities.get(i).getRelevantProperties().freeze(graph, i);
+        }
+
+        return graph;
+    }
+
+    private static void assignId(
+        final @NotNull CodeEntity entity,
+        final @NotNull Map<CodeEntity, Integer> ids,
+        final @NotNull List<CodeEntity> entities
+    ) {
+        if (!ids.containsKey(entity)) {
+            ids.put(entity, entities.size());
+            entities.add(entity);
+        }
+    }
+
+    private static int fillRow(
+        final @NotNull long[] row,
+        int pointer,
+        final @NotNull Map<? extends CodeEntity, Integer> properties,
+        final @NotNull Map<CodeEntity, Integer> ids,
+        final int shift
+    ) {
+        for (Map.Entry<? extends CodeEntity, Integer> entry : properties.entrySet()) {
+            final long target = ids.get(entry.getKey()) + shift;
+            row[pointer++] = (target << 32) | (entry.getValue() & 0xFFFFFFFFL);
+        }
+
+        return pointer;
+    }
+
+    /** Returns number of entities which have an id in this graph. */
+    public int getEntitiesCount() {
+        return entities.length;
+    }
+
+    /** Returns total number of stored properties (edges) over all entities. */
+    public int getEdgesCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns id of a given entity or {@code -1} if there is no such entity in this graph.
+     */
+    public int getId(final @NotNull CodeEntity entity) {
+        return ids.getOrDefault(entity, -1);
+    }
+
+    /** Returns entity with a given id. */
+    public @NotNull CodeEntity getEntity(final int id) {
+        return entities[id];
+    }
+
+    /**
+     * Returns weighted size of properties of entity with a given id. The same as
+     * {@link RelevantProperties#size()}.
+     */
+    public int size(final int id) {
+        return sizes[id];
+    }
+
+    /**
+     * Returns sum of weights of all properties of entity with a given id. Unlike {@link #size}
+     * it includes weights of override methods.
+     */
+    public int totalWeight(final int id) {
+        return totalWeights[id];
+    }
+
+    /** Returns maximum weight of a property of entity with a given id or {@code 0} if it has none. */
+    public int maxWeight(final int id) {
+        return maxWeights[id];
+    }
+
+    /** Returns index in {@link #getTargets()} where properties of a given entity start. */
+    public int rowStart(final int id) {
+        return offsets[id];
+    }
+
+    /** Returns index in {@link #getTargets()} where properties of a given entity end (exclusive). */
+    public int rowEnd(final int id) {
+        return offsets[id + 1];
+    }
+
+    /**
+     * Returns ids of properties of all entities row by row. ATTENTION: this array is not supposed
+     * to be changed directly.
+     */
+    public @NotNull int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Returns weights of properties of all entities row by row. ATTENTION: this array is not
+     * supposed to be changed directly.
+     */
+    public @NotNull int[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Returns weighted size of intersection of properties of two entities. The same as
+     * {@link RelevantProperties#sizeOfIntersection}.
+     */
+    public int sizeOfIntersection(final int first, final int second) {
+        int result = 0;
+        int i = offsets[first];
+        int j = offsets[second];
+        final int firstEnd = offsets[first + 1];
+        final int secondEnd = offsets[second + 1];
+        while (i < firstEnd && j < secondEnd) {
+            if (targets[i] < targets[j]) {
+                i++;
+            } else if (targets[i] > targets[j]) {
+                j++;
+            } else {
+                result += Math.min(weights[i], weights[j]);
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns weighted size of union of properties of two entities. The same as
+     * {@link RelevantProperties#sizeOfUnion}.
+     */
+    public int sizeOfUnion(final int first, final int second) {
+        int result = sizes[first] + sizes[second];
+        int i = offsets[first];
+        int j = offsets[second];
+        final int firstEnd = offsets[first + 1];
+        final int secondEnd = offsets[second + 1];
+        while (i < firstEnd && j < secondEnd) {
+            if (targets[i] < targets[j]) {
+                i++;
+            } else if (targets[i] > targets[j]) {
+                j++;
+            } else {
+                result -= Math.max(weights[i], weights[j]);
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+}
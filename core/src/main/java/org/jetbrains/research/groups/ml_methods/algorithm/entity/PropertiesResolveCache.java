@@ -0,0 +1,134 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.jetbrains.research.groups.ml_methods.utils.PSIUtil.getHumanReadableName;
+
+/**
+ * Memoizes facts about PSI elements which {@link EntitySearcher} needs for every reference while
+ * it calculates properties: whether a class belongs to the project (its name is one of names of
+ * project classes) and which project class is a type of a field. Without it every reference
+ * builds a human readable name of a class and resolves type of a field again.
+ * <p>
+ * PSI elements don't override {@link Object#equals}, so entries are keyed by identity of
+ * elements. Entries are never invalidated, so one cache must be used for one search only, while
+ * PSI and set of project classes don't change. Methods of this class can be called from several
+ * threads. Hits and misses are counted and available through {@link #getCounters}.
+ */
+public class PropertiesResolveCache {
+    private final @NotNull Set<String> projectClassNames;
+
+    private final ConcurrentMap<PsiClass, Boolean> projectClasses = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<PsiField, FieldTarget> fields = new ConcurrentHashMap<>();
+
+    private final LongAdder classHits = new LongAdder();
+
+    private final LongAdder classMisses = new LongAdder();
+
+    private final LongAdder fieldHits = new LongAdder();
+
+    private final LongAdder fieldMisses = new LongAdder();
+
+    /**
+     * Creates cache.
+     *
+     * @param projectClassNames human readable names of all classes of the project. This set must
+     *                          not be changed while cache is used.
+     */
+    PropertiesResolveCache(final @NotNull Set<String> projectClassNames) {
+        this.projectClassNames = projectClassNames;
+    }
+
+    /**
+     * Checks that a given class is a class of the project, i.e. that its human readable name is
+     * a name of a project class.
+     */
+    @Contract("null -> false")
+    public boolean isProjectClass(final @Nullable PsiClass aClass) {
+        if (aClass == null) {
+            return false;
+        }
+
+        final Boolean cached = projectClasses.get(aClass);
+        if (cached != null) {
+            classHits.increment();
+            return cached;
+        }
+
+        classMisses.increment();
+        final boolean result = projectClassNames.contains(getHumanReadableName(aClass));
+        projectClasses.putIfAbsent(aClass, result);
+        return result;
+    }
+
+    /**
+     * Returns facts about a given field which is a target of some reference.
+     */
+    public @NotNull FieldTarget getField(final @NotNull PsiField field) {
+        final FieldTarget cached = fields.get(field);
+        if (cached != null) {
+            fieldHits.increment();
+            return cached;
+        }
+
+        fieldMisses.increment();
+        final PsiClass typeClass = PsiUtil.resolveClassInType(field.getType());
+        final FieldTarget target = new FieldTarget(
+            isProjectClass(field.getContainingClass()),
+            isProjectClass(typeClass) ? typeClass : null
+        );
+        final FieldTarget previous = fields.putIfAbsent(field, target);
+        return previous != null ? previous : target;
+    }
+
+    /**
+     * Returns numbers of hits and misses of the cache by their descriptions.
+     */
+    public @NotNull Map<String, Long> getCounters() {
+        final Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("classes.hits", classHits.sum());
+        counters.put("classes.misses", classMisses.sum());
+        counters.put("fields.hits", fieldHits.sum());
+        counters.put("fields.misses", fieldMisses.sum());
+        return counters;
+    }
+
+    /**
+     * Facts about a field needed to calculate properties of a method which refers to it.
+     */
+    public static final class FieldTarget {
+        private final boolean containingClassInProject;
+
+        private final @Nullable PsiClass projectTypeClass;
+
+        private FieldTarget(final boolean containingClassInProject, final @Nullable PsiClass projectTypeClass) {
+            this.containingClassInProject = containingClassInProject;
+            this.projectTypeClass = projectTypeClass;
+        }
+
+        public boolean isContainingClassInProject() {
+            return containingClassInProject;
+        }
+
+        /**
+         * Returns class which is a type of the field if it is a class of the project, otherwise
+         * returns {@code null}.
+         */
+        public @Nullable PsiClass getProjectTypeClass() {
+            return projectTypeClass;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.jetbrains.research.groups.ml_methods.algorithm.entity;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,12 +25,17 @@ public class RelevantProperties {
 
     private final Integer DEFAULT_PROPERTY_WEIGHT = 1;
 
+    private @Nullable PropertiesGraph graph;
+
+    private int graphId = -1;
+
     void addNotOverrideMethod(final @NotNull MethodEntity method) {
         addNotOverrideMethod(method, DEFAULT_PROPERTY_WEIGHT);
     }
 
 
     void addNotOverrideMethod(final @NotNull MethodEntity method, final @NotNull Integer weight) {
+        unfreeze();
         if (notOverrideMethods.getOrDefault(method, 0) < weight) {
             notOverrideMethods.put(method, weight);
         }
@@ -40,6 +46,7 @@ public class RelevantProperties {
     }
 
     void addClass(final @NotNull ClassEntity aClass, final @NotNull Integer weight) {
+        unfreeze();
         if (classes.getOrDefault(aClass, 0) < weight) {
             classes.put(aClass, weight);
         }
@@ -50,6 +57,7 @@ public class RelevantProperties {
     }
 
     void addField(final @NotNull FieldEntity field, final @NotNull Integer weight) {
+        unfreeze();
         if (fields.getOrDefault(field, 0) < weight) {
             fields.put(field, weight);
         }
@@ -60,11 +68,63 @@ public class RelevantProperties {
     }
 
     void addOverrideMethod(final @NotNull MethodEntity method, final @NotNull Integer weight) {
+        unfreeze();
         if (overrideMethods.getOrDefault(method, 0) < weight) {
             overrideMethods.put(method, weight);
         }
     }
 
+    /**
+     * Binds these properties to a row of a frozen {@link PropertiesGraph}. After that
+     * intersection and union with other properties of the same graph are computed over primitive
+     * arrays of the graph.
+     */
+    void freeze(final @NotNull PropertiesGraph graph, final int id) {
+        this.graph = graph;
+        this.graphId = id;
+    }
+
+    private void unfreeze() {
+        graph = null;
+        graphId = -1;
+    }
+
+    /**
+     * Returns id of entity these properties belong to in a {@link PropertiesGraph} or {@code -1}
+     * if properties are not frozen.
+     */
+    public int getGraphId() {
+        return graphId;
+    }
+
+    /**
+     * Returns {@link PropertiesGraph} these properties are frozen into or {@code null} if they are
+     * not frozen.
+     */
+    public @Nullable PropertiesGraph getGraph() {
+        return graph;
+    }
+
+    private boolean isFrozenTogetherWith(final @NotNull RelevantProperties other) {
+        return graph != null && graph == other.graph;
+    }
+
+    @NotNull Map<ClassEntity, Integer> getClassesWithWeights() {
+        return classes;
+    }
+
+    @NotNull Map<FieldEntity, Integer> getFieldsWithWeights() {
+        return fields;
+    }
+
+    @NotNull Map<MethodEntity, Integer> getNotOverrideMethodsWithWeights() {
+        return notOverrideMethods;
+    }
+
+    @NotNull Map<MethodEntity, Integer> getOverrideMethodsWithWeights() {
+        return overrideMethods;
+    }
+
     int numberOfMethods() {
         return notOverrideMethods.size();
     }
@@ -86,6 +146,10 @@ public class RelevantProperties {
     }
 
     public int size() {
+        if (graph != null) {
+            return graph.size(graphId);
+        }
+
         return getWeightedSize(classes) + getWeightedSize(fields) + getWeightedSize(notOverrideMethods);
     }
 
@@ -100,6 +164,10 @@ public class RelevantProperties {
     }
 
     public int sizeOfIntersection(final @NotNull RelevantProperties properties) {
+        if (isFrozenTogetherWith(properties)) {
+            return graph.sizeOfIntersection(graphId, properties.graphId);
+        }
+
         int result = 0;
 
         final BinaryOperator<Integer> bop = Math::min;
@@ -119,6 +187,10 @@ public class RelevantProperties {
     }
 
     public int sizeOfUnion(final @NotNull RelevantProperties other) {
+        if (isFrozenTogetherWith(other)) {
+            return graph.sizeOfUnion(graphId, other.graphId);
+        }
+
         int result = 0;
 
         final BinaryOperator<Integer> bop = Math::max;
@@ -0,0 +1,134 @@
+package org.jetbrains.research.groups.ml_methods.instrumentation;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of timings and counters of named phases of one refactorings search (metrics
+ * calculation, entities search, execution of algorithms, ...). Measurements are cheap enough to
+ * be always enabled: a phase is measured with {@link #start} which returns a {@link Timer}, items
+ * processed in a phase are counted with {@link #addItems}. Nested phases are named with dots,
+ * e.g. {@code entities.properties}. Methods of this class can be called from several threads.
+ * <p>
+ * Besides time, every measurement records bytes allocated by the measuring thread if JVM
+ * supports it. A timer must be closed in the thread it was started in.
+ */
+public class Instrumentation {
+    private static final Gson JSON_CONVERTER = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, Phase> phases = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * Starts measurement of a phase. Measurement ends when returned timer is closed, so it
+     * should be used in try-with-resources statement.
+     */
+    public @NotNull Timer start(final @NotNull String phase) {
+        return new Timer(getPhase(phase));
+    }
+
+    /**
+     * Adds a given number of processed items to counter of a phase.
+     */
+    public void addItems(final @NotNull String phase, final long items) {
+        getPhase(phase).items.add(items);
+    }
+
+    /**
+     * Returns statistics of all phases in order they were first measured or counted.
+     */
+    public @NotNull List<PhaseStatistics> getPhases() {
+        final List<PhaseStatistics> result = new ArrayList<>();
+        synchronized (phases) {
+            phases.forEach((name, phase) -> result.add(new PhaseStatistics(
+                name,
+                phase.invocations.sum(),
+                phase.time.sum(),
+                allocationsSupported() ? phase.allocatedBytes.sum() : -1,
+                phase.items.sum()
+            )));
+        }
+        return result;
+    }
+
+    /**
+     * Returns statistics of all phases as JSON array.
+     */
+    public @NotNull String toJson() {
+        return JSON_CONVERTER.toJson(getPhases());
+    }
+
+    private @NotNull Phase getPhase(final @NotNull String name) {
+        return phases.computeIfAbsent(name, it -> new Phase());
+    }
+
+    private static boolean allocationsSupported() {
+        return THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+    }
+
+    private static long allocatedBytes() {
+        if (!allocationsSupported()) {
+            return 0;
+        }
+
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class Phase {
+        private final LongAdder invocations = new LongAdder();
+
+        private final LongAdder time = new LongAdder();
+
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private final LongAdder items = new LongAdder();
+    }
+
+    /**
+     * One measurement of a phase.
+     */
+    public static class Timer implements AutoCloseable {
+        private final @NotNull Phase phase;
+
+        private final long startTime;
+
+        private final long startAllocatedBytes;
+
+        private boolean closed;
+
+        private Timer(final @NotNull Phase phase) {
+            this.phase = phase;
+            startAllocatedBytes = allocatedBytes();
+            startTime = System.nanoTime();
+        }
+
+        /**
+         * Ends measurement and adds it to statistics of the phase. Closing a timer twice has no
+         * effect.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            phase.time.add(System.nanoTime() - startTime);
+            phase.allocatedBytes.add(allocatedBytes() - startAllocatedBytes);
+            phase.invocations.increment();
+        }
+    }
+}
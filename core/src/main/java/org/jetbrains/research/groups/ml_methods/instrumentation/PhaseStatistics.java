@@ -0,0 +1,62 @@
+package org.jetbrains.research.groups.ml_methods.instrumentation;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Snapshot of measurements of one phase of {@link Instrumentation}.
+ */
+public class PhaseStatistics {
+    private final @NotNull String name;
+
+    private final long invocations;
+
+    private final long timeNanos;
+
+    private final long allocatedBytes;
+
+    private final long items;
+
+    PhaseStatistics(
+        final @NotNull String name,
+        final long invocations,
+        final long timeNanos,
+        final long allocatedBytes,
+        final long items
+    ) {
+        this.name = name;
+        this.invocations = invocations;
+        this.timeNanos = timeNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.items = items;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    /** Returns number of times the phase was measured. */
+    public long getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * Returns total time of all measurements of the phase in nanoseconds. If the phase was
+     * measured in several threads at the same time, their times are summed.
+     */
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    /**
+     * Returns number of bytes allocated by threads during measurements of the phase or
+     * {@code -1} if JVM doesn't support measurement of allocations.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /** Returns number of items (files, entities, units, ...) processed in the phase. */
+    public long getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,219 @@
+package org.jetbrains.research.groups.ml_methods.utils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed binary min-heap of weighted pairs {@code (first, second)} of {@code int} ids. Every pair
+ * is identified by a primitive {@code long} key (e.g. id of unordered pair), which allows to find,
+ * update (decrease or increase priority) and remove an arbitrary pair in logarithmic time.
+ * Pairs are ordered by distance, ties are broken by first and then by second id. All data is
+ * stored in parallel primitive arrays, so no objects are allocated per pair.
+ */
+public class IndexedPairHeap {
+    private static final int MIN_CAPACITY = 16;
+
+    private final LongIntHashMap positions;
+
+    private long[] keys;
+
+    private double[] distances;
+
+    private int[] firsts;
+
+    private int[] seconds;
+
+    private int size = 0;
+
+    public IndexedPairHeap(int expectedSize) {
+        final int capacity = Math.max(MIN_CAPACITY, expectedSize);
+        positions = new LongIntHashMap(capacity, -1);
+        keys = new long[capacity];
+        distances = new double[capacity];
+        firsts = new int[capacity];
+        seconds = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long key) {
+        return positions.containsKey(key);
+    }
+
+    /**
+     * Returns distance of a pair with a given key or {@link Double#POSITIVE_INFINITY} if there is
+     * no such pair.
+     */
+    public double getDistance(long key) {
+        final int position = positions.get(key);
+        return position == -1 ? Double.POSITIVE_INFINITY : distances[position];
+    }
+
+    /**
+     * Inserts new pair or updates distance and ids of already present pair with the same key.
+     */
+    public void put(long key, double distance, int first, int second) {
+        int position = positions.get(key);
+        if (position == -1) {
+            ensureCapacity(size + 1);
+            position = size++;
+            keys[position] = key;
+            positions.put(key, position);
+        }
+
+        distances[position] = distance;
+        firsts[position] = first;
+        seconds[position] = second;
+        siftDown(siftUp(position));
+    }
+
+    /**
+     * Removes pair with a given key.
+     *
+     * @return {@code true} if heap contained such pair.
+     */
+    public boolean remove(long key) {
+        final int position = positions.remove(key);
+        if (position == -1) {
+            return false;
+        }
+
+        removeAt(position);
+        return true;
+    }
+
+    /** Returns key of a pair with minimal distance. */
+    public long peekKey() {
+        checkNotEmpty();
+        return keys[0];
+    }
+
+    public double peekDistance() {
+        checkNotEmpty();
+        return distances[0];
+    }
+
+    public int peekFirst() {
+        checkNotEmpty();
+        return firsts[0];
+    }
+
+    public int peekSecond() {
+        checkNotEmpty();
+        return seconds[0];
+    }
+
+    /** Removes pair with minimal distance. */
+    public void poll() {
+        checkNotEmpty();
+        positions.remove(keys[0]);
+        removeAt(0);
+    }
+
+    public void clear() {
+        positions.clear();
+        size = 0;
+    }
+
+    private void removeAt(int position) {
+        size--;
+        if (position == size) {
+            return;
+        }
+
+        move(size, position);
+        siftDown(siftUp(position));
+    }
+
+    private int siftUp(int position) {
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (!less(position, parent)) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+
+        return position;
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            final int left = 2 * position + 1;
+            if (left >= size) {
+                return;
+            }
+
+            final int right = left + 1;
+            final int smallest = right < size && less(right, left) ? right : left;
+            if (!less(smallest, position)) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private boolean less(int i, int j) {
+        final int byDistance = Double.compare(distances[i], distances[j]);
+        if (byDistance != 0) {
+            return byDistance < 0;
+        }
+        if (firsts[i] != firsts[j]) {
+            return firsts[i] < firsts[j];
+        }
+        return seconds[i] < seconds[j];
+    }
+
+    private void swap(int i, int j) {
+        final long key = keys[i];
+        final double distance = distances[i];
+        final int first = firsts[i];
+        final int second = seconds[i];
+
+        keys[i] = keys[j];
+        distances[i] = distances[j];
+        firsts[i] = firsts[j];
+        seconds[i] = seconds[j];
+        positions.put(keys[i], i);
+
+        keys[j] = key;
+        distances[j] = distance;
+        firsts[j] = first;
+        seconds[j] = second;
+        positions.put(key, j);
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        distances[to] = distances[from];
+        firsts[to] = firsts[from];
+        seconds[to] = seconds[from];
+        positions.put(keys[to], to);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= keys.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, newCapacity);
+        distances = Arrays.copyOf(distances, newCapacity);
+        firsts = Arrays.copyOf(firsts, newCapacity);
+        seconds = Arrays.copyOf(seconds, newCapacity);
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException("Heap is empty");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.jetbrains.research.groups.ml_methods.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive {@code long} keys to primitive {@code int} values. It
+ * uses linear probing and backward shift deletion, so there are no tombstones and no boxing.
+ * {@link Long#MIN_VALUE} is reserved and can't be used as a key.
+ */
+public class LongIntHashMap {
+    private static final long FREE_KEY = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final int defaultValue;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size = 0;
+
+    private int mask;
+
+    private int shift;
+
+    /**
+     * Creates map.
+     *
+     * @param expectedSize number of keys map should hold without rehashing.
+     * @param defaultValue value that is returned for absent keys.
+     */
+    public LongIntHashMap(int expectedSize, int defaultValue) {
+        this.defaultValue = defaultValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return keys[find(key)] != FREE_KEY;
+    }
+
+    /**
+     * Returns value associated with a given key or default value if there is no such key.
+     */
+    public int get(long key) {
+        final int slot = find(key);
+        return keys[slot] == FREE_KEY ? defaultValue : values[slot];
+    }
+
+    /**
+     * Associates value with a key.
+     *
+     * @return previous value or default value if there was no such key.
+     */
+    public int put(long key, int value) {
+        if (key == FREE_KEY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+
+        final int slot = find(key);
+        if (keys[slot] != FREE_KEY) {
+            final int previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Removes key from this map.
+     *
+     * @return removed value or default value if there was no such key.
+     */
+    public int remove(long key) {
+        int slot = find(key);
+        if (keys[slot] == FREE_KEY) {
+            return defaultValue;
+        }
+
+        final int removed = values[slot];
+        size--;
+
+        int next = (slot + 1) & mask;
+        while (keys[next] != FREE_KEY) {
+            final int home = slotOf(keys[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        keys[slot] = FREE_KEY;
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int slot = slotOf(key);
+        while (keys[slot] != FREE_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private int slotOf(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                final int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE_KEY);
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2L * expectedSize + 1) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+}
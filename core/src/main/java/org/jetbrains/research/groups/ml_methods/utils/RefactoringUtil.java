@@ -7,6 +7,7 @@ import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiMethod;
 import com.sixrr.metrics.utils.MethodUtils;
 import org.apache.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
 import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveToClassRefactoring;
@@ -25,11 +26,26 @@ public final class RefactoringUtil {
 
 
     public static List<CalculatedRefactoring> filter(List<CalculatedRefactoring> refactorings) {
+        return filter(refactorings, null);
+    }
+
+    /**
+     * Leaves only refactorings whose entities can be moved. Overriding methods are detected with
+     * a given closure of super methods if it is still up to date.
+     *
+     * @param supers closure of super methods computed during analysis or {@code null}.
+     */
+    public static List<CalculatedRefactoring> filter(
+        List<CalculatedRefactoring> refactorings,
+        @Nullable SupersClosure supers
+    ) {
         final List<CalculatedRefactoring> validRefactorings = new ArrayList<>();
+        final SupersClosure actualSupers = supers != null && ApplicationManager.getApplication()
+                .runReadAction((Computable<Boolean>) supers::isUpToDate) ? supers : null;
         for (CalculatedRefactoring refactoring : refactorings) {
             final PsiElement element = refactoring.getRefactoring().getEntity();
             final boolean isMovable = ApplicationManager.getApplication()
-                    .runReadAction((Computable<Boolean>) () -> isMovable(element));
+                    .runReadAction((Computable<Boolean>) () -> isMovable(element, actualSupers));
             if (isMovable) {
                 validRefactorings.add(refactoring);
             }
@@ -37,12 +53,13 @@ public final class RefactoringUtil {
         return validRefactorings;
     }
 
-    private static boolean isMovable(PsiElement psiElement) {
+    private static boolean isMovable(PsiElement psiElement, @Nullable SupersClosure supers) {
         if (psiElement instanceof PsiField) {
             return MethodUtils.isStatic((PsiField) psiElement);
         } else if (psiElement instanceof PsiMethod) {
             final PsiMethod method = (PsiMethod) psiElement;
-            return !MethodUtils.isAbstract(method) && !PSIUtil.isOverriding(method) && !method.isConstructor();
+            final boolean isOverriding = supers == null ? PSIUtil.isOverriding(method) : supers.isOverriding(method);
+            return !MethodUtils.isAbstract(method) && !isOverriding && !method.isConstructor();
         }
         return false;
     }
@@ -0,0 +1,120 @@
+package org.jetbrains.research.groups.ml_methods.utils;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoized transitive closure of supertypes of classes and of super methods of methods. Gives
+ * the same sets as {@link PSIUtil#getAllSupers(PsiClass)} and {@link PSIUtil#getAllSupers(PsiMethod)}
+ * but closure of every class (method) is computed only once from closures of its direct supers,
+ * so shared parts of hierarchies are not walked again for every subclass.
+ * <p>
+ * One object should be used for one analysis. It remembers structure modification count of Java
+ * PSI at creation, {@link #isUpToDate} tells whether hierarchies could change since then. Methods
+ * of this class must be called with read access, they can be called from several threads.
+ */
+public class SupersClosure {
+    private final @Nullable Project project;
+
+    private final long structureModificationCount;
+
+    private final ConcurrentMap<PsiClass, Set<PsiClass>> classSupers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<PsiMethod, Set<PsiMethod>> methodSupers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates empty closure.
+     *
+     * @param project project whose PSI is analyzed or {@code null} if closure is never up to date
+     *                outside of analysis.
+     */
+    public SupersClosure(final @Nullable Project project) {
+        this.project = project;
+        structureModificationCount = project == null ? -1 : structureModificationCount(project);
+    }
+
+    /**
+     * Returns all classes and interfaces a given class inherits directly or indirectly.
+     */
+    public @NotNull Set<PsiClass> getAllSupers(final @NotNull PsiClass aClass) {
+        return Collections.unmodifiableSet(supers(aClass, new HashSet<>()));
+    }
+
+    /**
+     * Returns all methods a given method overrides or implements directly or indirectly.
+     */
+    public @NotNull Set<PsiMethod> getAllSupers(final @NotNull PsiMethod method) {
+        return Collections.unmodifiableSet(supers(method, new HashSet<>()));
+    }
+
+    /**
+     * Checks that a given method overrides or implements some method.
+     */
+    public boolean isOverriding(final @NotNull PsiMethod method) {
+        return !supers(method, new HashSet<>()).isEmpty();
+    }
+
+    /**
+     * Checks that class hierarchies of Java PSI could not change since this closure was created,
+     * so results of this closure are still actual.
+     */
+    public boolean isUpToDate() {
+        return project != null && structureModificationCount(project) == structureModificationCount;
+    }
+
+    private @NotNull Set<PsiClass> supers(final @NotNull PsiClass aClass, final @NotNull Set<PsiClass> inProgress) {
+        final Set<PsiClass> cached = classSupers.get(aClass);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (!inProgress.add(aClass)) {
+            return Collections.emptySet(); // cyclic inheritance in incorrect code
+        }
+
+        final Set<PsiClass> result = new HashSet<>();
+        for (PsiClass superClass : aClass.getSupers()) {
+            result.add(superClass);
+            result.addAll(supers(superClass, inProgress));
+        }
+        inProgress.remove(aClass);
+
+        final Set<PsiClass> previous = classSupers.putIfAbsent(aClass, result);
+        return previous != null ? previous : result;
+    }
+
+    private @NotNull Set<PsiMethod> supers(final @NotNull PsiMethod method, final @NotNull Set<PsiMethod> inProgress) {
+        final Set<PsiMethod> cached = methodSupers.get(method);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (!inProgress.add(method)) {
+            return Collections.emptySet();
+        }
+
+        final Set<PsiMethod> result = new HashSet<>();
+        for (PsiMethod superMethod : method.findSuperMethods()) {
+            result.add(superMethod);
+            result.addAll(supers(superMethod, inProgress));
+        }
+        inProgress.remove(method);
+
+        final Set<PsiMethod> previous = methodSupers.putIfAbsent(method, result);
+        return previous != null ? previous : result;
+    }
+
+    private static long structureModificationCount(final @NotNull Project project) {
+        return PsiModificationTracker.SERVICE.getInstance(project).getJavaStructureModificationCount();
+    }
+}
@@ -0,0 +1,115 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.metricModel.MetricsRunImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitySearcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class AbstractAlgorithmTest extends LightCodeInsightFixtureTestCase {
+    private static final int VALUES_COUNT = 2000;
+
+    private static final int THREADS_COUNT = 4;
+
+    public void testRunParallelBalancedInForkJoinPool() throws Exception {
+        checkRunParallelBalanced(new ForkJoinPool(THREADS_COUNT));
+    }
+
+    public void testRunParallelBalancedInOtherService() throws Exception {
+        checkRunParallelBalanced(Executors.newFixedThreadPool(THREADS_COUNT));
+    }
+
+    /**
+     * Runs processing of values whose cost is very different and combines results with a
+     * combiner that isn't commutative. Result must be the same as result of sequential processing.
+     */
+    private void checkRunParallelBalanced(final @NotNull ExecutorService service) throws Exception {
+        final List<Integer> values = IntStream.range(0, VALUES_COUNT).boxed().collect(Collectors.toList());
+        final AttributesStorage attributes = new AttributesStorage(
+            EntitySearcher.analyze(new AnalysisScope(getProject(), Collections.emptyList())),
+            Collections.emptyList(),
+            new MetricsRunImpl()
+        );
+
+        try {
+            for (int run = 0; run < 5; run++) {
+                final ConcatenatingAlgorithm algorithm = new ConcatenatingAlgorithm(values);
+                final AlgorithmResult result = algorithm.execute(attributes, service, false);
+
+                assertTrue(result.isSuccess());
+                assertEquals(values, algorithm.result);
+            }
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    private static class ConcatenatingAlgorithm extends AbstractAlgorithm {
+        private final @NotNull List<Integer> values;
+
+        private List<Integer> result;
+
+        private ConcatenatingAlgorithm(final @NotNull List<Integer> values) {
+            super(AlgorithmType.ARI, true);
+            this.values = values;
+        }
+
+        @Override
+        protected @NotNull Executor setUpExecutor() {
+            return (context, enableFieldRefactorings) -> {
+                result = context.runParallelBalanced(
+                    values,
+                    ArrayList::new,
+                    ConcatenatingAlgorithm::process,
+                    ConcatenatingAlgorithm::concatenate
+                );
+
+                return Collections.emptyList();
+            };
+        }
+
+        @Override
+        public @NotNull List<Metric> requiredMetrics() {
+            return Collections.emptyList();
+        }
+
+        /**
+         * Appends a value to an accumulator. Values at the beginning of a list take much more
+         * time than others, so work of threads is skewed.
+         */
+        private static @NotNull List<Integer> process(
+            final @NotNull Integer value,
+            final @NotNull List<Integer> accumulator
+        ) {
+            final long iterations = value < VALUES_COUNT / 20 ? 200_000 : 100;
+            double sink = 0;
+            for (long i = 0; i < iterations; i++) {
+                sink += Math.sqrt(i + value);
+            }
+
+            accumulator.add(sink >= 0 ? value : -value);
+            return accumulator;
+        }
+
+        private static @NotNull List<Integer> concatenate(
+            final @NotNull List<Integer> first,
+            final @NotNull List<Integer> second
+        ) {
+            final List<Integer> result = new ArrayList<>(first);
+            result.addAll(second);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.psi.PsiFile;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.metricModel.MetricsRunImpl;
+import com.sixrr.metrics.profile.MetricsProfile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.ScopeAbstractTest;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorage;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.NoRequestedMetricException;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitySearcher;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.RandomProperties;
+import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
+import org.jetbrains.research.groups.ml_methods.utils.MetricsProfilesUtil;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.jetbrains.research.groups.ml_methods.utils.PSIUtil.getHumanReadableName;
+
+/**
+ * Base class for tests that run two algorithms, two versions of one algorithm or two ways of
+ * running it on the same input and compare their results.
+ */
+@SuppressWarnings("WeakerAccess")
+public abstract class AlgorithmsComparisonAbstractTest extends ScopeAbstractTest {
+    private static final int RANDOM_SEEDS_COUNT = 5;
+
+    /**
+     * Two algorithms to compare and an assertion that checks their results. Assertion receives
+     * results in the same order as algorithms, both results are already checked to be successful.
+     */
+    protected static final class Comparison {
+        private final @NotNull Supplier<Algorithm> first;
+
+        private final @NotNull Supplier<Algorithm> second;
+
+        private final @NotNull BiConsumer<AlgorithmResult, AlgorithmResult> assertion;
+
+        public Comparison(
+            final @NotNull Supplier<Algorithm> first,
+            final @NotNull Supplier<Algorithm> second,
+            final @NotNull BiConsumer<AlgorithmResult, AlgorithmResult> assertion
+        ) {
+            this.first = first;
+            this.second = second;
+            this.assertion = assertion;
+        }
+    }
+
+    /**
+     * Runs compared algorithms on given files of a test case and checks their results.
+     */
+    protected void compareOnFiles(final @NotNull Comparison comparison, final @NotNull String... files) {
+        final List<AlgorithmResult> results =
+            executeOnFiles(Arrays.asList(comparison.first.get(), comparison.second.get()), files);
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        comparison.assertion.accept(results.get(0), results.get(1));
+    }
+
+    /**
+     * Runs compared algorithms on attributes with random properties generated for several seeds
+     * (see {@link #createRandomAttributes}) and checks their results.
+     *
+     * @return results of the first algorithm for all seeds.
+     */
+    protected @NotNull List<AlgorithmResult> compareOnRandomProperties(
+        final @NotNull Comparison comparison,
+        final int classesCount,
+        final int propertiesCount,
+        final int maxWeight
+    ) throws NoRequestedMetricException {
+        final List<AlgorithmResult> firstResults = new ArrayList<>();
+        for (long seed = 0; seed < RANDOM_SEEDS_COUNT; seed++) {
+            final AttributesStorage attributes =
+                createRandomAttributes(seed, classesCount, propertiesCount, maxWeight);
+            final AlgorithmResult first = execute(comparison.first.get(), attributes);
+            comparison.assertion.accept(first, execute(comparison.second.get(), attributes));
+            firstResults.add(first);
+        }
+
+        return firstResults;
+    }
+
+    /**
+     * Runs given algorithms on given files of a test case and returns their results in the same
+     * order.
+     */
+    protected @NotNull List<AlgorithmResult> executeOnFiles(
+        final @NotNull List<Algorithm> algorithms,
+        final @NotNull String... files
+    ) {
+        return executeOnScope(algorithms, createScope(files));
+    }
+
+    /**
+     * Runs given algorithms on a given scope and returns their results in the same order.
+     */
+    protected @NotNull List<AlgorithmResult> executeOnScope(
+        final @NotNull List<Algorithm> algorithms,
+        final @NotNull AnalysisScope scope
+    ) {
+        final List<AlgorithmResult> results = new ArrayList<>();
+        new RefactoringExecutionContext(
+            myFixture.getProject(),
+            scope,
+            createProfile(algorithms),
+            algorithms,
+            true,
+            context -> results.addAll(context.getAlgorithmResults())
+        ).executeSynchronously();
+
+        assertEquals(algorithms.size(), results.size());
+        return results;
+    }
+
+    /**
+     * Creates profile with metrics required by given algorithms.
+     */
+    protected static @NotNull MetricsProfile createProfile(final @NotNull List<Algorithm> algorithms) {
+        final Set<Metric> metrics = algorithms.stream()
+                .flatMap(it -> it.requiredMetrics().stream())
+                .collect(Collectors.toSet());
+        return MetricsProfilesUtil.createProfile("test_profile", metrics);
+    }
+
+    /**
+     * Creates attributes of entities of a generated file whose properties are replaced with
+     * random ones (see {@link RandomProperties}). Entities have no features.
+     */
+    protected @NotNull AttributesStorage createRandomAttributes(
+        final long seed,
+        final int classesCount,
+        final int propertiesCount,
+        final int maxWeight
+    ) throws NoRequestedMetricException {
+        final PsiFile file = myFixture.addFileToProject(
+            "Generated.java",
+            RandomProperties.generateSource(classesCount)
+        );
+        final AnalysisScope scope = new AnalysisScope(getProject(), Collections.singletonList(file.getVirtualFile()));
+
+        return new AttributesStorage(
+            RandomProperties.randomize(EntitySearcher.analyze(scope), new Random(seed), propertiesCount, maxWeight),
+            Collections.emptyList(),
+            new MetricsRunImpl()
+        );
+    }
+
+    /**
+     * Runs algorithm on given attributes in a new pool of threads.
+     */
+    protected static @NotNull AlgorithmResult execute(
+        final @NotNull Algorithm algorithm,
+        final @NotNull AttributesStorage attributes
+    ) {
+        final ExecutorService service = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            final AlgorithmResult result = algorithm.execute(attributes, service, true);
+            assertTrue(result.isSuccess());
+            return result;
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns accuracies of refactorings by their human readable description
+     * {@code "<entity> -> <target class>"}.
+     */
+    protected static @NotNull Map<String, Double> toMap(final @NotNull AlgorithmResult result) {
+        return toMap(result.getRefactorings());
+    }
+
+    protected static @NotNull Map<String, Double> toMap(
+        final @NotNull List<CalculatedRefactoring> calculatedRefactorings
+    ) {
+        final Map<String, Double> refactorings = new HashMap<>();
+        for (CalculatedRefactoring refactoring : calculatedRefactorings) {
+            final Double previous = refactorings.put(
+                getHumanReadableName(refactoring.getRefactoring().getEntity()) + " -> " +
+                getHumanReadableName(refactoring.getRefactoring().getTargetClass()),
+                refactoring.getAccuracy()
+            );
+            assertNull(previous);
+        }
+
+        return refactorings;
+    }
+}
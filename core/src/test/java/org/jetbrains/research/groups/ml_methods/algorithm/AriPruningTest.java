@@ -0,0 +1,94 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Checks that {@code ARI()}, which skips candidate classes by bounds of distances, suggests the
+ * same refactorings with the same accuracies as {@code ARI(false)}, which evaluates every
+ * candidate. Results are compared on test cases regardless of whether ARI passes them.
+ */
+public class AriPruningTest extends AlgorithmsComparisonAbstractTest {
+    private static final String PRUNED_STATISTIC = "Full evaluations skipped by bounds";
+
+    private static final int RANDOM_CLASSES_COUNT = 30;
+
+    private static final int RANDOM_PROPERTIES_COUNT = 8;
+
+    /**
+     * Weights are small, so that many distances are equal and ties of bounds are checked.
+     */
+    private static final int RANDOM_MAX_WEIGHT = 2;
+
+    private static final @NotNull Comparison COMPARISON =
+        new Comparison(ARI::new, () -> new ARI(false), AriPruningTest::assertSameResults);
+
+    public void testMoveMethod() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testCallFromNested() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testCircularDependency() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java", "ClassC.java");
+    }
+
+    public void testCrossReferencesMethods() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testDontMoveOverridden() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testMoveField() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testPriority() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testTriangularDependence() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java", "ClassC.java");
+    }
+
+    public void testMobilePhoneWithFeatureEnvy() {
+        compareOnFiles(COMPARISON, "Customer.java", "Phone.java");
+    }
+
+    public void testMovieRentalStoreWithFeatureEnvy() {
+        compareOnFiles(COMPARISON, "Customer.java", "Movie.java", "Rental.java");
+    }
+
+    public void testStaticFactoryMethods() {
+        compareOnFiles(COMPARISON, "Cat.java", "Color.java", "Dog.java");
+    }
+
+    public void testRandomProperties() throws Exception {
+        final List<AlgorithmResult> withPruning =
+            compareOnRandomProperties(COMPARISON, RANDOM_CLASSES_COUNT, RANDOM_PROPERTIES_COUNT, RANDOM_MAX_WEIGHT);
+        assertTrue(withPruning.stream().mapToLong(AriPruningTest::getPrunedCount).sum() > 0);
+    }
+
+    private static void assertSameResults(
+        final @NotNull AlgorithmResult withPruning,
+        final @NotNull AlgorithmResult exhaustive
+    ) {
+        assertNull(exhaustive.getStatistics().get(PRUNED_STATISTIC));
+        assertEquals(toMap(exhaustive), toMap(withPruning));
+    }
+
+    /**
+     * Returns number of candidates skipped by bounds, the statistic has form
+     * {@code "<skipped> of <candidates>"}.
+     */
+    private static long getPrunedCount(final @NotNull AlgorithmResult result) {
+        final String statistic = result.getStatistics().get(PRUNED_STATISTIC);
+        assertNotNull(statistic);
+        return Long.parseLong(statistic.substring(0, statistic.indexOf(' ')));
+    }
+}
@@ -0,0 +1,102 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Checks that {@code CCDA(true)}, which applies many moves per iteration, converges to a quality
+ * close to the one {@code CCDA()} reaches by applying the single best move per iteration. Test
+ * cases are the ones supported by {@code CCDA()}, see {@link CcdaTest}.
+ */
+public class CcdaLouvainTest extends AlgorithmsComparisonAbstractTest {
+    private static final int RANDOM_CLASSES_COUNT = 30;
+
+    private static final int RANDOM_PROPERTIES_COUNT = 4;
+
+    private static final int RANDOM_MAX_WEIGHT = 3;
+
+    /**
+     * Maximum loss of final quality. Both modes stop in local optima that may differ.
+     */
+    private static final double QUALITY_TOLERANCE = 0.05;
+
+    private static final @NotNull Comparison COMPARISON =
+        new Comparison(CCDA::new, () -> new CCDA(true), CcdaLouvainTest::assertCloseQuality);
+
+    public void testMoveMethod() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testCallFromNested() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testCircularDependency() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java", "ClassC.java");
+    }
+
+    public void testCrossReferencesMethods() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testDontMoveAbstract() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testDontMoveConstructor() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testMoveField() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testMoveTogether() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testPriority() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testRecursiveMethod() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testMobilePhoneNoFeatureEnvy() {
+        compareOnFiles(COMPARISON, "Customer.java", "Phone.java");
+    }
+
+    public void testMovieRentalStoreNoFeatureEnvy() {
+        compareOnFiles(COMPARISON, "Customer.java", "Movie.java", "Rental.java");
+    }
+
+    public void testMovieRentalStoreWithFeatureEnvy() {
+        compareOnFiles(COMPARISON, "Customer.java", "Movie.java", "Rental.java");
+    }
+
+    public void testCallFromLambda() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testRandomProperties() throws Exception {
+        compareOnRandomProperties(COMPARISON, RANDOM_CLASSES_COUNT, RANDOM_PROPERTIES_COUNT, RANDOM_MAX_WEIGHT);
+    }
+
+    private static void assertCloseQuality(
+        final @NotNull AlgorithmResult single,
+        final @NotNull AlgorithmResult louvain
+    ) {
+        assertEquals(getQuality(single, "initial"), getQuality(louvain, "initial"));
+
+        final double singleQuality = getQuality(single, "final");
+        final double louvainQuality = getQuality(louvain, "final");
+        assertTrue(
+            "Quality " + louvainQuality + " is much worse than " + singleQuality,
+            louvainQuality >= singleQuality - QUALITY_TOLERANCE
+        );
+    }
+
+    private static double getQuality(final @NotNull AlgorithmResult result, final @NotNull String stage) {
+        return Double.parseDouble(result.getStatistics().get("Quality (" + stage + ")"));
+    }
+}
@@ -0,0 +1,107 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes files of a test case step by step and checks that after each step suggestions of
+ * {@link IncrementalExecutionContext} are the same as suggestions of a full run of {@link ARI}.
+ */
+public class IncrementalExecutionContextTest extends AlgorithmsComparisonAbstractTest {
+    private static final String EDITED_RENTAL =
+        "package movieRentalStoreWithFeatureEnvy;\n" +
+        "\n" +
+        "class Rental {\n" +
+        "    public Movie _movie;\n" +
+        "    private int _daysRented;\n" +
+        "    public Rental(Movie movie, int daysRented) {\n" +
+        "        _movie = movie;\n" +
+        "        _daysRented = daysRented;\n" +
+        "    }\n" +
+        "    public int getDaysRented() {\n" +
+        "        return _daysRented;\n" +
+        "    }\n" +
+        "    public String getDescription() {\n" +
+        "        return _movie.getTitle() + _movie.getPriceCode() + Movie.REGULAR;\n" +
+        "    }\n" +
+        "}\n";
+
+    private static final String ADDED_PRICE =
+        "package movieRentalStoreWithFeatureEnvy;\n" +
+        "\n" +
+        "class Price {\n" +
+        "    private int _code;\n" +
+        "    public boolean isNewRelease(Rental rental) {\n" +
+        "        return rental._movie.getPriceCode() == Movie.NEW_RELEASE && rental.getDaysRented() > 1;\n" +
+        "    }\n" +
+        "    public int getCode() {\n" +
+        "        return _code;\n" +
+        "    }\n" +
+        "}\n";
+
+    public void testMovieRentalStoreWithFeatureEnvy() throws Exception {
+        createScope("Customer.java", "Movie.java", "Rental.java");
+        final IncrementalExecutionContext context = new IncrementalExecutionContext(
+            getProject(),
+            new AnalysisScope(getProject()),
+            createProfile(Collections.singletonList(new ARI())),
+            true
+        );
+
+        update(context);
+        assertSameAsFullRun(context);
+        assertTrue(context.getRescoredUnitsCount() > 0);
+
+        update(context);
+        assertSameAsFullRun(context);
+        assertEquals(0, context.getRescoredUnitsCount());
+
+        myFixture.saveText(findFile("Rental.java"), EDITED_RENTAL);
+        update(context);
+        assertSameAsFullRun(context);
+        assertTrue(context.getRescoredUnitsCount() > 0);
+
+        myFixture.addFileToProject(getTestName(true) + "/Price.java", ADDED_PRICE);
+        update(context);
+        assertSameAsFullRun(context);
+        assertTrue(context.getRescoredUnitsCount() > 0);
+
+        final PsiFile customer = PsiManager.getInstance(getProject()).findFile(findFile("Customer.java"));
+        assertNotNull(customer);
+        WriteCommandAction.runWriteCommandAction(getProject(), customer::delete);
+        update(context);
+        assertSameAsFullRun(context);
+        assertTrue(context.getRescoredUnitsCount() > 0);
+    }
+
+    /**
+     * Updates context in a background thread, so that entities are searched in parallel as they
+     * are in the plugin.
+     */
+    private static void update(final @NotNull IncrementalExecutionContext context) throws Exception {
+        ApplicationManager.getApplication()
+                .executeOnPooledThread(() -> context.update(new EmptyProgressIndicator()))
+                .get();
+    }
+
+    private void assertSameAsFullRun(final @NotNull IncrementalExecutionContext context) {
+        final List<AlgorithmResult> results =
+            executeOnScope(Collections.singletonList(new ARI()), new AnalysisScope(getProject()));
+        assertEquals(toMap(results.get(0)), toMap(context.getRefactorings()));
+    }
+
+    private @NotNull VirtualFile findFile(final @NotNull String name) {
+        final VirtualFile file = myFixture.findFileInTempDir(getTestName(true) + "/" + name);
+        assertNotNull(file);
+        return file;
+    }
+}
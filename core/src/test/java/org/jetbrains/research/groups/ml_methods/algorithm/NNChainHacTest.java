@@ -0,0 +1,93 @@
+package org.jetbrains.research.groups.ml_methods.algorithm;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Checks that {@link NNChainHAC} finds the same communities as {@link HAC}. Test cases are the
+ * ones supported by {@link HAC}, see {@link HacTest}.
+ */
+public class NNChainHacTest extends AlgorithmsComparisonAbstractTest {
+    private static final int RANDOM_CLASSES_COUNT = 30;
+
+    private static final double TIE_ACCURACY = 0.5;
+
+    private static final int RANDOM_PROPERTIES_COUNT = 6;
+
+    /**
+     * Weights are large, so that distances between communities are almost never equal and order
+     * of merges doesn't depend on the order in which ties are broken.
+     */
+    private static final int RANDOM_MAX_WEIGHT = 1_000_000;
+
+    private static final @NotNull Comparison COMPARISON =
+        new Comparison(HAC::new, NNChainHAC::new, NNChainHacTest::assertSameResults);
+
+    public void testMoveMethod() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testCircularDependency() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java", "ClassC.java");
+    }
+
+    public void testCrossReferencesMethods() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testDontMoveAbstract() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testDontMoveConstructor() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testDontMoveOverridden() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java");
+    }
+
+    public void testTriangularDependence() {
+        compareOnFiles(COMPARISON, "ClassA.java", "ClassB.java", "ClassC.java");
+    }
+
+    public void testMobilePhoneNoFeatureEnvy() {
+        compareOnFiles(COMPARISON, "Customer.java", "Phone.java");
+    }
+
+    public void testMovieRentalStoreNoFeatureEnvy() {
+        compareOnFiles(COMPARISON, "Customer.java", "Movie.java", "Rental.java");
+    }
+
+    public void testRandomProperties() throws Exception {
+        compareOnRandomProperties(COMPARISON, RANDOM_CLASSES_COUNT, RANDOM_PROPERTIES_COUNT, RANDOM_MAX_WEIGHT);
+    }
+
+    /**
+     * If several classes dominate a community equally, the chosen one depends on order of
+     * members, which differs between algorithms. Accuracy of such community is at most
+     * {@link #TIE_ACCURACY}, so refactorings with such accuracies are compared only by accuracy:
+     * the number of moved entities doesn't depend on the chosen class.
+     */
+    private static void assertSameResults(final @NotNull AlgorithmResult hac, final @NotNull AlgorithmResult nnChain) {
+        assertEquals(hac.getStatistics().get("Communities"), nnChain.getStatistics().get("Communities"));
+        assertEquals(withoutTies(toMap(hac)), withoutTies(toMap(nnChain)));
+        assertEquals(sortedAccuracies(hac), sortedAccuracies(nnChain));
+    }
+
+    private static @NotNull Map<String, Double> withoutTies(final @NotNull Map<String, Double> refactorings) {
+        refactorings.values().removeIf(accuracy -> accuracy <= TIE_ACCURACY);
+        return refactorings;
+    }
+
+    private static @NotNull List<Double> sortedAccuracies(final @NotNull AlgorithmResult result) {
+        return result.getRefactorings().stream()
+                .map(CalculatedRefactoring::getAccuracy)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
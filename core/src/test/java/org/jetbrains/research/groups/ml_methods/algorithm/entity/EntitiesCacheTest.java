@@ -0,0 +1,92 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache.EntityKey;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache.FileContribution;
+import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesCache.PropertyEdge;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class EntitiesCacheTest {
+    private static final String FIRST_URL = "file:///src/ClassA.java";
+
+    private static final String SECOND_URL = "file:///src/ClassB.java";
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        final Path directory = Files.createTempDirectory("entities-cache");
+        final Path location = directory.resolve("entities.bin");
+
+        final EntityKey classA = new EntityKey(FIRST_URL, EntitiesCache.CLASS, "ClassA");
+        final EntityKey methodA = new EntityKey(FIRST_URL, EntitiesCache.METHOD, "ClassA.methodA1()");
+        final EntityKey classB = new EntityKey(SECOND_URL, EntitiesCache.CLASS, "ClassB");
+
+        final FileContribution first = new FileContribution(FIRST_URL, 42);
+        first.classNames.add("ClassA");
+        first.declared.add(classA);
+        first.declared.add(methodA);
+        first.edges.add(new PropertyEdge(methodA, EntitiesCache.CLASS_PROPERTY, classB, 1000));
+        first.edges.add(new PropertyEdge(classB, EntitiesCache.OVERRIDE_METHOD_PROPERTY, methodA, 1));
+
+        final FileContribution second = new FileContribution(SECOND_URL, -7);
+        second.classNames.add("ClassB");
+        second.declared.add(classB);
+
+        final FileContribution notCacheable = new FileContribution("ClassC.java", 0);
+        notCacheable.cacheable = false;
+
+        final EntitiesCache cache = EntitiesCache.load(location);
+        assertTrue(cache.getUrls().isEmpty());
+        cache.update(
+            Arrays.asList(first, second, notCacheable),
+            0,
+            new HashSet<>(Arrays.asList(FIRST_URL, SECOND_URL, "ClassC.java"))
+        );
+        assertEquals(3, cache.getWalkedFilesCount());
+        cache.save();
+
+        final EntitiesCache loaded = EntitiesCache.load(location);
+        assertEquals(new HashSet<>(Arrays.asList(FIRST_URL, SECOND_URL)), loaded.getUrls());
+        assertEquals(new HashSet<>(Arrays.asList("ClassA", "ClassB")), loaded.getClassNames());
+
+        final FileContribution loadedFirst = loaded.get(FIRST_URL);
+        assertNotNull(loadedFirst);
+        assertEquals(42, loadedFirst.hash);
+        assertEquals(Arrays.asList(classA, methodA), loadedFirst.declared);
+        assertEquals(2, loadedFirst.edges.size());
+        assertEquals(methodA, loadedFirst.edges.get(0).owner);
+        assertEquals(EntitiesCache.CLASS_PROPERTY, loadedFirst.edges.get(0).type);
+        assertEquals(classB, loadedFirst.edges.get(0).target);
+        assertEquals(1000, loadedFirst.edges.get(0).weight);
+        assertEquals(EntitiesCache.OVERRIDE_METHOD_PROPERTY, loadedFirst.edges.get(1).type);
+        assertEquals(new HashSet<>(Arrays.asList(FIRST_URL, SECOND_URL)), loadedFirst.getDependencies());
+
+        final FileContribution loadedSecond = loaded.get(SECOND_URL);
+        assertNotNull(loadedSecond);
+        assertEquals(-7, loadedSecond.hash);
+        assertEquals(Collections.singletonList(classB), loadedSecond.declared);
+        assertTrue(loadedSecond.edges.isEmpty());
+    }
+
+    @Test
+    public void corruptedFileGivesEmptyCache() throws IOException {
+        final Path location = Files.createTempFile("entities", ".bin");
+        Files.write(location, new byte[] {1, 2, 3});
+
+        assertTrue(EntitiesCache.load(location).getUrls().isEmpty());
+    }
+
+    @Test
+    public void hashDependsOnContent() {
+        assertEquals(EntitiesCache.hash("class A {}"), EntitiesCache.hash(new StringBuilder("class A {}")));
+        assertNotEquals(EntitiesCache.hash("class A {}"), EntitiesCache.hash("class B {}"));
+        assertNotEquals(EntitiesCache.hash(""), EntitiesCache.hash("\0"));
+    }
+}
@@ -0,0 +1,150 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.lang.ASTNode;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.ScopeAbstractTest;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
+import org.jetbrains.research.groups.ml_methods.instrumentation.PhaseStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compares entities found by sequential and parallel search. Both ways of finding units are
+ * checked: through stub trees of files whose AST isn't loaded and through PSI of files whose AST
+ * is loaded. Also compares entities found with a cache of previous search after a change with
+ * entities found from scratch.
+ * <p>
+ * Test is placed in this package because weights of {@link RelevantProperties} can only be read
+ * from here.
+ */
+public class EntitySearcherTest extends ScopeAbstractTest {
+    private static final int PARALLELISM = 4;
+
+    private static final String DERIVED_WITH_OVERRIDE =
+        "package addedOverride;\n" +
+        "\n" +
+        "public class Derived extends Base {\n" +
+        "\n" +
+        "    @Override\n" +
+        "    public void foo() {\n" +
+        "    }\n" +
+        "}\n";
+
+    public void testCallFromNested() {
+        checkParallelSearch("ClassA.java", "ClassB.java");
+    }
+
+    public void testCallFromLambda() {
+        checkParallelSearch("ClassA.java", "ClassB.java");
+    }
+
+    public void testDontMoveOverridden() {
+        checkParallelSearch("ClassA.java", "ClassB.java");
+    }
+
+    public void testTriangularDependence() {
+        checkParallelSearch("ClassA.java", "ClassB.java", "ClassC.java");
+    }
+
+    public void testMovieRentalStoreWithFeatureEnvy() {
+        checkParallelSearch("Customer.java", "Movie.java", "Rental.java");
+    }
+
+    public void testStaticFactoryMethods() {
+        checkParallelSearch("Cat.java", "Color.java", "Dog.java");
+    }
+
+    /**
+     * Only file of {@code Derived} is changed, but calls in {@code Caller} must be resolved again:
+     * they were resolved to {@code Base.foo} and now are resolved to the added override, while
+     * {@code Caller} neither refers to entities of the changed file nor mentions its class.
+     */
+    public void testAddedOverride() {
+        final AnalysisScope scope = createScope("Base.java", "Derived.java", "Factory.java", "Caller.java");
+        final EntitiesCache cache = EntitiesCache.inMemory();
+        EntitySearcher.analyze(scope, cache);
+        assertEquals(4, cache.getWalkedFilesCount());
+
+        myFixture.saveText(findFile("Derived.java"), DERIVED_WITH_OVERRIDE);
+        final EntitiesStorage cached = EntitySearcher.analyze(scope, cache);
+        assertTrue(cache.getWalkedUrls().contains(findFile("Caller.java").getUrl()));
+        assertSameEntities(EntitySearcher.analyze(scope, EntitiesCache.inMemory()), cached);
+    }
+
+    private void checkParallelSearch(final @NotNull String... files) {
+        final AnalysisScope scope = createScope(files);
+
+        final Instrumentation withStubs = new Instrumentation();
+        final EntitiesStorage parallelWithStubs = EntitySearcher.analyzeInParallel(scope, EntitiesCache.inMemory(), PARALLELISM, withStubs);
+        assertEquals(files.length, getStubUnitsCount(withStubs));
+        assertSameEntities(EntitySearcher.analyze(scope, EntitiesCache.inMemory()), parallelWithStubs);
+
+        final List<ASTNode> trees = loadTrees(scope);
+        final Instrumentation withTrees = new Instrumentation();
+        final EntitiesStorage parallelWithTrees = EntitySearcher.analyzeInParallel(scope, EntitiesCache.inMemory(), PARALLELISM, withTrees);
+        assertEquals(0, getStubUnitsCount(withTrees));
+        assertSameEntities(EntitySearcher.analyze(scope, EntitiesCache.inMemory()), parallelWithTrees);
+        assertEquals(files.length, trees.size());
+    }
+
+    private @NotNull VirtualFile findFile(final @NotNull String name) {
+        final VirtualFile file = myFixture.findFileInTempDir(getTestName(true) + "/" + name);
+        assertNotNull(file);
+        return file;
+    }
+
+    /**
+     * Loads AST of every file of a scope. Returned nodes must be referenced while AST is needed,
+     * otherwise it may be collected.
+     */
+    private static @NotNull List<ASTNode> loadTrees(final @NotNull AnalysisScope scope) {
+        final List<ASTNode> trees = new ArrayList<>();
+        scope.accept(new PsiElementVisitor() {
+            @Override
+            public void visitFile(PsiFile file) {
+                trees.add(file.getNode());
+            }
+        });
+
+        return trees;
+    }
+
+    private static long getStubUnitsCount(final @NotNull Instrumentation instrumentation) {
+        return instrumentation.getPhases().stream()
+                .filter(phase -> EntitySearcher.STUB_UNITS_COUNTER.equals(phase.getName()))
+                .mapToLong(PhaseStatistics::getItems)
+                .sum();
+    }
+
+    private static void assertSameEntities(final @NotNull EntitiesStorage expected, final @NotNull EntitiesStorage actual) {
+        assertSameEntities(expected.getClasses(), actual.getClasses());
+        assertSameEntities(expected.getMethods(), actual.getMethods());
+        assertSameEntities(expected.getFields(), actual.getFields());
+    }
+
+    private static void assertSameEntities(
+        final @NotNull List<? extends CodeEntity> expected,
+        final @NotNull List<? extends CodeEntity> actual
+    ) {
+        assertEquals(identifiers(expected), identifiers(actual));
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            final RelevantProperties expectedProperties = expected.get(i).getRelevantProperties();
+            final RelevantProperties actualProperties = actual.get(i).getRelevantProperties();
+            assertEquals(expectedProperties.getClassesWithWeights(), actualProperties.getClassesWithWeights());
+            assertEquals(expectedProperties.getFieldsWithWeights(), actualProperties.getFieldsWithWeights());
+            assertEquals(expectedProperties.getNotOverrideMethodsWithWeights(), actualProperties.getNotOverrideMethodsWithWeights());
+            assertEquals(expectedProperties.getOverrideMethodsWithWeights(), actualProperties.getOverrideMethodsWithWeights());
+        }
+    }
+
+    private static @NotNull List<String> identifiers(final @NotNull List<? extends CodeEntity> entities) {
+        return entities.stream().map(CodeEntity::getIdentifier).collect(Collectors.toList());
+    }
+}
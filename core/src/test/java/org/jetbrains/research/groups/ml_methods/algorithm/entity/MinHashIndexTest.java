@@ -0,0 +1,170 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import com.intellij.psi.PsiClass;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MinHashIndexTest {
+    private static final int DOCUMENTS_COUNT = 300;
+
+    private static final int PROPERTIES_COUNT = 200;
+
+    private static final int SKETCH_SIZE = 32;
+
+    private static final int BANDS_COUNT = 8;
+
+    @Test
+    public void identicalRowIsAlwaysCandidate() {
+        final Random random = new Random(239);
+        final List<ClassEntity> properties = createEntities(PROPERTIES_COUNT);
+        final List<ClassEntity> documents = createEntities(DOCUMENTS_COUNT);
+        final List<ClassEntity> queries = createEntities(DOCUMENTS_COUNT);
+        for (int i = 0; i < DOCUMENTS_COUNT; i++) {
+            fillRandomly(documents.get(i), properties, 0, PROPERTIES_COUNT, random);
+            copyProperties(documents.get(i), queries.get(i));
+        }
+
+        final PropertiesGraph graph = PropertiesGraph.build(documents, queries);
+        final MinHashIndex index = MinHashIndex.build(graph, ids(graph, documents), SKETCH_SIZE, BANDS_COUNT);
+        for (int i = 0; i < DOCUMENTS_COUNT; i++) {
+            final int[] candidates = index.candidates(graph.getId(queries.get(i)));
+            assertTrue(Arrays.binarySearch(candidates, i) >= 0);
+        }
+    }
+
+    @Test
+    public void rowWithoutCommonPropertiesIsNeverCandidate() {
+        final Random random = new Random(239);
+        final List<ClassEntity> properties = createEntities(PROPERTIES_COUNT);
+        final List<ClassEntity> documents = createEntities(DOCUMENTS_COUNT);
+        final List<ClassEntity> queries = createEntities(DOCUMENTS_COUNT);
+        for (int i = 0; i < DOCUMENTS_COUNT; i++) {
+            fillRandomly(documents.get(i), properties, 0, PROPERTIES_COUNT / 2, random);
+            fillRandomly(queries.get(i), properties, PROPERTIES_COUNT / 2, PROPERTIES_COUNT, random);
+        }
+
+        final PropertiesGraph graph = PropertiesGraph.build(documents, queries);
+        final MinHashIndex index = MinHashIndex.build(graph, ids(graph, documents), SKETCH_SIZE, BANDS_COUNT);
+        for (ClassEntity query : queries) {
+            assertEquals(0, index.candidates(graph.getId(query)).length);
+        }
+    }
+
+    @Test
+    public void rowWithoutPropertiesHasNoCandidates() {
+        final Random random = new Random(239);
+        final List<ClassEntity> properties = createEntities(PROPERTIES_COUNT);
+        final List<ClassEntity> documents = createEntities(DOCUMENTS_COUNT);
+        for (ClassEntity document : documents) {
+            fillRandomly(document, properties, 0, PROPERTIES_COUNT, random);
+        }
+        final ClassEntity empty = new ClassEntity(fakePsiClass());
+
+        final PropertiesGraph graph = PropertiesGraph.build(documents, Collections.singletonList(empty));
+        final MinHashIndex index = MinHashIndex.build(graph, ids(graph, documents), SKETCH_SIZE, BANDS_COUNT);
+        assertEquals(0, index.candidates(graph.getId(empty)).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bandsCountMustDivideSketchSize() {
+        final List<ClassEntity> documents = createEntities(1);
+        final PropertiesGraph graph = PropertiesGraph.build(documents);
+        MinHashIndex.build(graph, ids(graph, documents), 10, 3);
+    }
+
+    @Test
+    public void candidatesAreDeterministic() {
+        final int[][] first = candidatesOfRandomGraph();
+        final int[][] second = candidatesOfRandomGraph();
+
+        assertEquals(first.length, second.length);
+        for (int i = 0; i < first.length; i++) {
+            assertArrayEquals(first[i], second[i]);
+        }
+    }
+
+    /**
+     * Builds index of a random graph generated with a fixed seed and returns candidates of each
+     * document. Entities and graph are created anew on each call. Properties are numbered
+     * explicitly, otherwise their ids would depend on order of hash maps of fresh entities.
+     */
+    private static @NotNull int[][] candidatesOfRandomGraph() {
+        final Random random = new Random(239);
+        final List<ClassEntity> properties = createEntities(PROPERTIES_COUNT);
+        final List<ClassEntity> documents = createEntities(DOCUMENTS_COUNT);
+        for (ClassEntity document : documents) {
+            fillRandomly(document, properties, 0, PROPERTIES_COUNT / 10, random);
+        }
+
+        final PropertiesGraph graph = PropertiesGraph.build(documents, properties);
+        final int[] ids = ids(graph, documents);
+        final MinHashIndex index = MinHashIndex.build(graph, ids, SKETCH_SIZE, BANDS_COUNT);
+        final int[][] candidates = new int[DOCUMENTS_COUNT][];
+        for (int i = 0; i < DOCUMENTS_COUNT; i++) {
+            candidates[i] = index.candidates(ids[i]);
+        }
+
+        return candidates;
+    }
+
+    private static void fillRandomly(
+        final @NotNull ClassEntity entity,
+        final @NotNull List<ClassEntity> properties,
+        final int from,
+        final int to,
+        final @NotNull Random random
+    ) {
+        final int count = 1 + random.nextInt(5);
+        for (int i = 0; i < count; i++) {
+            entity.getRelevantProperties().addClass(
+                properties.get(from + random.nextInt(to - from)),
+                1 + random.nextInt(3)
+            );
+        }
+    }
+
+    private static void copyProperties(final @NotNull ClassEntity from, final @NotNull ClassEntity to) {
+        from.getRelevantProperties().getClassesWithWeights().forEach(to.getRelevantProperties()::addClass);
+    }
+
+    private static @NotNull int[] ids(final @NotNull PropertiesGraph graph, final @NotNull List<ClassEntity> entities) {
+        return entities.stream().mapToInt(graph::getId).toArray();
+    }
+
+    private static @NotNull List<ClassEntity> createEntities(final int count) {
+        final List<ClassEntity> entities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entities.add(new ClassEntity(fakePsiClass()));
+        }
+
+        return entities;
+    }
+
+    private static @NotNull PsiClass fakePsiClass() {
+        return (PsiClass) Proxy.newProxyInstance(
+            PsiClass.class.getClassLoader(),
+            new Class<?>[] {PsiClass.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "FakePsiClass";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        );
+    }
+}
@@ -0,0 +1,88 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random inputs for tests that compare algorithms with each other. Source of classes
+ * gives real entities, {@link #randomize} replaces their relations with random properties.
+ * <p>
+ * Placed in this package because {@link RelevantProperties} can only be filled from here.
+ */
+public class RandomProperties {
+    private RandomProperties() {}
+
+    /**
+     * Returns source of a file with given number of classes. Every class has static and instance
+     * fields and methods, methods don't refer to anything.
+     */
+    public static @NotNull String generateSource(final int classesCount) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < classesCount; i++) {
+            text.append("class Class").append(i).append(" {\n")
+                .append("    int field").append(i).append(";\n")
+                .append("    static int staticField").append(i).append(";\n")
+                .append("    void method").append(i).append("() {}\n")
+                .append("    void anotherMethod").append(i).append("() {}\n")
+                .append("    static void staticMethod").append(i).append("() {}\n")
+                .append("}\n");
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Adds random properties to every method and field of a given storage and returns storage
+     * with a new {@link PropertiesGraph} of them. Properties found by {@link EntitySearcher} are
+     * kept.
+     *
+     * @param propertiesCount maximum number of added properties per entity.
+     * @param maxWeight maximum weight of a property. Small weights give many equal distances,
+     *                  large ones make equal distances unlikely.
+     */
+    public static @NotNull EntitiesStorage randomize(
+        final @NotNull EntitiesStorage storage,
+        final @NotNull Random random,
+        final int propertiesCount,
+        final int maxWeight
+    ) {
+        for (MethodEntity method : storage.getMethods()) {
+            addRandomProperties(method, storage, random, propertiesCount, maxWeight);
+        }
+        for (FieldEntity field : storage.getFields()) {
+            addRandomProperties(field, storage, random, propertiesCount, maxWeight);
+        }
+
+        return new EntitiesStorage(storage.getClasses(), storage.getMethods(), storage.getFields(), 0);
+    }
+
+    private static void addRandomProperties(
+        final @NotNull ClassInnerEntity entity,
+        final @NotNull EntitiesStorage storage,
+        final @NotNull Random random,
+        final int propertiesCount,
+        final int maxWeight
+    ) {
+        final List<ClassEntity> classes = storage.getClasses();
+        final List<MethodEntity> methods = storage.getMethods();
+        final List<FieldEntity> fields = storage.getFields();
+        final RelevantProperties properties = entity.getRelevantProperties();
+        final int count = random.nextInt(propertiesCount + 1);
+        for (int i = 0; i < count; i++) {
+            final int weight = 1 + random.nextInt(maxWeight);
+            switch (random.nextInt(3)) {
+                case 0:
+                    properties.addClass(classes.get(random.nextInt(classes.size())), weight);
+                    break;
+                case 1:
+                    properties.addField(fields.get(random.nextInt(fields.size())), weight);
+                    break;
+                default:
+                    properties.addNotOverrideMethod(methods.get(random.nextInt(methods.size())), weight);
+                    break;
+            }
+        }
+    }
+}
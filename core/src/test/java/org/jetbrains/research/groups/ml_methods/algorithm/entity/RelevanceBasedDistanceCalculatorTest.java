@@ -0,0 +1,275 @@
+package org.jetbrains.research.groups.ml_methods.algorithm.entity;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.sixrr.metrics.MetricCategory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributes;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.ElementAttributesVisitor;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.FeaturesMatrix;
+import org.jetbrains.research.groups.ml_methods.algorithm.distance.DistanceCalculator;
+import org.jetbrains.research.groups.ml_methods.algorithm.distance.RelevanceBasedDistanceCalculator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares distances computed over frozen {@link PropertiesGraph} and in batches with distances
+ * computed by the old formula over maps of {@link RelevantProperties}. Properties of compared
+ * entities are random, their targets are real entities of a generated file.
+ * <p>
+ * Test is placed in this package because {@link RelevantProperties} can only be filled from here.
+ */
+public class RelevanceBasedDistanceCalculatorTest extends LightCodeInsightFixtureTestCase {
+    private static final int CLASSES_COUNT = 10;
+
+    private static final int ENTITIES_COUNT = 150;
+
+    private static final @NotNull DistanceCalculator calculator = RelevanceBasedDistanceCalculator.getInstance();
+
+    public void testDistancesMatchOldFormula() {
+        final EntitiesStorage storage = analyzeGeneratedFile();
+        final Random random = new Random(239);
+
+        final List<CodeEntity> frozenEntities = new ArrayList<>();
+        final List<CodeEntity> unfrozenEntities = new ArrayList<>();
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            final CodeEntity frozen = new FakeEntity();
+            fillRandomly(frozen.getRelevantProperties(), storage, random);
+            final CodeEntity unfrozen = new FakeEntity();
+            copy(frozen.getRelevantProperties(), unfrozen.getRelevantProperties());
+            frozenEntities.add(frozen);
+            unfrozenEntities.add(unfrozen);
+        }
+        final PropertiesGraph graph = PropertiesGraph.build(frozenEntities);
+
+        final FeaturesMatrix matrix = randomFeatures(random);
+        final List<ElementAttributes> frozen = createAttributes(frozenEntities, matrix);
+        final List<ElementAttributes> unfrozen = createAttributes(unfrozenEntities, matrix);
+
+        final double[] batched = new double[ENTITIES_COUNT];
+        final double[] batchedSlice = new double[ENTITIES_COUNT];
+        final int[] positions = new int[ENTITIES_COUNT];
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            positions[i] = ENTITIES_COUNT - 1 - i;
+        }
+
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            final RelevantProperties properties = unfrozen.get(i).getRelevantProperties();
+            assertEquals(properties.size(), graph.size(i));
+
+            calculator.distances(frozen.get(i), frozen, positions, batched);
+            calculator.distances(frozen.get(i), frozen, 0, ENTITIES_COUNT, batchedSlice);
+            for (int j = 0; j < ENTITIES_COUNT; j++) {
+                final RelevantProperties otherProperties = unfrozen.get(j).getRelevantProperties();
+                assertEquals(properties.sizeOfIntersection(otherProperties), graph.sizeOfIntersection(i, j));
+                assertEquals(properties.sizeOfUnion(otherProperties), graph.sizeOfUnion(i, j));
+
+                final double expected = oldDistance(unfrozen.get(i), unfrozen.get(j));
+                assertEquals(expected, calculator.distance(unfrozen.get(i), unfrozen.get(j)), 0);
+                assertEquals(expected, calculator.distance(frozen.get(i), frozen.get(j)), 0);
+                assertEquals(expected, calculator.distance(frozen.get(i), unfrozen.get(j)), 0);
+                assertEquals(expected, batched[ENTITIES_COUNT - 1 - j], 0);
+                assertEquals(expected, batchedSlice[j], 0);
+            }
+        }
+    }
+
+    /**
+     * Distance formula as it was before properties were frozen into {@link PropertiesGraph}.
+     */
+    private static double oldDistance(final @NotNull ElementAttributes from, final @NotNull ElementAttributes to) {
+        double ans = 0.0;
+        double w = 0.0;
+
+        if (from.getClass().equals(to.getClass())) {
+            for (int i = 0; i < to.getRawFeatures().length; i++) {
+                w += square(to.getRawFeatures()[i] + from.getRawFeatures()[i]);
+            }
+        } else {
+            for (double aVector : to.getRawFeatures()) {
+                w += square(aVector);
+            }
+
+            for (double aVector : from.getRawFeatures()) {
+                w += square(aVector);
+            }
+        }
+
+        ans += w == 0 ? 0 : 1.0 / (w + 1);
+        final int rpIntersect = to.getRelevantProperties().sizeOfIntersection(from.getRelevantProperties());
+        if (rpIntersect == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        ans += (1 - rpIntersect /
+                (1.0 * from.getRelevantProperties().sizeOfUnion(to.getRelevantProperties())));
+
+        return Math.sqrt(ans);
+    }
+
+    private static double square(final double value) {
+        return value * value;
+    }
+
+    /**
+     * Generates a file with classes that have fields, methods and override methods and finds
+     * entities in it.
+     */
+    private @NotNull EntitiesStorage analyzeGeneratedFile() {
+        final StringBuilder text = new StringBuilder("abstract class Base { abstract void base(); }\n");
+        for (int i = 0; i < CLASSES_COUNT; i++) {
+            text.append("class Class").append(i).append(" extends Base {\n")
+                .append("    int field").append(i).append(";\n")
+                .append("    static int staticField").append(i).append(";\n")
+                .append("    void method").append(i).append("() {}\n")
+                .append("    void base() {}\n")
+                .append("}\n");
+        }
+
+        final PsiFile file = myFixture.addFileToProject("Generated.java", text.toString());
+        return EntitySearcher.analyze(
+            new AnalysisScope(getProject(), Collections.singletonList(file.getVirtualFile()))
+        );
+    }
+
+    /**
+     * Adds random properties of all kinds. The same method is sometimes added both as override
+     * and as not override method, these properties must not match each other.
+     */
+    private static void fillRandomly(
+        final @NotNull RelevantProperties properties,
+        final @NotNull EntitiesStorage storage,
+        final @NotNull Random random
+    ) {
+        final List<ClassEntity> classes = storage.getClasses();
+        final List<MethodEntity> methods = storage.getMethods();
+        final List<FieldEntity> fields = storage.getFields();
+        final int count = random.nextInt(8);
+        for (int i = 0; i < count; i++) {
+            final int weight = 1 + random.nextInt(4);
+            switch (random.nextInt(4)) {
+                case 0:
+                    properties.addClass(classes.get(random.nextInt(classes.size())), weight);
+                    break;
+                case 1:
+                    properties.addField(fields.get(random.nextInt(fields.size())), weight);
+                    break;
+                case 2:
+                    properties.addNotOverrideMethod(methods.get(random.nextInt(methods.size())), weight);
+                    break;
+                default:
+                    properties.addOverrideMethod(methods.get(random.nextInt(methods.size())), weight);
+                    break;
+            }
+        }
+    }
+
+    private static void copy(final @NotNull RelevantProperties from, final @NotNull RelevantProperties to) {
+        for (Map.Entry<ClassEntity, Integer> entry : from.getClassesWithWeights().entrySet()) {
+            to.addClass(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<FieldEntity, Integer> entry : from.getFieldsWithWeights().entrySet()) {
+            to.addField(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<MethodEntity, Integer> entry : from.getNotOverrideMethodsWithWeights().entrySet()) {
+            to.addNotOverrideMethod(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<MethodEntity, Integer> entry : from.getOverrideMethodsWithWeights().entrySet()) {
+            to.addOverrideMethod(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Creates features of entities of two kinds, features of entities of the same kind have the
+     * same length. Features are not integer, so that order of summation matters.
+     */
+    private static @NotNull FeaturesMatrix randomFeatures(final @NotNull Random random) {
+        final int[] offsets = new int[ENTITIES_COUNT + 1];
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            offsets[i + 1] = offsets[i] + (i % 2 == 0 ? 3 : 2);
+        }
+
+        final double[] values = new double[offsets[ENTITIES_COUNT]];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 10;
+        }
+
+        return new FeaturesMatrix(values, offsets);
+    }
+
+    private static @NotNull List<ElementAttributes> createAttributes(
+        final @NotNull List<CodeEntity> entities,
+        final @NotNull FeaturesMatrix matrix
+    ) {
+        final List<ElementAttributes> attributes = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i++) {
+            attributes.add(i % 2 == 0
+                ? new FirstKindAttributes(entities.get(i), matrix, i)
+                : new SecondKindAttributes(entities.get(i), matrix, i)
+            );
+        }
+
+        return attributes;
+    }
+
+    private static class FakeEntity extends CodeEntity {
+        @Override
+        public @NotNull String getIdentifier() {
+            return "entity" + System.identityHashCode(this);
+        }
+
+        @Override
+        public boolean isMovable() {
+            return true;
+        }
+
+        @Override
+        public <R> R accept(@NotNull CodeEntityVisitor<R> visitor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public @NotNull MetricCategory getMetricCategory() {
+            return MetricCategory.Method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    private static class FirstKindAttributes extends ElementAttributes {
+        private final @NotNull CodeEntity entity;
+
+        private FirstKindAttributes(final @NotNull CodeEntity entity, final @NotNull FeaturesMatrix matrix, final int row) {
+            super(matrix, row);
+            this.entity = entity;
+        }
+
+        @Override
+        public @NotNull CodeEntity getOriginalEntity() {
+            return entity;
+        }
+
+        @Override
+        public <R> R accept(final @NotNull ElementAttributesVisitor<R> visitor) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class SecondKindAttributes extends FirstKindAttributes {
+        private SecondKindAttributes(final @NotNull CodeEntity entity, final @NotNull FeaturesMatrix matrix, final int row) {
+            super(entity, matrix, row);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.jetbrains.research.groups.ml_methods.instrumentation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class InstrumentationTest {
+    @Test
+    public void phasesInOrderOfFirstUse() {
+        Instrumentation instrumentation = new Instrumentation();
+
+        instrumentation.start("second").close();
+        instrumentation.addItems("first", 3);
+        instrumentation.start("first").close();
+        instrumentation.start("second").close();
+
+        List<String> names = instrumentation.getPhases().stream()
+                .map(PhaseStatistics::getName)
+                .collect(Collectors.toList());
+        assertEquals(2, names.size());
+        assertEquals("second", names.get(0));
+        assertEquals("first", names.get(1));
+    }
+
+    @Test
+    public void countersAreSummed() {
+        Instrumentation instrumentation = new Instrumentation();
+
+        try (Instrumentation.Timer ignored = instrumentation.start("phase")) {
+            instrumentation.addItems("phase", 2);
+        }
+        Instrumentation.Timer timer = instrumentation.start("phase");
+        List<long[]> garbage = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            garbage.add(new long[1000]);
+        }
+        timer.close();
+        timer.close();
+        instrumentation.addItems("phase", garbage.size());
+
+        PhaseStatistics phase = instrumentation.getPhases().get(0);
+        assertEquals(2, phase.getInvocations());
+        assertEquals(102, phase.getItems());
+        assertTrue(phase.getTimeNanos() > 0);
+        assertTrue(phase.getAllocatedBytes() == -1 || phase.getAllocatedBytes() >= 100 * 1000 * 8);
+    }
+
+    @Test
+    public void concurrentMeasurements() throws InterruptedException {
+        Instrumentation instrumentation = new Instrumentation();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    instrumentation.start("phase" + j % 10).close();
+                    instrumentation.addItems("phase" + j % 10, 1);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<PhaseStatistics> phases = instrumentation.getPhases();
+        assertEquals(10, phases.size());
+        for (PhaseStatistics phase : phases) {
+            assertEquals(400, phase.getInvocations());
+            assertEquals(400, phase.getItems());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.jetbrains.research.groups.ml_methods.utils;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class IndexedPairHeapTest {
+    @Test
+    public void pollsInOrderWithTieBreaks() {
+        IndexedPairHeap heap = new IndexedPairHeap(0);
+        heap.put(1, 0.5, 3, 1);
+        heap.put(2, 0.5, 2, 7);
+        heap.put(3, 0.1, 9, 9);
+        heap.put(4, 0.5, 2, 3);
+
+        assertEquals(3, heap.peekKey());
+        heap.poll();
+        assertEquals(4, heap.peekKey());
+        heap.poll();
+        assertEquals(2, heap.peekKey());
+        heap.poll();
+        assertEquals(1, heap.peekKey());
+        assertEquals(3, heap.peekFirst());
+        assertEquals(1, heap.peekSecond());
+        assertEquals(0.5, heap.peekDistance(), 0);
+        heap.poll();
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void updateAndRemove() {
+        IndexedPairHeap heap = new IndexedPairHeap(0);
+        heap.put(1, 0.5, 0, 0);
+        heap.put(2, 0.7, 0, 0);
+
+        heap.put(2, 0.1, 0, 0);
+        assertEquals(2, heap.peekKey());
+        assertEquals(0.1, heap.getDistance(2), 0);
+
+        assertTrue(heap.remove(2));
+        assertFalse(heap.remove(2));
+        assertEquals(Double.POSITIVE_INFINITY, heap.getDistance(2), 0);
+        assertEquals(1, heap.peekKey());
+        assertEquals(1, heap.size());
+    }
+
+    @Test
+    public void randomOperationsMatchTreeSet() {
+        Random random = new Random(42);
+        IndexedPairHeap heap = new IndexedPairHeap(0);
+        TreeSet<double[]> expected = new TreeSet<>(Comparator.<double[]>comparingDouble(it -> it[1])
+                .thenComparingDouble(it -> it[2])
+                .thenComparingDouble(it -> it[3]));
+        Map<Long, double[]> byKey = new HashMap<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(2_000);
+            int operation = random.nextInt(4);
+            if (operation == 0 || operation == 1) {
+                double[] entry = {key, random.nextInt(100) / 100.0, random.nextInt(10), key};
+                Optional.ofNullable(byKey.remove(key)).ifPresent(expected::remove);
+                byKey.put(key, entry);
+                expected.add(entry);
+                heap.put(key, entry[1], (int) entry[2], (int) entry[3]);
+            } else if (operation == 2) {
+                double[] removed = byKey.remove(key);
+                if (removed != null) {
+                    expected.remove(removed);
+                }
+                assertEquals(removed != null, heap.remove(key));
+            } else if (!expected.isEmpty()) {
+                double[] first = expected.pollFirst();
+                byKey.remove((long) first[0]);
+                assertEquals((long) first[0], heap.peekKey());
+                heap.poll();
+            }
+            assertEquals(expected.size(), heap.size());
+        }
+    }
+}
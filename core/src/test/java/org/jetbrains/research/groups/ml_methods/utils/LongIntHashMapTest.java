@@ -0,0 +1,57 @@
+package org.jetbrains.research.groups.ml_methods.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntHashMapTest {
+    @Test
+    public void putGetRemove() {
+        LongIntHashMap map = new LongIntHashMap(0, -1);
+
+        assertEquals(-1, map.put(42, 1));
+        assertEquals(1, map.put(42, 2));
+        assertEquals(2, map.get(42));
+        assertTrue(map.containsKey(42));
+        assertEquals(-1, map.get(43));
+        assertEquals(2, map.remove(42));
+        assertEquals(-1, map.remove(42));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reservedKey() {
+        new LongIntHashMap(0, -1).put(Long.MIN_VALUE, 0);
+    }
+
+    @Test
+    public void randomOperationsMatchHashMap() {
+        Random random = new Random(239);
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) * 1_000_000_009L + random.nextInt(3);
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                int value = random.nextInt(1000);
+                assertEquals((int) expected.getOrDefault(key, -1), map.put(key, value));
+                expected.put(key, value);
+            } else if (operation == 1) {
+                assertEquals((int) expected.getOrDefault(key, -1), map.remove(key));
+                expected.remove(key);
+            } else {
+                assertEquals((int) expected.getOrDefault(key, -1), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
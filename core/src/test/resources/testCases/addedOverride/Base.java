@@ -0,0 +1,7 @@
+package addedOverride;
+
+public class Base {
+
+    public void foo() {
+    }
+}
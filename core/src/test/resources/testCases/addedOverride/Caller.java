@@ -0,0 +1,9 @@
+package addedOverride;
+
+public class Caller {
+
+    void call() {
+        Factory.create().foo();
+        Factory.create().foo();
+    }
+}
@@ -0,0 +1,4 @@
+package addedOverride;
+
+public class Derived extends Base {
+}
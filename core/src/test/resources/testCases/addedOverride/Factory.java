@@ -0,0 +1,8 @@
+package addedOverride;
+
+public class Factory {
+
+    static Derived create() {
+        return new Derived();
+    }
+}
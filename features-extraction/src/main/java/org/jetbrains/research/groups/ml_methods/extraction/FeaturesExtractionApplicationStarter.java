@@ -13,12 +13,14 @@ import org.apache.log4j.PatternLayout;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.extractors.*;
 import org.jetbrains.research.groups.ml_methods.extraction.features.vector.FeatureVector;
+import org.jetbrains.research.groups.ml_methods.extraction.features.vector.SvmLightVectorWriter;
 import org.jetbrains.research.groups.ml_methods.extraction.features.vector.VectorSerializer;
 import org.jetbrains.research.groups.ml_methods.extraction.refactoring.RefactoringsLoader;
 import org.jetbrains.research.groups.ml_methods.extraction.refactoring.readers.RefactoringsReaders;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveMethodRefactoring;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -40,15 +42,35 @@ public class FeaturesExtractionApplicationStarter implements ApplicationStarter
         LOGGER.addAppender(new ConsoleAppender(new PatternLayout("%p %m%n")));
     }
 
+    private static final @NotNull String ALL_TARGETS_OPTION = "--all-targets";
+
+    private static final @NotNull List<Class<? extends MoveMethodSingleFeatureExtractor>> EXTRACTORS =
+        Arrays.asList(
+            AnotherInstanceCallersExtractor.class,
+            AnotherInstanceNotPublicCallTargetsExtractor.class,
+            AnotherInstancePublicCallTargetsExtractor.class,
+            SameClassFieldsAccessedExtractor.class,
+            SameClassStaticNotPublicCallTargetsExtractor.class,
+            SameClassStaticPublicCallTargetsExtractor.class,
+            SameInstanceCallersExtractor.class,
+            SameInstanceNotPublicCallTargetsExtractor.class,
+            SameInstancePublicCallTargetsExtractor.class,
+            TargetClassCallersExtractor.class,
+            TargetClassFieldsAccessedExtractor.class,
+            TargetClassInstanceCallTargetsExtractor.class,
+            TargetClassStaticCallTargetsExtractor.class
+        );
+
     private static void checkCommandLineArguments(@NotNull String[] args) {
-        if (args.length != 4) {
+        if (args.length != 4 && (args.length != 5 || !ALL_TARGETS_OPTION.equals(args[4]))) {
             printUsage();
             APPLICATION.exit(true, true);
         }
     }
 
     private static void printUsage() {
-        System.out.println("Usage: features-extraction <path to project> <path to correct refactorings> <path to output folder>");
+        System.out.println("Usage: features-extraction <path to project> <path to correct refactorings> " +
+                "<path to output folder> [" + ALL_TARGETS_OPTION + "]");
     }
 
     @Override
@@ -92,26 +114,18 @@ public class FeaturesExtractionApplicationStarter implements ApplicationStarter
                                     extractMethodDeclaration(refactoring.getMethod()))
             );
 
+            if (args.length == 5) {
+                extractAllTargets(scope, refactorings, Paths.get(args[3]).toAbsolutePath());
+                APPLICATION.exit(true, true);
+                return;
+            }
+
             List<FeatureVector> vectors;
             try {
                 vectors = MoveMethodFeaturesExtractor.getInstance().extract(
                     scope,
                     new LinkedList<>(refactorings),
-                    Arrays.asList(
-                        AnotherInstanceCallersExtractor.class,
-                        AnotherInstanceNotPublicCallTargetsExtractor.class,
-                        AnotherInstancePublicCallTargetsExtractor.class,
-                        SameClassFieldsAccessedExtractor.class,
-                        SameClassStaticNotPublicCallTargetsExtractor.class,
-                        SameClassStaticPublicCallTargetsExtractor.class,
-                        SameInstanceCallersExtractor.class,
-                        SameInstanceNotPublicCallTargetsExtractor.class,
-                        SameInstancePublicCallTargetsExtractor.class,
-                        TargetClassCallersExtractor.class,
-                        TargetClassFieldsAccessedExtractor.class,
-                        TargetClassInstanceCallTargetsExtractor.class,
-                        TargetClassStaticCallTargetsExtractor.class
-                    )
+                    EXTRACTORS
                 );
             } catch (IllegalAccessException | InstantiationException e) {
                 System.err.println("Error during features extraction. Reason: " + e.getMessage());
@@ -124,7 +138,10 @@ public class FeaturesExtractionApplicationStarter implements ApplicationStarter
                 Path path = Paths.get(args[3]).toAbsolutePath();
                 path.toFile().mkdirs();
 
-                VectorSerializer.getInstance().serialize(vectors, path);
+                VectorSerializer.getInstance().serializeColumnar(
+                    vectors,
+                    path.resolve("features" + VectorSerializer.COLUMNAR_FILE_EXTENSION)
+                );
             } catch (IOException e) {
                 System.err.println(
                     "Error during features serialization. Reason: " +
@@ -140,4 +157,32 @@ public class FeaturesExtractionApplicationStarter implements ApplicationStarter
             throwable.printStackTrace();
         }
     }
+
+    private static void extractAllTargets(
+        final @NotNull AnalysisScope scope,
+        final @NotNull List<MoveMethodRefactoring> refactorings,
+        final @NotNull Path path
+    ) {
+        path.toFile().mkdirs();
+        Path file = path.resolve("features.svm");
+
+        try (SvmLightVectorWriter writer = new SvmLightVectorWriter(
+            Files.newBufferedWriter(file),
+            refactorings
+        )) {
+            long written = MoveMethodFeaturesExtractor.getInstance().extractAll(
+                scope,
+                refactorings,
+                EXTRACTORS,
+                writer
+            );
+            System.out.println("Written " + written + " vectors to " + file);
+        } catch (IllegalAccessException | InstantiationException | IOException e) {
+            System.err.println(
+                "Error during features extraction. Reason: " +
+                e.getClass().getSimpleName() + ". " + e.getMessage()
+            );
+            e.printStackTrace();
+        }
+    }
 }
@@ -1,22 +1,48 @@
 package org.jetbrains.research.groups.ml_methods.extraction;
 
 import com.intellij.analysis.AnalysisScope;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.utils.MethodUtils;
+import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.extractors.MoveMethodSingleFeatureExtractor;
 import org.jetbrains.research.groups.ml_methods.extraction.features.vector.FeatureVector;
 import org.jetbrains.research.groups.ml_methods.extraction.features.vector.MoveMethodVectorExtractor;
+import org.jetbrains.research.groups.ml_methods.extraction.features.vector.SparseFeatureVector;
+import org.jetbrains.research.groups.ml_methods.extraction.features.vector.SparseVectorWriter;
 import org.jetbrains.research.groups.ml_methods.extraction.info.InfoCollector;
 import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfo;
+import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoAggregate;
 import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoRepository;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveMethodRefactoring;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class MoveMethodFeaturesExtractor {
     private static final @NotNull MoveMethodFeaturesExtractor INSTANCE =
             new MoveMethodFeaturesExtractor();
 
+    private static final @NotNull Logger LOGGER = Logger.getLogger(MoveMethodFeaturesExtractor.class);
+
+    /**
+     * Order of methods by qualified signature. Methods with equal signatures (e.g. of different
+     * anonymous classes) are ordered by location.
+     */
+    private static final @NotNull Comparator<PsiMethod> METHODS_ORDER =
+            Comparator.comparing(MethodUtils::calculateSignature)
+                      .thenComparing(method -> method.getContainingFile().getVirtualFile().getPath())
+                      .thenComparingInt(PsiMethod::getTextOffset);
+
     private MoveMethodFeaturesExtractor() {}
 
     public static @NotNull MoveMethodFeaturesExtractor getInstance() {
@@ -37,15 +63,10 @@ public class MoveMethodFeaturesExtractor {
         final @NotNull List<MoveMethodRefactoring> refactorings,
         final @NotNull List<Class<? extends MoveMethodSingleFeatureExtractor>> extractorClasses
     ) throws IllegalAccessException, InstantiationException {
-        MethodInfoRepository repository = InfoCollector.getInstance().collectInfo(scope);
-
-        List<MoveMethodSingleFeatureExtractor> extractors = new ArrayList<>();
-        for (Class<? extends MoveMethodSingleFeatureExtractor> extractorClass : extractorClasses) {
-            extractors.add(extractorClass.newInstance());
-        }
-
-        MoveMethodVectorExtractor extractor = new MoveMethodVectorExtractor(extractors);
+        MethodInfoRepository repository = collectInfo(scope);
+        MoveMethodVectorExtractor extractor = createVectorExtractor(extractorClasses);
 
+        Map<PsiMethod, MethodInfoAggregate> aggregates = new HashMap<>();
         List<FeatureVector> vectors = new ArrayList<>();
         for (MoveMethodRefactoring refactoring : refactorings) {
             MethodInfo methodInfo =
@@ -55,9 +76,106 @@ public class MoveMethodFeaturesExtractor {
                     )
                 );
 
-            vectors.add(extractor.extract(methodInfo, refactoring.getTargetClass()));
+            MethodInfoAggregate aggregate = aggregates.computeIfAbsent(
+                refactoring.getMethod(),
+                it -> new MethodInfoAggregate(methodInfo)
+            );
+
+            vectors.add(extractor.extract(aggregate, refactoring.getTargetClass()));
         }
 
         return vectors;
     }
+
+    /**
+     * Extracts features for moves of every method declared in a given scope to every candidate
+     * class and passes them to a writer as soon as they are extracted. Candidates of a method are
+     * classes that contain its callers, its call targets or fields it accesses, except for the
+     * class of the method itself. For all other classes features that depend on a target class
+     * are zero, so they are not written. Methods are processed in order of their signatures, so
+     * the output doesn't depend on order in which files were analyzed. Number of correct
+     * refactorings whose targets are not candidates, i.e. positive examples that are missed, is
+     * logged.
+     *
+     * @param scope a scope of files to work in.
+     * @param correctRefactorings refactorings which targets are checked to be among candidates.
+     * @param extractorClasses extractors which will be used to extract each feature. Index of a
+     *                         component of a sparse vector is an index of its extractor.
+     * @param writer a receiver of vectors.
+     * @return number of written vectors.
+     */
+    public long extractAll(
+        final @NotNull AnalysisScope scope,
+        final @NotNull Collection<MoveMethodRefactoring> correctRefactorings,
+        final @NotNull List<Class<? extends MoveMethodSingleFeatureExtractor>> extractorClasses,
+        final @NotNull SparseVectorWriter writer
+    ) throws IllegalAccessException, InstantiationException, IOException {
+        MethodInfoRepository repository = collectInfo(scope);
+        MoveMethodVectorExtractor extractor = createVectorExtractor(extractorClasses);
+
+        Map<PsiMethod, List<PsiClass>> correctTargets = new HashMap<>();
+        for (MoveMethodRefactoring refactoring : correctRefactorings) {
+            correctTargets.computeIfAbsent(refactoring.getMethod(), it -> new ArrayList<>())
+                          .add(refactoring.getTargetClass());
+        }
+
+        // repository also contains library methods that are called from the scope
+        List<PsiMethod> methods = repository.getMethods()
+                                            .stream()
+                                            .filter(scope::contains)
+                                            .sorted(METHODS_ORDER)
+                                            .collect(Collectors.toList());
+
+        long written = 0;
+        long missedPositives = 0;
+        for (PsiMethod method : methods) {
+            MethodInfo methodInfo = repository.getMethodInfo(method).orElseThrow(IllegalStateException::new);
+            MethodInfoAggregate aggregate = new MethodInfoAggregate(methodInfo);
+
+            Set<PsiClass> candidates = aggregate.getRelatedClasses();
+            for (PsiClass correctTarget : correctTargets.getOrDefault(method, Collections.emptyList())) {
+                if (!candidates.contains(correctTarget)) {
+                    missedPositives++;
+                }
+            }
+
+            for (PsiClass targetClass : candidates) {
+                if (targetClass.equals(aggregate.getContainingClass())) {
+                    continue;
+                }
+
+                writer.write(
+                    method,
+                    targetClass,
+                    SparseFeatureVector.of(extractor.extract(aggregate, targetClass))
+                );
+                written++;
+            }
+        }
+
+        LOGGER.info(
+            "Targets of " + missedPositives + " of " + correctRefactorings.size() +
+            " correct refactorings are not candidates of moved methods and are not written"
+        );
+
+        return written;
+    }
+
+    private static @NotNull MethodInfoRepository collectInfo(final @NotNull AnalysisScope scope) {
+        return InfoCollector.getInstance().collectInfoInParallel(
+            scope,
+            Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    private static @NotNull MoveMethodVectorExtractor createVectorExtractor(
+        final @NotNull List<Class<? extends MoveMethodSingleFeatureExtractor>> extractorClasses
+    ) throws IllegalAccessException, InstantiationException {
+        List<MoveMethodSingleFeatureExtractor> extractors = new ArrayList<>();
+        for (Class<? extends MoveMethodSingleFeatureExtractor> extractorClass : extractorClasses) {
+            extractors.add(extractorClass.newInstance());
+        }
+
+        return new MoveMethodVectorExtractor(extractors);
+    }
 }
@@ -3,21 +3,16 @@ package org.jetbrains.research.groups.ml_methods.extraction.features.extractors;
 import com.intellij.psi.PsiClass;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.AnotherInstanceNotPublicCallTargets;
-import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfo;
+import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoAggregate;
 
 public class AnotherInstanceNotPublicCallTargetsExtractor implements MoveMethodSingleFeatureExtractor {
     @Override
     public @NotNull AnotherInstanceNotPublicCallTargets extract(
-        final @NotNull MethodInfo methodInfo,
+        final @NotNull MethodInfoAggregate aggregate,
         final @NotNull PsiClass targetClass
     ) {
         return new AnotherInstanceNotPublicCallTargets(
-            methodInfo.getAnotherInstanceTargets()
-                .stream()
-                .filter(MethodFilters.sameClass(methodInfo.getContainingClass()))
-                .filter(MethodFilters.isNotPublic)
-                .filter(MethodFilters.isNotStatic)
-                .count()
+            aggregate.getAnotherInstanceTargets(aggregate.getContainingClass(), false, false)
         );
     }
 }
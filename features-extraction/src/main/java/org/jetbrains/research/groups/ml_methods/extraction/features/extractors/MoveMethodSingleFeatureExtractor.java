@@ -4,12 +4,18 @@ import com.intellij.psi.PsiClass;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.Feature;
 import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfo;
+import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoAggregate;
 
 /**
  * An interface for "move method" refactoring feature extractor. It has
  * {@link MoveMethodSingleFeatureExtractor#extract} method which receives all needed information and
- * creates some {@link Feature}.
+ * creates some {@link Feature}. Features are calculated from {@link MethodInfoAggregate}, so one
+ * aggregate should be shared by all extractors and all target classes of a method.
  */
 public interface MoveMethodSingleFeatureExtractor {
-    @NotNull Feature extract(@NotNull MethodInfo methodInfo, @NotNull PsiClass targetClass);
+    @NotNull Feature extract(@NotNull MethodInfoAggregate aggregate, @NotNull PsiClass targetClass);
+
+    default @NotNull Feature extract(@NotNull MethodInfo methodInfo, @NotNull PsiClass targetClass) {
+        return extract(new MethodInfoAggregate(methodInfo), targetClass);
+    }
 }
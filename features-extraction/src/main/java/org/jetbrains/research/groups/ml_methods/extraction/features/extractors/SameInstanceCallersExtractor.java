@@ -3,16 +3,14 @@ package org.jetbrains.research.groups.ml_methods.extraction.features.extractors;
 import com.intellij.psi.PsiClass;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.SameInstanceCallers;
-import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfo;
+import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoAggregate;
 
 public class SameInstanceCallersExtractor implements MoveMethodSingleFeatureExtractor {
     @Override
     public @NotNull SameInstanceCallers extract(
-        final @NotNull MethodInfo methodInfo,
+        final @NotNull MethodInfoAggregate aggregate,
         final @NotNull PsiClass targetClass
     ) {
-        return new SameInstanceCallers(
-            methodInfo.getSameInstanceCallers().size()
-        );
+        return new SameInstanceCallers(aggregate.getSameInstanceCallers());
     }
 }
@@ -3,19 +3,14 @@ package org.jetbrains.research.groups.ml_methods.extraction.features.extractors;
 import com.intellij.psi.PsiClass;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.SameInstanceNotPublicCallTargets;
-import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfo;
+import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoAggregate;
 
 public class SameInstanceNotPublicCallTargetsExtractor implements MoveMethodSingleFeatureExtractor {
     @Override
     public @NotNull SameInstanceNotPublicCallTargets extract(
-        final @NotNull MethodInfo methodInfo,
+        final @NotNull MethodInfoAggregate aggregate,
         final @NotNull PsiClass targetClass
     ) {
-        return new SameInstanceNotPublicCallTargets(
-            methodInfo.getSameInstanceTargets()
-                .stream()
-                .filter(MethodFilters.isNotPublic)
-                .count()
-        );
+        return new SameInstanceNotPublicCallTargets(aggregate.getSameInstanceTargets(false));
     }
 }
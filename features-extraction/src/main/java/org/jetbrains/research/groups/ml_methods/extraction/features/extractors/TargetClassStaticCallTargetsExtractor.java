@@ -3,21 +3,14 @@ package org.jetbrains.research.groups.ml_methods.extraction.features.extractors;
 import com.intellij.psi.PsiClass;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.TargetClassStaticCallTargets;
-import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfo;
+import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoAggregate;
 
 public class TargetClassStaticCallTargetsExtractor implements MoveMethodSingleFeatureExtractor {
     @Override
-    public @NotNull
-    TargetClassStaticCallTargets extract(
-        final @NotNull MethodInfo methodInfo,
+    public @NotNull TargetClassStaticCallTargets extract(
+        final @NotNull MethodInfoAggregate aggregate,
         final @NotNull PsiClass targetClass
     ) {
-        return new TargetClassStaticCallTargets(
-            methodInfo.getAnotherInstanceTargets()
-                .stream()
-                .filter(MethodFilters.sameClass(targetClass))
-                .filter(MethodFilters.isStatic)
-                .count()
-        );
+        return new TargetClassStaticCallTargets(aggregate.getAnotherInstanceTargets(targetClass, true));
     }
 }
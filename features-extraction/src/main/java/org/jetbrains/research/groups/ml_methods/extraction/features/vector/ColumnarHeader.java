@@ -0,0 +1,120 @@
+package org.jetbrains.research.groups.ml_methods.extraction.features.vector;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.extraction.features.Feature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Header of a columnar file of feature vectors. File starts with magic number and version of the
+ * format, then goes schema (number of columns and binary names of {@link Feature} classes in
+ * order of components of vectors) and number of rows. Header is padded with zeros to a multiple
+ * of {@link #VALUE_SIZE} bytes. After header goes one column per feature: values of the feature
+ * in all rows as big endian doubles. So value of column {@code c} in row {@code r} is stored at
+ * {@code getDataOffset() + (c * getRows() + r) * VALUE_SIZE}.
+ */
+final class ColumnarHeader {
+    static final int VALUE_SIZE = Double.BYTES;
+
+    private static final int MAGIC = 0x46564543; // "FVEC"
+
+    private static final int VERSION = 1;
+
+    private final @NotNull List<Class<? extends Feature>> schema;
+
+    private final long rows;
+
+    private final byte[] bytes;
+
+    ColumnarHeader(final @NotNull List<Class<? extends Feature>> schema, final long rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Negative number of rows: " + rows);
+        }
+
+        this.schema = Collections.unmodifiableList(new ArrayList<>(schema));
+        this.rows = rows;
+        bytes = encode(this.schema, rows);
+    }
+
+    @NotNull List<Class<? extends Feature>> getSchema() {
+        return schema;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns offset of the first column from the beginning of a file.
+     */
+    long getDataOffset() {
+        return bytes.length;
+    }
+
+    long getColumnOffset(final int column) {
+        return getDataOffset() + column * rows * VALUE_SIZE;
+    }
+
+    byte[] toBytes() {
+        return bytes.clone();
+    }
+
+    private static byte[] encode(final @NotNull List<Class<? extends Feature>> schema, final long rows) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(schema.size());
+            for (Class<? extends Feature> feature : schema) {
+                out.writeUTF(feature.getName());
+            }
+            out.writeLong(rows);
+            while (out.size() % VALUE_SIZE != 0) {
+                out.writeByte(0);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // impossible for in memory stream
+        }
+    }
+
+    /**
+     * Reads header from the beginning of a stream.
+     *
+     * @throws IOException if stream doesn't contain a header of supported version or if some
+     *                     class of schema is not a {@link Feature} available to this loader.
+     */
+    static @NotNull ColumnarHeader read(final @NotNull InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a columnar file of feature vectors");
+        }
+
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version of columnar file: " + version);
+        }
+
+        final int columns = in.readInt();
+        final List<Class<? extends Feature>> schema = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            final String name = in.readUTF();
+            try {
+                schema.add(Class.forName(name, false, Feature.class.getClassLoader()).asSubclass(Feature.class));
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Unknown feature in schema: " + name, e);
+            }
+        }
+
+        return new ColumnarHeader(schema, in.readLong());
+    }
+}
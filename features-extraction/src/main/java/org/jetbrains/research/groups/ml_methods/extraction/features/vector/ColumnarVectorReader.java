@@ -0,0 +1,129 @@
+package org.jetbrains.research.groups.ml_methods.extraction.features.vector;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.extraction.features.Feature;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads a columnar file of feature vectors written by {@link ColumnarVectorWriter}. Every column
+ * is memory-mapped, so opening a file doesn't read values and values are loaded by OS on demand.
+ * File can be read by rows ({@link #getVector}, {@link #vectors}) or by columns
+ * ({@link #getColumn}). Reader doesn't hold any open file after creation. Methods of this class
+ * can be called from several threads.
+ */
+public class ColumnarVectorReader {
+    private final @NotNull ColumnarHeader header;
+
+    private final @NotNull DoubleBuffer[] columns;
+
+    private final @NotNull List<Constructor<? extends Feature>> constructors = new ArrayList<>();
+
+    /**
+     * Opens a file and maps its columns into memory.
+     *
+     * @throws IOException if file is not a columnar file of feature vectors, if it is truncated
+     *                     or if some feature of its schema can't be created from its value.
+     */
+    public ColumnarVectorReader(final @NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            header = ColumnarHeader.read(Channels.newInputStream(channel));
+
+            final long rows = header.getRows();
+            final int columnsNumber = header.getSchema().size();
+            if (rows * ColumnarHeader.VALUE_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("Too many rows to map a column: " + rows);
+            }
+
+            final long expectedSize = header.getColumnOffset(columnsNumber);
+            if (channel.size() < expectedSize) {
+                throw new IOException("File is truncated: " + channel.size() + " of " + expectedSize + " bytes");
+            }
+
+            columns = new DoubleBuffer[columnsNumber];
+            for (int column = 0; column < columnsNumber; column++) {
+                columns[column] = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    header.getColumnOffset(column),
+                    rows * ColumnarHeader.VALUE_SIZE
+                ).asDoubleBuffer();
+            }
+        }
+
+        for (Class<? extends Feature> feature : header.getSchema()) {
+            try {
+                constructors.add(feature.getConstructor(double.class));
+            } catch (NoSuchMethodException e) {
+                throw new IOException("Feature can't be created from its value: " + feature.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns classes of components of vectors in order.
+     */
+    public @NotNull List<Class<? extends Feature>> getSchema() {
+        return header.getSchema();
+    }
+
+    /**
+     * Returns number of vectors in the file.
+     */
+    public int size() {
+        return (int) header.getRows();
+    }
+
+    /**
+     * Returns value of a given component of a given vector.
+     */
+    public double getValue(final int row, final int column) {
+        return columns[column].get(row);
+    }
+
+    /**
+     * Returns values of a given component of all vectors. Returned buffer is a read-only view of
+     * mapped file, it has its own position and can be used by one thread.
+     */
+    public @NotNull DoubleBuffer getColumn(final int column) {
+        return columns[column].asReadOnlyBuffer();
+    }
+
+    /**
+     * Creates vector stored in a given row.
+     */
+    public @NotNull FeatureVector getVector(final int row) {
+        final List<Feature> features = new ArrayList<>(columns.length);
+        for (int column = 0; column < columns.length; column++) {
+            features.add(createFeature(column, getValue(row, column)));
+        }
+
+        return new FeatureVector(features);
+    }
+
+    /**
+     * Returns lazy stream of all vectors in order of rows.
+     */
+    public @NotNull Stream<FeatureVector> vectors() {
+        return IntStream.range(0, size()).mapToObj(this::getVector);
+    }
+
+    private @NotNull Feature createFeature(final int column, final double value) {
+        try {
+            return constructors.get(column).newInstance(value);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create feature " + header.getSchema().get(column).getName(), e);
+        }
+    }
+}
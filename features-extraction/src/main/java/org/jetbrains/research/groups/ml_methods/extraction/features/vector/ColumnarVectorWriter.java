@@ -0,0 +1,156 @@
+package org.jetbrains.research.groups.ml_methods.extraction.features.vector;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.extraction.features.Feature;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes feature vectors to a single columnar file (see {@link ColumnarHeader} for its layout)
+ * row by row. Number of rows must be known in advance because columns are stored one after
+ * another. Values of every column are buffered and written in blocks, so writer never keeps
+ * more than a buffer per column in memory. All appended vectors must have the schema of the
+ * file: the same {@link Feature} classes in the same order.
+ */
+public class ColumnarVectorWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final @NotNull ColumnarHeader header;
+
+    private final @NotNull FileChannel channel;
+
+    private final @NotNull ByteBuffer[] buffers;
+
+    private final long[] positions;
+
+    private long rows;
+
+    private boolean closed;
+
+    /**
+     * Creates a file (or truncates an existing one) and writes its header.
+     *
+     * @param schema classes of components of vectors in order.
+     * @param rows number of vectors that will be appended.
+     */
+    public ColumnarVectorWriter(
+        final @NotNull Path file,
+        final @NotNull List<Class<? extends Feature>> schema,
+        final long rows
+    ) throws IOException {
+        header = new ColumnarHeader(schema, rows);
+        channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+
+        final int columns = schema.size();
+        final int bufferSize = (int) Math.min(BUFFER_SIZE, Math.max(rows, 1) * ColumnarHeader.VALUE_SIZE);
+        buffers = new ByteBuffer[columns];
+        positions = new long[columns];
+        for (int column = 0; column < columns; column++) {
+            buffers[column] = ByteBuffer.allocate(bufferSize);
+            positions[column] = header.getColumnOffset(column);
+        }
+
+        try {
+            writeFully(ByteBuffer.wrap(header.toBytes()), 0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns schema of a given vector.
+     */
+    public static @NotNull List<Class<? extends Feature>> schemaOf(final @NotNull FeatureVector vector) {
+        final List<Class<? extends Feature>> schema = new ArrayList<>();
+        for (Feature feature : vector.getComponents()) {
+            schema.add(feature.getClass());
+        }
+        return schema;
+    }
+
+    /**
+     * Appends a vector as the next row of the file.
+     *
+     * @throws IllegalArgumentException if vector doesn't match schema of the file.
+     * @throws IllegalStateException if all rows are already written.
+     */
+    public void append(final @NotNull FeatureVector vector) throws IOException {
+        final List<Feature> components = vector.getComponents();
+        final List<Class<? extends Feature>> schema = header.getSchema();
+        if (components.size() != schema.size()) {
+            throw new IllegalArgumentException(
+                "Vector has " + components.size() + " components, schema has " + schema.size()
+            );
+        }
+
+        for (int column = 0; column < schema.size(); column++) {
+            if (!schema.get(column).equals(components.get(column).getClass())) {
+                throw new IllegalArgumentException(
+                    "Component " + column + " is " + components.get(column).getClass().getName() +
+                    ", schema requires " + schema.get(column).getName()
+                );
+            }
+        }
+
+        if (rows == header.getRows()) {
+            throw new IllegalStateException("All " + rows + " rows are already written");
+        }
+
+        for (int column = 0; column < schema.size(); column++) {
+            final ByteBuffer buffer = buffers[column];
+            buffer.putDouble(components.get(column).getValue());
+            if (!buffer.hasRemaining()) {
+                flush(column);
+            }
+        }
+        rows++;
+    }
+
+    /**
+     * Writes buffered values and closes the file.
+     *
+     * @throws IllegalStateException if fewer rows than declared were appended.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try (FileChannel ignored = channel) {
+            for (int column = 0; column < buffers.length; column++) {
+                flush(column);
+            }
+        }
+
+        if (rows != header.getRows()) {
+            throw new IllegalStateException("Only " + rows + " of " + header.getRows() + " rows were written");
+        }
+    }
+
+    private void flush(final int column) throws IOException {
+        final ByteBuffer buffer = buffers[column];
+        buffer.flip();
+        positions[column] += writeFully(buffer, positions[column]);
+        buffer.clear();
+    }
+
+    private int writeFully(final @NotNull ByteBuffer buffer, final long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
@@ -5,6 +5,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.extraction.features.Feature;
 import org.jetbrains.research.groups.ml_methods.extraction.features.extractors.MoveMethodSingleFeatureExtractor;
 import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfo;
+import org.jetbrains.research.groups.ml_methods.extraction.info.MethodInfoAggregate;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,10 +28,21 @@ public class MoveMethodVectorExtractor {
         final @NotNull MethodInfo methodInfo,
         final @NotNull PsiClass targetClass
     ) {
-        List<Feature> features = new ArrayList<>();
+        return extract(new MethodInfoAggregate(methodInfo), targetClass);
+    }
+
+    /**
+     * Creates vector from an aggregate of a method. Aggregate should be created once for a method
+     * and reused for all its target classes.
+     */
+    public @NotNull FeatureVector extract(
+        final @NotNull MethodInfoAggregate aggregate,
+        final @NotNull PsiClass targetClass
+    ) {
+        List<Feature> features = new ArrayList<>(featureExtractors.size());
 
         for (MoveMethodSingleFeatureExtractor extractor : featureExtractors) {
-            features.add(extractor.extract(methodInfo, targetClass));
+            features.add(extractor.extract(aggregate, targetClass));
         }
 
         return new FeatureVector(features);
@@ -0,0 +1,80 @@
+package org.jetbrains.research.groups.ml_methods.extraction.features.vector;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.extraction.features.Feature;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Feature vector that stores only nonzero components. Components are identified by their
+ * indices in a list of extractors that produced a vector, so vectors of one extraction have the
+ * same schema. Most of the features are zero for most of "method, target class" pairs, so this
+ * form is much more compact than {@link FeatureVector}.
+ */
+public class SparseFeatureVector {
+    private final int dimension;
+
+    private final @NotNull int[] indices;
+
+    private final @NotNull double[] values;
+
+    private SparseFeatureVector(final int dimension, final @NotNull int[] indices, final @NotNull double[] values) {
+        this.dimension = dimension;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Creates sparse form of a given dense vector.
+     */
+    public static @NotNull SparseFeatureVector of(final @NotNull FeatureVector vector) {
+        final List<Feature> components = vector.getComponents();
+        final int[] indices = new int[components.size()];
+        final double[] values = new double[components.size()];
+
+        int size = 0;
+        for (int i = 0; i < components.size(); i++) {
+            final double value = components.get(i).getValue();
+            if (value != 0) {
+                indices[size] = i;
+                values[size] = value;
+                size++;
+            }
+        }
+
+        return new SparseFeatureVector(
+            components.size(),
+            Arrays.copyOf(indices, size),
+            Arrays.copyOf(values, size)
+        );
+    }
+
+    /**
+     * Returns number of all components including zero ones.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Returns number of nonzero components.
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * Returns index of {@code i}-th nonzero component. Indices are increasing.
+     */
+    public int getIndex(final int i) {
+        return indices[i];
+    }
+
+    /**
+     * Returns value of {@code i}-th nonzero component.
+     */
+    public double getValue(final int i) {
+        return values[i];
+    }
+}
@@ -0,0 +1,23 @@
+package org.jetbrains.research.groups.ml_methods.extraction.features.vector;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Receives feature vectors of "move method" refactorings one by one as soon as they are extracted,
+ * so extraction of a large dataset never keeps all vectors in memory.
+ */
+public interface SparseVectorWriter {
+    /**
+     * Writes a vector of a refactoring that moves a given method to a given class. Vectors of one
+     * method are written one after another.
+     */
+    void write(
+        @NotNull PsiMethod method,
+        @NotNull PsiClass targetClass,
+        @NotNull SparseFeatureVector vector
+    ) throws IOException;
+}
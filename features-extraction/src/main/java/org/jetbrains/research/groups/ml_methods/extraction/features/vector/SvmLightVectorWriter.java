@@ -0,0 +1,85 @@
+package org.jetbrains.research.groups.ml_methods.extraction.features.vector;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.research.groups.ml_methods.refactoring.MoveMethodRefactoring;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.jetbrains.research.groups.ml_methods.utils.PSIUtil.getHumanReadableName;
+
+/**
+ * Writes vectors in SVMlight format used by ranking tools: one line per vector with a label,
+ * identifier of a query and nonzero features,
+ * {@code <label> qid:<query> <index>:<value> ... # <method> -> <target class>}. Every method is
+ * a separate query, its refactorings are ranked against each other. Label is {@code 1} for
+ * refactorings from a given collection of correct refactorings and {@code 0} for all others.
+ * Indices of features start from {@code 1}.
+ */
+public class SvmLightVectorWriter implements SparseVectorWriter, AutoCloseable {
+    private final @NotNull Writer writer;
+
+    private final @NotNull Map<PsiMethod, Set<PsiClass>> correctTargets = new HashMap<>();
+
+    private @Nullable PsiMethod lastMethod;
+
+    private int query;
+
+    /**
+     * Creates writer. Writer takes ownership of a given stream and closes it when closed itself.
+     *
+     * @param correctRefactorings refactorings which vectors are labeled as positive.
+     */
+    public SvmLightVectorWriter(
+        final @NotNull Writer writer,
+        final @NotNull Collection<MoveMethodRefactoring> correctRefactorings
+    ) {
+        this.writer = writer;
+
+        for (MoveMethodRefactoring refactoring : correctRefactorings) {
+            correctTargets.computeIfAbsent(refactoring.getMethod(), it -> new HashSet<>())
+                          .add(refactoring.getTargetClass());
+        }
+    }
+
+    @Override
+    public void write(
+        final @NotNull PsiMethod method,
+        final @NotNull PsiClass targetClass,
+        final @NotNull SparseFeatureVector vector
+    ) throws IOException {
+        if (!method.equals(lastMethod)) {
+            lastMethod = method;
+            query++;
+        }
+
+        final boolean isCorrect = correctTargets.getOrDefault(method, Collections.emptySet()).contains(targetClass);
+
+        final StringBuilder line = new StringBuilder();
+        line.append(isCorrect ? 1 : 0).append(" qid:").append(query);
+        for (int i = 0; i < vector.size(); i++) {
+            line.append(' ').append(vector.getIndex(i) + 1).append(':').append(vector.getValue(i));
+        }
+        line.append(" # ")
+            .append(getHumanReadableName(method))
+            .append(" -> ")
+            .append(getHumanReadableName(targetClass))
+            .append(System.lineSeparator());
+
+        writer.write(line.toString());
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.groups.ml_methods.extraction.features.Feature;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -12,9 +13,11 @@ import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class VectorSerializer {
     private static final @NotNull VectorSerializer INSTANCE = new VectorSerializer();
@@ -28,6 +31,8 @@ public final class VectorSerializer {
 
     private static final @NotNull String fileExtension = ".ser";
 
+    public static final @NotNull String COLUMNAR_FILE_EXTENSION = ".fvc";
+
     private VectorSerializer() {}
 
     public static @NotNull VectorSerializer getInstance() {
@@ -53,21 +58,91 @@ public final class VectorSerializer {
     public @NotNull List<FeatureVector> deserialize(
         final @NotNull Path path
     ) throws IOException, ClassNotFoundException {
-        List<Path> filePaths = Files.walk(path).filter(Files::isRegularFile)
-                                           .filter(it -> it.toString().endsWith(fileExtension))
-                                           .collect(Collectors.toList());
-
         List<FeatureVector> vectors = new ArrayList<>();
-        for (Path filePath : filePaths) {
-            try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(filePath))) {
-                FeatureVector vector = (FeatureVector) in.readObject();
-                vectors.add(vector);
-            } catch (ClassNotFoundException | IOException e) {
-                LOGGER.error("Failed to load feature from disk: " + e.getMessage());
-                throw e;
-            }
+        for (Path filePath : findSerializedVectors(path)) {
+            vectors.add(deserializeVector(filePath));
         }
 
         return vectors;
     }
+
+    /**
+     * Writes vectors to a single columnar file. All vectors must have the same schema: the same
+     * classes of features in the same order.
+     */
+    public void serializeColumnar(
+        final @NotNull List<FeatureVector> vectors,
+        final @NotNull Path file
+    ) throws IOException {
+        List<Class<? extends Feature>> schema = vectors.isEmpty()
+            ? Collections.emptyList()
+            : ColumnarVectorWriter.schemaOf(vectors.get(0));
+
+        try (ColumnarVectorWriter writer = new ColumnarVectorWriter(file, schema, vectors.size())) {
+            for (FeatureVector vector : vectors) {
+                writer.append(vector);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to save features on disk: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a columnar file. Vectors are not loaded into memory, they are read from the file on
+     * demand.
+     */
+    public @NotNull ColumnarVectorReader deserializeColumnar(final @NotNull Path file) throws IOException {
+        try {
+            return new ColumnarVectorReader(file);
+        } catch (IOException e) {
+            LOGGER.error("Failed to load features from disk: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Converts a folder of vectors written by {@link #serialize} into a single columnar file.
+     * Vectors are read and written one by one, so the whole folder is never kept in memory.
+     *
+     * @return number of converted vectors.
+     */
+    public int convertToColumnar(
+        final @NotNull Path path,
+        final @NotNull Path file
+    ) throws IOException, ClassNotFoundException {
+        List<Path> filePaths = findSerializedVectors(path);
+        List<Class<? extends Feature>> schema = filePaths.isEmpty()
+            ? Collections.emptyList()
+            : ColumnarVectorWriter.schemaOf(deserializeVector(filePaths.get(0)));
+
+        try (ColumnarVectorWriter writer = new ColumnarVectorWriter(file, schema, filePaths.size())) {
+            for (Path filePath : filePaths) {
+                writer.append(deserializeVector(filePath));
+            }
+        }
+
+        LOGGER.info("Converted " + filePaths.size() + " vectors from " + path + " to " + file);
+        return filePaths.size();
+    }
+
+    private @NotNull List<Path> findSerializedVectors(final @NotNull Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile)
+                        .filter(it -> it.toString().endsWith(fileExtension))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private @NotNull FeatureVector deserializeVector(
+        final @NotNull Path filePath
+    ) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(filePath))) {
+            return (FeatureVector) in.readObject();
+        } catch (ClassNotFoundException | IOException e) {
+            LOGGER.error("Failed to load feature from disk: " + e.getMessage());
+            throw e;
+        }
+    }
 }
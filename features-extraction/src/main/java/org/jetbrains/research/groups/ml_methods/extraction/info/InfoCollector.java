@@ -1,6 +1,8 @@
 package org.jetbrains.research.groups.ml_methods.extraction.info;
 
 import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Computable;
 import com.intellij.psi.*;
 import org.apache.log4j.ConsoleAppender;
 import org.apache.log4j.Level;
@@ -8,6 +10,13 @@ import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
 public class InfoCollector {
     private static final @NotNull InfoCollector INSTANCE = new InfoCollector();
 
@@ -34,12 +43,77 @@ public class InfoCollector {
     public @NotNull MethodInfoRepository collectInfo(final @NotNull AnalysisScope scope) {
         MethodInfoRepository.Builder repositoryBuilder = new MethodInfoRepository.Builder();
 
-        scope.accept(new JavaRecursiveElementVisitor() {
+        for (PsiFile file : collectFiles(scope)) {
+            collectInfo(file).forEach(event -> event.accept(repositoryBuilder));
+        }
+
+        return repositoryBuilder.build();
+    }
+
+    /**
+     * Does the same as {@link #collectInfo(AnalysisScope)} but walks files in several threads,
+     * each file in its own read action. Resolve results of every file are recorded separately
+     * and then are added to one {@link MethodInfoRepository.Builder} in order of files, exactly as
+     * {@link #collectInfo(AnalysisScope)} adds them. So the result is identical to the result of
+     * {@link #collectInfo(AnalysisScope)}. Caller must not hold read access, otherwise a pending
+     * write action can block workers.
+     *
+     * @param scope a scope which will be analyzed.
+     * @param parallelism number of threads files are walked in.
+     * @return all gathered info in a {@link MethodInfoRepository} object.
+     */
+    public @NotNull MethodInfoRepository collectInfoInParallel(
+        final @NotNull AnalysisScope scope,
+        final int parallelism
+    ) {
+        List<PsiFile> files = inReadAction(() -> collectFiles(scope));
+
+        @SuppressWarnings("unchecked")
+        List<Consumer<MethodInfoRepository.Builder>>[] events = new List[files.size()];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, files.size()).parallel().forEach(i ->
+                events[i] = inReadAction(() -> collectInfo(files.get(i)))
+            )).join();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        MethodInfoRepository.Builder repositoryBuilder = new MethodInfoRepository.Builder();
+        Arrays.stream(events).forEach(fileEvents ->
+            fileEvents.forEach(event -> event.accept(repositoryBuilder))
+        );
+
+        return inReadAction(repositoryBuilder::build);
+    }
+
+    private static @NotNull List<PsiFile> collectFiles(final @NotNull AnalysisScope scope) {
+        List<PsiFile> files = new ArrayList<>();
+        scope.accept(new PsiElementVisitor() {
+            @Override
+            public void visitFile(PsiFile file) {
+                files.add(file);
+            }
+        });
+
+        return files;
+    }
+
+    /**
+     * Walks a file and records calls to a {@link MethodInfoRepository.Builder} that should be
+     * made for it. Recorded calls don't need read access.
+     */
+    private static @NotNull List<Consumer<MethodInfoRepository.Builder>> collectInfo(
+        final @NotNull PsiFile file
+    ) {
+        List<Consumer<MethodInfoRepository.Builder>> events = new ArrayList<>();
+
+        file.accept(new JavaRecursiveElementVisitor() {
             private PsiMethod currentMethod = null;
 
             public void visitMethod(PsiMethod method) {
                 currentMethod = method;
-                repositoryBuilder.addMethod(method);
+                events.add(builder -> builder.addMethod(method));
 
                 super.visitMethod(method);
 
@@ -60,11 +134,13 @@ public class InfoCollector {
                         expression.getText() + "; in " +
                         expression.getContainingFile()
                     );
-                    
+
                     return;
                 }
 
-                repositoryBuilder.addMethodCall(currentMethod, target, expression);
+                PsiMethod caller = currentMethod;
+                boolean isFromTheSameObject = MethodInfo.Builder.isCallFromTheSameObject(target, expression);
+                events.add(builder -> builder.addMethodCall(caller, target, isFromTheSameObject));
                 super.visitMethodCallExpression(expression);
             }
 
@@ -78,13 +154,18 @@ public class InfoCollector {
                 PsiElement element = result.getElement();
 
                 if (element instanceof PsiField) {
-                    repositoryBuilder.addFieldAccess(currentMethod, (PsiField) element);
+                    PsiMethod method = currentMethod;
+                    events.add(builder -> builder.addFieldAccess(method, (PsiField) element));
                 }
 
                 super.visitReferenceExpression(expression);
             }
         });
 
-        return repositoryBuilder.build();
+        return events;
+    }
+
+    private static <T> T inReadAction(final @NotNull Computable<T> computation) {
+        return ApplicationManager.getApplication().runReadAction(computation);
     }
 }
@@ -123,7 +123,18 @@ public class MethodInfo {
             final @NotNull PsiMethod caller,
             final @NotNull PsiMethodCallExpression expression
         ) {
-            if (isCallFromTheSameObject(method, expression)) {
+            addCaller(caller, isCallFromTheSameObject(method, expression));
+        }
+
+        /**
+         * Adds caller of the method. Unlike {@link #addCaller(PsiMethod, PsiMethodCallExpression)}
+         * doesn't need read access.
+         *
+         * @param isFromTheSameObject whether the call is made through {@code this}, see
+         *                            {@link #isCallFromTheSameObject}.
+         */
+        public void addCaller(final @NotNull PsiMethod caller, final boolean isFromTheSameObject) {
+            if (isFromTheSameObject) {
                 sameInstanceCallers.add(caller);
             } else {
                 anotherObjectCallers.add(caller);
@@ -134,7 +145,18 @@ public class MethodInfo {
             final @NotNull PsiMethod target,
             final @NotNull PsiMethodCallExpression expression
         ) {
-            if (isCallFromTheSameObject(target, expression)) {
+            addTarget(target, isCallFromTheSameObject(target, expression));
+        }
+
+        /**
+         * Adds method called by the method. Unlike
+         * {@link #addTarget(PsiMethod, PsiMethodCallExpression)} doesn't need read access.
+         *
+         * @param isFromTheSameObject whether the call is made through {@code this}, see
+         *                            {@link #isCallFromTheSameObject}.
+         */
+        public void addTarget(final @NotNull PsiMethod target, final boolean isFromTheSameObject) {
+            if (isFromTheSameObject) {
                 sameObjectTargets.add(target);
             } else {
                 anotherObjectTargets.add(target);
@@ -145,7 +167,10 @@ public class MethodInfo {
             accessedFields.add(field);
         }
 
-        private boolean isCallFromTheSameObject(
+        /**
+         * Checks that a given call of a given method is made through {@code this} object.
+         */
+        public static boolean isCallFromTheSameObject(
             final @NotNull PsiMethod target,
             final @NotNull PsiMethodCallExpression expression
         ) {
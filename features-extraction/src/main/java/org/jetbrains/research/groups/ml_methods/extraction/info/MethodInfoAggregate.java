@@ -0,0 +1,165 @@
+package org.jetbrains.research.groups.ml_methods.extraction.info;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.utils.MethodUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts of callers, targets and accessed fields of a method grouped by their containing classes
+ * and split by visibility and by static/instance. Aggregate is built with one pass over lists of
+ * a {@link MethodInfo}, after that every count for any class is a lookup in a hash map and an
+ * array read. So features for many target classes of one method can be calculated without
+ * scanning lists of {@link MethodInfo} for every target.
+ */
+public class MethodInfoAggregate {
+    private static final int ANOTHER_INSTANCE_CALLERS = 0;
+
+    private static final int ACCESSED_FIELDS = 1;
+
+    private static final int PUBLIC_STATIC_TARGETS = 2;
+
+    private static final int PUBLIC_INSTANCE_TARGETS = 3;
+
+    private static final int NOT_PUBLIC_STATIC_TARGETS = 4;
+
+    private static final int NOT_PUBLIC_INSTANCE_TARGETS = 5;
+
+    private static final int COUNTERS_NUMBER = 6;
+
+    private static final int[] NO_COUNTS = new int[COUNTERS_NUMBER];
+
+    private final @NotNull PsiClass containingClass;
+
+    private final @NotNull Map<PsiClass, int[]> counts = new HashMap<>();
+
+    private final int sameInstanceCallers;
+
+    private final int publicSameInstanceTargets;
+
+    private final int notPublicSameInstanceTargets;
+
+    public MethodInfoAggregate(final @NotNull MethodInfo methodInfo) {
+        containingClass = methodInfo.getContainingClass();
+
+        for (PsiMethod caller : methodInfo.getAnotherInstanceCallers()) {
+            increment(caller.getContainingClass(), ANOTHER_INSTANCE_CALLERS);
+        }
+
+        for (PsiField field : methodInfo.getAccessedFields()) {
+            increment(field.getContainingClass(), ACCESSED_FIELDS);
+        }
+
+        for (PsiMethod target : methodInfo.getAnotherInstanceTargets()) {
+            increment(target.getContainingClass(), targetsCounter(
+                MethodUtils.isPublic(target),
+                MethodUtils.isStatic(target)
+            ));
+        }
+
+        sameInstanceCallers = methodInfo.getSameInstanceCallers().size();
+
+        int publicTargets = 0;
+        int notPublicTargets = 0;
+        for (PsiMethod target : methodInfo.getSameInstanceTargets()) {
+            if (MethodUtils.isPublic(target)) {
+                publicTargets++;
+            } else {
+                notPublicTargets++;
+            }
+        }
+        publicSameInstanceTargets = publicTargets;
+        notPublicSameInstanceTargets = notPublicTargets;
+    }
+
+    /**
+     * Returns class that contains the method.
+     */
+    public @NotNull PsiClass getContainingClass() {
+        return containingClass;
+    }
+
+    /**
+     * Returns all classes that contain callers, targets or accessed fields of the method. For any
+     * other class all counts are zero.
+     */
+    public @NotNull Set<PsiClass> getRelatedClasses() {
+        return Collections.unmodifiableSet(counts.keySet());
+    }
+
+    /**
+     * Returns number of methods of a given class that call the method not through {@code this}.
+     */
+    public int getAnotherInstanceCallers(final @NotNull PsiClass aClass) {
+        return get(aClass)[ANOTHER_INSTANCE_CALLERS];
+    }
+
+    /**
+     * Returns number of fields of a given class that the method accesses.
+     */
+    public int getAccessedFields(final @NotNull PsiClass aClass) {
+        return get(aClass)[ACCESSED_FIELDS];
+    }
+
+    /**
+     * Returns number of methods of a given class with given modifiers that the method calls not
+     * through {@code this}.
+     */
+    public int getAnotherInstanceTargets(
+        final @NotNull PsiClass aClass,
+        final boolean isPublic,
+        final boolean isStatic
+    ) {
+        return get(aClass)[targetsCounter(isPublic, isStatic)];
+    }
+
+    /**
+     * Returns number of static or instance methods of a given class that the method calls not
+     * through {@code this}.
+     */
+    public int getAnotherInstanceTargets(final @NotNull PsiClass aClass, final boolean isStatic) {
+        final int[] classCounts = get(aClass);
+        return classCounts[targetsCounter(true, isStatic)] + classCounts[targetsCounter(false, isStatic)];
+    }
+
+    /**
+     * Returns number of methods that call the method through {@code this}.
+     */
+    public int getSameInstanceCallers() {
+        return sameInstanceCallers;
+    }
+
+    /**
+     * Returns number of public or not public methods that the method calls through {@code this}.
+     */
+    public int getSameInstanceTargets(final boolean isPublic) {
+        return isPublic ? publicSameInstanceTargets : notPublicSameInstanceTargets;
+    }
+
+    private void increment(final @Nullable PsiClass aClass, final int counter) {
+        if (aClass == null) {
+            return;
+        }
+
+        counts.computeIfAbsent(aClass, it -> new int[COUNTERS_NUMBER])[counter]++;
+    }
+
+    private @NotNull int[] get(final @NotNull PsiClass aClass) {
+        return counts.getOrDefault(aClass, NO_COUNTS);
+    }
+
+    private static int targetsCounter(final boolean isPublic, final boolean isStatic) {
+        if (isPublic) {
+            return isStatic ? PUBLIC_STATIC_TARGETS : PUBLIC_INSTANCE_TARGETS;
+        }
+
+        return isStatic ? NOT_PUBLIC_STATIC_TARGETS : NOT_PUBLIC_INSTANCE_TARGETS;
+    }
+}
@@ -62,12 +62,27 @@ public class MethodInfoRepository {
             final @NotNull PsiMethod caller,
             final @NotNull PsiMethod target,
             final @NotNull PsiMethodCallExpression expression
+        ) {
+            addMethodCall(caller, target, MethodInfo.Builder.isCallFromTheSameObject(target, expression));
+        }
+
+        /**
+         * Adds call of one method from another. Unlike
+         * {@link #addMethodCall(PsiMethod, PsiMethod, PsiMethodCallExpression)} doesn't need read
+         * access.
+         *
+         * @param isFromTheSameObject whether the call is made through {@code this}.
+         */
+        public void addMethodCall(
+            final @NotNull PsiMethod caller,
+            final @NotNull PsiMethod target,
+            final boolean isFromTheSameObject
         ) {
             builders.computeIfAbsent(caller, MethodInfo.Builder::new)
-                    .addTarget(target, expression);
+                    .addTarget(target, isFromTheSameObject);
 
             builders.computeIfAbsent(target, MethodInfo.Builder::new)
-                    .addCaller(caller, expression);
+                    .addCaller(caller, isFromTheSameObject);
         }
 
         public void addFieldAccess(final @NotNull PsiMethod method, final @NotNull PsiField field) {
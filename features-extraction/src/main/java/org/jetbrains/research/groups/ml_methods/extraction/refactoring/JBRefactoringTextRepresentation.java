@@ -5,6 +5,7 @@ import com.intellij.psi.PsiMethod;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveMethodRefactoring;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -35,6 +36,21 @@ public class JBRefactoringTextRepresentation extends RefactoringTextRepresentati
                 getParamsClasses().equals(methodsParams);
     }
 
+    @Override
+    List<String> getMethodKeys(PsiMethod method) {
+        PsiClass containingClass = method.getContainingClass();
+        if (containingClass == null || containingClass.getQualifiedName() == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> methodsParams = Arrays.stream(method.getParameterList().getParameters()).
+                map(psiParameter -> psiParameter.getType().getCanonicalText()).
+                collect(Collectors.toList());
+        return Collections.singletonList(
+                getMethodsSignature(containingClass.getQualifiedName(), method.getName(), methodsParams)
+        );
+    }
+
     @Override
     public boolean isToGivenPsiClass(PsiClass aClass) {
         return getClassQualifiedName().equals(aClass.getQualifiedName());
@@ -5,6 +5,7 @@ import com.intellij.psi.PsiMethod;
 import com.sixrr.metrics.utils.MethodUtils;
 import org.jetbrains.research.groups.ml_methods.refactoring.MoveMethodRefactoring;
 
+import java.util.Arrays;
 import java.util.List;
 
 public class JMoveRefactoringTextRepresentation extends RefactoringTextRepresentation {
@@ -26,6 +27,13 @@ public class JMoveRefactoringTextRepresentation extends RefactoringTextRepresent
                 refactoringSignature.equals(methodsSignatureWithoutParams);
     }
 
+    @Override
+    List<String> getMethodKeys(PsiMethod method) {
+        String methodsSignature = MethodUtils.calculateSignature(method);
+        String methodsSignatureWithoutParams = methodsSignature.split("\\(")[0];
+        return Arrays.asList(methodsSignature, methodsSignatureWithoutParams);
+    }
+
     @Override
     public boolean isToGivenPsiClass(PsiClass aClass) {
         return getClassQualifiedName().equals(aClass.getQualifiedName());
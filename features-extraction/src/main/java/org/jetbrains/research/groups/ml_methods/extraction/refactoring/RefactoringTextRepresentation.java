@@ -13,6 +13,22 @@ public abstract class RefactoringTextRepresentation {
     abstract boolean isOfGivenMethod(PsiMethod method);
     abstract boolean isToGivenPsiClass(PsiClass aClass);
 
+    /**
+     * Returns keys under which {@link RefactoringsIndex} looks for refactorings of a given method.
+     * If this refactoring is of a given method then one of the keys equals
+     * {@link #getMethodKey()}. Result must depend only on a class of representation, not on its
+     * fields.
+     */
+    abstract List<String> getMethodKeys(PsiMethod method);
+
+    /**
+     * Returns normalized signature of a method of this refactoring which is used as a key in
+     * {@link RefactoringsIndex}.
+     */
+    String getMethodKey() {
+        return getMethodsSignature();
+    }
+
 
     public String getTargetClassQualifiedName() {
         return targetClassQualifiedName;
@@ -78,6 +94,10 @@ public abstract class RefactoringTextRepresentation {
     }
 
     String getMethodsSignature() {
+        return getMethodsSignature(sourceClassQualifiedName, methodName, paramsClasses);
+    }
+
+    static String getMethodsSignature(String sourceClassQualifiedName, String methodName, List<String> paramsClasses) {
         StringBuilder methodsSignature = new StringBuilder();
         methodsSignature.append(sourceClassQualifiedName);
         methodsSignature.append(".");
@@ -19,11 +19,13 @@ public class RefactoringsFinder extends JavaRecursiveElementVisitor {
 
     private final Map<RefactoringTextRepresentation, RefactoringPair> refactorings = new HashMap<>();
     private final List<RefactoringTextRepresentation> textualRefactorings;
+    private final RefactoringsIndex index;
     private int visitedMethods = 0;
     private int visitedClasses = 0;
 
     private RefactoringsFinder(List<RefactoringTextRepresentation> textualRefactorings) {
         this.textualRefactorings = textualRefactorings;
+        this.index = new RefactoringsIndex(textualRefactorings);
     }
 
     @NotNull
@@ -80,7 +82,7 @@ public class RefactoringsFinder extends JavaRecursiveElementVisitor {
     public void visitMethod(PsiMethod method) {
         visitedMethods++;
         List<RefactoringTextRepresentation> refactoringsOfPsiMethod =
-                RefactoringUtils.getRefactoringsOfGivenMethod(textualRefactorings, method);
+                index.getRefactoringsOfGivenMethod(method);
         refactoringsOfPsiMethod.forEach(textFormRefactoring ->
                 refactorings.computeIfAbsent(textFormRefactoring, k -> new RefactoringPair()).
                         setMethod(method));
@@ -91,7 +93,7 @@ public class RefactoringsFinder extends JavaRecursiveElementVisitor {
     public void visitClass(PsiClass aClass) {
         visitedClasses++;
         for (RefactoringTextRepresentation refactoringToPsiClass :
-                RefactoringUtils.getRefactoringsToGivenClass(textualRefactorings, aClass)) {
+                index.getRefactoringsToGivenClass(aClass)) {
             refactorings.computeIfAbsent(refactoringToPsiClass, k -> new RefactoringPair()).setClass(aClass);
         }
         super.visitClass(aClass);
@@ -0,0 +1,85 @@
+package org.jetbrains.research.groups.ml_methods.extraction.refactoring;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Hash indices of textual refactorings by normalized signature of moved method and by qualified
+ * name of target class. With them refactorings of a PSI method or to a PSI class are found
+ * without scanning all textual refactorings. Candidates found by a key are checked with
+ * {@link RefactoringTextRepresentation#isOfGivenMethod} and
+ * {@link RefactoringTextRepresentation#isToGivenPsiClass}, so results are the same as results of
+ * checking every refactoring.
+ */
+class RefactoringsIndex {
+    private final @NotNull Map<Class<? extends RefactoringTextRepresentation>, MethodIndex> methodIndices =
+            new LinkedHashMap<>();
+
+    private final @NotNull Map<String, List<RefactoringTextRepresentation>> byTargetClass = new HashMap<>();
+
+    RefactoringsIndex(final @NotNull List<RefactoringTextRepresentation> textualRefactorings) {
+        for (RefactoringTextRepresentation refactoring : textualRefactorings) {
+            methodIndices.computeIfAbsent(refactoring.getClass(), it -> new MethodIndex(refactoring))
+                    .add(refactoring);
+            byTargetClass.computeIfAbsent(refactoring.getClassQualifiedName(), it -> new ArrayList<>())
+                    .add(refactoring);
+        }
+    }
+
+    @NotNull List<RefactoringTextRepresentation> getRefactoringsOfGivenMethod(final @NotNull PsiMethod method) {
+        List<RefactoringTextRepresentation> result = new ArrayList<>();
+        for (MethodIndex index : methodIndices.values()) {
+            index.find(method, result);
+        }
+
+        return result;
+    }
+
+    @NotNull List<RefactoringTextRepresentation> getRefactoringsToGivenClass(final @NotNull PsiClass aClass) {
+        String qualifiedName = aClass.getQualifiedName();
+        if (qualifiedName == null) {
+            return Collections.emptyList();
+        }
+
+        return byTargetClass.getOrDefault(qualifiedName, Collections.emptyList()).stream()
+                .filter(refactoring -> refactoring.isToGivenPsiClass(aClass))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Index of refactorings of one representation class. Keys of a method depend only on a
+     * representation class, so they are computed once with any refactoring of that class.
+     */
+    private static class MethodIndex {
+        private final @NotNull RefactoringTextRepresentation prototype;
+
+        private final @NotNull Map<String, List<RefactoringTextRepresentation>> byMethodKey = new HashMap<>();
+
+        private MethodIndex(final @NotNull RefactoringTextRepresentation prototype) {
+            this.prototype = prototype;
+        }
+
+        private void add(final @NotNull RefactoringTextRepresentation refactoring) {
+            byMethodKey.computeIfAbsent(refactoring.getMethodKey(), it -> new ArrayList<>()).add(refactoring);
+        }
+
+        private void find(
+            final @NotNull PsiMethod method,
+            final @NotNull List<RefactoringTextRepresentation> result
+        ) {
+            for (String key : new LinkedHashSet<>(prototype.getMethodKeys(method))) {
+                final List<RefactoringTextRepresentation> candidates =
+                        byMethodKey.getOrDefault(key, Collections.emptyList());
+                for (RefactoringTextRepresentation refactoring : candidates) {
+                    if (refactoring.isOfGivenMethod(method)) {
+                        result.add(refactoring);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.jetbrains.research.groups.ml_methods.extraction.features.vector;
+
+import org.jetbrains.research.groups.ml_methods.extraction.features.AnotherInstanceCallers;
+import org.jetbrains.research.groups.ml_methods.extraction.features.SameInstanceCallers;
+import org.jetbrains.research.groups.ml_methods.extraction.features.TargetClassCallers;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SparseFeatureVectorTest {
+    @Test
+    public void zeroComponentsAreSkipped() throws Exception {
+        SparseFeatureVector vector = SparseFeatureVector.of(new FeatureVector(Arrays.asList(
+            new AnotherInstanceCallers(0),
+            new TargetClassCallers(2.5),
+            new SameInstanceCallers(0)
+        )));
+
+        assertThat(vector.getDimension(), equalTo(3));
+        assertThat(vector.size(), equalTo(1));
+        assertThat(vector.getIndex(0), equalTo(1));
+        assertThat(vector.getValue(0), equalTo(2.5));
+    }
+
+    @Test
+    public void zeroVector() throws Exception {
+        SparseFeatureVector vector = SparseFeatureVector.of(new FeatureVector(Arrays.asList(
+            new AnotherInstanceCallers(0),
+            new TargetClassCallers(0)
+        )));
+
+        assertThat(vector.getDimension(), equalTo(2));
+        assertThat(vector.size(), equalTo(0));
+    }
+}
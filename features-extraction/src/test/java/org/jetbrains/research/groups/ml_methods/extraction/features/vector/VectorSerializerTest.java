@@ -18,7 +18,9 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
 
 public class VectorSerializerTest {
     @Rule
@@ -52,6 +54,49 @@ public class VectorSerializerTest {
         assertThat(deserializedVectors, containsInAnyOrder(vector(v1), vector(v2)));
     }
 
+    @Test
+    public void columnarSerializationDeserialization() throws Exception {
+        File file = temporaryFolder.newFile();
+
+        FeatureVector v1 = new FeatureVector(Arrays.asList(new AnotherInstanceCallers(1), new TargetClassCallers(2.5)));
+        FeatureVector v2 = new FeatureVector(Arrays.asList(new AnotherInstanceCallers(0), new TargetClassCallers(-3)));
+
+        VectorSerializer.getInstance().serializeColumnar(Arrays.asList(v1, v2), file.toPath());
+
+        ColumnarVectorReader reader = VectorSerializer.getInstance().deserializeColumnar(file.toPath());
+
+        assertThat(reader.getSchema(), contains(AnotherInstanceCallers.class, TargetClassCallers.class));
+        assertThat(reader.size(), equalTo(2));
+        assertThat(reader.vectors().collect(Collectors.toList()), contains(vector(v1), vector(v2)));
+        assertThat(reader.getColumn(1).get(1), equalTo(-3.0));
+    }
+
+    @Test
+    public void conversionToColumnar() throws Exception {
+        File folder = temporaryFolder.newFolder();
+        File file = temporaryFolder.newFile();
+
+        FeatureVector v1 = new FeatureVector(Arrays.asList(new TargetClassCallers(2.5), new SameInstanceCallers(0.2)));
+        FeatureVector v2 = new FeatureVector(Arrays.asList(new TargetClassCallers(1), new SameInstanceCallers(7)));
+
+        VectorSerializer.getInstance().serialize(Arrays.asList(v1, v2), folder.toPath());
+        int converted = VectorSerializer.getInstance().convertToColumnar(folder.toPath(), file.toPath());
+
+        List<FeatureVector> deserializedVectors =
+            VectorSerializer.getInstance().deserializeColumnar(file.toPath()).vectors().collect(Collectors.toList());
+
+        assertThat(converted, equalTo(2));
+        assertThat(deserializedVectors, containsInAnyOrder(vector(v1), vector(v2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnarSerializationOfDifferentSchemas() throws Exception {
+        FeatureVector v1 = new FeatureVector(Arrays.asList(new AnotherInstanceCallers(1), new TargetClassCallers(2.5)));
+        FeatureVector v2 = new FeatureVector(Arrays.asList(new TargetClassCallers(2.5), new SameInstanceCallers(0.2)));
+
+        VectorSerializer.getInstance().serializeColumnar(Arrays.asList(v1, v2), temporaryFolder.newFile().toPath());
+    }
+
     private static FeatureVectorMatcher vector(final @NotNull FeatureVector featureVector) {
         return new FeatureVectorMatcher(featureVector);
     }
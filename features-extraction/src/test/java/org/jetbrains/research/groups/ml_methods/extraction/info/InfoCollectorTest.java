@@ -103,6 +103,9 @@ public class InfoCollectorTest extends ScopeAbstractTest {
     private void runTestCase(final @NotNull InfoValidator validator) throws Exception {
         AnalysisScope scope = createScope();
         MethodInfoRepository repository = InfoCollector.getInstance().collectInfo(scope);
+        MethodInfoRepository parallelRepository = InfoCollector.getInstance().collectInfoInParallel(scope, 2);
+
+        assertEquals(repository.getMethods(), parallelRepository.getMethods());
 
         assertSameElements(
             repository.getMethods()
@@ -121,6 +124,18 @@ public class InfoCollectorTest extends ScopeAbstractTest {
                 )
             );
 
+            MethodInfo parallelInfo = parallelRepository.getMethodInfo(method).orElseThrow(
+                () -> new IllegalStateException(
+                    "Existing method doesn't have MethodInfo instance in parallel repository"
+                )
+            );
+
+            assertEquals(info.getSameInstanceCallers(), parallelInfo.getSameInstanceCallers());
+            assertEquals(info.getAnotherInstanceCallers(), parallelInfo.getAnotherInstanceCallers());
+            assertEquals(info.getSameInstanceTargets(), parallelInfo.getSameInstanceTargets());
+            assertEquals(info.getAnotherInstanceTargets(), parallelInfo.getAnotherInstanceTargets());
+            assertEquals(info.getAccessedFields(), parallelInfo.getAccessedFields());
+
             assertSameElements(
                 info.getSameInstanceCallers()
                     .stream()
@@ -17,7 +17,7 @@ import java.util.Set;
 @State(name = "ArchitectureReloaded", storages = @Storage(file = "architecture.reloaded.xml"))
 public final class ArchitectureReloadedConfig implements PersistentStateComponent<ArchitectureReloadedConfig> {
     private final Set<Algorithm> selectedAlgorithms =
-            new HashSet<>(AlgorithmsRepository.getAvailableAlgorithms());
+            new HashSet<>(AlgorithmsRepository.getDefaultAlgorithms());
     private boolean enableFieldRefactoring = false;
 
     private ArchitectureReloadedConfig() {}
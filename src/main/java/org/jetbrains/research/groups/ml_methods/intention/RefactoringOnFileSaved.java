@@ -1,7 +1,6 @@
 package org.jetbrains.research.groups.ml_methods.refactoring;
 
 import com.intellij.AppTopics;
-import com.intellij.analysis.AnalysisScope;
 import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ApplicationComponent;
@@ -12,12 +11,29 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
 import com.intellij.util.messages.MessageBus;
 import com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.groups.ml_methods.plugin.AutomaticRefactoringAction;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Updates suggested refactorings after java files of a project are saved. Bursts of saves (e.g.
+ * "Save All") are collapsed: update starts only when no file was saved during
+ * {@link #UPDATE_DELAY_MS} and only files changed since the previous update are analyzed again.
+ */
 public class RefactoringOnFileSaved implements ApplicationComponent {
+    private static final int UPDATE_DELAY_MS = 1500;
+
+    private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD);
+
+    private final Set<Project> changedProjects = new HashSet<>();
+
     @Override
     public void initComponent() {
         MessageBus bus = ApplicationManager.getApplication().getMessageBus();
@@ -37,17 +53,40 @@ public class RefactoringOnFileSaved implements ApplicationComponent {
                 for (Project project : ProjectManager.getInstance().getOpenProjects()) {
                     if (!project.isDefault() && project.isInitialized() && !project.isDisposed()
                             && ProjectRootManager.getInstance(project).getFileIndex().isInContent(savedFile)) {
-                        AutomaticRefactoringAction.getInstance(project).analyzeBackground(project,
-                                new AnalysisScope(project),
-                                project.getName() + project.getLocationHash() + "|saved");
+                        scheduleUpdate(project);
                     }
                 }
             }
         });
     }
 
+    private synchronized void scheduleUpdate(final @NotNull Project project) {
+        changedProjects.add(project);
+        alarm.cancelAllRequests();
+        alarm.addRequest(this::updateChangedProjects, UPDATE_DELAY_MS);
+    }
+
+    private void updateChangedProjects() {
+        final List<Project> projects;
+        synchronized (this) {
+            projects = new ArrayList<>(changedProjects);
+            changedProjects.clear();
+        }
+
+        for (Project project : projects) {
+            if (!project.isDisposed()) {
+                AutomaticRefactoringAction.getInstance(project).analyzeIncrementally(project,
+                        project.getName() + project.getLocationHash() + "|saved");
+            }
+        }
+    }
+
     @Override
     public void disposeComponent() {
+        alarm.cancelAllRequests();
+        synchronized (this) {
+            changedProjects.clear();
+        }
     }
 
     @NotNull
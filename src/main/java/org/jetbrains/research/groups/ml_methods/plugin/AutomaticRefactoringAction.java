@@ -22,6 +22,7 @@ import org.jetbrains.research.groups.ml_methods.algorithm.Algorithm;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmResult;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
+import org.jetbrains.research.groups.ml_methods.algorithm.IncrementalExecutionContext;
 import org.jetbrains.research.groups.ml_methods.algorithm.RefactoringExecutionContext;
 import org.jetbrains.research.groups.ml_methods.config.ArchitectureReloadedConfig;
 import org.jetbrains.research.groups.ml_methods.logging.Logging;
@@ -53,6 +54,12 @@ public class AutomaticRefactoringAction extends BaseAnalysisAction {
 
     private static final Map<Project, AutomaticRefactoringAction> factory = new HashMap<>();
 
+    private IncrementalExecutionContext incrementalContext;
+
+    /** Algorithms and field refactorings setting that {@link #incrementalContext} was created for. */
+    private Set<AlgorithmType> incrementalAlgorithms = Collections.emptySet();
+    private boolean incrementalFieldRefactorings;
+
 //    private static ProjectManagerListener listener = new ProjectManagerListener() {
 //        @Override
 //        public void projectOpened(Project project) {
@@ -148,8 +155,8 @@ public class AutomaticRefactoringAction extends BaseAnalysisAction {
 
     public void analyzeBackground(@NotNull final Project project, @NotNull final AnalysisScope analysisScope,
                                   String identifier) {
-        List<Algorithm> availableAlgorithms = AlgorithmsRepository.getAvailableAlgorithms();
-        final MetricsProfile metricsProfile = getMetricsProfile(new HashSet<>(availableAlgorithms));
+        List<Algorithm> defaultAlgorithms = AlgorithmsRepository.getDefaultAlgorithms();
+        final MetricsProfile metricsProfile = getMetricsProfile(new HashSet<>(defaultAlgorithms));
         assert metricsProfile != null;
 
         final RefactoringExecutionContext context =
@@ -163,7 +170,80 @@ public class AutomaticRefactoringAction extends BaseAnalysisAction {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
                 processes.put(identifier, indicator);
-                context.executeSynchronously();
+                context.executeSynchronously(indicator);
+            }
+
+            @Override
+            public void onFinished() {
+                super.onFinished();
+                DaemonCodeAnalyzer.getInstance(project).restart();
+            }
+
+        }.queue();
+    }
+
+    /**
+     * Updates suggestions of algorithms selected in {@link ArchitectureReloadedConfig} after files
+     * of a project were changed. Entities and attributes are updated incrementally: the first
+     * call analyzes the whole project, next calls analyze only changed files and files that depend
+     * on them (see {@link IncrementalExecutionContext}). Suggestions of {@link AlgorithmType#ARI}
+     * are updated incrementally as well, other selected algorithms are run again on the updated
+     * attributes. If selected algorithms or field refactorings setting were changed, analysis
+     * starts over with the whole project.
+     */
+    public void analyzeIncrementally(@NotNull final Project project, String identifier) {
+        final Set<Algorithm> selectedAlgorithms =
+                ArchitectureReloadedConfig.getInstance().getSelectedAlgorithms();
+        final boolean enableFieldRefactoring =
+                ArchitectureReloadedConfig.getInstance().enableFieldRefactoring();
+        final Set<AlgorithmType> selectedTypes = selectedAlgorithms.stream()
+                .map(Algorithm::getAlgorithmType)
+                .collect(Collectors.toSet());
+        final MetricsProfile metricsProfile = getMetricsProfile(selectedAlgorithms);
+        assert metricsProfile != null;
+
+        if (!selectedTypes.equals(incrementalAlgorithms) || enableFieldRefactoring != incrementalFieldRefactorings) {
+            LOGGER.info("Settings were changed, incremental analysis starts over");
+            results.keySet().retainAll(selectedTypes);
+            incrementalContext = null;
+            incrementalAlgorithms = selectedTypes;
+            incrementalFieldRefactorings = enableFieldRefactoring;
+        }
+        if (selectedTypes.isEmpty()) {
+            return;
+        }
+
+        final boolean suggestAri = selectedTypes.contains(AlgorithmType.ARI);
+        if (incrementalContext == null) {
+            incrementalContext = new IncrementalExecutionContext(
+                project,
+                new AnalysisScope(project),
+                metricsProfile,
+                enableFieldRefactoring,
+                suggestAri
+            );
+        }
+
+        final List<Algorithm> otherAlgorithms = selectedAlgorithms.stream()
+                .filter(algorithm -> algorithm.getAlgorithmType() != AlgorithmType.ARI)
+                .collect(Collectors.toList());
+        final IncrementalExecutionContext context = incrementalContext;
+        processes.computeIfPresent(identifier, (x, process) -> {
+            process.cancel();
+            return null;
+        });
+        new Task.Backgroundable(project,
+                "Updating Refactorings...", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                processes.put(identifier, indicator);
+                context.update(indicator);
+                if (suggestAri) {
+                    results.put(AlgorithmType.ARI, context.getRefactorings());
+                }
+                for (AlgorithmResult result : context.execute(otherAlgorithms, indicator)) {
+                    results.put(result.getAlgorithmType(), result.getRefactorings());
+                }
             }
 
             @Override
@@ -204,6 +284,8 @@ public class AutomaticRefactoringAction extends BaseAnalysisAction {
                 .show(
                     algorithmsResults,
                     context.getEntitiesStorage(),
+                    context.getAttributesProvider(),
+                    context.getInstrumentation(),
                     context.getScope(),
                     context.getMetricsRun()
                 );
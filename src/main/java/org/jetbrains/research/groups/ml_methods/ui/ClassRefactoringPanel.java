@@ -21,6 +21,7 @@ import org.jetbrains.research.groups.ml_methods.refactoring.logging.RefactoringS
 import org.jetbrains.research.groups.ml_methods.utils.ArchitectureReloadedBundle;
 import org.jetbrains.research.groups.ml_methods.utils.ExportResultsUtil;
 import org.jetbrains.research.groups.ml_methods.utils.RefactoringUtil;
+import org.jetbrains.research.groups.ml_methods.utils.SupersClosure;
 
 import javax.swing.*;
 import javax.swing.table.TableColumn;
@@ -65,7 +66,8 @@ class ClassRefactoringPanel extends JPanel {
 
     private final UUID uuid = UUID.randomUUID();
 
-    ClassRefactoringPanel(List<CalculatedRefactoring> refactorings, @NotNull AnalysisScope scope, @NotNull MetricsRun metricsRun) {
+    ClassRefactoringPanel(List<CalculatedRefactoring> refactorings, @NotNull AnalysisScope scope,
+                          @NotNull MetricsRun metricsRun, @Nullable SupersClosure supers) {
         this.scope = scope;
         this.refactorings = refactorings;
 
@@ -77,7 +79,7 @@ class ClassRefactoringPanel extends JPanel {
         );
 
         setLayout(new BorderLayout());
-        model = new RefactoringsTableModel(RefactoringUtil.filter(refactorings));
+        model = new RefactoringsTableModel(RefactoringUtil.filter(refactorings, supers));
         warnings = RefactoringsApplier.getWarnings(refactorings);
         isFieldDisabled = false;
         model.filter(getCurrentPredicate(DEFAULT_THRESHOLD));
@@ -1,26 +1,40 @@
 package org.jetbrains.research.groups.ml_methods.ui;
 
+import com.intellij.openapi.ide.CopyPasteManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.ui.TitledSeparator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmResult;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorageProvider;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesStorage;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
+import org.jetbrains.research.groups.ml_methods.instrumentation.PhaseStatistics;
 import org.jetbrains.research.groups.ml_methods.utils.ArchitectureReloadedBundle;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.LongSummaryStatistics;
 
 public class ExecutionInfoDialog extends DialogWrapper {
     private final List<AlgorithmResult> results;
     private final EntitiesStorage entitiesStorage;
+    private final AttributesStorageProvider attributesProvider;
+    private final Instrumentation instrumentation;
 
-    ExecutionInfoDialog(Project project, EntitiesStorage entitiesStorage, List<AlgorithmResult> results) {
+    ExecutionInfoDialog(Project project, EntitiesStorage entitiesStorage,
+                        @Nullable AttributesStorageProvider attributesProvider,
+                        @Nullable Instrumentation instrumentation, List<AlgorithmResult> results) {
         super(project, false);
         this.results = results;
         this.entitiesStorage = entitiesStorage;
+        this.attributesProvider = attributesProvider;
+        this.instrumentation = instrumentation;
         setResizable(false);
         setModal(true);
         setTitle(ArchitectureReloadedBundle.message("execution.info.dialog.title"));
@@ -36,7 +50,15 @@ public class ExecutionInfoDialog extends DialogWrapper {
         results.stream()
                 .map(this::createInfoPanel)
                 .forEach(algorithmsInfo::add);
-        content.add(createInfoPanel(entitiesStorage), BorderLayout.NORTH);
+        final JPanel preprocessingInfo = new JPanel(new BorderLayout());
+        preprocessingInfo.add(createInfoPanel(entitiesStorage), BorderLayout.NORTH);
+        if (attributesProvider != null) {
+            preprocessingInfo.add(createInfoPanel(attributesProvider), BorderLayout.SOUTH);
+        }
+        content.add(preprocessingInfo, BorderLayout.NORTH);
+        if (instrumentation != null) {
+            content.add(createInfoPanel(instrumentation), BorderLayout.CENTER);
+        }
         content.add(algorithmsInfo, BorderLayout.SOUTH);
         return content;
     }
@@ -61,6 +83,14 @@ public class ExecutionInfoDialog extends DialogWrapper {
         panel.add(new JLabel("Execution time: " + (result.getExecutionTime()) / 1000 + " secs"), constraints);
         constraints.gridy++;
         panel.add(new JLabel("Threads used: " + result.getThreadUsed()), constraints);
+        if (!result.getWorkersBusyTime().isEmpty()) {
+            final LongSummaryStatistics busyTime = result.getWorkersBusyTime().values().stream()
+                    .mapToLong(Long::longValue)
+                    .summaryStatistics();
+            constraints.gridy++;
+            panel.add(new JLabel("Busy time of workers: " + busyTime.getMin() + " - " + busyTime.getMax() + " ms"),
+                    constraints);
+        }
         constraints.gridy++;
         panel.add(new JLabel("Refactorings found: " + result.getRefactorings().size()), constraints);
         return panel;
@@ -95,9 +125,80 @@ public class ExecutionInfoDialog extends DialogWrapper {
         return panel;
     }
 
+    private JPanel createInfoPanel(AttributesStorageProvider attributesProvider) {
+        final JPanel panel = new JPanel(new GridBagLayout());
+
+        final GridBagConstraints constraints = new GridBagConstraints();
+        constraints.insets.left = 0;
+        constraints.insets.bottom = 8;
+        constraints.gridx = 0;
+        constraints.gridy = 0;
+        constraints.weightx = 1.0;
+        constraints.weighty = 0.0;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.anchor = GridBagConstraints.NORTHWEST;
+
+        panel.add(new TitledSeparator("Attributes preprocessing"), constraints);
+
+        constraints.insets.left = 12;
+        constraints.gridy++;
+        panel.add(new JLabel("Build time: " + attributesProvider.getBuildTime() + " ms"), constraints);
+        constraints.gridy++;
+        panel.add(new JLabel("Storages built: " + attributesProvider.getMissesCount()), constraints);
+        constraints.gridy++;
+        panel.add(new JLabel("Storages reused: " + attributesProvider.getHitsCount()), constraints);
+        return panel;
+    }
+
+    private JPanel createInfoPanel(Instrumentation instrumentation) {
+        final JPanel panel = new JPanel(new GridBagLayout());
+
+        final GridBagConstraints constraints = new GridBagConstraints();
+        constraints.insets.left = 0;
+        constraints.insets.bottom = 8;
+        constraints.gridx = 0;
+        constraints.gridy = 0;
+        constraints.weightx = 1.0;
+        constraints.weighty = 0.0;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.anchor = GridBagConstraints.NORTHWEST;
+
+        panel.add(new TitledSeparator("Phases"), constraints);
+
+        constraints.insets.left = 12;
+        for (PhaseStatistics phase : instrumentation.getPhases()) {
+            final StringBuilder text = new StringBuilder(phase.getName())
+                    .append(": ").append(TimeUnit.NANOSECONDS.toMillis(phase.getTimeNanos())).append(" ms");
+            if (phase.getItems() != 0) {
+                text.append(", ").append(phase.getItems()).append(" items");
+            }
+            if (phase.getAllocatedBytes() >= 0) {
+                text.append(", ").append(phase.getAllocatedBytes() >> 20).append(" MB allocated");
+            }
+            constraints.gridy++;
+            panel.add(new JLabel(text.toString()), constraints);
+        }
+        return panel;
+    }
+
     @NotNull
     @Override
     protected Action[] createActions() {
-        return new Action[]{new OkAction(){}};
+        if (instrumentation == null) {
+            return new Action[]{new OkAction(){}};
+        }
+
+        return new Action[]{new CopyJsonAction(), new OkAction(){}};
+    }
+
+    private class CopyJsonAction extends DialogWrapperAction {
+        CopyJsonAction() {
+            super(ArchitectureReloadedBundle.message("execution.info.copy.json.action.text"));
+        }
+
+        @Override
+        protected void doAction(ActionEvent e) {
+            CopyPasteManager.getInstance().setContents(new StringSelection(instrumentation.toJson()));
+        }
     }
 }
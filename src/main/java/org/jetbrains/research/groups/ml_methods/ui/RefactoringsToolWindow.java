@@ -13,9 +13,12 @@ import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.ui.content.Content;
 import com.sixrr.metrics.metricModel.MetricsRun;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmResult;
 import org.jetbrains.research.groups.ml_methods.algorithm.AlgorithmsRepository.AlgorithmType;
+import org.jetbrains.research.groups.ml_methods.algorithm.attributes.AttributesStorageProvider;
 import org.jetbrains.research.groups.ml_methods.algorithm.entity.EntitiesStorage;
+import org.jetbrains.research.groups.ml_methods.instrumentation.Instrumentation;
 import org.jetbrains.research.groups.ml_methods.refactoring.CalculatedRefactoring;
 import org.jetbrains.research.groups.ml_methods.utils.ArchitectureReloadedBundle;
 import org.jetbrains.research.groups.ml_methods.utils.RefactoringUtil;
@@ -37,6 +40,8 @@ public final class RefactoringsToolWindow implements Disposable {
     private ToolWindow myToolWindow = null;
     private List<AlgorithmResult> results;
     private EntitiesStorage entitiesStorage;
+    private AttributesStorageProvider attributesProvider;
+    private Instrumentation instrumentation;
     private MetricsRun metricsRun;
     private AnalysisScope scope;
     private boolean enableHighlighting;
@@ -56,7 +61,8 @@ public final class RefactoringsToolWindow implements Disposable {
     }
 
     private void addTab(String tabName, @NotNull List<CalculatedRefactoring> refactorings, boolean isClosable) {
-        final ClassRefactoringPanel panel = new ClassRefactoringPanel(refactorings, scope, metricsRun);
+        final ClassRefactoringPanel panel = new ClassRefactoringPanel(refactorings, scope, metricsRun,
+                entitiesStorage == null ? null : entitiesStorage.getSupersClosure());
         panel.setEnableHighlighting(enableHighlighting);
         final ActionToolbar toolbar = createToolbar();
         final JPanel contentPanel = new JPanel(new BorderLayout());
@@ -83,12 +89,16 @@ public final class RefactoringsToolWindow implements Disposable {
     public void show(
         List<AlgorithmResult> results,
         EntitiesStorage entitiesStorage,
+        final @Nullable AttributesStorageProvider attributesProvider,
+        final @Nullable Instrumentation instrumentation,
         AnalysisScope scope,
         final @NotNull MetricsRun metricsRun
     ) {
         this.results = results;
         this.scope = scope;
         this.entitiesStorage = entitiesStorage;
+        this.attributesProvider = attributesProvider;
+        this.instrumentation = instrumentation;
         this.metricsRun = metricsRun;
 
         contents.forEach(ClassRefactoringPanel::onClose);
@@ -113,6 +123,8 @@ public final class RefactoringsToolWindow implements Disposable {
         results = null;
         scope = null;
         entitiesStorage = null;
+        attributesProvider = null;
+        instrumentation = null;
     }
 
     private void intersect(Set<AlgorithmType> algorithms) {
@@ -162,7 +174,8 @@ public final class RefactoringsToolWindow implements Disposable {
         @Override
         public void actionPerformed(AnActionEvent e) {
             if (results != null && entitiesStorage != null) {
-                final DialogWrapper dialog = new ExecutionInfoDialog(project, entitiesStorage, results);
+                final DialogWrapper dialog = new ExecutionInfoDialog(project, entitiesStorage, attributesProvider,
+                        instrumentation, results);
                 dialog.show();
             }
         }